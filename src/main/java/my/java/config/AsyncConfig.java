@@ -64,6 +64,29 @@ public class AsyncConfig {
         return executor;
     }
 
+    /**
+     * Создает пул потоков записи пакетов импорта в БД.
+     * Каждому выполняющемуся импорту нужен один поток записи, поэтому пул не меньше пула обработки файлов;
+     * очереди нет, при нехватке потоков импорт пишет пакеты сам
+     */
+    @Bean(name = "importWriterExecutor")
+    public ThreadPoolTaskExecutor importWriterExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("import-writer-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setKeepAliveSeconds(60);
+        executor.initialize();
+
+        log.info("Initialized import writer thread pool: maxSize={}", executor.getMaxPoolSize());
+        return executor;
+    }
+
     /**
      * Создает пул потоков для операций с меньшим приоритетом (например, для сбора статистики)
      */
@@ -0,0 +1,12 @@
+package my.java.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Включение периодических задач обслуживания (секции таблиц и т.п.)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
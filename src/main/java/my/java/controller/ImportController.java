@@ -7,6 +7,7 @@ import my.java.dto.FieldMappingDto;
 import my.java.exception.FileOperationException;
 import my.java.model.FileOperation;
 import my.java.service.client.ClientService;
+import my.java.service.file.importer.DuplicateFilePolicy;
 import my.java.service.file.importer.ImportOrchestratorService;
 import my.java.service.mapping.FieldMappingService;
 import org.springframework.stereotype.Controller;
@@ -63,6 +64,7 @@ public class ImportController {
                                @RequestParam("file") MultipartFile file,
                                @RequestParam("importType") String importType,
                                @RequestParam(value = "mappingId", required = false) Long mappingId,
+                               @RequestParam(value = "force", defaultValue = "false") boolean force,
                                RedirectAttributes redirectAttributes) {
         log.debug("POST request to import file for client: {}", clientId);
 
@@ -79,7 +81,10 @@ public class ImportController {
             }
 
             // Запускаем импорт через оркестратор
-            FileOperation operation = importOrchestratorService.startImport(clientId, file, mappingId);
+            // Флаг force разрешает повторный импорт уже загруженного файла
+            FileOperation operation = force
+                    ? importOrchestratorService.startImport(clientId, file, mappingId, DuplicateFilePolicy.FORCE)
+                    : importOrchestratorService.startImport(clientId, file, mappingId);
 
             redirectAttributes.addFlashAttribute("successMessage",
                     "Файл загружен и поставлен в очередь на обработку. Операция #" + operation.getId());
@@ -88,6 +93,12 @@ public class ImportController {
             return "redirect:/operations/" + operation.getId() + "/status";
 
         } catch (FileOperationException e) {
+            if (e.getRedirectUrl() != null) {
+                // Файл уже импортирован - показываем существующую операцию
+                log.info("Duplicate import redirected to operation {}", e.getOperationId());
+                redirectAttributes.addFlashAttribute("warningMessage", e.getMessage());
+                return "redirect:" + e.getRedirectUrl();
+            }
             log.error("File operation error during import: {}", e.getMessage());
             redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
             return "redirect:/clients/" + clientId + "/import";
@@ -119,18 +130,19 @@ public class ImportController {
     @PostMapping("/operations/{operationId}/cancel")
     public String cancelImport(@PathVariable Long clientId,
                                @PathVariable Long operationId,
+                               @RequestParam(value = "rollback", defaultValue = "false") boolean rollback,
                                RedirectAttributes redirectAttributes) {
-        log.debug("POST request to cancel import operation: {}", operationId);
+        log.debug("POST request to cancel import operation: {} (rollback={})", operationId, rollback);
 
         try {
-            boolean cancelled = importOrchestratorService.cancelOperation(operationId);
+            boolean cancelled = importOrchestratorService.cancelOperation(operationId, rollback);
 
             if (cancelled) {
                 redirectAttributes.addFlashAttribute("successMessage",
-                        "Операция импорта отменена");
+                        "Запрошена отмена операции импорта");
             } else {
                 redirectAttributes.addFlashAttribute("warningMessage",
-                        "Нельзя отменить операцию, которая уже выполняется");
+                        "Нельзя отменить операцию, которая уже завершена");
             }
 
         } catch (Exception e) {
@@ -139,6 +151,32 @@ public class ImportController {
                     "Ошибка при отмене операции: " + e.getMessage());
         }
 
-        return "redirect:/clients/" + clientId;
+        return "redirect:/operations/" + operationId + "/status";
+    }
+
+    /**
+     * Удаление всех данных, загруженных завершенной операцией импорта
+     */
+    @PostMapping("/operations/{operationId}/purge")
+    public String purgeImport(@PathVariable Long clientId,
+                              @PathVariable Long operationId,
+                              RedirectAttributes redirectAttributes) {
+        log.debug("POST request to purge data of import operation: {}", operationId);
+
+        try {
+            FileOperation purge = importOrchestratorService.startPurge(operationId);
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Запущено удаление данных операции #" + operationId);
+            return "redirect:/operations/" + purge.getId() + "/status";
+
+        } catch (FileOperationException e) {
+            redirectAttributes.addFlashAttribute("warningMessage", e.getMessage());
+        } catch (Exception e) {
+            log.error("Error starting purge of operation {}: {}", operationId, e.getMessage(), e);
+            redirectAttributes.addFlashAttribute("errorMessage",
+                    "Ошибка при удалении данных операции: " + e.getMessage());
+        }
+
+        return "redirect:/operations/" + operationId + "/status";
     }
-}
\ No newline at end of file
+}
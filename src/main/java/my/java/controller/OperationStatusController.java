@@ -142,6 +142,8 @@ public class OperationStatusController {
                 return "Завершено";
             case FAILED:
                 return "Ошибка";
+            case CANCELLED:
+                return "Отменено";
             default:
                 return "Неизвестно";
         }
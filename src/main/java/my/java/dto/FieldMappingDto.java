@@ -77,6 +77,7 @@ public class FieldMappingDto {
         private String transformationParams;
         private String defaultValue;
         private Integer orderIndex;
+        private Boolean lowCardinality;
 
         // Для отображения
         private String targetEntityDisplay;
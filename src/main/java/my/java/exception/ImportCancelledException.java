@@ -0,0 +1,25 @@
+package my.java.exception;
+
+import lombok.Getter;
+
+/**
+ * Исключение, сигнализирующее о кооперативной отмене выполняющегося импорта.
+ * Бросается из цикла обработки, когда для операции запрошена отмена.
+ */
+@Getter
+public class ImportCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long operationId;
+
+    /**
+     * Создает исключение для указанной операции.
+     *
+     * @param operationId идентификатор отмененной операции
+     */
+    public ImportCancelledException(Long operationId) {
+        super("Операция " + operationId + " отменена пользователем");
+        this.operationId = operationId;
+    }
+}
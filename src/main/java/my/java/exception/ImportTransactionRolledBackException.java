@@ -0,0 +1,33 @@
+package my.java.exception;
+
+import lombok.Getter;
+
+/**
+ * Исключение, останавливающее импорт после отката транзакции из нескольких пакетов.
+ * При границах транзакций FILE и BATCHES откат отменяет и ранее записанные пакеты единицы,
+ * поэтому продолжать импорт остальными строками нельзя.
+ */
+@Getter
+public class ImportTransactionRolledBackException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int lostRows;
+    private final int firstLine;
+    private final int lastLine;
+
+    /**
+     * Создает исключение для откатанной единицы записи.
+     *
+     * @param lostRows количество несохраненных записей
+     * @param firstLine первая запись единицы
+     * @param lastLine последняя запись единицы
+     */
+    public ImportTransactionRolledBackException(int lostRows, int firstLine, int lastLine) {
+        super("Транзакция откатана, не сохранено записей: " + lostRows
+                + " (строки " + firstLine + "-" + lastLine + ")");
+        this.lostRows = lostRows;
+        this.firstLine = firstLine;
+        this.lastLine = lastLine;
+    }
+}
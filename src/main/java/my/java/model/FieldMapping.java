@@ -145,6 +145,8 @@ public class FieldMapping {
                 return "Пропускать";
             case "OVERRIDE":
                 return "Перезаписывать";
+            case "DELTA":
+                return "Только изменения";
             case "ERROR":
                 return "Ошибка";
             default:
@@ -73,6 +73,13 @@ public class FieldMappingDetail {
     @Column(name = "default_value", columnDefinition = "TEXT")
     private String defaultValue;
 
+    /**
+     * Столбец с повторяющимися значениями: значения хранятся в пуле канонических строк.
+     * null - определяется по статистике анализа файла
+     */
+    @Column(name = "low_cardinality")
+    private Boolean lowCardinality;
+
     /**
      * Порядок отображения/обработки
      */
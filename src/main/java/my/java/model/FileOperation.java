@@ -87,6 +87,10 @@ public class FileOperation {
     @Column(name = "file_hash")
     private String fileHash;
 
+    // Результат анализа файла (JSON): повторная загрузка того же файла не анализируется
+    @Column(name = "analysis_result", columnDefinition = "TEXT")
+    private String analysisResult;
+
     // Enum для типа операции
     public enum OperationType {
         IMPORT, EXPORT, PROCESS
@@ -94,7 +98,7 @@ public class FileOperation {
 
     // Enum для статуса операции
     public enum OperationStatus {
-        PENDING, PROCESSING, COMPLETED, FAILED
+        PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED
     }
 
     // Метод для установки завершения операции
@@ -114,6 +118,13 @@ public class FileOperation {
         this.completedAt = ZonedDateTime.now();
     }
 
+    // Метод для отмены операции пользователем
+    public void markAsCancelled(String message) {
+        this.status = OperationStatus.CANCELLED;
+        this.errorMessage = message;
+        this.completedAt = ZonedDateTime.now();
+    }
+
     // Метод для изменения статуса на "в процессе"
     public void markAsProcessing() {
         this.status = OperationStatus.PROCESSING;
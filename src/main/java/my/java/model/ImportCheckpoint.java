@@ -0,0 +1,48 @@
+package my.java.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Контрольная точка импорта: позиция в исходном файле после последнего записанного пакета
+ */
+@Entity
+@Table(name = "import_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportCheckpoint {
+
+    @Id
+    @Column(name = "operation_id")
+    private Long operationId;
+
+    /**
+     * Смещение в байтах, с которого нужно продолжить чтение
+     */
+    @Column(name = "byte_offset", nullable = false)
+    private long byteOffset;
+
+    /**
+     * Номер последней прочитанной строки файла
+     */
+    @Column(name = "line_number", nullable = false)
+    private int lineNumber;
+
+    /**
+     * Количество обработанных записей
+     */
+    @Column(name = "processed_records", nullable = false)
+    private int processedRecords;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private ZonedDateTime updatedAt;
+}
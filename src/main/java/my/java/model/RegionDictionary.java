@@ -0,0 +1,34 @@
+package my.java.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Запись справочника регионов клиента: город и адрес, на которые ссылаются строки region_data
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "regions")
+public class RegionDictionary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "client_id", nullable = false)
+    private Long clientId;
+
+    private String region;
+
+    @Column(name = "region_address", length = 400)
+    private String regionAddress;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private ZonedDateTime createdAt;
+}
@@ -33,6 +33,8 @@ public class AvHandbook implements ImportableEntity{
     @Column(name = "updated_at")
     private ZonedDateTime updatedAt;
 
+    @Column(name = "operation_id")
+    private Long operationId;
 
     private String handbookRetailNetworkCode;
     private String handbookRetailNetwork;
@@ -89,18 +91,29 @@ public class AvHandbook implements ImportableEntity{
      */
     @Override
     public boolean fillFromMap(Map<String, String> data) {
+        return fillFromValues(data);
+    }
+
+    /**
+     * Заполняет поля сущности строками и типизированными результатами трансформаций.
+     *
+     * @param data карта, где ключ - имя поля, значение - строка или результат трансформации
+     * @return true, если заполнение прошло успешно
+     */
+    @Override
+    public boolean fillFromValues(Map<String, ?> data) {
         if (transformerFactory == null) {
             throw new IllegalStateException("TransformerFactory не установлен");
         }
 
         boolean success = true;
 
-        for (Map.Entry<String, String> entry : data.entrySet()) {
+        for (Map.Entry<String, ?> entry : data.entrySet()) {
             String fieldName = entry.getKey();  // это уже имя поля Java-сущности
-            String value = entry.getValue();
+            Object value = entry.getValue();
 
             // Пропускаем пустые значения
-            if (value == null || value.trim().isEmpty()) {
+            if (value == null || value instanceof String text && text.trim().isEmpty()) {
                 continue;
             }
 
@@ -110,7 +123,9 @@ public class AvHandbook implements ImportableEntity{
             }
 
             // Устанавливаем значение поля
-            success &= setFieldValue(fieldName, value);
+            success &= value instanceof String text
+                    ? setFieldValue(fieldName, text)
+                    : setTypedValue(fieldName, value);
         }
 
         return success;
@@ -167,6 +182,18 @@ public class AvHandbook implements ImportableEntity{
         }
     }
 
+    /**
+     * Устанавливает типизированное значение поля через его канонический строковый вид.
+     *
+     * @param fieldName имя поля
+     * @param value результат трансформации
+     * @return true, если значение успешно установлено
+     */
+    private boolean setTypedValue(String fieldName, Object value) {
+        String text = transformerFactory.toCanonicalString(value);
+        return text == null || setFieldValue(fieldName, text);
+    }
+
     /**
      * Возвращает карту соответствия заголовков файла и полей сущности.
      *
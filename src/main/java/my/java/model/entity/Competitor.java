@@ -3,12 +3,18 @@ package my.java.model.entity;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import my.java.util.ContentHash;
+import my.java.util.transformer.PriceParser;
 import my.java.util.transformer.ValueTransformerFactory;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import java.time.ZonedDateTime;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -34,6 +40,9 @@ public class Competitor implements ImportableEntity {
     @Column(name = "updated_at")
     private ZonedDateTime updatedAt;
 
+    @Column(name = "operation_id")
+    private Long operationId;
+
     private Long clientId;
 
     @Column(length = 400)
@@ -66,6 +75,25 @@ public class Competitor implements ImportableEntity {
     @JoinColumn(name = "product_id")
     private Product product;
 
+    // Типизированные копии строковых цены, акционной цены и даты/времени наблюдения.
+    // Вычисляются при заполнении сущности, NULL - значение не разобрано
+    @Column(name = "competitor_price_value", precision = 15, scale = 2)
+    private BigDecimal competitorPriceValue;
+
+    @Column(name = "competitor_promotional_price_value", precision = 15, scale = 2)
+    private BigDecimal competitorPromotionalPriceValue;
+
+    @Column(name = "competitor_observed_at")
+    private LocalDateTime competitorObservedAt;
+
+    // Месяц наблюдения (первое число) - ключ секционирования competitor_data
+    @Column(name = "observed_month", nullable = false)
+    private LocalDate observedMonth;
+
+    // Запись справочника сетей (av_handbook), сопоставленная при импорте
+    @Column(name = "handbook_id")
+    private Long handbookId;
+
     // =====================================================================================
     // ВНИМАНИЕ! ЭТО НЕ ЗАГОЛОВКИ CSV ФАЙЛОВ!
     //
@@ -94,10 +122,21 @@ public class Competitor implements ImportableEntity {
         UI_DISPLAY_NAMES_TO_ENTITY_FIELDS.put("Скриншот", "competitorWebCacheUrl");
     }
 
+    // Точность типизированных цен: NUMERIC(15,2)
+    private static final int PRICE_PRECISION = 15;
+    private static final int PRICE_SCALE = 2;
+
     // Транзитивные поля, не сохраняемые в БД
     @Transient
     private ValueTransformerFactory transformerFactory;
 
+    // Дата и время наблюдения, уже разобранные трансформациями маппинга
+    @Transient
+    private LocalDate mappedDate;
+
+    @Transient
+    private LocalTime mappedTime;
+
     /**
      * Устанавливает фабрику трансформеров для преобразования строковых значений.
      *
@@ -115,18 +154,29 @@ public class Competitor implements ImportableEntity {
      */
     @Override
     public boolean fillFromMap(Map<String, String> data) {
+        return fillFromValues(data);
+    }
+
+    /**
+     * Заполняет поля сущности строками и типизированными результатами трансформаций.
+     *
+     * @param data карта, где ключ - имя поля, значение - строка или результат трансформации
+     * @return true, если заполнение прошло успешно
+     */
+    @Override
+    public boolean fillFromValues(Map<String, ?> data) {
         if (transformerFactory == null) {
             throw new IllegalStateException("TransformerFactory не установлен");
         }
 
         boolean success = true;
 
-        for (Map.Entry<String, String> entry : data.entrySet()) {
+        for (Map.Entry<String, ?> entry : data.entrySet()) {
             String fieldName = entry.getKey();  // это уже имя поля Java-сущности
-            String value = entry.getValue();
+            Object value = entry.getValue();
 
             // Пропускаем пустые значения
-            if (value == null || value.trim().isEmpty()) {
+            if (value == null || value instanceof String text && text.trim().isEmpty()) {
                 continue;
             }
 
@@ -136,12 +186,77 @@ public class Competitor implements ImportableEntity {
             }
 
             // Устанавливаем значение поля
-            success &= setFieldValue(fieldName, value);
+            success &= value instanceof String text
+                    ? setFieldValue(fieldName, text)
+                    : setTypedValue(fieldName, value);
         }
 
+        resolveUnparsedValues();
         return success;
     }
 
+    /**
+     * Заполняет типизированные поля из строковых: цены - быстрым разбором цен,
+     * дата/время - значением "Дата:Время" или сочетанием даты и времени (без времени - полночь).
+     * Неразобранное значение оставляет поле пустым и не считается ошибкой строки.
+     * Месяц наблюдения без даты наблюдения - текущий месяц (месяц загрузки)
+     */
+    public void resolveTypedValues() {
+        competitorPriceValue = null;
+        competitorPromotionalPriceValue = null;
+        mappedDate = null;
+        mappedTime = null;
+        resolveUnparsedValues();
+    }
+
+    /**
+     * Разбирает только значения, не полученные типизированными из трансформаций маппинга
+     */
+    private void resolveUnparsedValues() {
+        if (competitorPriceValue == null) {
+            competitorPriceValue = parsePrice(competitorPrice);
+        }
+        if (competitorPromotionalPriceValue == null) {
+            competitorPromotionalPriceValue = parsePrice(competitorPromotionalPrice);
+        }
+        competitorObservedAt = resolveObservedAt();
+        observedMonth = (competitorObservedAt != null ? competitorObservedAt.toLocalDate() : LocalDate.now())
+                .withDayOfMonth(1);
+    }
+
+    private LocalDateTime resolveObservedAt() {
+        if (competitorLocalDateTime != null) {
+            return competitorLocalDateTime;
+        }
+        LocalDate date = mappedDate != null || isBlank(competitorDate) ? mappedDate
+                : transformerFactory.transform(competitorDate, LocalDate.class, "column=competitorDate");
+        if (date == null) {
+            return null;
+        }
+        LocalTime time = mappedTime != null || isBlank(competitorTime) ? mappedTime
+                : transformerFactory.transform(competitorTime, LocalTime.class, "column=competitorTime");
+        return LocalDateTime.of(date, time != null ? time : LocalTime.MIDNIGHT);
+    }
+
+    /**
+     * Цена, помещающаяся в NUMERIC(15,2), иначе null
+     */
+    private static BigDecimal parsePrice(String value) {
+        return fitPrice(PriceParser.DEFAULT.parseBigDecimal(value, PRICE_SCALE));
+    }
+
+    private static BigDecimal fitPrice(BigDecimal value) {
+        if (value == null) {
+            return null;
+        }
+        BigDecimal price = value.setScale(PRICE_SCALE, RoundingMode.HALF_UP);
+        return price.precision() <= PRICE_PRECISION ? price : null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
     private boolean isValidFieldName(String fieldName) {
         // Определяем набор валидных имен полей для данной сущности
         Set<String> validFieldNames = Set.of(
@@ -180,7 +295,8 @@ public class Competitor implements ImportableEntity {
                     this.competitorDate = value;
                     break;
                 case "competitorLocalDateTime":
-                    this.competitorLocalDateTime = transformerFactory.transform(value, LocalDateTime.class, null);
+                    this.competitorLocalDateTime = transformerFactory.transform(value, LocalDateTime.class,
+                            "column=competitorLocalDateTime");
                     break;
                 case "competitorStockStatus":
                     this.competitorStockStatus = value;
@@ -215,6 +331,46 @@ public class Competitor implements ImportableEntity {
         }
     }
 
+    /**
+     * Устанавливает типизированное значение поля. Дата/время, цены, дата и время наблюдения
+     * сохраняются без повторного разбора, строковые поля получают канонический вид значения.
+     *
+     * @param fieldName имя поля
+     * @param value     результат трансформации
+     * @return true, если значение успешно установлено
+     */
+    private boolean setTypedValue(String fieldName, Object value) {
+        if ("competitorLocalDateTime".equals(fieldName) && value instanceof LocalDateTime dateTime) {
+            this.competitorLocalDateTime = dateTime;
+            return true;
+        }
+        String text = transformerFactory.toCanonicalString(value);
+        if (text == null) {
+            return true;
+        }
+        if ("competitorPrice".equals(fieldName) && value instanceof BigDecimal price) {
+            this.competitorPrice = text;
+            this.competitorPriceValue = fitPrice(price);
+            return true;
+        }
+        if ("competitorPromotionalPrice".equals(fieldName) && value instanceof BigDecimal price) {
+            this.competitorPromotionalPrice = text;
+            this.competitorPromotionalPriceValue = fitPrice(price);
+            return true;
+        }
+        if ("competitorDate".equals(fieldName) && value instanceof LocalDate date) {
+            this.competitorDate = text;
+            this.mappedDate = date;
+            return true;
+        }
+        if ("competitorTime".equals(fieldName) && value instanceof LocalTime time) {
+            this.competitorTime = text;
+            this.mappedTime = time;
+            return true;
+        }
+        return setFieldValue(fieldName, text);
+    }
+
     /**
      * Возвращает карту соответствия заголовков файла и полей сущности.
      *
@@ -225,6 +381,30 @@ public class Competitor implements ImportableEntity {
         return new HashMap<>(UI_DISPLAY_NAMES_TO_ENTITY_FIELDS);
     }
 
+    /**
+     * Вычисляет хеш импортируемых полей конкурента (без ссылки на товар).
+     *
+     * @return 64-битный хеш содержимого
+     */
+    public long computeContentHash() {
+        return new ContentHash()
+                .add(competitorName)
+                .add(competitorPrice)
+                .add(competitorPromotionalPrice)
+                .add(competitorTime)
+                .add(competitorDate)
+                .add(competitorLocalDateTime != null ? competitorLocalDateTime.toString() : null)
+                .add(competitorStockStatus)
+                .add(competitorAdditionalPrice)
+                .add(competitorCommentary)
+                .add(competitorProductName)
+                .add(competitorAdditional)
+                .add(competitorAdditional2)
+                .add(competitorUrl)
+                .add(competitorWebCacheUrl)
+                .value();
+    }
+
     /**
      * Валидирует заполненную сущность.
      *
@@ -19,6 +19,17 @@ public interface ImportableEntity {
      */
     boolean fillFromMap(Map<String, String> data);
 
+    /**
+     * Заполняет поля сущности значениями, часть из которых уже преобразована
+     * трансформациями маппинга. Типизированное значение поля того же типа
+     * присваивается без повторного разбора, строковые поля получают его
+     * канонический строковый вид.
+     *
+     * @param data карта, где ключ - имя поля, значение - строка или результат трансформации
+     * @return true, если заполнение прошло успешно
+     */
+    boolean fillFromValues(Map<String, ?> data);
+
     /**
      * Возвращает карту соответствия заголовков файла и полей сущности.
      *
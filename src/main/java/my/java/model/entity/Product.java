@@ -4,9 +4,11 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import my.java.model.enums.DataSourceType;
+import my.java.util.ContentHash;
 import my.java.util.transformer.ValueTransformerFactory;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import java.math.BigDecimal;
 import java.time.ZonedDateTime;
 
 import java.util.*;
@@ -57,7 +59,7 @@ public class Product implements ImportableEntity {
     private String productCategory1;
     private String productCategory2;
     private String productCategory3;
-    private Double productPrice;
+    private BigDecimal productPrice;
     private String productAnalog;
 
     // Дополнительные поля
@@ -67,6 +69,10 @@ public class Product implements ImportableEntity {
     private String productAdditional4;
     private String productAdditional5;
 
+    // Хеш содержимого товара: при перезаписи строки с тем же хешем не обновляются
+    @Column(name = "content_hash")
+    private Long contentHash;
+
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Region> regionList = new ArrayList<>();
 
@@ -124,18 +130,29 @@ public class Product implements ImportableEntity {
      */
     @Override
     public boolean fillFromMap(Map<String, String> data) {
+        return fillFromValues(data);
+    }
+
+    /**
+     * Заполняет поля сущности строками и типизированными результатами трансформаций.
+     *
+     * @param data карта, где ключ - имя поля, значение - строка или результат трансформации
+     * @return true, если заполнение прошло успешно
+     */
+    @Override
+    public boolean fillFromValues(Map<String, ?> data) {
         if (transformerFactory == null) {
             throw new IllegalStateException("TransformerFactory не установлен");
         }
 
         boolean success = true;
 
-        for (Map.Entry<String, String> entry : data.entrySet()) {
+        for (Map.Entry<String, ?> entry : data.entrySet()) {
             String fieldName = entry.getKey();  // это уже имя поля Java-сущности
-            String value = entry.getValue();
+            Object value = entry.getValue();
 
             // Пропускаем пустые значения
-            if (value == null || value.trim().isEmpty()) {
+            if (value == null || value instanceof String text && text.trim().isEmpty()) {
                 continue;
             }
 
@@ -145,7 +162,9 @@ public class Product implements ImportableEntity {
             }
 
             // Устанавливаем значение поля
-            success &= setFieldValue(fieldName, value);
+            success &= value instanceof String text
+                    ? setFieldValue(fieldName, text)
+                    : setTypedValue(fieldName, value);
         }
 
         return success;
@@ -204,7 +223,7 @@ public class Product implements ImportableEntity {
                     this.productCategory3 = value;
                     break;
                 case "productPrice":
-                    this.productPrice = transformerFactory.transform(value, Double.class, null);
+                    this.productPrice = transformerFactory.transform(value, BigDecimal.class, null);
                     break;
                 case "productAnalog":
                     this.productAnalog = value;
@@ -233,6 +252,23 @@ public class Product implements ImportableEntity {
         }
     }
 
+    /**
+     * Устанавливает типизированное значение поля: цена присваивается без повторного разбора,
+     * остальные поля получают канонический строковый вид значения.
+     *
+     * @param fieldName имя поля
+     * @param value результат трансформации
+     * @return true, если значение успешно установлено
+     */
+    private boolean setTypedValue(String fieldName, Object value) {
+        if ("productPrice".equals(fieldName) && value instanceof BigDecimal price) {
+            this.productPrice = price;
+            return true;
+        }
+        String text = transformerFactory.toCanonicalString(value);
+        return text == null || setFieldValue(fieldName, text);
+    }
+
     /**
      * Возвращает карту соответствия заголовков файла и полей сущности.
      *
@@ -243,6 +279,32 @@ public class Product implements ImportableEntity {
         return new HashMap<>(UI_DISPLAY_NAMES_TO_ENTITY_FIELDS);
     }
 
+    /**
+     * Вычисляет хеш импортируемых полей товара (без служебных полей и ключа productId).
+     *
+     * @return 64-битный хеш содержимого
+     */
+    public long computeContentHash() {
+        return new ContentHash()
+                .add(dataSource != null ? dataSource.name() : "FILE") // как при вставке
+                .add(productName)
+                .add(productBrand)
+                .add(productBar)
+                .add(productDescription)
+                .add(productUrl)
+                .add(productCategory1)
+                .add(productCategory2)
+                .add(productCategory3)
+                .add(productPrice)
+                .add(productAnalog)
+                .add(productAdditional1)
+                .add(productAdditional2)
+                .add(productAdditional3)
+                .add(productAdditional4)
+                .add(productAdditional5)
+                .value();
+    }
+
     /**
      * Валидирует заполненную сущность.
      *
@@ -3,6 +3,8 @@ package my.java.model.entity;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import my.java.model.RegionDictionary;
+import my.java.util.ContentHash;
 import my.java.util.transformer.ValueTransformerFactory;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -14,6 +16,7 @@ import java.util.Set;
 
 /**
  * Сущность, представляющая региональные данные.
+ * Текст города и адреса вынесен в справочник {@link my.java.model.RegionDictionary}
  */
 @Setter
 @Getter
@@ -33,10 +36,25 @@ public class Region implements ImportableEntity {
     @Column(name = "updated_at")
     private ZonedDateTime updatedAt;
 
+    @Column(name = "operation_id")
+    private Long operationId;
+
     private Long clientId;
+
+    // Ссылка на справочник регионов (regions), выставляется при записи импорта
+    @Column(name = "region_id")
+    private Long regionId;
+
+    // Запись справочника для загруженных из БД строк (столбец region_id пишется через regionId)
+    @ManyToOne
+    @JoinColumn(name = "region_id", insertable = false, updatable = false)
+    private RegionDictionary regionDictionary;
+
+    // Город и адрес хранятся в справочнике regions; в сущности - значения строки импорта
+    @Transient
     private String region;
 
-    @Column(length = 400)
+    @Transient
     private String regionAddress;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -72,6 +90,26 @@ public class Region implements ImportableEntity {
         this.transformerFactory = transformerFactory;
     }
 
+    /**
+     * Город: значение строки импорта или, для загруженной из БД записи, из справочника
+     */
+    public String getRegion() {
+        if (region == null && regionDictionary != null) {
+            return regionDictionary.getRegion();
+        }
+        return region;
+    }
+
+    /**
+     * Адрес: значение строки импорта или, для загруженной из БД записи, из справочника
+     */
+    public String getRegionAddress() {
+        if (regionAddress == null && regionDictionary != null) {
+            return regionDictionary.getRegionAddress();
+        }
+        return regionAddress;
+    }
+
     /**
      * Заполняет поля сущности из карты с данными.
      *
@@ -80,18 +118,29 @@ public class Region implements ImportableEntity {
      */
     @Override
     public boolean fillFromMap(Map<String, String> data) {
+        return fillFromValues(data);
+    }
+
+    /**
+     * Заполняет поля сущности строками и типизированными результатами трансформаций.
+     *
+     * @param data карта, где ключ - имя поля, значение - строка или результат трансформации
+     * @return true, если заполнение прошло успешно
+     */
+    @Override
+    public boolean fillFromValues(Map<String, ?> data) {
         if (transformerFactory == null) {
             throw new IllegalStateException("TransformerFactory не установлен");
         }
 
         boolean success = true;
 
-        for (Map.Entry<String, String> entry : data.entrySet()) {
+        for (Map.Entry<String, ?> entry : data.entrySet()) {
             String fieldName = entry.getKey();  // это уже имя поля Java-сущности
-            String value = entry.getValue();
+            Object value = entry.getValue();
 
             // Пропускаем пустые значения
-            if (value == null || value.trim().isEmpty()) {
+            if (value == null || value instanceof String text && text.trim().isEmpty()) {
                 continue;
             }
 
@@ -101,7 +150,9 @@ public class Region implements ImportableEntity {
             }
 
             // Устанавливаем значение поля
-            success &= setFieldValue(fieldName, value);
+            success &= value instanceof String text
+                    ? setFieldValue(fieldName, text)
+                    : setTypedValue(fieldName, value);
         }
 
         return success;
@@ -141,6 +192,18 @@ public class Region implements ImportableEntity {
         }
     }
 
+    /**
+     * Устанавливает типизированное значение поля через его канонический строковый вид.
+     *
+     * @param fieldName имя поля
+     * @param value результат трансформации
+     * @return true, если значение успешно установлено
+     */
+    private boolean setTypedValue(String fieldName, Object value) {
+        String text = transformerFactory.toCanonicalString(value);
+        return text == null || setFieldValue(fieldName, text);
+    }
+
     /**
      * Возвращает карту соответствия заголовков файла и полей сущности.
      *
@@ -151,6 +214,18 @@ public class Region implements ImportableEntity {
         return new HashMap<>(UI_DISPLAY_NAMES_TO_ENTITY_FIELDS);
     }
 
+    /**
+     * Вычисляет хеш импортируемых полей региона (без ссылки на товар).
+     *
+     * @return 64-битный хеш содержимого
+     */
+    public long computeContentHash() {
+        return new ContentHash()
+                .add(getRegion())
+                .add(getRegionAddress())
+                .value();
+    }
+
     /**
      * Валидирует заполненную сущность.
      *
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.util.List;
@@ -49,15 +50,25 @@ public interface CompetitorRepository extends JpaRepository<Competitor, Long> {
     void deleteByProductIdIn(List<Long> productIds);
 
     /**
-     * Найти конкурентов за определенный период
+     * Найти конкурентов за определенный период.
+     * Условие на месяц наблюдения только ограничивает чтение секциями периода: при заполненном
+     * competitorLocalDateTime месяц наблюдения - его месяц, поэтому строки не отбрасываются
      */
+    default List<Competitor> findByClientIdAndDateRange(Long clientId, LocalDateTime startDate, LocalDateTime endDate) {
+        return findByClientIdAndDateRangeInMonths(clientId, startDate, endDate,
+                startDate.toLocalDate().withDayOfMonth(1), endDate.toLocalDate().withDayOfMonth(1));
+    }
+
     @Query("SELECT c FROM Competitor c WHERE c.clientId = :clientId AND " +
+            "c.observedMonth BETWEEN :startMonth AND :endMonth AND " +
             "c.competitorLocalDateTime BETWEEN :startDate AND :endDate " +
             "ORDER BY c.competitorLocalDateTime DESC")
-    List<Competitor> findByClientIdAndDateRange(
+    List<Competitor> findByClientIdAndDateRangeInMonths(
             @Param("clientId") Long clientId,
             @Param("startDate") LocalDateTime startDate,
-            @Param("endDate") LocalDateTime endDate);
+            @Param("endDate") LocalDateTime endDate,
+            @Param("startMonth") LocalDate startMonth,
+            @Param("endMonth") LocalDate endMonth);
 
     /**
      * Найти последние записи конкурентов
@@ -82,4 +93,18 @@ public interface CompetitorRepository extends JpaRepository<Competitor, Long> {
     @Query("SELECT c FROM Competitor c WHERE c.clientId = :clientId AND c.createdAt >= :since ORDER BY c.createdAt DESC")
     List<Competitor> findRecentlyCreated(@Param("clientId") Long clientId, @Param("since") ZonedDateTime since);
 
-}
\ No newline at end of file
+    /**
+     * Найти записи конкурентов, загруженные операцией импорта (BRIN-индекс по operation_id)
+     */
+    List<Competitor> findByOperationIdOrderById(Long operationId);
+
+    /**
+     * Количество записей, загруженных операцией импорта
+     */
+    long countByOperationId(Long operationId);
+
+    /**
+     * Найти записи конкурентов, созданные в интервале времени
+     */
+    List<Competitor> findByClientIdAndCreatedAtBetweenOrderByCreatedAtDesc(Long clientId, ZonedDateTime from, ZonedDateTime to);
+}
@@ -7,7 +7,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Репозиторий для работы с файловыми операциями
@@ -46,6 +48,18 @@ public interface FileOperationRepository extends JpaRepository<FileOperation, Lo
      */
     List<FileOperation> findByFieldMappingId(Long fieldMappingId);
 
+    /**
+     * Последняя операция с сохраненным анализом файла с указанным хешем
+     */
+    Optional<FileOperation> findFirstByFileHashAndAnalysisResultIsNotNullOrderByIdDesc(String fileHash);
+
+    /**
+     * Последняя операция клиента с тем же файлом и шаблоном в указанных статусах
+     * (индекс idx_file_operations_client_hash_mapping)
+     */
+    Optional<FileOperation> findFirstByClientAndFileHashAndFieldMappingIdAndStatusInOrderByIdDesc(
+            Client client, String fileHash, Long fieldMappingId, Collection<FileOperation.OperationStatus> statuses);
+
     /**
      * Подсчитать количество операций для клиента
      */
@@ -88,4 +88,18 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.clientId = :clientId AND p.createdAt >= :since ORDER BY p.createdAt DESC")
     List<Product> findRecentlyCreated(@Param("clientId") Long clientId, @Param("since") ZonedDateTime since);
 
-}
\ No newline at end of file
+    /**
+     * Найти продукты, загруженные операцией импорта
+     */
+    List<Product> findByOperationIdOrderById(Long operationId);
+
+    /**
+     * Количество записей, загруженных операцией импорта
+     */
+    long countByOperationId(Long operationId);
+
+    /**
+     * Найти продукты, созданные в интервале времени
+     */
+    List<Product> findByClientIdAndCreatedAtBetweenOrderByCreatedAtDesc(Long clientId, ZonedDateTime from, ZonedDateTime to);
+}
@@ -20,18 +20,25 @@ public interface RegionRepository extends JpaRepository<Region, Long> {
     /**
      * Найти все регионы клиента
      */
-    List<Region> findByClientIdOrderByRegion(Long clientId);
+    @Query("SELECT r FROM Region r, RegionDictionary d WHERE d.id = r.regionId AND r.clientId = :clientId " +
+            "ORDER BY d.region")
+    List<Region> findByClientIdOrderByRegion(@Param("clientId") Long clientId);
 
     /**
-     * Найти регион по названию и клиенту
+     * Найти регион по названию и клиенту.
+     * Название хранится в справочнике и общее для многих строк region_data - возвращается первая из них
      */
-    Optional<Region> findByClientIdAndRegion(Long clientId, String region);
+    default Optional<Region> findByClientIdAndRegion(Long clientId, String region) {
+        return findFirstByClientIdAndRegionDictionary_RegionOrderByIdAsc(clientId, region);
+    }
+
+    Optional<Region> findFirstByClientIdAndRegionDictionary_RegionOrderByIdAsc(Long clientId, String region);
 
     /**
      * Найти регионы по части названия
      */
-    @Query("SELECT r FROM Region r WHERE r.clientId = :clientId AND " +
-            "LOWER(r.region) LIKE LOWER(CONCAT('%', :regionPart, '%'))")
+    @Query("SELECT r FROM Region r, RegionDictionary d WHERE d.id = r.regionId AND r.clientId = :clientId AND " +
+            "LOWER(d.region) LIKE LOWER(CONCAT('%', :regionPart, '%'))")
     List<Region> findByClientIdAndRegionContainingIgnoreCase(
             @Param("clientId") Long clientId,
             @Param("regionPart") String regionPart);
@@ -47,14 +54,20 @@ public interface RegionRepository extends JpaRepository<Region, Long> {
     void deleteByProductIdIn(List<Long> productIds);
 
     /**
-     * Проверить существование региона
+     * Проверить существование региона.
+     * Записи справочника не удаляются вместе с region_data, поэтому учитываются только
+     * значения, на которые ссылается хотя бы одна запись
      */
-    boolean existsByClientIdAndRegion(Long clientId, String region);
+    @Query("SELECT COUNT(d) > 0 FROM RegionDictionary d WHERE d.clientId = :clientId AND d.region = :region " +
+            "AND EXISTS (SELECT r.id FROM Region r WHERE r.regionId = d.id)")
+    boolean existsByClientIdAndRegion(@Param("clientId") Long clientId, @Param("region") String region);
 
     /**
-     * Найти уникальные названия регионов для клиента
+     * Найти уникальные названия регионов для клиента: значения справочника, на которые
+     * ссылается хотя бы одна запись region_data (проверка по индексу region_id)
      */
-    @Query("SELECT DISTINCT r.region FROM Region r WHERE r.clientId = :clientId ORDER BY r.region")
+    @Query("SELECT DISTINCT d.region FROM RegionDictionary d WHERE d.clientId = :clientId " +
+            "AND EXISTS (SELECT r.id FROM Region r WHERE r.regionId = d.id) ORDER BY d.region")
     List<String> findDistinctRegionsByClientId(@Param("clientId") Long clientId);
 
     /**
@@ -67,4 +80,19 @@ public interface RegionRepository extends JpaRepository<Region, Long> {
      */
     @Query("SELECT r FROM Region r WHERE r.clientId = :clientId AND r.createdAt >= :since ORDER BY r.createdAt DESC")
     List<Region> findRecentlyCreated(@Param("clientId") Long clientId, @Param("since") ZonedDateTime since);
-}
\ No newline at end of file
+
+    /**
+     * Найти региональные записи, загруженные операцией импорта (BRIN-индекс по operation_id)
+     */
+    List<Region> findByOperationIdOrderById(Long operationId);
+
+    /**
+     * Количество записей, загруженных операцией импорта
+     */
+    long countByOperationId(Long operationId);
+
+    /**
+     * Найти региональные записи, созданные в интервале времени
+     */
+    List<Region> findByClientIdAndCreatedAtBetweenOrderByCreatedAtDesc(Long clientId, ZonedDateTime from, ZonedDateTime to);
+}
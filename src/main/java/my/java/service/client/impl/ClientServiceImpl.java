@@ -7,6 +7,7 @@ import my.java.dto.ClientDto;
 import my.java.model.Client;
 import my.java.repository.ClientRepository;
 import my.java.service.client.ClientService;
+import my.java.service.file.importer.RegionDictionaryCache;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +21,7 @@ import java.util.stream.Collectors;
 public class ClientServiceImpl implements ClientService {
 
     private final ClientRepository clientRepository;
+    private final RegionDictionaryCache regionDictionaryCache;
 
     @Override
     @Transactional(readOnly = true)
@@ -106,6 +108,8 @@ public class ClientServiceImpl implements ClientService {
         }
 
         clientRepository.deleteById(id);
+        // Справочник регионов клиента удален каскадно
+        regionDictionaryCache.evict(id);
         log.info("Deleted client with id: {}", id);
         return true;
     }
@@ -0,0 +1,76 @@
+// src/main/java/my/java/service/file/analyzer/ColumnStatistics.java
+package my.java.service.file.analyzer;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Статистика столбца CSV файла по строкам выборки
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ColumnStatistics {
+
+    // Меньше значений в выборке недостаточно для оценки повторяемости
+    private static final int MIN_VALUES_FOR_CARDINALITY = 20;
+
+    /**
+     * Заголовок столбца
+     */
+    private String name;
+
+    /**
+     * Порядковый номер столбца (с нуля)
+     */
+    private int index;
+
+    /**
+     * Количество строк выборки
+     */
+    private int sampledRows;
+
+    /**
+     * Количество непустых значений в выборке
+     */
+    private int filledValues;
+
+    /**
+     * Максимальная длина значения в символах
+     */
+    private int maxLength;
+
+    /**
+     * Предполагаемый тип значений: NUMBER, DATE, TEXT или EMPTY
+     */
+    private String inferredType;
+
+    /**
+     * Количество различных непустых значений в выборке
+     */
+    private int distinctValues;
+
+    /**
+     * Доля заполненных значений в процентах
+     */
+    public int getFillRate() {
+        return sampledRows > 0 ? (int) Math.round(filledValues * 100.0 / sampledRows) : 0;
+    }
+
+    /**
+     * Столбец с малым числом различных значений (справочные значения: регион, бренд, категория).
+     * Текстовые значения таких столбцов при импорте хранятся в пуле канонических строк
+     *
+     * @param maxDistinctPercent доля различных значений среди непустых, в процентах
+     */
+    public boolean isLowCardinality(int maxDistinctPercent) {
+        return "TEXT".equals(inferredType)
+                && filledValues >= MIN_VALUES_FOR_CARDINALITY
+                && distinctValues * 100L <= (long) filledValues * maxDistinctPercent;
+    }
+}
@@ -0,0 +1,54 @@
+// src/main/java/my/java/service/file/analyzer/CsvAnalysisCache.java
+package my.java.service.file.analyzer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * LRU-кэш результатов анализа по SHA-256 содержимого файла.
+ * Клиенты часто загружают один и тот же файл повторно - в этом случае анализ не выполняется
+ */
+@Component
+@Slf4j
+public class CsvAnalysisCache {
+
+    private final Map<String, CsvAnalysisResult> cache;
+
+    public CsvAnalysisCache(@Value("${application.import.analysis-cache-size:64}") int maxEntries) {
+        int capacity = Math.max(0, maxEntries);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CsvAnalysisResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Результат анализа файла с указанным хешем
+     */
+    public synchronized Optional<CsvAnalysisResult> get(String fileHash) {
+        if (fileHash == null) {
+            return Optional.empty();
+        }
+        CsvAnalysisResult result = cache.get(fileHash);
+        if (result != null) {
+            log.debug("Analysis cache hit for file hash {}", fileHash);
+        }
+        return Optional.ofNullable(result).map(CsvAnalysisResult::copy);
+    }
+
+    /**
+     * Сохранение результата анализа (ключ - хеш из результата)
+     */
+    public synchronized void put(CsvAnalysisResult result) {
+        if (result != null && result.getFileHash() != null) {
+            cache.put(result.getFileHash(), result.copy());
+        }
+    }
+}
@@ -1,22 +1,31 @@
 // src/main/java/my/java/service/file/analyzer/CsvAnalysisResult.java
 package my.java.service.file.analyzer;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Результат анализа CSV файла
+ * Результат анализа CSV файла.
+ * Сохраняется в операции (JSON), поэтому вычисляемые свойства при чтении игнорируются
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class CsvAnalysisResult {
 
+    /**
+     * SHA-256 содержимого файла
+     */
+    private String fileHash;
+
     /**
      * Определенная кодировка файла
      */
@@ -47,6 +56,12 @@ public class CsvAnalysisResult {
      */
     private long estimatedLines;
 
+    /**
+     * Точное количество непустых записей без строки заголовков
+     * (переводы строк внутри кавычек не учитываются)
+     */
+    private long recordCount;
+
     /**
      * Размер файла в байтах
      */
@@ -62,11 +77,30 @@ public class CsvAnalysisResult {
      */
     private boolean hasHeaders;
 
+    /**
+     * Статистика столбцов по строкам выборки
+     */
+    private List<ColumnStatistics> columnStatistics;
+
     /**
      * Дополнительные замечания или предупреждения
      */
     private List<String> warnings;
 
+    /**
+     * Копия результата со своими списками (результаты из кэша не должны изменяться вызывающим кодом)
+     */
+    public CsvAnalysisResult copy() {
+        return toBuilder()
+                .headers(headers != null ? new ArrayList<>(headers) : null)
+                .sampleLines(sampleLines != null ? new ArrayList<>(sampleLines) : null)
+                .columnStatistics(columnStatistics != null
+                        ? columnStatistics.stream().map(c -> c.toBuilder().build()).toList()
+                        : null)
+                .warnings(warnings != null ? new ArrayList<>(warnings) : null)
+                .build();
+    }
+
     /**
      * Возвращает разделитель в удобном для отображения формате
      */
@@ -1,16 +1,14 @@
 // src/main/java/my/java/service/file/analyzer/CsvFileAnalyzer.java
 package my.java.service.file.analyzer;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.mozilla.universalchardet.UniversalDetector;
 import org.springframework.stereotype.Service;
 
-import java.io.*;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -18,10 +16,18 @@ import java.util.stream.Collectors;
  */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class CsvFileAnalyzer {
 
-    private static final int SAMPLE_SIZE = 1024 * 10; // 10KB для анализа
     private static final int MAX_LINES_TO_ANALYZE = 50;
+    private static final int MAX_SAMPLE_ROWS = 1000; // строк выборки для статистики столбцов
+
+    // Число с разделителями групп и дробной части ("1 234,56", "-12.5")
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("[-+]?[\\d\\s\\u00A0]*[.,]?\\d+");
+
+    // Дата с необязательным временем ("01.02.2024", "2024-02-01 10:00:00")
+    private static final Pattern DATE_PATTERN =
+            Pattern.compile("\\d{1,4}[./-]\\d{1,2}[./-]\\d{1,4}([ T]\\d{1,2}:\\d{2}(:\\d{2})?)?");
 
     // Возможные разделители
     private static final char[] POSSIBLE_DELIMITERS = {',', ';', '\t', '|', ':'};
@@ -29,19 +35,44 @@ public class CsvFileAnalyzer {
     // Возможные кавычки
     private static final char[] POSSIBLE_QUOTES = {'"', '\''};
 
+    private final EncodingDetector encodingDetector;
+    private final CsvAnalysisCache analysisCache;
+
     /**
-     * Анализирует CSV файл и определяет его параметры
+     * Анализирует CSV файл и определяет его параметры.
+     * Файл читается один раз: за это чтение вычисляются хеш, окна для определения кодировки
+     * и точное количество записей
      */
     public CsvAnalysisResult analyzeFile(Path filePath) {
+        return analyzeFile(filePath, null);
+    }
+
+    /**
+     * Анализирует CSV файл, хеш которого уже известен (посчитан при сохранении загрузки).
+     * Повторно загруженный файл берется из кэша без чтения
+     *
+     * @param filePath путь к файлу
+     * @param fileHash SHA-256 содержимого или null
+     */
+    public CsvAnalysisResult analyzeFile(Path filePath, String fileHash) {
+        Optional<CsvAnalysisResult> cached = analysisCache.get(fileHash);
+        if (cached.isPresent()) {
+            log.info("Анализ файла {} взят из кэша (хеш {})", filePath, fileHash);
+            return cached.get();
+        }
+
         log.debug("Начинаем анализ файла: {}", filePath);
 
         try {
-            // Определяем кодировку
-            String encoding = detectEncoding(filePath);
+            CsvFileScan scan = CsvFileScan.scan(filePath, fileHash == null);
+
+            // Определяем кодировку по окнам выборки
+            String encoding = encodingDetector.detect(scan.getWindows());
             log.debug("Определена кодировка: {}", encoding);
 
-            // Читаем образец файла
-            List<String> sampleLines = readSampleLines(filePath, encoding);
+            // Строки образца из начала файла
+            String headText = decodeHead(scan.getHead(), encoding);
+            List<String> sampleLines = splitRecords(headText, null, MAX_LINES_TO_ANALYZE);
 
             if (sampleLines.isEmpty()) {
                 throw new IllegalArgumentException("Файл пуст или не может быть прочитан");
@@ -62,25 +93,29 @@ public class CsvFileAnalyzer {
             List<String> headers = parseHeaders(sampleLines.get(0), delimiter, quoteChar, escapeChar);
             log.debug("Найдено заголовков: {}", headers.size());
 
-            // Подсчитываем примерное количество строк
-            long estimatedLines = estimateLineCount(filePath, encoding);
-
-            // Получаем размер файла
-            long fileSize = Files.size(filePath);
+            // Количество записей посчитано при чтении файла с учетом кавычек
+            long lineCount = scan.getRecordCount(quoteChar);
+            long recordCount = Math.max(0, lineCount - 1);
 
             CsvAnalysisResult result = CsvAnalysisResult.builder()
+                    .fileHash(fileHash != null ? fileHash : scan.getSha256())
                     .encoding(encoding)
                     .delimiter(delimiter)
                     .quoteChar(quoteChar)
                     .escapeChar(escapeChar)
                     .headers(headers)
-                    .estimatedLines(estimatedLines)
-                    .fileSize(fileSize)
-                    .sampleLines(sampleLines.subList(0, Math.min(5, sampleLines.size())))
+                    .estimatedLines(lineCount)
+                    .recordCount(recordCount)
+                    .fileSize(scan.getSize())
+                    .sampleLines(new ArrayList<>(sampleLines.subList(0, Math.min(5, sampleLines.size()))))
+                    .columnStatistics(collectColumnStatistics(headers,
+                            splitRecords(headText, quoteChar, MAX_SAMPLE_ROWS), delimiter, quoteChar, escapeChar))
                     .hasHeaders(true) // Предполагаем, что первая строка - заголовки
                     .build();
 
-            log.info("Анализ файла завершен: {} строк, {} столбцов", estimatedLines, headers.size());
+            analysisCache.put(result);
+
+            log.info("Анализ файла завершен: {} записей, {} столбцов", recordCount, headers.size());
             return result;
 
         } catch (Exception e) {
@@ -90,70 +125,99 @@ public class CsvFileAnalyzer {
     }
 
     /**
-     * Определяет кодировку файла
+     * Декодирование начала файла (без BOM)
      */
-    private String detectEncoding(Path filePath) throws IOException {
-        byte[] buffer = new byte[SAMPLE_SIZE];
-
-        try (InputStream inputStream = Files.newInputStream(filePath)) {
-            int bytesRead = inputStream.read(buffer);
-
-            UniversalDetector detector = new UniversalDetector(null);
-            detector.handleData(buffer, 0, bytesRead);
-            detector.dataEnd();
-
-            String detectedEncoding = detector.getDetectedCharset();
-            detector.reset();
-
-            if (detectedEncoding != null) {
-                // Проверяем, поддерживается ли кодировка
-                if (Charset.isSupported(detectedEncoding)) {
-                    return detectedEncoding;
-                }
-            }
+    private String decodeHead(byte[] bytes, String encoding) {
+        String text = new String(bytes, Charset.forName(encoding));
+        if (!text.isEmpty() && text.charAt(0) == '\uFEFF') {
+            text = text.substring(1);
         }
+        return text;
+    }
 
-        // Если автоматическое определение не сработало, пробуем стандартные кодировки
-        String[] encodingsToTry = {"UTF-8", "Windows-1251", "ISO-8859-1"};
-
-        for (String encoding : encodingsToTry) {
-            try {
-                List<String> lines = Files.readAllLines(filePath, Charset.forName(encoding));
-                if (!lines.isEmpty()) {
-                    // Проверяем, нет ли битых символов
-                    String firstLine = lines.get(0);
-                    if (!firstLine.contains("�")) { // Символ замещения для битых символов
-                        return encoding;
-                    }
-                }
-            } catch (Exception e) {
-                // Игнорируем ошибки и пробуем следующую кодировку
+    /**
+     * Разбиение текста на непустые записи. Если указан символ кавычек,
+     * переводы строк внутри кавычек не разделяют записи
+     */
+    private List<String> splitRecords(String text, Character quoteChar, int maxRecords) {
+        List<String> records = new ArrayList<>();
+        int start = 0;
+        boolean inQuotes = false;
+        for (int i = 0; i < text.length() && records.size() < maxRecords; i++) {
+            char c = text.charAt(i);
+            if (quoteChar != null && c == quoteChar) {
+                inQuotes = !inQuotes;
+            } else if (c == '\n' && !inQuotes) {
+                addRecord(records, text, start, i);
+                start = i + 1;
             }
         }
+        if (records.size() < maxRecords && start < text.length()) {
+            addRecord(records, text, start, text.length());
+        }
+        return records;
+    }
 
-        // По умолчанию возвращаем UTF-8
-        return StandardCharsets.UTF_8.name();
+    private void addRecord(List<String> records, String text, int start, int end) {
+        if (end > start && text.charAt(end - 1) == '\r') {
+            end--;
+        }
+        String record = text.substring(start, end);
+        if (!record.trim().isEmpty()) {
+            records.add(record);
+        }
     }
 
     /**
-     * Читает образец строк из файла
+     * Статистика столбцов по строкам выборки (первая строка - заголовки)
      */
-    private List<String> readSampleLines(Path filePath, String encoding) throws IOException {
-        List<String> lines = new ArrayList<>();
-
-        try (BufferedReader reader = Files.newBufferedReader(filePath, Charset.forName(encoding))) {
-            String line;
-            int count = 0;
+    private List<ColumnStatistics> collectColumnStatistics(List<String> headers, List<String> sampleRows,
+                                                           char delimiter, char quoteChar, char escapeChar) {
+        int columns = headers.size();
+        int[] filled = new int[columns];
+        int[] maxLength = new int[columns];
+        boolean[] allNumbers = new boolean[columns];
+        boolean[] allDates = new boolean[columns];
+        Arrays.fill(allNumbers, true);
+        Arrays.fill(allDates, true);
+        List<Set<String>> distinct = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            distinct.add(new HashSet<>());
+        }
 
-            while ((line = reader.readLine()) != null && count < MAX_LINES_TO_ANALYZE) {
-                if (!line.trim().isEmpty()) {
-                    lines.add(line);
-                    count++;
+        int rows = sampleRows.size() - 1;
+        for (String row : sampleRows.subList(1, sampleRows.size())) {
+            List<String> values = parseHeaders(row, delimiter, quoteChar, escapeChar);
+            for (int i = 0; i < columns && i < values.size(); i++) {
+                String value = values.get(i);
+                if (value.isEmpty()) {
+                    continue;
                 }
+                filled[i]++;
+                maxLength[i] = Math.max(maxLength[i], value.length());
+                distinct.get(i).add(value);
+                allNumbers[i] &= NUMBER_PATTERN.matcher(value).matches();
+                allDates[i] &= DATE_PATTERN.matcher(value).matches();
             }
         }
 
-        return lines;
+        List<ColumnStatistics> statistics = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            String type = filled[i] == 0 ? "EMPTY"
+                    : allNumbers[i] ? "NUMBER"
+                    : allDates[i] ? "DATE"
+                    : "TEXT";
+            statistics.add(ColumnStatistics.builder()
+                    .name(headers.get(i))
+                    .index(i)
+                    .sampledRows(rows)
+                    .filledValues(filled[i])
+                    .maxLength(maxLength[i])
+                    .inferredType(type)
+                    .distinctValues(distinct.get(i).size())
+                    .build());
+        }
+        return statistics;
     }
 
     /**
@@ -271,29 +335,6 @@ public class CsvFileAnalyzer {
         return headers;
     }
 
-    /**
-     * Подсчитывает примерное количество строк в файле
-     */
-    private long estimateLineCount(Path filePath, String encoding) throws IOException {
-        long fileSize = Files.size(filePath);
-
-        // Читаем образец для оценки средней длины строки
-        List<String> sampleLines = readSampleLines(filePath, encoding);
-        if (sampleLines.isEmpty()) {
-            return 0;
-        }
-
-        double avgLineLength = sampleLines.stream()
-                .mapToInt(line -> line.getBytes(Charset.forName(encoding)).length)
-                .average()
-                .orElse(100); // Значение по умолчанию
-
-        // Добавляем байты на символы перевода строки
-        avgLineLength += 2; // \r\n
-
-        return Math.round(fileSize / avgLineLength);
-    }
-
     /**
      * Подсчитывает количество вхождений символа в строке
      */
@@ -0,0 +1,200 @@
+// src/main/java/my/java/service/file/analyzer/CsvFileScan.java
+package my.java.service.file.analyzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Однопроходное чтение файла для анализа: за одно чтение вычисляются SHA-256,
+ * окна выборки для определения кодировки (начало, середина, конец)
+ * и количество непустых записей для каждого возможного символа кавычек
+ */
+final class CsvFileScan {
+
+    static final int WINDOW_SIZE = EncodingDetector.WINDOW_SIZE;
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    // Символы кавычек, для которых ведется подсчет записей
+    private static final byte[] QUOTES = {'"', '\''};
+
+    private final long size;
+    private final byte[] head;
+    private final byte[] middle;
+    private final byte[] tail;
+    private final String sha256;
+
+    // Непустые строки без учета кавычек
+    private final long plainLines;
+    // Непустые записи с учетом переводов строк внутри кавычек, по индексу в QUOTES
+    private final long[] quotedRecords;
+    // Кавычка осталась незакрытой в конце файла - подсчет для нее недостоверен
+    private final boolean[] unbalanced;
+
+    private CsvFileScan(long size, byte[] head, byte[] middle, byte[] tail, String sha256,
+                        long plainLines, long[] quotedRecords, boolean[] unbalanced) {
+        this.size = size;
+        this.head = head;
+        this.middle = middle;
+        this.tail = tail;
+        this.sha256 = sha256;
+        this.plainLines = plainLines;
+        this.quotedRecords = quotedRecords;
+        this.unbalanced = unbalanced;
+    }
+
+    /**
+     * Чтение файла
+     *
+     * @param filePath путь к файлу
+     * @param computeHash вычислять ли SHA-256 (не нужно, если хеш уже посчитан при загрузке)
+     */
+    static CsvFileScan scan(Path filePath, boolean computeHash) throws IOException {
+        long size = Files.size(filePath);
+        boolean wholeFile = size <= 3L * WINDOW_SIZE;
+
+        // Границы окон выборки
+        long middleStart = size / 2 - WINDOW_SIZE / 2;
+        long tailStart = size - WINDOW_SIZE;
+
+        byte[] head = new byte[(int) Math.min(size, wholeFile ? size : WINDOW_SIZE)];
+        byte[] middle = wholeFile ? null : new byte[WINDOW_SIZE];
+        byte[] tail = wholeFile ? null : new byte[WINDOW_SIZE];
+
+        MessageDigest digest = computeHash ? newSha256() : null;
+
+        long plainLines = 0;
+        boolean plainContent = false;
+        long[] quotedRecords = new long[QUOTES.length];
+        boolean[] inQuotes = new boolean[QUOTES.length];
+        boolean[] quotedContent = new boolean[QUOTES.length];
+        // Символ после обратной косой черты не меняет состояние кавычек (как при разборе строки импорта)
+        boolean escaped = false;
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = 0;
+
+        try (InputStream raw = Files.newInputStream(filePath);
+             InputStream in = digest != null ? new DigestInputStream(raw, digest) : raw) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                copyOverlap(buffer, read, position, head, 0);
+                if (!wholeFile) {
+                    copyOverlap(buffer, read, position, middle, middleStart);
+                    copyOverlap(buffer, read, position, tail, tailStart);
+                }
+
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    boolean literal = escaped;
+                    escaped = !literal && b == '\\';
+                    if (b == '\n') {
+                        if (plainContent) {
+                            plainLines++;
+                            plainContent = false;
+                        }
+                        for (int q = 0; q < QUOTES.length; q++) {
+                            if (!inQuotes[q] && !literal && quotedContent[q]) {
+                                quotedRecords[q]++;
+                                quotedContent[q] = false;
+                            }
+                        }
+                    } else if (b != ' ' && b != '\t' && b != '\r') {
+                        plainContent = true;
+                        for (int q = 0; q < QUOTES.length; q++) {
+                            quotedContent[q] = true;
+                            if (b == QUOTES[q] && !literal) {
+                                inQuotes[q] = !inQuotes[q];
+                            }
+                        }
+                    }
+                }
+                position += read;
+            }
+        }
+
+        // Последняя строка без перевода строки
+        if (plainContent) {
+            plainLines++;
+        }
+        for (int q = 0; q < QUOTES.length; q++) {
+            if (quotedContent[q]) {
+                quotedRecords[q]++;
+            }
+        }
+
+        return new CsvFileScan(size, head, middle, tail,
+                digest != null ? HexFormat.of().formatHex(digest.digest()) : null,
+                plainLines, quotedRecords, inQuotes);
+    }
+
+    private static void copyOverlap(byte[] buffer, int length, long bufferStart, byte[] window, long windowStart) {
+        long from = Math.max(bufferStart, windowStart);
+        long to = Math.min(bufferStart + length, windowStart + window.length);
+        if (from < to) {
+            System.arraycopy(buffer, (int) (from - bufferStart), window, (int) (from - windowStart), (int) (to - from));
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 не поддерживается", e);
+        }
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * Начало файла, обрезанное по последнему переводу строки (если файл прочитан не целиком)
+     */
+    byte[] getHead() {
+        if (middle == null) {
+            return head;
+        }
+        int end = EncodingDetector.lastNewline(head);
+        return end > 0 ? Arrays.copyOf(head, end) : head;
+    }
+
+    /**
+     * Окна выборки для определения кодировки, выровненные по границам строк
+     */
+    List<byte[]> getWindows() {
+        List<byte[]> windows = new ArrayList<>(3);
+        windows.add(getHead());
+        if (middle != null) {
+            EncodingDetector.addAligned(windows, middle);
+            EncodingDetector.addAligned(windows, tail);
+        }
+        return windows;
+    }
+
+    /**
+     * Количество непустых записей для символа кавычек.
+     * Если кавычка не закрыта к концу файла, используется подсчет строк без учета кавычек
+     */
+    long getRecordCount(char quoteChar) {
+        for (int q = 0; q < QUOTES.length; q++) {
+            if (QUOTES[q] == quoteChar) {
+                return unbalanced[q] ? plainLines : quotedRecords[q];
+            }
+        }
+        return plainLines;
+    }
+}
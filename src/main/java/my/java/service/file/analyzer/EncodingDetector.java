@@ -0,0 +1,316 @@
+// src/main/java/my/java/service/file/analyzer/EncodingDetector.java
+package my.java.service.file.analyzer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.mozilla.universalchardet.UniversalDetector;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Определение кодировки файла по ограниченной выборке.
+ * Читается не весь файл, а несколько окон (начало, середина, конец), поэтому
+ * стоимость определения не зависит от размера файла. Кандидаты проверяются строгим
+ * декодером (ошибка вместо символа замены), а однобайтовые кириллические кодировки
+ * различаются по частотам букв русского текста
+ */
+@Component
+@Slf4j
+public class EncodingDetector {
+
+    static final int WINDOW_SIZE = 64 * 1024;
+
+    private static final Charset WINDOWS_1251 = Charset.forName("windows-1251");
+    private static final Charset KOI8_R = Charset.forName("KOI8-R");
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    // Частоты букв русского текста (в процентах), от "а" до "я"
+    private static final double[] RUSSIAN_LETTER_FREQUENCIES = {
+            8.01, 1.59, 4.54, 1.70, 2.98, 8.45, 0.94, 1.65, 7.35, 1.21, 3.49, 4.40, 3.21, 6.70, 10.97, 2.81,
+            4.73, 5.47, 6.26, 2.62, 0.26, 0.97, 0.48, 1.44, 0.73, 0.36, 0.04, 1.90, 1.74, 0.32, 0.64, 2.01
+    };
+
+    /**
+     * Определяет кодировку файла
+     *
+     * @param filePath путь к файлу
+     * @return имя кодировки (по умолчанию UTF-8)
+     */
+    public String detect(Path filePath) throws IOException {
+        return detect(readWindows(filePath));
+    }
+
+    /**
+     * Определяет кодировку по заранее прочитанным окнам файла.
+     * Первое окно должно начинаться с начала файла, остальные - выровнены по границе строк
+     */
+    String detect(List<byte[]> windows) {
+        if (windows.isEmpty() || windows.get(0).length == 0) {
+            return StandardCharsets.UTF_8.name();
+        }
+
+        String bomEncoding = detectBom(windows.get(0));
+        if (bomEncoding != null) {
+            return bomEncoding;
+        }
+
+        boolean hasNonAscii = false;
+        for (byte[] window : windows) {
+            if (containsNonAscii(window)) {
+                hasNonAscii = true;
+                break;
+            }
+        }
+        if (!hasNonAscii) {
+            // ASCII - подмножество UTF-8
+            return StandardCharsets.UTF_8.name();
+        }
+
+        // Текст с многобайтовыми последовательностями, корректный для UTF-8, почти наверняка в UTF-8
+        if (decodesStrictly(windows, StandardCharsets.UTF_8)) {
+            return StandardCharsets.UTF_8.name();
+        }
+
+        // Некириллическое заключение детектора принимается, если выборка декодируется без ошибок
+        String detected = runUniversalDetector(windows);
+        Charset detectedCharset = toSupportedCharset(detected);
+        if (detectedCharset != null && !isCyrillicFamily(detectedCharset)
+                && decodesStrictly(windows, detectedCharset)) {
+            return detectedCharset.name();
+        }
+
+        // Кириллица в однобайтовой кодировке: выбираем по частотам букв
+        Charset cyrillic = chooseCyrillicCharset(windows);
+        if (cyrillic != null) {
+            log.debug("Detector suggested {}, letter frequencies suggest {}", detected, cyrillic.name());
+            return cyrillic.name();
+        }
+
+        if (decodesStrictly(windows, WINDOWS_1252)) {
+            return WINDOWS_1252.name();
+        }
+        return StandardCharsets.ISO_8859_1.name();
+    }
+
+    /**
+     * Чтение окон выборки: начало, середина и конец файла.
+     * Окна в середине и в конце выравниваются по переводам строки, чтобы не резать
+     * многобайтовые символы; небольшой файл читается целиком одним окном
+     */
+    static List<byte[]> readWindows(Path filePath) throws IOException {
+        List<byte[]> windows = new ArrayList<>(3);
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= 3L * WINDOW_SIZE) {
+                windows.add(readAt(channel, 0, (int) size));
+                return windows;
+            }
+
+            byte[] head = readAt(channel, 0, WINDOW_SIZE);
+            int headEnd = lastNewline(head);
+            windows.add(headEnd > 0 ? Arrays.copyOf(head, headEnd) : head);
+            addAligned(windows, readAt(channel, size / 2 - WINDOW_SIZE / 2, WINDOW_SIZE));
+            addAligned(windows, readAt(channel, size - WINDOW_SIZE, WINDOW_SIZE));
+        }
+        return windows;
+    }
+
+    private static byte[] readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        byte[] result = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(result);
+        return result;
+    }
+
+    /**
+     * Окно без неполных строк в начале и в конце
+     */
+    static void addAligned(List<byte[]> windows, byte[] window) {
+        int start = firstNewline(window) + 1;
+        int end = lastNewline(window);
+        if (start > 0 && end > start) {
+            windows.add(Arrays.copyOfRange(window, start, end));
+        }
+    }
+
+    private static int firstNewline(byte[] data) {
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int lastNewline(byte[] data) {
+        for (int i = data.length - 1; i >= 0; i--) {
+            if (data[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String detectBom(byte[] start) {
+        if (start.length >= 3 && (start[0] & 0xFF) == 0xEF && (start[1] & 0xFF) == 0xBB && (start[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8.name();
+        }
+        if (start.length >= 2 && (start[0] & 0xFF) == 0xFF && (start[1] & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE.name();
+        }
+        if (start.length >= 2 && (start[0] & 0xFF) == 0xFE && (start[1] & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE.name();
+        }
+        return null;
+    }
+
+    private static boolean containsNonAscii(byte[] data) {
+        for (byte b : data) {
+            if (b < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String runUniversalDetector(List<byte[]> windows) {
+        UniversalDetector detector = new UniversalDetector(null);
+        for (byte[] window : windows) {
+            detector.handleData(window, 0, window.length);
+            if (detector.isDone()) {
+                break;
+            }
+        }
+        detector.dataEnd();
+        String detected = detector.getDetectedCharset();
+        detector.reset();
+        return detected;
+    }
+
+    private static Charset toSupportedCharset(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Charset.isSupported(name) ? Charset.forName(name) : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Проверка, что все окна декодируются без ошибок (REPORT вместо замены символов)
+     */
+    private static boolean decodesStrictly(List<byte[]> windows, Charset charset) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer out = CharBuffer.allocate(WINDOW_SIZE);
+        for (byte[] window : windows) {
+            decoder.reset();
+            ByteBuffer in = ByteBuffer.wrap(window);
+            CoderResult result;
+            do {
+                out.clear();
+                result = decoder.decode(in, out, true);
+            } while (result.isOverflow());
+            if (result.isError()) {
+                return false;
+            }
+            out.clear();
+            if (decoder.flush(out).isError()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCyrillicFamily(Charset charset) {
+        String name = charset.name().toLowerCase();
+        return name.contains("1251") || name.contains("koi8") || name.contains("866")
+                || name.contains("8859-5") || name.contains("cyrillic");
+    }
+
+    /**
+     * Выбор между Windows-1251 и KOI8-R по частотам букв.
+     * В Windows-1251 строчные буквы занимают 0xE0-0xFF, в KOI8-R - 0xC0-0xDF,
+     * поэтому текст в "чужой" кодировке дает преимущественно заглавные буквы
+     * и нехарактерные для русского языка частоты
+     *
+     * @return кодировка или null, если байты старшей половины в основном не кириллические буквы
+     */
+    private static Charset chooseCyrillicCharset(List<byte[]> windows) {
+        long[] counts = new long[256];
+        long highBytes = 0;
+        for (byte[] window : windows) {
+            for (byte b : window) {
+                if (b < 0) {
+                    counts[b & 0xFF]++;
+                    highBytes++;
+                }
+            }
+        }
+
+        // Буквы кириллицы в обеих кодировках занимают диапазон 0xC0-0xFF
+        long letterBytes = 0;
+        for (int b = 0xC0; b <= 0xFF; b++) {
+            letterBytes += counts[b];
+        }
+        if (highBytes == 0 || letterBytes * 2 < highBytes) {
+            return null;
+        }
+
+        double score1251 = score(counts, WINDOWS_1251);
+        double scoreKoi8 = score(counts, KOI8_R);
+        log.debug("Cyrillic letter score: windows-1251={}, KOI8-R={}", score1251, scoreKoi8);
+
+        return scoreKoi8 > score1251 ? KOI8_R : WINDOWS_1251;
+    }
+
+    /**
+     * Оценка соответствия распределения букв русскому тексту:
+     * сумма частот декодированных строчных букв с поправкой на заглавные
+     */
+    private static double score(long[] counts, Charset charset) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        double score = 0;
+        byte[] single = new byte[1];
+        for (int b = 0xC0; b <= 0xFF; b++) {
+            if (counts[b] == 0) {
+                continue;
+            }
+            single[0] = (byte) b;
+            char c;
+            try {
+                c = decoder.decode(ByteBuffer.wrap(single)).charAt(0);
+            } catch (CharacterCodingException e) {
+                continue;
+            }
+            if (c >= '\u0430' && c <= '\u044F') {
+                score += counts[b] * RUSSIAN_LETTER_FREQUENCIES[c - '\u0430'];
+            } else if (c >= '\u0410' && c <= '\u042F') {
+                // Заглавные буквы встречаются редко: учитываем с малым весом
+                score += counts[b] * RUSSIAN_LETTER_FREQUENCIES[c - '\u0410'] * 0.1;
+            }
+        }
+        return score;
+    }
+}
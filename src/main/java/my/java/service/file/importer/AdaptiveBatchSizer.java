@@ -0,0 +1,84 @@
+// src/main/java/my/java/service/file/importer/AdaptiveBatchSizer.java
+package my.java.service.file.importer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Подбор размера пакета импорта по наблюдаемому времени записи (AIMD).
+ * Пока запись пакета укладывается в целевое время, размер растет на фиксированный шаг;
+ * при превышении уменьшается вдвое. Дополнительно размер ограничен объемом пакета в байтах,
+ * чтобы широкие строки (длинные описания товаров) не давали слишком тяжелых пакетов.
+ * Размер читается потоком разбора, а обновляется потоком записи
+ */
+@Slf4j
+public class AdaptiveBatchSizer {
+
+    private final boolean enabled;
+    private final int minSize;
+    private final int maxSize;
+    private final int additiveStep;
+    private final long targetLatencyNanos;
+    private final long maxBatchBytes;
+
+    private final AtomicInteger batchSize;
+
+    public AdaptiveBatchSizer(boolean enabled, int initialSize, int minSize, int maxSize,
+                              int additiveStep, long targetLatencyMs, long maxBatchBytes) {
+        this.enabled = enabled;
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+        this.additiveStep = Math.max(1, additiveStep);
+        this.targetLatencyNanos = Math.max(1, targetLatencyMs) * 1_000_000L;
+        this.maxBatchBytes = maxBatchBytes;
+        this.batchSize = new AtomicInteger(enabled ? clamp(initialSize) : Math.max(1, initialSize));
+    }
+
+    /**
+     * Размер следующего пакета
+     */
+    public int getBatchSize() {
+        return batchSize.get();
+    }
+
+    /**
+     * Учет записанного пакета
+     *
+     * @param rows количество строк в пакете
+     * @param bytes объем строк пакета в файле
+     * @param writeNanos время записи пакета
+     */
+    public void recordBatch(int rows, long bytes, long writeNanos) {
+        if (!enabled || rows <= 0) {
+            return;
+        }
+
+        int current = batchSize.get();
+        int next;
+        if (writeNanos > targetLatencyNanos) {
+            // Мультипликативное уменьшение
+            next = current / 2;
+        } else {
+            // Аддитивное увеличение
+            next = current + additiveStep;
+        }
+
+        // Ограничение по объему пакета с учетом средней ширины строки
+        if (maxBatchBytes > 0 && bytes > 0) {
+            long avgRowBytes = Math.max(1, bytes / rows);
+            next = (int) Math.min(next, maxBatchBytes / avgRowBytes);
+        }
+
+        next = clamp(next);
+        if (next != current) {
+            batchSize.set(next);
+            log.debug("Batch size {} -> {} (last batch: {} rows, {} bytes, {} ms)",
+                    current, next, rows, bytes, writeNanos / 1_000_000);
+        }
+    }
+
+    private int clamp(int size) {
+        return Math.max(minSize, Math.min(maxSize, size));
+    }
+}
@@ -2,14 +2,16 @@ package my.java.service.file.importer;
 
 import jakarta.persistence.Cacheable;
 import lombok.RequiredArgsConstructor;
-import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import my.java.model.entity.AvHandbook;
 import my.java.model.entity.Competitor;
 import my.java.model.entity.ImportableEntity;
 import my.java.model.entity.Product;
 import my.java.model.entity.Region;
 import my.java.repository.ProductRepository;
+import my.java.util.SqlParameterChunks;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.stereotype.Service;
@@ -34,9 +36,18 @@ public class BatchEntityProcessor {
 
     private final JdbcTemplate jdbcTemplate;
     private final ProductRepository productRepository;
+    private final RegionDictionaryCache regionDictionaryCache;
 
+    // Количество строк в одном вызове executeBatch
+    @Value("${application.import.jdbc-batch-size:1000}")
+    private int jdbcBatchSize;
 
-    private int jdbcBatchSize = 1000;
+    // Количество значений в одном IN (...), не более лимита параметров PostgreSQL
+    @Value("${application.import.in-clause-chunk-size:" + SqlParameterChunks.DEFAULT_CHUNK_SIZE + "}")
+    private int inClauseChunkSize;
+
+    // Размер порции при потоковом чтении ключей продуктов
+    private static final int PRODUCT_HASH_FETCH_SIZE = 10_000;
 
     // Кэш для проверки существующих продуктов
     private final Map<Long, Set<String>> existingProductsCache = new ConcurrentHashMap<>();
@@ -75,6 +86,111 @@ public class BatchEntityProcessor {
         }
     }
 
+    /**
+     * Обновление продуктов с известными идентификаторами (хеш содержимого должен быть установлен)
+     *
+     * @return количество обновленных продуктов
+     */
+    @Transactional
+    public int updateProducts(List<Product> products) {
+        if (products.isEmpty()) {
+            return 0;
+        }
+        return updateProductsBatch(products);
+    }
+
+    /**
+     * Удаление продуктов по идентификаторам.
+     * Связанные записи конкурентов и регионов удаляются каскадно по внешнему ключу
+     */
+    @Transactional
+    public int deleteProductsByIds(List<Long> ids) {
+        int deleted = 0;
+        for (List<Long> chunk : SqlParameterChunks.partition(ids, inClauseChunkSize)) {
+            deleted += jdbcTemplate.update("DELETE FROM products WHERE id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ")", chunk.toArray());
+        }
+        return deleted;
+    }
+
+    /**
+     * Запись хешей связанных записей продуктов, чьи конкуренты и регионы совпадают со строкой файла
+     *
+     * @param relatedHashes идентификатор продукта -> хеш связанных записей
+     * @return количество продуктов, у которых хеш изменился
+     */
+    @Transactional
+    public int storeRelatedHashes(Map<Long, Long> relatedHashes) {
+        return updateRelatedHashes(relatedHashes, """
+                UPDATE products p SET related_hash = t.hash
+                FROM unnest(?::bigint[], ?::bigint[]) AS t(id, hash)
+                WHERE p.id = t.id AND p.related_hash IS DISTINCT FROM t.hash
+                """);
+    }
+
+    /**
+     * Сброс хешей связанных записей продуктов, которым записаны связанные записи,
+     * отличные от сверенных режимом DELTA. Совпадающий хеш сохраняется: те же записи
+     * по естественному ключу перезаписаны теми же значениями
+     *
+     * @param relatedHashes идентификатор продукта -> хеш записанных связанных записей
+     * @return количество сброшенных хешей
+     */
+    @Transactional
+    public int invalidateRelatedHashes(Map<Long, Long> relatedHashes) {
+        return updateRelatedHashes(relatedHashes, """
+                UPDATE products p SET related_hash = NULL
+                FROM unnest(?::bigint[], ?::bigint[]) AS t(id, hash)
+                WHERE p.id = t.id AND p.related_hash IS NOT NULL AND p.related_hash <> t.hash
+                """);
+    }
+
+    private int updateRelatedHashes(Map<Long, Long> relatedHashes, String sql) {
+        int updated = 0;
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(relatedHashes.entrySet());
+        for (List<Map.Entry<Long, Long>> chunk : SqlParameterChunks.partition(entries, inClauseChunkSize)) {
+            Long[] ids = new Long[chunk.size()];
+            Long[] hashes = new Long[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                ids[i] = chunk.get(i).getKey();
+                hashes[i] = chunk.get(i).getValue();
+            }
+            updated += jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                ps.setArray(1, con.createArrayOf("bigint", ids));
+                ps.setArray(2, con.createArrayOf("bigint", hashes));
+                return ps;
+            });
+        }
+        return updated;
+    }
+
+    /**
+     * Потоковое чтение ключей и хешей содержимого всех продуктов клиента.
+     * Строки читаются порциями (fetch size), без загрузки всего результата в память драйвера
+     */
+    @Transactional(readOnly = true)
+    public void forEachProductHash(Long clientId, ProductHashConsumer consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT id, product_id, content_hash, related_hash FROM products " +
+                            "WHERE client_id = ? AND product_id IS NOT NULL");
+            ps.setFetchSize(PRODUCT_HASH_FETCH_SIZE);
+            ps.setLong(1, clientId);
+            return ps;
+        }, rs -> {
+            consumer.accept(rs.getLong(1), rs.getString(2), rs.getObject(3, Long.class), rs.getObject(4, Long.class));
+        });
+    }
+
+    /**
+     * Получатель строк выборки ключей и хешей продуктов
+     */
+    @FunctionalInterface
+    public interface ProductHashConsumer {
+        void accept(long id, String productId, Long contentHash, Long relatedHash);
+    }
+
     /**
      * Создание процессора для конкретного типа сущности
      */
@@ -83,6 +199,7 @@ public class BatchEntityProcessor {
             case "PRODUCT" -> new ProductProcessor();
             case "COMPETITOR" -> new CompetitorProcessor();
             case "REGION" -> new RegionProcessor();
+            case "HANDBOOK" -> new HandbookProcessor();
             default -> throw new IllegalArgumentException("Unknown entity type: " + entityType);
         };
     }
@@ -105,9 +222,16 @@ public class BatchEntityProcessor {
                     .map(e -> (Product) e)
                     .collect(Collectors.toList());
 
+            // Хеш содержимого товара сохраняется при вставке и сравнивается при перезаписи
+            for (Product product : products) {
+                if (product.getContentHash() == null) {
+                    product.setContentHash(product.computeContentHash());
+                }
+            }
+
             return switch (strategy) {
                 case SKIP -> processWithSkip(products);
-                case OVERRIDE -> processWithOverride(products);
+                case OVERRIDE, DELTA -> processWithOverride(products);
                 case IGNORE -> processIgnoreDuplicates(products);
             };
         }
@@ -137,20 +261,26 @@ public class BatchEntityProcessor {
         private BatchSaveResult processWithOverride(List<Product> products) {
             BatchSaveResult result = new BatchSaveResult();
 
-            // Получаем существующие продукты одним запросом
-            Map<Pair<Long, String>, Long> existingProductIds = getExistingProductIdsMap(products);
+            // Получаем существующие продукты и их хеши одним запросом
+            Map<Pair<Long, String>, ExistingProduct> existingProducts = getExistingProductsMap(products);
 
             List<Product> toInsert = new ArrayList<>();
             List<Product> toUpdate = new ArrayList<>();
+            int unchanged = 0;
 
             for (Product product : products) {
                 if (product.getProductId() != null && product.getClientId() != null) {
                     Pair<Long, String> key = Pair.of(product.getClientId(), product.getProductId());
-                    Long existingId = existingProductIds.get(key);
-
-                    if (existingId != null) {
-                        product.setId(existingId);
-                        toUpdate.add(product);
+                    ExistingProduct existing = existingProducts.get(key);
+
+                    if (existing != null) {
+                        product.setId(existing.id);
+                        // Строка с тем же содержимым не переписывается: нет новой версии строки и срабатывания триггера
+                        if (product.getContentHash().equals(existing.contentHash)) {
+                            unchanged++;
+                        } else {
+                            toUpdate.add(product);
+                        }
                     } else {
                         toInsert.add(product);
                     }
@@ -168,7 +298,10 @@ public class BatchEntityProcessor {
                 int updated = updateProductsBatch(toUpdate);
                 result.setUpdated(updated);
             }
+            result.setUnchanged(unchanged);
 
+            log.debug("OVERRIDE products: {} inserted, {} updated, {} unchanged",
+                    toInsert.size(), toUpdate.size(), unchanged);
             return result;
         }
 
@@ -183,8 +316,8 @@ public class BatchEntityProcessor {
                     product_bar, product_description, product_url, product_category1,
                     product_category2, product_category3, product_price, product_analog,
                     product_additional1, product_additional2, product_additional3,
-                    product_additional4, product_additional5, operation_id, created_at, updated_at
-                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+                    product_additional4, product_additional5, operation_id, content_hash, created_at, updated_at
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
                 ON CONFLICT DO NOTHING
                 RETURNING id
                 """;
@@ -194,16 +327,18 @@ public class BatchEntityProcessor {
             jdbcTemplate.execute(
                     (Connection con) -> con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
                     (PreparedStatementCallback<Void>) ps -> {
+                int count = 0;
                 for (Product product : products) {
                     setProductInsertParameters(ps, product);
                     ps.addBatch();
+                    count++;
 
-                    if (generatedIds.size() % jdbcBatchSize == 0) {
+                    if (count % jdbcBatchSize == 0) {
                         processBatchResults(ps, generatedIds);
                     }
                 }
 
-                if (generatedIds.size() % jdbcBatchSize != 0) {
+                if (count % jdbcBatchSize != 0) {
                     processBatchResults(ps, generatedIds);
                 }
 
@@ -264,21 +399,14 @@ public class BatchEntityProcessor {
                     return;
                 }
 
-                // Формируем запрос с плейсхолдерами
-                String placeholders = productIds.stream()
-                        .map(id -> "?")
-                        .collect(Collectors.joining(","));
-                String query = String.format(sql, placeholders);
-
-                List<Object> params = new ArrayList<>();
-                params.add(clientId);
-                params.addAll(productIds);
-
-                jdbcTemplate.query(query, rs -> {
-                    Long cid = rs.getLong("client_id");
-                    String pid = rs.getString("product_id");
-                    result.add(Pair.of(cid, pid));
-                }, params.toArray());
+                // Формируем запросы с плейсхолдерами, не превышая лимит параметров
+                for (List<String> chunk : SqlParameterChunks.partition(productIds, inClauseChunkSize)) {
+                    jdbcTemplate.query(String.format(sql, placeholders(chunk.size())), rs -> {
+                        Long cid = rs.getLong("client_id");
+                        String pid = rs.getString("product_id");
+                        result.add(Pair.of(cid, pid));
+                    }, inClauseParams(clientId, chunk));
+                }
 
                 // Обновляем кэш
                 existingProductsCache.computeIfAbsent(clientId, k -> ConcurrentHashMap.newKeySet())
@@ -289,10 +417,10 @@ public class BatchEntityProcessor {
         }
 
         /**
-         * Оптимизированное получение map существующих продуктов
+         * Оптимизированное получение map существующих продуктов с хешами содержимого
          */
-        private Map<Pair<Long, String>, Long> getExistingProductIdsMap(List<Product> products) {
-            Map<Pair<Long, String>, Long> result = new ConcurrentHashMap<>();
+        private Map<Pair<Long, String>, ExistingProduct> getExistingProductsMap(List<Product> products) {
+            Map<Pair<Long, String>, ExistingProduct> result = new ConcurrentHashMap<>();
 
             Map<Long, Set<String>> productIdsByClient = products.stream()
                     .filter(p -> p.getProductId() != null && p.getClientId() != null)
@@ -301,67 +429,176 @@ public class BatchEntityProcessor {
                             Collectors.mapping(Product::getProductId, Collectors.toSet())
                     ));
 
-            String sql = "SELECT id, client_id, product_id FROM products WHERE client_id = ? AND product_id IN (%s)";
+            String sql = "SELECT id, client_id, product_id, content_hash FROM products " +
+                    "WHERE client_id = ? AND product_id IN (%s)";
 
             productIdsByClient.forEach((clientId, productIds) -> {
                 if (productIds.isEmpty()) return;
 
-                String placeholders = productIds.stream()
-                        .map(id -> "?")
-                        .collect(Collectors.joining(","));
-                String query = String.format(sql, placeholders);
-
-                List<Object> params = new ArrayList<>();
-                params.add(clientId);
-                params.addAll(productIds);
-
-                jdbcTemplate.query(query, rs -> {
-                    Long id = rs.getLong("id");
-                    Long cid = rs.getLong("client_id");
-                    String pid = rs.getString("product_id");
-                    result.put(Pair.of(cid, pid), id);
-                }, params.toArray());
+                for (List<String> chunk : SqlParameterChunks.partition(productIds, inClauseChunkSize)) {
+                    jdbcTemplate.query(String.format(sql, placeholders(chunk.size())), rs -> {
+                        Long id = rs.getLong("id");
+                        Long cid = rs.getLong("client_id");
+                        String pid = rs.getString("product_id");
+                        // Строки, записанные до появления хеша, имеют NULL и всегда обновляются
+                        Long hash = rs.getObject("content_hash", Long.class);
+                        result.put(Pair.of(cid, pid), new ExistingProduct(id, hash));
+                    }, inClauseParams(clientId, chunk));
+                }
             });
 
             return result;
         }
+
+        private String placeholders(int count) {
+            return String.join(",", Collections.nCopies(count, "?"));
+        }
+
+        private Object[] inClauseParams(Long clientId, List<String> productIds) {
+            Object[] params = new Object[productIds.size() + 1];
+            params[0] = clientId;
+            for (int i = 0; i < productIds.size(); i++) {
+                params[i + 1] = productIds.get(i);
+            }
+            return params;
+        }
     }
 
 
     /**
-     * Процессор для конкурентов
+     * Процессор для конкурентов.
+     * Запись идет одной командой INSERT ... ON CONFLICT на порцию строк (значения передаются
+     * массивами) по естественному ключу (client_id, product_id, competitor_name, competitor_url, observed_month),
+     * которому соответствует уникальный индекс uq_competitor_data_natural_key
      */
     private class CompetitorProcessor implements EntityProcessor {
 
+        private static final String UPSERT_SQL = """
+                INSERT INTO competitor_data (
+                    client_id, product_id, operation_id, competitor_name, competitor_price,
+                    competitor_promotional_price, competitor_time, competitor_date,
+                    competitor_local_date_time, competitor_stock_status,
+                    competitor_additional_price, competitor_commentary,
+                    competitor_product_name, competitor_additional, competitor_additional2,
+                    competitor_url, competitor_web_cache_url, competitor_price_value,
+                    competitor_promotional_price_value, competitor_observed_at, observed_month, handbook_id,
+                    created_at, updated_at
+                )
+                SELECT t.client_id, t.product_id, t.operation_id, t.competitor_name, t.competitor_price,
+                       t.competitor_promotional_price, t.competitor_time, t.competitor_date,
+                       t.competitor_local_date_time::timestamp, t.competitor_stock_status,
+                       t.competitor_additional_price, t.competitor_commentary,
+                       t.competitor_product_name, t.competitor_additional, t.competitor_additional2,
+                       t.competitor_url, t.competitor_web_cache_url, t.competitor_price_value::numeric,
+                       t.competitor_promotional_price_value::numeric, t.competitor_observed_at::timestamp,
+                       t.observed_month::date, t.handbook_id, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+                FROM unnest(?::bigint[], ?::bigint[], ?::bigint[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[],
+                            ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[],
+                            ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[],
+                            ?::varchar[], ?::varchar[], ?::bigint[])
+                    AS t(client_id, product_id, operation_id, competitor_name, competitor_price,
+                         competitor_promotional_price, competitor_time, competitor_date,
+                         competitor_local_date_time, competitor_stock_status,
+                         competitor_additional_price, competitor_commentary,
+                         competitor_product_name, competitor_additional, competitor_additional2,
+                         competitor_url, competitor_web_cache_url, competitor_price_value,
+                         competitor_promotional_price_value, competitor_observed_at, observed_month, handbook_id)
+                ON CONFLICT (client_id, (COALESCE(product_id, 0)), (COALESCE(competitor_name, '')),
+                             (md5(COALESCE(competitor_url, ''))), observed_month)
+                """;
+
+        private static final String DO_UPDATE = """
+                DO UPDATE SET
+                    competitor_price = EXCLUDED.competitor_price,
+                    competitor_promotional_price = EXCLUDED.competitor_promotional_price,
+                    competitor_time = EXCLUDED.competitor_time,
+                    competitor_date = EXCLUDED.competitor_date,
+                    competitor_local_date_time = EXCLUDED.competitor_local_date_time,
+                    competitor_stock_status = EXCLUDED.competitor_stock_status,
+                    competitor_additional_price = EXCLUDED.competitor_additional_price,
+                    competitor_commentary = EXCLUDED.competitor_commentary,
+                    competitor_product_name = EXCLUDED.competitor_product_name,
+                    competitor_additional = EXCLUDED.competitor_additional,
+                    competitor_additional2 = EXCLUDED.competitor_additional2,
+                    competitor_web_cache_url = EXCLUDED.competitor_web_cache_url,
+                    competitor_price_value = EXCLUDED.competitor_price_value,
+                    competitor_promotional_price_value = EXCLUDED.competitor_promotional_price_value,
+                    competitor_observed_at = EXCLUDED.competitor_observed_at,
+                    handbook_id = COALESCE(EXCLUDED.handbook_id, competitor_data.handbook_id)
+                RETURNING (xmax = 0)
+                """;
+
+        private static final String DO_NOTHING = """
+                DO NOTHING
+                RETURNING true
+                """;
+
         @Override
         public BatchSaveResult processBatch(List<ImportableEntity> entities, DuplicateStrategy strategy) {
             List<Competitor> competitors = entities.stream()
                     .map(e -> (Competitor) e)
                     .collect(Collectors.toList());
 
-            // Для конкурентов пока всегда используем INSERT
-            // так как дубликаты определяются по связи с продуктом
-            return insertCompetitorsBatch(competitors);
+            // OVERRIDE и DELTA обновляют запись с тем же ключом, остальные стратегии ее не трогают.
+            // Повторы ключа внутри пакета отбрасываются: команда не может изменить строку дважды
+            boolean override = strategy == DuplicateStrategy.OVERRIDE || strategy == DuplicateStrategy.DELTA;
+            List<Competitor> unique = distinctByNaturalKey(competitors, override);
+
+            BatchSaveResult result = upsertCompetitorsBatch(unique, override);
+            result.addSkipped(competitors.size() - unique.size());
+            return result;
         }
 
-        private BatchSaveResult insertCompetitorsBatch(List<Competitor> competitors) {
-            BatchSaveResult result = new BatchSaveResult();
+        /**
+         * Одна запись на естественный ключ: последняя (override) или первая
+         */
+        private List<Competitor> distinctByNaturalKey(List<Competitor> competitors, boolean lastWins) {
+            Map<List<Object>, Competitor> byKey = new LinkedHashMap<>();
+            for (Competitor competitor : competitors) {
+                List<Object> key = Arrays.asList(
+                        competitor.getClientId(),
+                        competitor.getProduct() != null ? competitor.getProduct().getId() : null,
+                        Objects.toString(competitor.getCompetitorName(), ""),
+                        Objects.toString(competitor.getCompetitorUrl(), ""),
+                        competitor.getObservedMonth());
+                if (lastWins) {
+                    byKey.put(key, competitor);
+                } else {
+                    byKey.putIfAbsent(key, competitor);
+                }
+            }
+            return byKey.size() == competitors.size() ? competitors : new ArrayList<>(byKey.values());
+        }
 
-            String sql = """
-                    INSERT INTO competitor_data (
-                        client_id, product_id, competitor_name, competitor_price, 
-                        competitor_promotional_price, competitor_time, competitor_date, 
-                        competitor_local_date_time, competitor_stock_status, 
-                        competitor_additional_price, competitor_commentary,
-                        competitor_product_name, competitor_additional, competitor_additional2,
-                        competitor_url, competitor_web_cache_url, created_at, updated_at
-                    ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
-                    """;
+        private BatchSaveResult upsertCompetitorsBatch(List<Competitor> competitors, boolean override) {
+            BatchSaveResult result = new BatchSaveResult();
+            String sql = UPSERT_SQL + (override ? DO_UPDATE : DO_NOTHING);
 
+            int inserted = 0;
+            int updated = 0;
             try {
-                int saved = executeBatch(sql, competitors, this::setCompetitorParameters);
-                result.setSaved(saved);
-                log.info("Successfully saved {} competitors", saved);
+                for (int from = 0; from < competitors.size(); from += jdbcBatchSize) {
+                    List<Competitor> chunk = competitors.subList(from, Math.min(competitors.size(), from + jdbcBatchSize));
+                    List<Boolean> rows = jdbcTemplate.query(con -> {
+                        PreparedStatement ps = con.prepareStatement(sql);
+                        setCompetitorArrays(con, ps, chunk);
+                        return ps;
+                    }, (rs, rowNum) -> rs.getBoolean(1));
+
+                    for (Boolean isInsert : rows) {
+                        if (Boolean.TRUE.equals(isInsert)) {
+                            inserted++;
+                        } else {
+                            updated++;
+                        }
+                    }
+                }
+                result.setSaved(inserted);
+                result.setUpdated(updated);
+                // Без перезаписи существующие записи не возвращаются командой
+                result.setSkipped(competitors.size() - inserted - updated);
+                log.info("Competitors upserted: {} inserted, {} updated, {} kept", inserted, updated,
+                        competitors.size() - inserted - updated);
             } catch (Exception e) {
                 log.error("Error saving competitors batch", e);
                 result.setFailed(competitors.size());
@@ -371,23 +608,48 @@ public class BatchEntityProcessor {
             return result;
         }
 
-        private void setCompetitorParameters(PreparedStatement ps, Competitor competitor) throws SQLException {
-            ps.setLong(1, competitor.getClientId());
-            ps.setObject(2, competitor.getProduct() != null ? competitor.getProduct().getId() : null);
-            ps.setString(3, competitor.getCompetitorName());
-            ps.setString(4, competitor.getCompetitorPrice());
-            ps.setString(5, competitor.getCompetitorPromotionalPrice());
-            ps.setString(6, competitor.getCompetitorTime());
-            ps.setString(7, competitor.getCompetitorDate());
-            ps.setObject(8, competitor.getCompetitorLocalDateTime());
-            ps.setString(9, competitor.getCompetitorStockStatus());
-            ps.setString(10, competitor.getCompetitorAdditionalPrice());
-            ps.setString(11, competitor.getCompetitorCommentary());
-            ps.setString(12, competitor.getCompetitorProductName());
-            ps.setString(13, competitor.getCompetitorAdditional());
-            ps.setString(14, competitor.getCompetitorAdditional2());
-            ps.setString(15, competitor.getCompetitorUrl());
-            ps.setString(16, competitor.getCompetitorWebCacheUrl());
+        /**
+         * Значения порции передаются столбцами: по одному массиву на поле
+         */
+        private void setCompetitorArrays(Connection con, PreparedStatement ps, List<Competitor> chunk) throws SQLException {
+            int size = chunk.size();
+            Long[] clientIds = new Long[size];
+            Long[] productIds = new Long[size];
+            Long[] operationIds = new Long[size];
+            Long[] handbookIds = new Long[size];
+            String[][] columns = new String[18][size];
+            for (int i = 0; i < size; i++) {
+                Competitor c = chunk.get(i);
+                clientIds[i] = c.getClientId();
+                productIds[i] = c.getProduct() != null ? c.getProduct().getId() : null;
+                operationIds[i] = c.getOperationId();
+                handbookIds[i] = c.getHandbookId();
+                columns[0][i] = c.getCompetitorName();
+                columns[1][i] = c.getCompetitorPrice();
+                columns[2][i] = c.getCompetitorPromotionalPrice();
+                columns[3][i] = c.getCompetitorTime();
+                columns[4][i] = c.getCompetitorDate();
+                columns[5][i] = c.getCompetitorLocalDateTime() != null ? c.getCompetitorLocalDateTime().toString() : null;
+                columns[6][i] = c.getCompetitorStockStatus();
+                columns[7][i] = c.getCompetitorAdditionalPrice();
+                columns[8][i] = c.getCompetitorCommentary();
+                columns[9][i] = c.getCompetitorProductName();
+                columns[10][i] = c.getCompetitorAdditional();
+                columns[11][i] = c.getCompetitorAdditional2();
+                columns[12][i] = c.getCompetitorUrl();
+                columns[13][i] = c.getCompetitorWebCacheUrl();
+                columns[14][i] = Objects.toString(c.getCompetitorPriceValue(), null);
+                columns[15][i] = Objects.toString(c.getCompetitorPromotionalPriceValue(), null);
+                columns[16][i] = Objects.toString(c.getCompetitorObservedAt(), null);
+                columns[17][i] = Objects.toString(c.getObservedMonth(), null);
+            }
+            ps.setArray(1, con.createArrayOf("bigint", clientIds));
+            ps.setArray(2, con.createArrayOf("bigint", productIds));
+            ps.setArray(3, con.createArrayOf("bigint", operationIds));
+            for (int column = 0; column < columns.length; column++) {
+                ps.setArray(column + 4, con.createArrayOf("varchar", columns[column]));
+            }
+            ps.setArray(columns.length + 4, con.createArrayOf("bigint", handbookIds));
         }
     }
 
@@ -396,27 +658,42 @@ public class BatchEntityProcessor {
      */
     private class RegionProcessor implements EntityProcessor {
 
+        private static final String INSERT_SQL = """
+                INSERT INTO region_data (
+                    client_id, product_id, region_id, operation_id, created_at, updated_at
+                ) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+                """;
+
+        // Связанные записи товара не удаляются перед перезаписью: уже привязанный регион не дублируется
+        private static final String INSERT_MISSING_SQL = """
+                INSERT INTO region_data (
+                    client_id, product_id, region_id, operation_id, created_at, updated_at
+                )
+                SELECT ?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+                WHERE NOT EXISTS (
+                    SELECT 1 FROM region_data d WHERE d.product_id = ? AND d.region_id = ?
+                )
+                """;
+
         @Override
         public BatchSaveResult processBatch(List<ImportableEntity> entities, DuplicateStrategy strategy) {
             List<Region> regions = entities.stream()
                     .map(e -> (Region) e)
                     .collect(Collectors.toList());
 
-            // Для регионов пока всегда используем INSERT
+            if (strategy == DuplicateStrategy.OVERRIDE) {
+                return insertMissingRegionsBatch(regions);
+            }
             return insertRegionsBatch(regions);
         }
 
         private BatchSaveResult insertRegionsBatch(List<Region> regions) {
             BatchSaveResult result = new BatchSaveResult();
 
-            String sql = """
-                    INSERT INTO region_data (
-                        client_id, product_id, region, region_address, created_at, updated_at
-                    ) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
-                    """;
-
             try {
-                int saved = executeBatch(sql, regions, this::setRegionParameters);
+                // Город и адрес заменяются ссылкой на справочник
+                regionDictionaryCache.resolve(regions);
+                int saved = executeBatch(INSERT_SQL, regions, this::setRegionParameters);
                 result.setSaved(saved);
                 log.info("Successfully saved {} regions", saved);
             } catch (Exception e) {
@@ -428,11 +705,147 @@ public class BatchEntityProcessor {
             return result;
         }
 
+        private BatchSaveResult insertMissingRegionsBatch(List<Region> regions) {
+            BatchSaveResult result = new BatchSaveResult();
+
+            try {
+                regionDictionaryCache.resolve(regions);
+                int saved = countAffectedRows(jdbcTemplate.batchUpdate(INSERT_MISSING_SQL, regions, jdbcBatchSize,
+                        (ps, region) -> {
+                            setRegionParameters(ps, region);
+                            ps.setObject(5, region.getProduct() != null ? region.getProduct().getId() : null);
+                            ps.setObject(6, region.getRegionId());
+                        }));
+                result.setSaved(saved);
+                result.setSkipped(regions.size() - saved);
+                log.info("Regions saved: {} inserted, {} already linked", saved, regions.size() - saved);
+            } catch (Exception e) {
+                log.error("Error saving regions batch", e);
+                result.setFailed(regions.size());
+                result.addError("Region batch save failed: " + e.getMessage());
+            }
+
+            return result;
+        }
+
         private void setRegionParameters(PreparedStatement ps, Region region) throws SQLException {
             ps.setLong(1, region.getClientId());
             ps.setObject(2, region.getProduct() != null ? region.getProduct().getId() : null);
-            ps.setString(3, region.getRegion());
-            ps.setString(4, region.getRegionAddress());
+            ps.setObject(3, region.getRegionId());
+            ps.setObject(4, region.getOperationId());
+        }
+    }
+
+    /**
+     * Процессор для справочника розничных сетей.
+     * Запись справочника определяется кодом сети и адресом точки (uq_av_handbook_network_address)
+     */
+    private class HandbookProcessor implements EntityProcessor {
+
+        private static final String UPSERT_SQL = """
+                INSERT INTO av_handbook (
+                    handbook_retail_network_code, handbook_retail_network, handbook_physical_address,
+                    handbook_price_zone_code, handbook_web_site, handbook_region_code, handbook_region_name,
+                    operation_id, created_at, updated_at
+                )
+                SELECT t.*, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+                FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[],
+                            ?::varchar[], ?::varchar[], ?::varchar[], ?::bigint[])
+                    AS t(handbook_retail_network_code, handbook_retail_network, handbook_physical_address,
+                         handbook_price_zone_code, handbook_web_site, handbook_region_code, handbook_region_name,
+                         operation_id)
+                ON CONFLICT ((COALESCE(handbook_retail_network_code, '')), (COALESCE(handbook_physical_address, '')))
+                """;
+
+        private static final String DO_UPDATE = """
+                DO UPDATE SET
+                    handbook_retail_network = EXCLUDED.handbook_retail_network,
+                    handbook_price_zone_code = EXCLUDED.handbook_price_zone_code,
+                    handbook_web_site = EXCLUDED.handbook_web_site,
+                    handbook_region_code = EXCLUDED.handbook_region_code,
+                    handbook_region_name = EXCLUDED.handbook_region_name,
+                    updated_at = CURRENT_TIMESTAMP
+                RETURNING (xmax = 0)
+                """;
+
+        private static final String DO_NOTHING = """
+                DO NOTHING
+                RETURNING true
+                """;
+
+        @Override
+        public BatchSaveResult processBatch(List<ImportableEntity> entities, DuplicateStrategy strategy) {
+            boolean override = strategy == DuplicateStrategy.OVERRIDE || strategy == DuplicateStrategy.DELTA;
+
+            // Повторы ключа внутри пакета: команда не может изменить строку дважды
+            Map<List<String>, AvHandbook> byKey = new LinkedHashMap<>();
+            for (ImportableEntity entity : entities) {
+                AvHandbook handbook = (AvHandbook) entity;
+                // NULL и пустая строка не различаются, как в uq_av_handbook_network_address
+                List<String> key = Arrays.asList(Objects.toString(handbook.getHandbookRetailNetworkCode(), ""),
+                        Objects.toString(handbook.getHandbookPhysicalAddress(), ""));
+                if (override) {
+                    byKey.put(key, handbook);
+                } else {
+                    byKey.putIfAbsent(key, handbook);
+                }
+            }
+            List<AvHandbook> handbooks = new ArrayList<>(byKey.values());
+
+            BatchSaveResult result = new BatchSaveResult();
+            String sql = UPSERT_SQL + (override ? DO_UPDATE : DO_NOTHING);
+            int inserted = 0;
+            int updated = 0;
+            try {
+                for (int from = 0; from < handbooks.size(); from += jdbcBatchSize) {
+                    List<AvHandbook> chunk = handbooks.subList(from, Math.min(handbooks.size(), from + jdbcBatchSize));
+                    List<Boolean> rows = jdbcTemplate.query(con -> {
+                        PreparedStatement ps = con.prepareStatement(sql);
+                        setHandbookArrays(con, ps, chunk);
+                        return ps;
+                    }, (rs, rowNum) -> rs.getBoolean(1));
+
+                    for (Boolean isInsert : rows) {
+                        if (Boolean.TRUE.equals(isInsert)) {
+                            inserted++;
+                        } else {
+                            updated++;
+                        }
+                    }
+                }
+                result.setSaved(inserted);
+                result.setUpdated(updated);
+                result.setSkipped(entities.size() - inserted - updated);
+                log.info("Handbook records upserted: {} inserted, {} updated, {} kept", inserted, updated,
+                        handbooks.size() - inserted - updated);
+            } catch (Exception e) {
+                log.error("Error saving handbook batch", e);
+                result.setFailed(entities.size());
+                result.addError("Handbook batch save failed: " + e.getMessage());
+            }
+            return result;
+        }
+
+        private void setHandbookArrays(Connection con, PreparedStatement ps, List<AvHandbook> chunk) throws SQLException {
+            int size = chunk.size();
+            String[][] columns = new String[7][size];
+            Long[] operationIds = new Long[size];
+            for (int i = 0; i < size; i++) {
+                AvHandbook h = chunk.get(i);
+                operationIds[i] = h.getOperationId();
+                columns[0][i] = h.getHandbookRetailNetworkCode();
+                columns[1][i] = h.getHandbookRetailNetwork();
+                columns[2][i] = h.getHandbookPhysicalAddress();
+                columns[3][i] = h.getHandbookPriceZoneCode();
+                columns[4][i] = h.getHandbookWebSite();
+                columns[5][i] = h.getHandbookRegionCode();
+                columns[6][i] = h.getHandbookRegionName();
+            }
+            for (int column = 0; column < columns.length; column++) {
+                ps.setArray(column + 1, con.createArrayOf("varchar", columns[column]));
+            }
+            // Повторная загрузка (DO UPDATE) операцию, создавшую запись, не меняет
+            ps.setArray(columns.length + 1, con.createArrayOf("bigint", operationIds));
         }
     }
 
@@ -446,12 +859,12 @@ public class BatchEntityProcessor {
                     product_bar, product_description, product_url, product_category1,
                     product_category2, product_category3, product_price, product_analog,
                     product_additional1, product_additional2, product_additional3,
-                    product_additional4, product_additional5, operation_id, created_at, updated_at
-                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+                    product_additional4, product_additional5, operation_id, content_hash, created_at, updated_at
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
                 """;
 
-        return jdbcTemplate.batchUpdate(sql, products, jdbcBatchSize,
-                (ps, product) -> setProductInsertParameters(ps, product)).length;
+        return countAffectedRows(jdbcTemplate.batchUpdate(sql, products, jdbcBatchSize,
+                (ps, product) -> setProductInsertParameters(ps, product)));
     }
 
     /**
@@ -464,15 +877,29 @@ public class BatchEntityProcessor {
                     product_url = ?, product_category1 = ?, product_category2 = ?, product_category3 = ?,
                     product_price = ?, product_analog = ?, product_additional1 = ?, product_additional2 = ?,
                     product_additional3 = ?, product_additional4 = ?, product_additional5 = ?,
-                    updated_at = CURRENT_TIMESTAMP
+                    content_hash = ?, updated_at = CURRENT_TIMESTAMP
                 WHERE id = ?
                 """;
 
-        return jdbcTemplate.batchUpdate(sql, products, jdbcBatchSize,
-                (ps, product) -> setProductUpdateParameters(ps, product)).length;
+        return countAffectedRows(jdbcTemplate.batchUpdate(sql, products, jdbcBatchSize,
+                (ps, product) -> setProductUpdateParameters(ps, product)));
     }
 
 
+    /**
+     * Число затронутых строк по результатам пакетов batchUpdate (массив на каждый подпакет).
+     * Драйвер может вернуть SUCCESS_NO_INFO вместо числа - такая команда считается одной строкой
+     */
+    static int countAffectedRows(int[][] batchResults) {
+        int rows = 0;
+        for (int[] batch : batchResults) {
+            for (int count : batch) {
+                rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+            }
+        }
+        return rows;
+    }
+
     /**
      * Универсальный метод выполнения батча
      */
@@ -487,7 +914,7 @@ public class BatchEntityProcessor {
                     ps.addBatch();
                     count++;
 
-                    if (count % 1000 == 0) {
+                    if (count % jdbcBatchSize == 0) {
                         int[] batchResults = ps.executeBatch();
                         log.debug("Executed batch of {} items", batchResults.length);
                     }
@@ -497,7 +924,7 @@ public class BatchEntityProcessor {
                 }
             }
 
-            if (count % 1000 != 0) {
+            if (count % jdbcBatchSize != 0) {
                 int[] results = ps.executeBatch();
                 log.debug("Executed final batch of {} items", results.length);
             }
@@ -529,6 +956,7 @@ public class BatchEntityProcessor {
         ps.setString(17, product.getProductAdditional4());
         ps.setString(18, product.getProductAdditional5());
         ps.setObject(19, product.getOperationId());
+        ps.setObject(20, product.getContentHash());
     }
 
     /**
@@ -550,7 +978,21 @@ public class BatchEntityProcessor {
         ps.setString(13, product.getProductAdditional3());
         ps.setString(14, product.getProductAdditional4());
         ps.setString(15, product.getProductAdditional5());
-        ps.setLong(16, product.getId());
+        ps.setObject(16, product.getContentHash());
+        ps.setLong(17, product.getId());
+    }
+
+    /**
+     * Существующий продукт: идентификатор и сохраненный хеш содержимого
+     */
+    private static final class ExistingProduct {
+        private final Long id;
+        private final Long contentHash;
+
+        ExistingProduct(Long id, Long contentHash) {
+            this.id = id;
+            this.contentHash = contentHash;
+        }
     }
 
     /**
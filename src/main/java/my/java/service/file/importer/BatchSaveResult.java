@@ -12,6 +12,8 @@ import java.util.List;
 public class BatchSaveResult {
     private int saved = 0;
     private int updated = 0;
+    // Существующие записи с тем же содержимым, обновление не выполнялось
+    private int unchanged = 0;
     private int skipped = 0;
     private int failed = 0;
     private final List<String> errors = new ArrayList<>();
@@ -32,6 +34,10 @@ public class BatchSaveResult {
         this.updated = updated;
     }
 
+    public void setUnchanged(int unchanged) {
+        this.unchanged = unchanged;
+    }
+
     public void incrementSkipped() {
         this.skipped++;
     }
@@ -45,6 +51,6 @@ public class BatchSaveResult {
     }
 
     public int getTotal() {
-        return saved + updated + skipped + failed;
+        return saved + updated + unchanged + skipped + failed;
     }
 }
@@ -0,0 +1,388 @@
+package my.java.service.file.importer;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import my.java.model.FieldMapping;
+import my.java.model.FieldMappingDetail;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Режим массовой загрузки: на время импорта большого файла (или первичной загрузки в пустую
+ * таблицу) удаляются некритичные вторичные индексы целевых таблиц, после записи данных
+ * они строятся заново командой CREATE INDEX CONCURRENTLY, не блокируя запись в таблицу.
+ * <p>
+ * Остаются первичные ключи, уникальные индексы (по ним работает ON CONFLICT), BRIN-индексы
+ * и индексы, нужные самому импорту: поиск существующих товаров, откат операции и каскадное
+ * удаление связанных строк. Определения удаленных индексов сохраняются в
+ * bulk_load_dropped_indexes в той же транзакции, что и DROP INDEX, поэтому после сбоя
+ * приложения индексы восстанавливаются при старте
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class BulkLoadIndexManager {
+
+    /**
+     * Когда включается режим массовой загрузки
+     */
+    public enum Mode {
+        // По оценке числа строк файла относительно текущего размера таблицы
+        AUTO,
+        // Для каждого импорта (если позволяют проверки безопасности)
+        ALWAYS,
+        // Никогда
+        NEVER
+    }
+
+    private static final String REGISTRY = "bulk_load_dropped_indexes";
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    // Целевые таблицы сущностей импорта
+    private static final Map<String, String> ENTITY_TABLES = Map.of(
+            "PRODUCT", "products",
+            "COMPETITOR", "competitor_data",
+            "REGION", "region_data"
+    );
+
+    // Индексы, без которых импорт (или его откат) читает таблицу целиком
+    private static final Set<String> REQUIRED_INDEXES = Set.of(
+            "idx_products_client_product_id",
+            "idx_products_operation",
+            "idx_competitor_data_product_id",
+            "idx_region_data_product_id",
+            "idx_region_data_region_id"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${application.import.bulk-load.mode:AUTO}")
+    private Mode mode;
+
+    // Минимальная оценка числа строк файла для режима AUTO
+    @Value("${application.import.bulk-load.min-rows:1000000}")
+    private long minRows;
+
+    // Минимальное отношение числа строк файла к числу строк таблицы для режима AUTO
+    @Value("${application.import.bulk-load.min-table-ratio:0.5}")
+    private double minTableRatio;
+
+    // Ожидание блокировки таблицы при удалении индексов (не дольше - иначе обычный режим)
+    @Value("${application.import.bulk-load.lock-timeout-ms:5000}")
+    private long lockTimeoutMs;
+
+    private TransactionTemplate dropTransaction;
+
+    @PostConstruct
+    public void initTransactionTemplate() {
+        dropTransaction = new TransactionTemplate(transactionManager);
+        dropTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Индексы, удаленные для одной операции импорта
+     */
+    public static final class Session {
+        static final Session NONE = new Session(null, List.of());
+
+        private final Long operationId;
+        private final List<String> droppedIndexes;
+
+        private Session(Long operationId, List<String> droppedIndexes) {
+            this.operationId = operationId;
+            this.droppedIndexes = droppedIndexes;
+        }
+
+        public boolean isActive() {
+            return !droppedIndexes.isEmpty();
+        }
+
+        public List<String> getDroppedIndexes() {
+            return droppedIndexes;
+        }
+    }
+
+    /**
+     * Решение о режиме загрузки и удаление некритичных индексов.
+     * Любая ошибка или невыполненная проверка означает обычный режим: индексы не трогаются
+     *
+     * @param operationId операция импорта (уже в статусе PROCESSING)
+     * @param mapping шаблон импорта (определяет целевые таблицы)
+     * @param estimatedRows оценка числа строк файла
+     */
+    public Session begin(Long operationId, FieldMapping mapping, long estimatedRows) {
+        if (mode == Mode.NEVER) {
+            return Session.NONE;
+        }
+        try {
+            List<String> tables = plan(mapping, estimatedRows);
+            if (tables.isEmpty()) {
+                return Session.NONE;
+            }
+            List<String> dropped = dropTransaction.execute(status -> dropIndexes(operationId, tables));
+            if (dropped == null || dropped.isEmpty()) {
+                return Session.NONE;
+            }
+            log.info("Bulk load for operation {}: dropped {} indexes on {} ({} rows estimated)",
+                    operationId, dropped.size(), tables, estimatedRows);
+            return new Session(operationId, dropped);
+        } catch (DataAccessException e) {
+            log.warn("Bulk load mode is not available for operation {}, using regular mode: {}",
+                    operationId, e.getMessage());
+            return Session.NONE;
+        }
+    }
+
+    /**
+     * Восстановление индексов, удаленных для операции. Не выбрасывает исключений:
+     * индекс, который не удалось построить, остается в реестре и строится при следующем старте
+     */
+    public void finish(Session session) {
+        if (session == null || !session.isActive()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            int rebuilt = rebuild(jdbcTemplate.queryForList(
+                    "SELECT index_name, table_name, index_definition FROM " + REGISTRY + " WHERE operation_id = ?",
+                    session.operationId));
+            log.info("Bulk load for operation {}: rebuilt {} of {} indexes in {} ms", session.operationId,
+                    rebuilt, session.droppedIndexes.size(), System.currentTimeMillis() - start);
+        } catch (DataAccessException e) {
+            log.error("Failed to rebuild indexes of operation {}, will retry on next start: {}",
+                    session.operationId, e.getMessage());
+        }
+    }
+
+    /**
+     * Индексы, оставшиеся удаленными после сбоя приложения
+     */
+    @Async("statsExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildPendingOnStartup() {
+        try {
+            List<Map<String, Object>> pending = jdbcTemplate.queryForList(
+                    "SELECT index_name, table_name, index_definition FROM " + REGISTRY + " ORDER BY dropped_at");
+            if (!pending.isEmpty()) {
+                log.info("Rebuilding {} indexes left after interrupted bulk load", pending.size());
+                rebuild(pending);
+            }
+        } catch (Exception e) {
+            log.error("Rebuild of bulk load indexes failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Таблицы, для которых выгоден режим массовой загрузки
+     */
+    private List<String> plan(FieldMapping mapping, long estimatedRows) {
+        List<String> tables = new ArrayList<>();
+        for (String table : targetTables(mapping)) {
+            if (mode == Mode.ALWAYS) {
+                tables.add(table);
+                continue;
+            }
+            long tableRows = estimateTableRows(table);
+            boolean bulk = estimatedRows >= minRows && estimatedRows >= tableRows * minTableRatio;
+            log.debug("Bulk load plan for {}: {} rows in file, ~{} rows in table -> {}",
+                    table, estimatedRows, tableRows, bulk ? "bulk" : "regular");
+            if (bulk) {
+                tables.add(table);
+            }
+        }
+        return tables;
+    }
+
+    private static Set<String> targetTables(FieldMapping mapping) {
+        Set<String> tables = new LinkedHashSet<>();
+        if (mapping.isCombined()) {
+            for (FieldMappingDetail detail : mapping.getDetails()) {
+                String table = ENTITY_TABLES.get(detail.getTargetEntity());
+                if (table != null) {
+                    tables.add(table);
+                }
+            }
+        } else {
+            String table = ENTITY_TABLES.get(mapping.getEntityType());
+            if (table != null) {
+                tables.add(table);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Оценка числа строк по статистике планировщика (с учетом секций)
+     */
+    private long estimateTableRows(String table) {
+        Long rows = jdbcTemplate.queryForObject("""
+                SELECT COALESCE(SUM(GREATEST(c.reltuples, 0)), 0)::bigint
+                FROM pg_class c
+                WHERE c.oid = to_regclass(?)
+                   OR c.oid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = to_regclass(?))
+                """, Long.class, table, table);
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * Проверки безопасности и удаление индексов (в одной транзакции).
+     * Реестр блокируется, поэтому две операции не могут одновременно войти в режим
+     */
+    private List<String> dropIndexes(Long operationId, List<String> tables) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + Math.max(1, lockTimeoutMs));
+        jdbcTemplate.execute("LOCK TABLE " + REGISTRY + " IN EXCLUSIVE MODE");
+
+        Integer pending = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + REGISTRY, Integer.class);
+        if (pending != null && pending > 0) {
+            log.info("Bulk load skipped for operation {}: {} indexes are not rebuilt yet", operationId, pending);
+            return List.of();
+        }
+        Integer writers = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM file_operations
+                WHERE status = 'PROCESSING' AND operation_type = 'IMPORT' AND id <> ?
+                """, Integer.class, operationId);
+        if (writers != null && writers > 0) {
+            log.info("Bulk load skipped for operation {}: {} other imports are running", operationId, writers);
+            return List.of();
+        }
+
+        List<String> dropped = new ArrayList<>();
+        for (String table : tables) {
+            List<Map<String, Object>> indexes = jdbcTemplate.queryForList("""
+                    SELECT i.relname AS index_name, pg_get_indexdef(i.oid) AS index_definition
+                    FROM pg_index x
+                    JOIN pg_class i ON i.oid = x.indexrelid
+                    JOIN pg_am am ON am.oid = i.relam
+                    WHERE x.indrelid = to_regclass(?)
+                      AND NOT x.indisunique
+                      AND NOT x.indisprimary
+                      AND x.indisvalid
+                      AND am.amname <> 'brin'
+                      AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = i.oid)
+                    """, table);
+            for (Map<String, Object> index : indexes) {
+                String name = (String) index.get("index_name");
+                if (REQUIRED_INDEXES.contains(name)) {
+                    continue;
+                }
+                jdbcTemplate.update("INSERT INTO " + REGISTRY +
+                                " (index_name, table_name, index_definition, operation_id) VALUES (?, ?, ?, ?)",
+                        name, table, index.get("index_definition"), operationId);
+                jdbcTemplate.execute("DROP INDEX " + name);
+                dropped.add(name);
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Построение индексов из реестра; запись удаляется после успешного построения
+     *
+     * @return количество построенных индексов
+     */
+    private int rebuild(List<Map<String, Object>> records) {
+        int rebuilt = 0;
+        for (Map<String, Object> record : records) {
+            String name = (String) record.get("index_name");
+            String table = (String) record.get("table_name");
+            String definition = (String) record.get("index_definition");
+            try {
+                long start = System.currentTimeMillis();
+                if (isPartitioned(table)) {
+                    rebuildPartitioned(name, table, definition);
+                } else {
+                    dropIfInvalid(name);
+                    jdbcTemplate.execute(definition.replaceFirst("^CREATE INDEX ", "CREATE INDEX CONCURRENTLY IF NOT EXISTS "));
+                }
+                jdbcTemplate.update("DELETE FROM " + REGISTRY + " WHERE index_name = ?", name);
+                rebuilt++;
+                log.info("Index {} on {} rebuilt in {} ms", name, table, System.currentTimeMillis() - start);
+            } catch (DataAccessException e) {
+                log.error("Failed to rebuild index {} on {}, will retry on next start: {}",
+                        name, table, e.getMessage());
+            }
+        }
+        return rebuilt;
+    }
+
+    /**
+     * На секционированной таблице CONCURRENTLY не поддерживается: индекс создается только
+     * на родителе (ON ONLY, пока недействителен), индексы секций строятся конкурентно
+     * и присоединяются к нему. После присоединения последней секции индекс становится действительным
+     */
+    private void rebuildPartitioned(String name, String table, String definition) {
+        if (!exists(name)) {
+            jdbcTemplate.execute(definition.contains(" ON ONLY ")
+                    ? definition
+                    : definition.replaceFirst(" ON ", " ON ONLY "));
+        }
+        String tail = definition.substring(definition.indexOf(" USING "));
+
+        for (String partition : jdbcTemplate.queryForList("""
+                SELECT c.relname
+                FROM pg_inherits h
+                JOIN pg_class c ON c.oid = h.inhrelid
+                WHERE h.inhparent = to_regclass(?)
+                ORDER BY c.relname
+                """, String.class, table)) {
+            Integer attached = jdbcTemplate.queryForObject("""
+                    SELECT COUNT(*)
+                    FROM pg_inherits h
+                    JOIN pg_index x ON x.indexrelid = h.inhrelid
+                    WHERE h.inhparent = to_regclass(?) AND x.indrelid = to_regclass(?)
+                    """, Integer.class, name, partition);
+            if (attached != null && attached > 0) {
+                continue;
+            }
+            String child = partitionIndexName(name, table, partition);
+            dropIfInvalid(child);
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + child + " ON " + partition + tail);
+            jdbcTemplate.execute("ALTER INDEX " + name + " ATTACH PARTITION " + child);
+        }
+    }
+
+    /**
+     * Имя индекса секции: имя индекса родителя и суффикс секции (pYYYYMM, default),
+     * с усечением до предельной длины идентификатора
+     */
+    private static String partitionIndexName(String index, String table, String partition) {
+        String suffix = partition.startsWith(table + "_") ? partition.substring(table.length() + 1) : partition;
+        int maxPrefix = MAX_IDENTIFIER_LENGTH - suffix.length() - 1;
+        return (index.length() > maxPrefix ? index.substring(0, maxPrefix) : index) + "_" + suffix;
+    }
+
+    /**
+     * Недействительный индекс остается после прерванного CREATE INDEX CONCURRENTLY
+     */
+    private void dropIfInvalid(String name) {
+        List<Boolean> valid = jdbcTemplate.queryForList(
+                "SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass(?)", Boolean.class, name);
+        if (!valid.isEmpty() && !valid.get(0)) {
+            log.warn("Dropping invalid index {} left by interrupted build", name);
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + name);
+        }
+    }
+
+    private boolean exists(String name) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, name));
+    }
+
+    private boolean isPartitioned(String table) {
+        List<String> kind = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, table);
+        return !kind.isEmpty() && "p".equals(kind.get(0));
+    }
+}
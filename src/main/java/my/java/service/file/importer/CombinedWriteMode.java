@@ -0,0 +1,9 @@
+package my.java.service.file.importer;
+
+/**
+ * Способ записи пакета COMBINED импорта
+ */
+public enum CombinedWriteMode {
+    ENTITY,  // Через стратегии дубликатов: идентификаторы товаров возвращаются в Java для связывания
+    STAGING  // COPY в промежуточные таблицы, связи разрешаются запросами внутри PostgreSQL
+}
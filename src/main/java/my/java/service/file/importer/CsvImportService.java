@@ -1,29 +1,49 @@
 // src/main/java/my/java/service/file/importer/CsvImportService.java
 package my.java.service.file.importer;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import my.java.exception.ImportCancelledException;
+import my.java.exception.ImportTransactionRolledBackException;
 import my.java.model.Client;
 import my.java.model.FieldMapping;
 import my.java.model.FieldMappingDetail;
 import my.java.model.FileOperation;
+import my.java.model.ImportCheckpoint;
+import my.java.model.entity.AvHandbook;
 import my.java.model.entity.Competitor;
 import my.java.model.entity.ImportableEntity;
 import my.java.model.entity.Product;
 import my.java.model.entity.Region;
 import my.java.repository.FileOperationRepository;
+import my.java.repository.ImportCheckpointRepository;
+import my.java.service.file.analyzer.ColumnStatistics;
+import my.java.service.file.analyzer.CsvAnalysisResult;
+import my.java.service.file.importer.strategy.DeltaDuplicatesStrategy;
+import my.java.service.file.importer.strategy.DeltaSummary;
 import my.java.service.file.importer.strategy.DuplicateHandlingStrategy;
 import my.java.service.file.importer.strategy.DuplicateHandlingStrategyFactory;
 import my.java.service.file.importer.DuplicateStrategy;
+import my.java.service.handbook.HandbookIndex;
+import my.java.service.handbook.HandbookIndexService;
 import my.java.service.mapping.FieldMappingService;
+import my.java.util.StringInterner;
 import my.java.util.transformer.ValueTransformerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -44,13 +64,91 @@ public class CsvImportService {
     private final FieldMappingService fieldMappingService;
     private final ValueTransformerFactory transformerFactory;
     private final DuplicateHandlingStrategyFactory strategyFactory;
+    private final ImportCancellationRegistry cancellationRegistry;
+    private final BatchEntityProcessor batchEntityProcessor;
+    private final ImportCheckpointRepository checkpointRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ImportWalProbe walProbe;
+    private final DeltaDuplicatesStrategy deltaStrategy;
+    private final DuplicateRowScanner duplicateRowScanner;
+    private final StagingCombinedWriter stagingCombinedWriter;
+    private final ObjectMapper objectMapper;
+    private final HandbookIndexService handbookIndexService;
+    private final BulkLoadIndexManager bulkLoadIndexManager;
+    private final ImportPurgeService importPurgeService;
+    // Внедряется по имени бина importWriterExecutor
+    private final ThreadPoolTaskExecutor importWriterExecutor;
 
     @Value("${application.import.batch-size:1000}")
     private int batchSize;
 
+    @Value("${application.import.adaptive-batch.enabled:true}")
+    private boolean adaptiveBatchEnabled;
+
+    @Value("${application.import.adaptive-batch.min-size:100}")
+    private int adaptiveBatchMinSize;
+
+    @Value("${application.import.adaptive-batch.max-size:10000}")
+    private int adaptiveBatchMaxSize;
+
+    @Value("${application.import.adaptive-batch.step:250}")
+    private int adaptiveBatchStep;
+
+    @Value("${application.import.adaptive-batch.target-latency-ms:1000}")
+    private long adaptiveBatchTargetLatencyMs;
+
+    @Value("${application.import.adaptive-batch.max-batch-bytes:8388608}")
+    private long adaptiveBatchMaxBytes;
+
     @Value("${application.import.progress-update-interval:100}")
     private int progressUpdateInterval;
 
+    @Value("${application.import.transaction-scope:BATCH}")
+    private ImportTransactionScope transactionScope;
+
+    @Value("${application.import.transaction-batches:10}")
+    private int transactionBatches;
+
+    // Сколько подготовленных пакетов может ждать записи (0 - запись в потоке чтения)
+    @Value("${application.import.writer-buffers:2}")
+    private int writerBuffers;
+
+    // Запись COMBINED пакетов: через стратегии (ENTITY) или через промежуточные таблицы (STAGING)
+    @Value("${application.import.combined-write-mode:ENTITY}")
+    private CombinedWriteMode combinedWriteMode;
+
+    // Удалять ли в режиме DELTA товары, отсутствующие в файле
+    @Value("${application.import.delta.delete-missing:false}")
+    private boolean deltaDeleteMissing;
+
+    // Пул канонических строк для столбцов с повторяющимися значениями
+    @Value("${application.import.intern.enabled:true}")
+    private boolean internEnabled;
+
+    @Value("${application.import.intern.capacity:8192}")
+    private int internCapacity;
+
+    @Value("${application.import.intern.max-length:128}")
+    private int internMaxLength;
+
+    // Столбец считается повторяющимся, если различных значений в выборке анализа не больше этой доли
+    @Value("${application.import.intern.max-distinct-percent:10}")
+    private int internMaxDistinctPercent;
+
+    // Как часто (в строках) цикл чтения проверяет запрос на отмену
+    private static final int CANCELLATION_CHECK_INTERVAL = 500;
+
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate progressTransactionTemplate;
+
+    @PostConstruct
+    public void initTransactionTemplates() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        progressTransactionTemplate = new TransactionTemplate(transactionManager);
+        progressTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
     /**
      * Асинхронный импорт CSV файла
      */
@@ -64,12 +162,36 @@ public class CsvImportService {
         log.info("Starting async CSV import for operation {}", operation.getId());
 
         try {
+            // Операция могла быть отменена, пока ожидала в очереди
+            if (cancellationRegistry.isCancellationRequested(operation.getId())) {
+                log.info("Operation {} was cancelled before start", operation.getId());
+                operation.markAsCancelled("Операция отменена пользователем");
+                fileOperationRepository.save(operation);
+                return CompletableFuture.completedFuture(operation);
+            }
+
             // Устанавливаем статус "В обработке"
             operation.markAsProcessing();
             fileOperationRepository.save(operation);
 
+            // Большой файл загружается без некритичных индексов, они строятся заново после записи
+            long estimatedRows = operation.getTotalRecords() != null && operation.getTotalRecords() > 0
+                    ? operation.getTotalRecords()
+                    : estimateRecordCount(csvFile) - 1;
+            BulkLoadIndexManager.Session bulkLoad = bulkLoadIndexManager.begin(operation.getId(), mapping, estimatedRows);
+
             // Выполняем импорт
-            ImportResult result = processImport(csvFile, mapping, client, operation);
+            ImportResult result;
+            try {
+                result = processImport(csvFile, mapping, client, operation);
+            } finally {
+                bulkLoadIndexManager.finish(bulkLoad);
+            }
+            if (bulkLoad.isActive()) {
+                String bulkLoadParams = "bulk_load_indexes=" + bulkLoad.getDroppedIndexes().size();
+                String params = operation.getProcessingParams();
+                operation.setProcessingParams(params != null ? params + ";" + bulkLoadParams : bulkLoadParams);
+            }
 
             // Завершаем операцию
             operation.markAsCompleted(result.getTotalProcessed());
@@ -83,6 +205,21 @@ public class CsvImportService {
 
             return CompletableFuture.completedFuture(operation);
 
+        } catch (ImportCancelledException e) {
+            return handleCancellation(operation);
+
+        } catch (ImportTransactionRolledBackException e) {
+            log.error("CSV import for operation {} stopped: {}", operation.getId(), e.getMessage());
+
+            String failedParams = "failed_records=" + e.getLostRows();
+            String params = operation.getProcessingParams();
+            operation.setProcessingParams(params != null ? params + ";" + failedParams : failedParams);
+            operation.markAsFailed("Импорт остановлен: " + e.getMessage()
+                    + ". Записи этой транзакции не сохранены, импорт можно повторить");
+            fileOperationRepository.save(operation);
+
+            return CompletableFuture.failedFuture(e);
+
         } catch (Exception e) {
             log.error("Error during CSV import for operation {}: {}",
                     operation.getId(), e.getMessage(), e);
@@ -91,11 +228,43 @@ public class CsvImportService {
             fileOperationRepository.save(operation);
 
             return CompletableFuture.failedFuture(e);
+        } finally {
+            cancellationRegistry.clear(operation.getId());
+            deltaStrategy.release(operation.getId());
+            deleteCheckpoint(operation.getId());
+        }
+    }
+
+    /**
+     * Завершение отмененной операции с необязательным откатом записанных данных
+     */
+    private CompletableFuture<FileOperation> handleCancellation(FileOperation operation) {
+        log.info("CSV import for operation {} cancelled at {} processed records",
+                operation.getId(), operation.getProcessedRecords());
+
+        String message = "Операция отменена пользователем";
+        if (cancellationRegistry.isRollbackRequested(operation.getId())) {
+            try {
+                ImportPurgeService.PurgeResult purged = importPurgeService.purge(operation.getId());
+                message += ", записанные данные удалены (" + purged.getProducts() + " товаров, "
+                        + (purged.getCompetitors() + purged.getRegions()) + " связанных записей, "
+                        + purged.getHandbooks() + " записей справочника)";
+            } catch (Exception e) {
+                log.error("Failed to roll back data of cancelled operation {}: {}",
+                        operation.getId(), e.getMessage(), e);
+                message += ", откат данных не выполнен: " + e.getMessage();
+            }
         }
+
+        operation.markAsCancelled(message);
+        fileOperationRepository.save(operation);
+
+        return CompletableFuture.completedFuture(operation);
     }
 
     /**
-     * Основная логика обработки импорта
+     * Основная логика обработки импорта.
+     * Пакеты записываются транзакциями, границы которых задает application.import.transaction-scope
      */
     private ImportResult processImport(Path csvFile, FieldMapping mapping,
                                        Client client, FileOperation operation) throws IOException {
@@ -104,7 +273,6 @@ public class CsvImportService {
         log.info("Using encoding: {}, delimiter: '{}'", mapping.getFileEncoding(), mapping.getCsvDelimiter());
 
         ImportResult result = new ImportResult();
-        List<Map<String, String>> batchData = new ArrayList<>();
 
         // Безопасное создание кодировки
         Charset charset;
@@ -115,81 +283,86 @@ public class CsvImportService {
             charset = StandardCharsets.UTF_8;
         }
 
-        // Безопасное чтение файла с обработкой ошибок кодировки
-        try (BufferedReader reader = createSafeBufferedReader(csvFile, charset)) {
-            String line;
-            String[] headers = null;
-            int lineNumber = 0;
-            int processedCount = 0;
+        // Контрольная точка остается от прерванного запуска этой же операции
+        Optional<ImportCheckpoint> checkpoint = checkpointRepository.findById(operation.getId());
 
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
+        int batchesPerTransaction = transactionScope.batchesPerTransaction(transactionBatches);
+        log.info("Transaction scope: {} ({} batches per transaction)", transactionScope,
+                batchesPerTransaction == Integer.MAX_VALUE ? "all" : batchesPerTransaction);
 
-                // Пропускаем пустые строки
-                if (line.trim().isEmpty()) {
-                    continue;
-                }
+        long startNanos = System.nanoTime();
+        String startLsn = walProbe.currentLsn();
 
-                // Первая строка - заголовки
-                if (headers == null) {
-                    log.info("Header line: {}", line.substring(0, Math.min(line.length(), 100)));
-                    headers = parseCsvLine(line, mapping);
-                    result.setTotalRecords(estimateRecordCount(csvFile) - 1);
-                    log.info("Found {} headers: {}", headers.length, Arrays.toString(headers));
-                    log.info("Estimated {} total records", result.getTotalRecords());
-                    continue;
-                }
+        try (PositionTrackingLineReader reader = new PositionTrackingLineReader(csvFile, charset, mapping.getCsvQuoteChar())) {
+            AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(adaptiveBatchEnabled, batchSize,
+                    adaptiveBatchMinSize, adaptiveBatchMaxSize, adaptiveBatchStep,
+                    adaptiveBatchTargetLatencyMs, adaptiveBatchMaxBytes);
+            CsvBatchReader batchReader = new CsvBatchReader(reader, mapping, operation.getId(), result);
 
-                try {
-                    String[] values = parseCsvLine(line, mapping);
-                    Map<String, String> rowData = createRowMap(headers, values);
-
-                    // Логируем первые несколько строк для диагностики
-                    if (lineNumber <= 5) {
-                        log.info("Line {}: parsed {} values", lineNumber, values.length);
-                        log.info("Row data keys: {}", rowData.keySet());
-                        log.info("Sample row data: {}", rowData.entrySet().stream()
-                                .limit(3)
-                                .collect(Collectors.toMap(
-                                        Map.Entry::getKey,
-                                        e -> e.getValue() != null ? e.getValue() : "NULL"
-                                )));
-                    }
-
-                    batchData.add(rowData);
-
-                    // Обрабатываем пакет данных
-                    if (batchData.size() >= batchSize) {
-                        BatchProcessResult batchResult = processBatch(batchData, mapping, client, operation);
-                        result.addBatchResult(batchResult);
-
-                        processedCount += batchData.size();
-                        batchData.clear();
-
-                        // Обновляем прогресс
-                        if (processedCount % progressUpdateInterval == 0) {
-                            updateProgress(operation, processedCount, result.getTotalRecords());
-                        }
-                    }
+            if (!batchReader.readHeaders()) {
+                log.warn("File {} contains no header line", csvFile);
+                return result;
+            }
+            // Точное количество записей посчитано при анализе файла
+            if (operation.getTotalRecords() != null && operation.getTotalRecords() > 0) {
+                result.setTotalRecords(operation.getTotalRecords());
+                log.info("{} total records (from file analysis)", result.getTotalRecords());
+            } else {
+                result.setTotalRecords(estimateRecordCount(csvFile) - 1);
+                log.info("Estimated {} total records", result.getTotalRecords());
+            }
 
-                } catch (Exception e) {
-                    log.warn("Error processing line {}: {}", lineNumber, e.getMessage());
-                    result.addError(lineNumber, e.getMessage());
-                }
+            // Повторяющиеся значения справочных столбцов хранятся в пуле одной копией
+            boolean[] internedColumns = resolveInternedColumns(batchReader.getHeaders(), mapping, operation);
+            StringInterner interner = internedColumns != null
+                    ? new StringInterner(internCapacity, internMaxLength)
+                    : null;
+            batchReader.setInterner(interner, internedColumns);
+
+            // Одна версия справочника сетей на всю операцию, даже если его загрузят параллельно
+            HandbookIndex handbookIndex = handbookIndexService.current();
+            batchReader.setHandbookIndex(handbookIndex);
+
+            // Одна строка на productId во всем файле: первая (SKIP) или последняя (OVERRIDE, DELTA)
+            batchReader.setDuplicateRows(scanDuplicateRows(csvFile, charset, mapping, operation));
+
+            // Продолжаем с позиции после последнего записанного пакета
+            if (checkpoint.isPresent()) {
+                ImportCheckpoint cp = checkpoint.get();
+                batchReader.seek(cp.getByteOffset(), cp.getLineNumber(), cp.getProcessedRecords());
+                log.info("Resuming operation {} from line {} (offset {} bytes, {} records already processed)",
+                        operation.getId(), cp.getLineNumber(), cp.getByteOffset(), cp.getProcessedRecords());
             }
 
-            // Обрабатываем остаток данных
-            if (!batchData.isEmpty()) {
-                BatchProcessResult batchResult = processBatch(batchData, mapping, client, operation);
-                result.addBatchResult(batchResult);
-                processedCount += batchData.size();
+            if (writerBuffers > 0) {
+                writePipelined(batchReader, batchSizer, batchesPerTransaction, mapping, client, operation, result);
+            } else {
+                writeAll(() -> prepareNextBatch(batchReader, batchSizer, mapping, client, operation),
+                        batchSizer, batchesPerTransaction, operation, result);
             }
 
+            int processedCount = batchReader.getRowsRead();
             updateProgress(operation, processedCount, result.getTotalRecords());
             result.setTotalProcessed(processedCount);
 
+            if (DuplicateStrategy.DELTA.name().equals(mapping.getDuplicateStrategy())) {
+                completeDelta(operation, result, checkpoint.isPresent());
+            }
+
+            logImportStatistics(operation, processedCount, result, startNanos, startLsn);
+            operation.setProcessingParams(operation.getProcessingParams() + ";handbook_version=" + handbookIndex.getVersion());
+            if (targetsHandbook(mapping)) {
+                handbookIndexService.reload();
+            }
+            if (interner != null) {
+                log.info("String pool of operation {}: {} hits, {} misses",
+                        operation.getId(), interner.getHits(), interner.getMisses());
+            }
             log.info("Import completed. Processed {} records", processedCount);
 
+        } catch (UncheckedIOException e) {
+            log.error("Error reading file: {}", e.getMessage());
+            throw e.getCause();
         } catch (IOException e) {
             log.error("Error reading file: {}", e.getMessage());
             throw e;
@@ -199,20 +372,307 @@ public class CsvImportService {
     }
 
     /**
-     * Создает BufferedReader с обработкой ошибок кодировки
+     * Разбор и запись выполняются параллельно: текущий поток готовит пакеты,
+     * поток записи сохраняет их через ограниченный буфер. Если свободного потока записи нет,
+     * пакеты записываются последовательно в текущем потоке
      */
-    private BufferedReader createSafeBufferedReader(Path filePath, Charset charset) throws IOException {
+    private void writePipelined(CsvBatchReader batchReader, AdaptiveBatchSizer batchSizer, int batchesPerTransaction,
+                                FieldMapping mapping, Client client, FileOperation operation,
+                                ImportResult result) {
+
+        ImportWritePipeline<PreparedBatch> pipeline = new ImportWritePipeline<>(writerBuffers);
+        pipeline.run(importWriterExecutor,
+                () -> prepareNextBatch(batchReader, batchSizer, mapping, client, operation),
+                source -> writeAll(source, batchSizer, batchesPerTransaction, operation, result));
+    }
+
+    /**
+     * Запись всех пакетов источника транзакциями по batchesPerTransaction пакетов
+     */
+    private void writeAll(ImportWritePipeline.Source<PreparedBatch> source, AdaptiveBatchSizer batchSizer,
+                          int batchesPerTransaction, FileOperation operation, ImportResult result) {
+        PreparedBatch first;
+        while ((first = nextBatch(source)) != null) {
+            writeTransactionUnit(first, source, batchSizer, batchesPerTransaction, operation, result);
+        }
+    }
+
+    /**
+     * Запись до batchesPerTransaction пакетов в одной транзакции.
+     * Продукты, связанные записи и контрольная точка фиксируются атомарно;
+     * если при сохранении пакета были ошибки, вся транзакция откатывается.
+     * Откат транзакции из нескольких пакетов (FILE, BATCHES) останавливает импорт:
+     * иначе операция завершилась бы успешно без уже "записанных" пакетов единицы
+     */
+    private void writeTransactionUnit(PreparedBatch first, ImportWritePipeline.Source<PreparedBatch> source,
+                                      AdaptiveBatchSizer batchSizer, int batchesPerTransaction,
+                                      FileOperation operation, ImportResult result) {
+
+        List<BatchProcessResult> unitResults = new ArrayList<>();
+        List<PreparedBatch> unitBatches = new ArrayList<>();
+        boolean[] rolledBack = {false};
+
         try {
-            return Files.newBufferedReader(filePath, charset);
+            transactionTemplate.executeWithoutResult(status -> {
+                PreparedBatch batch = first;
+                for (int i = 0; batch != null; i++) {
+                    unitBatches.add(batch);
+
+                    long writeStart = System.nanoTime();
+                    BatchProcessResult batchResult = writePreparedBatch(batch, operation);
+                    batchSizer.recordBatch(batch.getRowCount(), batch.getByteLength(), System.nanoTime() - writeStart);
+                    unitResults.add(batchResult);
+
+                    if (batchResult.hasSaveFailures()) {
+                        status.setRollbackOnly();
+                        rolledBack[0] = true;
+                        break;
+                    }
+
+                    saveCheckpoint(operation.getId(), batch.getByteOffset(),
+                            batch.getLastLine(), batch.getRowsRead());
+
+                    // Прогресс фиксируется отдельной транзакцией, чтобы быть видимым сразу
+                    updateProgressInNewTransaction(operation, batch.getRowsRead(), result.getTotalRecords());
+
+                    if (i + 1 >= batchesPerTransaction) {
+                        break;
+                    }
+                    batch = nextBatch(source);
+                }
+            });
+        } catch (ImportCancelledException | ImportWritePipeline.AbortedException e) {
+            throw e;
+        } catch (TransactionException | DataAccessException e) {
+            log.error("Transaction for lines {}-{} failed: {}", first.getFirstLine(),
+                    unitBatches.get(unitBatches.size() - 1).getLastLine(), e.getMessage());
+            rolledBack[0] = true;
+        }
+
+        if (rolledBack[0]) {
+            int firstLine = first.getFirstLine();
+            int lastLine = unitBatches.get(unitBatches.size() - 1).getLastLine();
+            int lostRows = unitBatches.stream().mapToInt(PreparedBatch::getRowCount).sum();
+            log.warn("Rolled back {} records from lines {}-{} of operation {}",
+                    lostRows, firstLine, lastLine, operation.getId());
+            result.addError(firstLine, "Транзакция откатана, не сохранено записей: " + lostRows
+                    + " (строки " + firstLine + "-" + lastLine + ")");
+            result.addFailed(lostRows);
+            if (batchesPerTransaction > 1) {
+                throw new ImportTransactionRolledBackException(lostRows, firstLine, lastLine);
+            }
+        } else {
+            unitResults.forEach(result::addBatchResult);
+        }
+    }
+
+    private PreparedBatch nextBatch(ImportWritePipeline.Source<PreparedBatch> source) {
+        try {
+            return source.next();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Запись пакетов прервана", e);
+        }
+    }
+
+    /**
+     * Чтение и подготовка следующего пакета
+     *
+     * @return подготовленный пакет или null, если файл прочитан полностью
+     */
+    private PreparedBatch prepareNextBatch(CsvBatchReader batchReader, AdaptiveBatchSizer batchSizer,
+                                           FieldMapping mapping, Client client, FileOperation operation) {
+        if (batchReader.isExhausted()) {
+            return null;
+        }
+
+        int firstLine = batchReader.getLineNumber() + 1;
+        long startOffset = batchReader.getPosition();
+        List<Map<String, String>> batchData;
+        try {
+            batchData = batchReader.nextBatch(batchSizer.getBatchSize());
         } catch (IOException e) {
-            log.warn("Failed to read with {}, trying UTF-8: {}", charset, e.getMessage());
-            try {
-                return Files.newBufferedReader(filePath, StandardCharsets.UTF_8);
-            } catch (IOException e2) {
-                log.warn("Failed to read with UTF-8, trying ISO-8859-1: {}", e2.getMessage());
-                return Files.newBufferedReader(filePath, StandardCharsets.ISO_8859_1);
+            throw new UncheckedIOException(e);
+        }
+
+        if (batchData.isEmpty()) {
+            return null;
+        }
+
+        PreparedBatch batch = prepareBatch(batchData, mapping, client, operation, batchReader.getHandbookIndex());
+        batch.setPosition(firstLine, batchReader.getLineNumber(), startOffset,
+                batchReader.getPosition(), batchReader.getRowsRead());
+        return batch;
+    }
+
+    /**
+     * Столбцы файла, значения которых помещаются в пул канонических строк.
+     * Признак столбца в шаблоне важнее статистики анализа файла; столбцы,
+     * не используемые шаблоном, не учитываются
+     *
+     * @return признак по индексу заголовка или null, если таких столбцов нет
+     */
+    private boolean[] resolveInternedColumns(String[] headers, FieldMapping mapping, FileOperation operation) {
+        if (!internEnabled) {
+            return null;
+        }
+
+        // Столбцы шаблона и явно заданные признаки (столбец может быть сопоставлен нескольким полям)
+        Set<String> mappedColumns = new HashSet<>();
+        Map<String, Boolean> flags = new HashMap<>();
+        for (FieldMappingDetail detail : mapping.getDetails()) {
+            mappedColumns.add(detail.getSourceField());
+            if (detail.getLowCardinality() != null) {
+                flags.merge(detail.getSourceField(), detail.getLowCardinality(), Boolean::logicalOr);
             }
         }
+
+        Map<String, ColumnStatistics> statistics = loadColumnStatistics(operation);
+        boolean[] interned = new boolean[headers.length];
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < headers.length; i++) {
+            String header = headers[i];
+            if (!mappedColumns.contains(header)) {
+                continue;
+            }
+            ColumnStatistics column = statistics.get(header);
+            interned[i] = flags.containsKey(header)
+                    ? flags.get(header)
+                    : column != null && column.isLowCardinality(internMaxDistinctPercent);
+            if (interned[i]) {
+                names.add(header);
+            }
+        }
+
+        if (names.isEmpty()) {
+            return null;
+        }
+        log.info("Operation {}: pooling values of low-cardinality columns {}", operation.getId(), names);
+        return interned;
+    }
+
+    /**
+     * Статистика столбцов из сохраненного результата анализа файла
+     */
+    private Map<String, ColumnStatistics> loadColumnStatistics(FileOperation operation) {
+        if (operation.getAnalysisResult() == null) {
+            return Collections.emptyMap();
+        }
+        try {
+            CsvAnalysisResult analysis = objectMapper.readValue(operation.getAnalysisResult(), CsvAnalysisResult.class);
+            if (analysis.getColumnStatistics() == null) {
+                return Collections.emptyMap();
+            }
+            Map<String, ColumnStatistics> result = new HashMap<>();
+            for (ColumnStatistics column : analysis.getColumnStatistics()) {
+                result.put(column.getName(), column);
+            }
+            return result;
+        } catch (Exception e) {
+            log.warn("Could not read analysis result of operation {}: {}", operation.getId(), e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Поиск повторных вхождений productId во всем файле.
+     * Пакеты видят только свои строки, поэтому без этого товар из разных пакетов
+     * записывался бы несколько раз
+     */
+    private DuplicateRowScanner.DuplicateRows scanDuplicateRows(Path csvFile, Charset charset,
+                                                                FieldMapping mapping, FileOperation operation)
+            throws IOException {
+        DuplicateStrategy strategy = DuplicateStrategy.valueOf(mapping.getDuplicateStrategy());
+        if (strategy == DuplicateStrategy.IGNORE) {
+            return DuplicateRowScanner.DuplicateRows.NONE;
+        }
+
+        String productIdColumn = mapping.getDetails().stream()
+                .filter(d -> "PRODUCT".equals(d.getTargetEntity()) && "productId".equals(d.getTargetField()))
+                .map(FieldMappingDetail::getSourceField)
+                .reduce((first, second) -> second)
+                .orElse(null);
+        if (productIdColumn == null) {
+            return DuplicateRowScanner.DuplicateRows.NONE;
+        }
+
+        return duplicateRowScanner.scan(csvFile, charset, mapping.getCsvQuoteChar(), line -> parseCsvLine(line, mapping), productIdColumn,
+                strategy != DuplicateStrategy.SKIP, operation.getId());
+    }
+
+    /**
+     * Завершение импорта в режиме DELTA: итог сравнения сохраняется в параметрах операции.
+     * Отсутствующие в файле товары удаляются, только если файл прочитан полностью в этом запуске
+     * и без ошибок - иначе непрочитанные строки были бы приняты за удаленные товары
+     */
+    private void completeDelta(FileOperation operation, ImportResult result, boolean resumed) {
+        boolean deleteMissing = deltaDeleteMissing;
+        if (deleteMissing && (resumed || result.getFailedRecords() > 0)) {
+            log.warn("DELTA operation {}: missing products are not deleted ({})", operation.getId(),
+                    resumed ? "operation was resumed from a checkpoint" : result.getFailedRecords() + " failed records");
+            deleteMissing = false;
+        }
+
+        DeltaSummary summary = deltaStrategy.complete(operation.getId(), deleteMissing);
+        if (summary != null) {
+            String params = operation.getProcessingParams();
+            operation.setProcessingParams(params != null
+                    ? params + ";" + summary.toProcessingParams()
+                    : summary.toProcessingParams());
+        }
+    }
+
+    /**
+     * Журналирование пропускной способности и объема WAL для сравнения режимов транзакций
+     */
+    private void logImportStatistics(FileOperation operation, int processedCount, ImportResult result,
+                                     long startNanos, String startLsn) {
+        double seconds = Math.max(0.001, (System.nanoTime() - startNanos) / 1_000_000_000.0);
+        long walBytes = walProbe.bytesSince(startLsn);
+
+        log.info("Import statistics for operation {}: scope={}, records={}, time={}s, throughput={} rec/s, " +
+                        "WAL={} bytes ({} bytes/record), failed={}",
+                operation.getId(), transactionScope, processedCount, String.format("%.2f", seconds),
+                Math.round(processedCount / seconds), walBytes,
+                walBytes >= 0 && processedCount > 0 ? walBytes / processedCount : -1,
+                result.getFailedRecords());
+        log.info("Rows of operation {}: inserted={}, updated={}, unchanged={}",
+                operation.getId(), result.getInsertedRows(), result.getUpdatedRows(), result.getUnchangedRows());
+
+        String stats = ";tx_scope=" + transactionScope
+                + ";duration_ms=" + Math.round(seconds * 1000)
+                + ";records_per_sec=" + Math.round(processedCount / seconds)
+                + (walBytes >= 0 ? ";wal_bytes=" + walBytes : "")
+                + ";rows_inserted=" + result.getInsertedRows()
+                + ";rows_updated=" + result.getUpdatedRows()
+                + ";rows_unchanged=" + result.getUnchangedRows()
+                + ";duplicate_rows=" + result.getDuplicateRows();
+        String params = operation.getProcessingParams();
+        operation.setProcessingParams(params != null ? params + stats : stats.substring(1));
+    }
+
+    /**
+     * Сохранение контрольной точки после записанного пакета.
+     * Выполняется в транзакции пакета, поэтому откатывается вместе с ним
+     */
+    private void saveCheckpoint(Long operationId, long byteOffset, int lineNumber, int processedCount) {
+        checkpointRepository.save(ImportCheckpoint.builder()
+                .operationId(operationId)
+                .byteOffset(byteOffset)
+                .lineNumber(lineNumber)
+                .processedRecords(processedCount)
+                .build());
+    }
+
+    /**
+     * Удаление контрольной точки после завершения операции
+     */
+    private void deleteCheckpoint(Long operationId) {
+        try {
+            checkpointRepository.deleteById(operationId);
+        } catch (Exception e) {
+            log.warn("Failed to delete checkpoint for operation {}: {}", operationId, e.getMessage());
+        }
     }
 
     /**
@@ -220,13 +680,26 @@ public class CsvImportService {
      */
     public BatchProcessResult processBatch(List<Map<String, String>> batchData,
                                            FieldMapping mapping, Client client, FileOperation operation) {
+        return writePreparedBatch(prepareBatch(batchData, mapping, client, operation,
+                handbookIndexService.current()), operation);
+    }
+
+    /**
+     * Этап 1: разбор строк пакета и создание сущностей без обращений к БД.
+     * Выполняется в потоке чтения файла
+     */
+    private PreparedBatch prepareBatch(List<Map<String, String>> batchData, FieldMapping mapping,
+                                       Client client, FileOperation operation, HandbookIndex handbookIndex) {
 
-        log.debug("Processing batch of {} records for {} import", batchData.size(), mapping.getImportType());
+        log.debug("Preparing batch of {} records for {} import", batchData.size(), mapping.getImportType());
+
+        // Проверяем отмену перед разбором пакета
+        cancellationRegistry.checkNotCancelled(operation.getId());
 
         BatchProcessResult result = new BatchProcessResult();
 
         // Используем новый класс для хранения связей
-        EntityRelationshipHolder relationshipHolder = new EntityRelationshipHolder();
+        EntityRelationshipHolder relationshipHolder = new EntityRelationshipHolder(batchData.size());
 
         // Этап 1: Парсинг данных и создание сущностей
         for (Map<String, String> rowData : batchData) {
@@ -263,14 +736,71 @@ public class CsvImportService {
             }
         }
 
-        // Этап 2: Обработка сущностей согласно типу импорта и стратегии
-        DuplicateHandlingStrategy strategy = strategyFactory.getStrategy(
-                DuplicateStrategy.valueOf(mapping.getDuplicateStrategy()));
+        if (relationshipHolder.getCompetitorCount() > 0 && !handbookIndex.isEmpty()) {
+            int matched = linkCompetitorsToHandbook(relationshipHolder, handbookIndex);
+            log.debug("Linked {} of {} competitors to handbook version {}",
+                    matched, relationshipHolder.getCompetitorCount(), handbookIndex.getVersion());
+        }
+
+        return new PreparedBatch(relationshipHolder, mapping, client, batchData.size());
+    }
+
+    /**
+     * Сопоставление конкурентов пакета справочнику сетей по сайту или коду сети
+     * и городу строки (первый регион строки)
+     *
+     * @return количество сопоставленных конкурентов
+     */
+    private int linkCompetitorsToHandbook(EntityRelationshipHolder holder, HandbookIndex handbookIndex) {
+        int matched = 0;
+        for (EntityRelationshipHolder.ImportRow row : holder.getRows()) {
+            List<Competitor> competitors = row.getCompetitors();
+            if (competitors.isEmpty()) {
+                continue;
+            }
+            List<Region> regions = row.getRegions();
+            String regionName = regions.isEmpty() ? null : regions.get(0).getRegion();
+            for (Competitor competitor : competitors) {
+                HandbookIndex.Entry entry = handbookIndex.find(
+                        competitor.getCompetitorName(), competitor.getCompetitorUrl(), regionName);
+                if (entry != null) {
+                    competitor.setHandbookId(entry.getId());
+                    matched++;
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Загружает ли шаблон записи справочника сетей
+     */
+    private static boolean targetsHandbook(FieldMapping mapping) {
+        return "HANDBOOK".equals(mapping.getEntityType())
+                || mapping.getDetails().stream().anyMatch(d -> "HANDBOOK".equals(d.getTargetEntity()));
+    }
+
+    /**
+     * Этап 2: обработка сущностей согласно типу импорта и стратегии.
+     * Выполняется в потоке записи внутри транзакции пакета
+     */
+    private BatchProcessResult writePreparedBatch(PreparedBatch batch, FileOperation operation) {
+        // Проверяем отмену перед записью пакета
+        cancellationRegistry.checkNotCancelled(operation.getId());
+
+        FieldMapping mapping = batch.getMapping();
+        DuplicateStrategy strategyType = DuplicateStrategy.valueOf(mapping.getDuplicateStrategy());
+        DuplicateHandlingStrategy strategy = strategyFactory.getStrategy(strategyType);
 
         if ("COMBINED".equals(mapping.getImportType())) {
-            return processCombinedEntitiesWithStrategy(relationshipHolder, strategy, client.getId());
+            BatchProcessResult result = combinedWriteMode == CombinedWriteMode.STAGING && stagingCombinedWriter.supports(strategyType)
+                    ? processCombinedViaStaging(batch.getHolder(), strategyType, batch.getClient().getId(), operation.getId())
+                    : processCombinedEntitiesWithStrategy(batch.getHolder(), strategy, batch.getClient().getId());
+            processCombinedHandbooks(batch.getHolder(), strategy, batch.getClient().getId(), result);
+            return result;
         } else {
-            return processSingleEntityWithStrategy(relationshipHolder, strategy, mapping.getEntityType(), client.getId());
+            return processSingleEntityWithStrategy(batch.getHolder(), strategy, mapping.getEntityType(),
+                    batch.getClient().getId());
         }
     }
 
@@ -293,18 +823,22 @@ public class CsvImportService {
                 }
                 case "COMPETITOR" -> {
                     // Для SINGLE импорта конкурентов они не связаны с продуктами
-                    for (EntityRelationshipHolder.ImportRow row : holder.getAllRows()) {
+                    for (EntityRelationshipHolder.ImportRow row : holder.getRows()) {
                         entities.addAll(row.getCompetitors());
                     }
                     log.debug("Found {} competitors for SINGLE import", entities.size());
                 }
                 case "REGION" -> {
                     // Для SINGLE импорта регионов они не связаны с продуктами
-                    for (EntityRelationshipHolder.ImportRow row : holder.getAllRows()) {
+                    for (EntityRelationshipHolder.ImportRow row : holder.getRows()) {
                         entities.addAll(row.getRegions());
                     }
                     log.debug("Found {} regions for SINGLE import", entities.size());
                 }
+                case "HANDBOOK" -> {
+                    entities.addAll(holder.getHandbooks());
+                    log.debug("Found {} handbook records for SINGLE import", entities.size());
+                }
                 default -> {
                     log.error("Unknown entity type for SINGLE import: {}", entityType);
                     result.addError("Неизвестный тип сущности: " + entityType);
@@ -328,7 +862,7 @@ public class CsvImportService {
 
         } catch (Exception e) {
             log.error("Error in single entity processing: {}", e.getMessage(), e);
-            result.incrementFailed(holder.getTotalEntitiesCount());
+            result.incrementSaveFailed(holder.getTotalEntitiesCount());
             result.addError("Ошибка обработки импорта: " + e.getMessage());
         }
 
@@ -336,19 +870,39 @@ public class CsvImportService {
     }
 
     /**
-     * Определение типа сущности для SINGLE импорта
+     * Записи справочника сетей из COMBINED импорта не связаны с продуктами и пишутся отдельно
      */
-    private String determineEntityTypeForSingleImport(EntityRelationshipHolder holder) {
-        if (!holder.getAllProducts().isEmpty()) {
-            return "PRODUCT";
-        } else if (!holder.getCompetitorsByProductId().isEmpty()) {
-            return "COMPETITOR";
-        } else if (!holder.getRegionsByProductId().isEmpty()) {
-            return "REGION";
+    private void processCombinedHandbooks(EntityRelationshipHolder holder, DuplicateHandlingStrategy strategy,
+                                          Long clientId, BatchProcessResult result) {
+        if (holder.getHandbookCount() == 0) {
+            return;
+        }
+        try {
+            result.addSaveResult(strategy.process(new ArrayList<>(holder.getHandbooks()), "HANDBOOK",
+                    clientId, new HashMap<>()));
+        } catch (Exception e) {
+            log.error("Error in handbook processing: {}", e.getMessage(), e);
+            result.incrementSaveFailed(holder.getHandbookCount());
+            result.addError("Ошибка записи справочника сетей: " + e.getMessage());
         }
-        return null;
     }
 
+    /**
+     * Обработка COMBINED импорта через промежуточные таблицы
+     */
+    private BatchProcessResult processCombinedViaStaging(EntityRelationshipHolder holder,
+                                                         DuplicateStrategy strategy,
+                                                         Long clientId, Long operationId) {
+        BatchProcessResult result = new BatchProcessResult();
+        try {
+            result.addSaveResult(stagingCombinedWriter.write(holder, strategy, clientId, operationId));
+        } catch (Exception e) {
+            log.error("Error in staged combined processing: {}", e.getMessage(), e);
+            result.incrementSaveFailed(holder.getTotalEntitiesCount());
+            result.addError("Ошибка обработки составного импорта: " + e.getMessage());
+        }
+        return result;
+    }
 
     /**
      * Обработка COMBINED импорта с использованием стратегии
@@ -371,7 +925,7 @@ public class CsvImportService {
                     products = new ArrayList<>(holder.getAllProducts());
 
                     // Собираем все связанные сущности из всех строк
-                    for (EntityRelationshipHolder.ImportRow row : holder.getAllRows()) {
+                    for (EntityRelationshipHolder.ImportRow row : holder.getRows()) {
                         relatedEntities.get("COMPETITOR").addAll(row.getCompetitors());
                         relatedEntities.get("REGION").addAll(row.getRegions());
                     }
@@ -382,27 +936,16 @@ public class CsvImportService {
                     products = new ArrayList<>(holder.getUniqueProducts());
 
                     // Собираем связанные сущности только для первого вхождения каждого productId
-                    Set<String> processedProductIds = new HashSet<>();
-                    for (EntityRelationshipHolder.ImportRow row : holder.getAllRows()) {
-                        if (row.getProductId() != null && !processedProductIds.contains(row.getProductId())) {
-                            processedProductIds.add(row.getProductId());
-                            relatedEntities.get("COMPETITOR").addAll(row.getCompetitors());
-                            relatedEntities.get("REGION").addAll(row.getRegions());
-                        }
+                    for (EntityRelationshipHolder.ImportRow row : holder.getFirstRowsByProductId()) {
+                        relatedEntities.get("COMPETITOR").addAll(row.getCompetitors());
+                        relatedEntities.get("REGION").addAll(row.getRegions());
                     }
                 }
 
-                case OVERRIDE -> {
-                    // OVERRIDE - берем последнее вхождение каждого productId
-                    Map<String, EntityRelationshipHolder.ImportRow> lastRowByProductId = new HashMap<>();
-                    for (EntityRelationshipHolder.ImportRow row : holder.getAllRows()) {
-                        if (row.getProductId() != null) {
-                            lastRowByProductId.put(row.getProductId(), row);
-                        }
-                    }
-
+                case OVERRIDE, DELTA -> {
+                    // OVERRIDE и DELTA - берем последнее вхождение каждого productId
                     products = new ArrayList<>();
-                    for (EntityRelationshipHolder.ImportRow row : lastRowByProductId.values()) {
+                    for (EntityRelationshipHolder.ImportRow row : holder.getLastRowsByProductId()) {
                         products.add(row.getProduct());
                         relatedEntities.get("COMPETITOR").addAll(row.getCompetitors());
                         relatedEntities.get("REGION").addAll(row.getRegions());
@@ -418,7 +961,7 @@ public class CsvImportService {
 
         } catch (Exception e) {
             log.error("Error in combined processing: {}", e.getMessage(), e);
-            result.incrementFailed(holder.getTotalEntitiesCount());
+            result.incrementSaveFailed(holder.getTotalEntitiesCount());
             result.addError("Ошибка обработки составного импорта: " + e.getMessage());
         }
 
@@ -468,6 +1011,7 @@ public class CsvImportService {
                     // Для SINGLE импорта регионов productId может быть null
                     holder.addRegion(rowIdentifier, region);
                 }
+                case "HANDBOOK" -> holder.addHandbook(rowIdentifier, (AvHandbook) entity);
                 default -> log.warn("Unknown entity type: {}", entityType);
             }
         }
@@ -502,6 +1046,12 @@ public class CsvImportService {
 
         if (entity instanceof Product product) {
             product.setOperationId(operationId);
+        } else if (entity instanceof Competitor competitor) {
+            competitor.setOperationId(operationId);
+        } else if (entity instanceof Region region) {
+            region.setOperationId(operationId);
+        } else if (entity instanceof AvHandbook handbook) {
+            handbook.setOperationId(operationId);
         }
     }
 
@@ -585,6 +1135,13 @@ public class CsvImportService {
         }
     }
 
+    /**
+     * Обновление прогресса из транзакции пакета: запись выполняется в отдельной транзакции
+     */
+    private void updateProgressInNewTransaction(FileOperation operation, int processed, long total) {
+        progressTransactionTemplate.executeWithoutResult(status -> updateProgress(operation, processed, total));
+    }
+
     /**
      * Обновление прогресса операции
      */
@@ -604,13 +1161,206 @@ public class CsvImportService {
     }
 
     /**
-     * Результат импорта
+     * Чтение файла пакетами строк с отслеживанием позиции для контрольных точек
+     */
+    private class CsvBatchReader {
+        private final PositionTrackingLineReader reader;
+        private final FieldMapping mapping;
+        private final Long operationId;
+        private final ImportResult result;
+
+        private String[] headers;
+        @Getter
+        private int lineNumber = 0;
+        @Getter
+        private int rowsRead = 0;
+        @Getter
+        private boolean exhausted = false;
+        // Строки с повторным productId, которые не записываются
+        private DuplicateRowScanner.DuplicateRows duplicateRows = DuplicateRowScanner.DuplicateRows.NONE;
+        // Пул канонических строк и столбцы, значения которых в него помещаются
+        private StringInterner interner;
+        private boolean[] internedColumns;
+        // Снимок справочника сетей, закрепленный за операцией
+        private HandbookIndex handbookIndex = HandbookIndex.EMPTY;
+
+        CsvBatchReader(PositionTrackingLineReader reader, FieldMapping mapping, Long operationId, ImportResult result) {
+            this.reader = reader;
+            this.mapping = mapping;
+            this.operationId = operationId;
+            this.result = result;
+        }
+
+        /**
+         * Чтение строки заголовков (первой непустой строки файла)
+         */
+        boolean readHeaders() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                log.info("Header line: {}", line.substring(0, Math.min(line.length(), 100)));
+                headers = parseCsvLine(line, mapping);
+                log.info("Found {} headers: {}", headers.length, Arrays.toString(headers));
+                return true;
+            }
+            exhausted = true;
+            return false;
+        }
+
+        void setDuplicateRows(DuplicateRowScanner.DuplicateRows duplicateRows) {
+            this.duplicateRows = duplicateRows;
+        }
+
+        void setHandbookIndex(HandbookIndex handbookIndex) {
+            this.handbookIndex = handbookIndex;
+        }
+
+        HandbookIndex getHandbookIndex() {
+            return handbookIndex;
+        }
+
+        void setInterner(StringInterner interner, boolean[] internedColumns) {
+            this.interner = interner;
+            this.internedColumns = internedColumns;
+        }
+
+        String[] getHeaders() {
+            return headers;
+        }
+
+        /**
+         * Переход к сохраненной контрольной точке
+         */
+        void seek(long byteOffset, int lineNumber, int rowsRead) throws IOException {
+            reader.seek(byteOffset);
+            this.lineNumber = lineNumber;
+            this.rowsRead = rowsRead;
+        }
+
+        long getPosition() {
+            return reader.getPosition();
+        }
+
+        /**
+         * Чтение следующего пакета строк
+         *
+         * @return строки пакета, пустой список при достижении конца файла
+         */
+        List<Map<String, String>> nextBatch(int size) throws IOException {
+            List<Map<String, String>> batchData = new ArrayList<>(Math.min(size, 1024));
+            int duplicates = 0;
+            String line;
+
+            while (batchData.size() < size && (line = reader.readLine()) != null) {
+                lineNumber++;
+
+                if (lineNumber % CANCELLATION_CHECK_INTERVAL == 0) {
+                    cancellationRegistry.checkNotCancelled(operationId);
+                }
+
+                // Пропускаем пустые строки
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                // Товар записывается строкой-победителем из другого места файла
+                if (duplicateRows.isDuplicate(lineNumber)) {
+                    duplicates++;
+                    continue;
+                }
+
+                try {
+                    String[] values = parseCsvLine(line, mapping);
+                    if (interner != null) {
+                        for (int i = 0; i < values.length && i < internedColumns.length; i++) {
+                            if (internedColumns[i]) {
+                                values[i] = interner.intern(values[i]);
+                            }
+                        }
+                    }
+                    Map<String, String> rowData = createRowMap(headers, values);
+
+                    // Логируем первые несколько строк для диагностики
+                    if (lineNumber <= 5) {
+                        log.info("Line {}: parsed {} values", lineNumber, values.length);
+                        log.info("Row data keys: {}", rowData.keySet());
+                        log.info("Sample row data: {}", rowData.entrySet().stream()
+                                .limit(3)
+                                .collect(Collectors.toMap(
+                                        Map.Entry::getKey,
+                                        e -> e.getValue() != null ? e.getValue() : "NULL"
+                                )));
+                    }
+
+                    batchData.add(rowData);
+                } catch (Exception e) {
+                    log.warn("Error processing line {}: {}", lineNumber, e.getMessage());
+                    result.addError(lineNumber, e.getMessage());
+                }
+            }
+
+            if (batchData.size() < size) {
+                exhausted = true;
+            }
+            rowsRead += batchData.size() + duplicates;
+            result.addDuplicateRows(duplicates);
+            return batchData;
+        }
+    }
+
+    /**
+     * Пакет, разобранный в сущности и готовый к записи, с позицией в файле для контрольной точки
+     */
+    @Getter
+    private static class PreparedBatch {
+        private final EntityRelationshipHolder holder;
+        private final FieldMapping mapping;
+        private final Client client;
+        private final int rowCount;
+        private int firstLine;
+        private int lastLine;
+        private long byteOffset;
+        private long byteLength;
+        private int rowsRead;
+
+        PreparedBatch(EntityRelationshipHolder holder, FieldMapping mapping, Client client, int rowCount) {
+            this.holder = holder;
+            this.mapping = mapping;
+            this.client = client;
+            this.rowCount = rowCount;
+        }
+
+        void setPosition(int firstLine, int lastLine, long startOffset, long byteOffset, int rowsRead) {
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+            this.byteOffset = byteOffset;
+            this.byteLength = byteOffset - startOffset;
+            this.rowsRead = rowsRead;
+        }
+    }
+
+    /**
+     * Результат импорта (заполняется потоками чтения и записи)
      */
     public static class ImportResult {
         @Getter
         private int totalProcessed = 0;
         @Getter
         private long totalRecords = 0;
+        private int failedRecords = 0;
+        // Строки, пропущенные как повторные вхождения productId
+        private int duplicateRows = 0;
+        // Записанные строки: вставленные, обновленные и совпавшие с сохраненными
+        @Getter
+        private long insertedRows = 0;
+        @Getter
+        private long updatedRows = 0;
+        @Getter
+        private long unchangedRows = 0;
         @Getter
         private final List<String> errors = new ArrayList<>();
         private final List<BatchProcessResult> batchResults = new ArrayList<>();
@@ -623,12 +1373,34 @@ public class CsvImportService {
             this.totalRecords = totalRecords;
         }
 
-        public void addError(int lineNumber, String error) {
+        public synchronized void addError(int lineNumber, String error) {
             errors.add("Line " + lineNumber + ": " + error);
         }
 
-        public void addBatchResult(BatchProcessResult result) {
+        public synchronized void addBatchResult(BatchProcessResult result) {
             batchResults.add(result);
+            failedRecords += result.getFailed();
+            for (BatchSaveResult saveResult : result.saveResults) {
+                insertedRows += saveResult.getSaved();
+                updatedRows += saveResult.getUpdated();
+                unchangedRows += saveResult.getUnchanged();
+            }
+        }
+
+        public synchronized void addDuplicateRows(int count) {
+            duplicateRows += count;
+        }
+
+        public synchronized int getDuplicateRows() {
+            return duplicateRows;
+        }
+
+        public synchronized void addFailed(int count) {
+            failedRecords += count;
+        }
+
+        public synchronized int getFailedRecords() {
+            return failedRecords;
         }
     }
 
@@ -640,6 +1412,7 @@ public class CsvImportService {
         private int processed = 0;
         @Getter
         private int failed = 0;
+        private int saveFailed = 0;
         private final List<String> errors = new ArrayList<>();
         private final List<BatchSaveResult> saveResults = new ArrayList<>();
 
@@ -661,6 +1434,19 @@ public class CsvImportService {
 
         public void addSaveResult(BatchSaveResult result) {
             saveResults.add(result);
+            saveFailed += result.getFailed();
+        }
+
+        /**
+         * Ошибка записи в БД (в отличие от ошибок разбора строк)
+         */
+        public void incrementSaveFailed(int count) {
+            failed += count;
+            saveFailed += count;
+        }
+
+        public boolean hasSaveFailures() {
+            return saveFailed > 0;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package my.java.service.file.importer;
+
+/**
+ * Поведение при повторной загрузке файла, уже импортированного тем же шаблоном
+ * (совпадают клиент, SHA-256 содержимого и шаблон маппинга)
+ */
+public enum DuplicateFilePolicy {
+    REJECT, // Отклонить загрузку с сообщением о предыдущей операции
+    LINK,   // Не импортировать, перенаправить на предыдущую операцию
+    FORCE   // Импортировать повторно
+}
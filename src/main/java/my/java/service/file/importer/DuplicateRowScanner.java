@@ -0,0 +1,330 @@
+package my.java.service.file.importer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import my.java.util.ContentHash;
+import my.java.util.PathResolver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Предварительный проход по файлу для выбора одной строки на каждый productId.
+ * Пакеты импорта видят только свои строки, поэтому без этого прохода один и тот же товар
+ * из первого и пятисотого пакета записывается дважды. Отпечатки productId (64-битный хеш)
+ * хранятся в примитивной хеш-таблице; если уникальных ключей больше лимита, таблица
+ * сбрасывается на диск отсортированными сериями, которые затем сливаются
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class DuplicateRowScanner {
+
+    private static final int CANCELLATION_CHECK_INTERVAL = 10_000;
+
+    private final PathResolver pathResolver;
+    private final ImportCancellationRegistry cancellationRegistry;
+
+    // Уникальных ключей в памяти до сброса серии на диск (около 24 байт на ключ)
+    @Value("${application.import.dedup.max-keys-in-memory:2000000}")
+    private int maxKeysInMemory;
+
+    /**
+     * Поиск строк-дубликатов
+     *
+     * @param csvFile файл импорта
+     * @param charset кодировка файла
+     * @param quoteChar символ кавычек (записи читаются так же, как при импорте)
+     * @param parser разбор строки файла на значения (тот же, что при импорте)
+     * @param productIdColumn заголовок столбца с productId
+     * @param lastWins true - побеждает последнее вхождение (OVERRIDE), false - первое (SKIP)
+     * @param operationId операция (для проверки отмены)
+     * @return номера строк, которые нужно пропустить
+     */
+    public DuplicateRows scan(Path csvFile, Charset charset, String quoteChar, Function<String, String[]> parser,
+                              String productIdColumn, boolean lastWins, Long operationId) throws IOException {
+        long start = System.currentTimeMillis();
+        BitSet duplicates = new BitSet();
+        List<Path> runs = new ArrayList<>();
+        FingerprintTable table = new FingerprintTable();
+
+        try (PositionTrackingLineReader reader = new PositionTrackingLineReader(csvFile, charset, quoteChar)) {
+            int column = -1;
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber % CANCELLATION_CHECK_INTERVAL == 0) {
+                    cancellationRegistry.checkNotCancelled(operationId);
+                }
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                if (column < 0) {
+                    column = findColumn(parser.apply(line), productIdColumn);
+                    if (column < 0) {
+                        log.warn("Column '{}' not found in file header, duplicate rows are not filtered", productIdColumn);
+                        return DuplicateRows.NONE;
+                    }
+                    continue;
+                }
+
+                String productId;
+                try {
+                    String[] values = parser.apply(line);
+                    productId = column < values.length ? values[column] : null;
+                } catch (Exception e) {
+                    continue; // Ошибку строки зарегистрирует импорт
+                }
+                if (productId == null || productId.isEmpty()) {
+                    continue;
+                }
+
+                long fingerprint = new ContentHash().add(productId).value();
+                int previous = table.putIfAbsent(fingerprint, lineNumber);
+                if (previous != 0) {
+                    if (lastWins) {
+                        duplicates.set(previous);
+                        table.replace(fingerprint, lineNumber);
+                    } else {
+                        duplicates.set(lineNumber);
+                    }
+                }
+
+                if (table.size() >= Math.max(1, maxKeysInMemory)) {
+                    runs.add(table.spill(pathResolver.getAbsoluteTempDir()));
+                }
+            }
+        }
+
+        try {
+            if (!runs.isEmpty()) {
+                if (table.size() > 0) {
+                    runs.add(table.spill(pathResolver.getAbsoluteTempDir()));
+                }
+                mergeRuns(runs, lastWins, duplicates);
+            }
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+
+        log.info("Duplicate scan of {}: {} duplicate rows ({} wins, {} spilled runs) in {} ms",
+                csvFile.getFileName(), duplicates.cardinality(), lastWins ? "last" : "first",
+                runs.size(), System.currentTimeMillis() - start);
+        return new DuplicateRows(duplicates);
+    }
+
+    /**
+     * Индекс столбца так же, как при построении строки импорта (при повторе заголовка - последний)
+     */
+    private static int findColumn(String[] headers, String name) {
+        int column = -1;
+        for (int i = 0; i < headers.length; i++) {
+            if (name.equals(headers[i])) {
+                column = i;
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Слияние отсортированных серий: для каждого отпечатка каждая серия содержит не более
+     * одной строки - победителя в своей части файла. Из них побеждает первая или последняя
+     */
+    private static void mergeRuns(List<Path> runs, boolean lastWins, BitSet duplicates) throws IOException {
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> a.fingerprint != b.fingerprint
+                ? Long.compare(a.fingerprint, b.fingerprint)
+                : Integer.compare(a.line, b.line));
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                RunReader head = queue.poll();
+                long fingerprint = head.fingerprint;
+                int winner = head.line;
+                advance(head, queue);
+
+                // Строки с тем же отпечатком идут по возрастанию номера строки
+                while (!queue.isEmpty() && queue.peek().fingerprint == fingerprint) {
+                    RunReader same = queue.poll();
+                    if (lastWins) {
+                        duplicates.set(winner);
+                        winner = same.line;
+                    } else {
+                        duplicates.set(same.line);
+                    }
+                    advance(same, queue);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void advance(RunReader reader, PriorityQueue<RunReader> queue) throws IOException {
+        if (reader.next()) {
+            queue.add(reader);
+        }
+    }
+
+    /**
+     * Строки файла, не подлежащие записи
+     */
+    public static final class DuplicateRows {
+        static final DuplicateRows NONE = new DuplicateRows(new BitSet());
+
+        private final BitSet lines;
+
+        private DuplicateRows(BitSet lines) {
+            this.lines = lines;
+        }
+
+        public boolean isDuplicate(int lineNumber) {
+            return lines.get(lineNumber);
+        }
+
+        public int getCount() {
+            return lines.cardinality();
+        }
+    }
+
+    /**
+     * Хеш-таблица с открытой адресацией: отпечаток -> номер строки (0 - свободная ячейка).
+     * Заполнение не более 50%, при росте емкость удваивается
+     */
+    private static final class FingerprintTable {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] lines = new int[INITIAL_CAPACITY];
+        private int mask = INITIAL_CAPACITY - 1;
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return номер строки, уже сохраненной для отпечатка, или 0
+         */
+        int putIfAbsent(long key, int line) {
+            int slot = slot(keys, lines, mask, key);
+            if (lines[slot] != 0) {
+                return lines[slot];
+            }
+            keys[slot] = key;
+            lines[slot] = line;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return 0;
+        }
+
+        void replace(long key, int line) {
+            lines[slot(keys, lines, mask, key)] = line;
+        }
+
+        private static int slot(long[] keys, int[] lines, int mask, long key) {
+            int slot = (int) key & mask;
+            while (lines[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] newKeys = new long[keys.length * 2];
+            int[] newLines = new int[lines.length * 2];
+            int newMask = newKeys.length - 1;
+            for (int i = 0; i < keys.length; i++) {
+                if (lines[i] != 0) {
+                    int slot = slot(newKeys, newLines, newMask, keys[i]);
+                    newKeys[slot] = keys[i];
+                    newLines[slot] = lines[i];
+                }
+            }
+            keys = newKeys;
+            lines = newLines;
+            mask = newMask;
+        }
+
+        /**
+         * Запись содержимого отсортированной по отпечатку серией во временный файл и очистка таблицы
+         */
+        Path spill(Path tempDir) throws IOException {
+            long[] sorted = new long[size];
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (lines[i] != 0) {
+                    sorted[count++] = keys[i];
+                }
+            }
+            Arrays.sort(sorted);
+
+            Files.createDirectories(tempDir);
+            Path run = Files.createTempFile(tempDir, "dedup_", ".run");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run), 256 * 1024))) {
+                for (long key : sorted) {
+                    out.writeLong(key);
+                    out.writeInt(lines[slot(keys, lines, mask, key)]);
+                }
+            }
+
+            keys = new long[INITIAL_CAPACITY];
+            lines = new int[INITIAL_CAPACITY];
+            mask = INITIAL_CAPACITY - 1;
+            size = 0;
+            return run;
+        }
+    }
+
+    /**
+     * Последовательное чтение серии
+     */
+    private static final class RunReader implements Closeable {
+        private final DataInputStream in;
+        private long fingerprint;
+        private int line;
+
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 256 * 1024));
+        }
+
+        boolean next() throws IOException {
+            try {
+                fingerprint = in.readLong();
+                line = in.readInt();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -6,5 +6,6 @@ package my.java.service.file.importer;
 public enum DuplicateStrategy {
     SKIP,     // Пропускать дубликаты (записывать информацию для анализа)
     OVERRIDE, // Обновлять существующие записи
-    IGNORE    // Игнорировать проверку дубликатов (записывать все)
+    IGNORE,   // Игнорировать проверку дубликатов (записывать все)
+    DELTA     // Записывать только новые и измененные товары (файл - полный снимок каталога)
 }
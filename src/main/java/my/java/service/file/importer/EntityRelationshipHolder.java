@@ -1,63 +1,149 @@
 package my.java.service.file.importer;
 
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import my.java.model.entity.AvHandbook;
 import my.java.model.entity.Competitor;
 import my.java.model.entity.Product;
 import my.java.model.entity.Region;
+import my.java.util.ContentHash;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Класс для хранения связей между сущностями при импорте.
- * Поддерживает дубликаты продуктов для стратегии IGNORE
+ * Поддерживает дубликаты продуктов для стратегии IGNORE.
+ * <p>
+ * Строки хранятся по столбцам: порядковый номер строки индексирует массивы productId,
+ * позиции продукта и границ диапазонов в общих списках конкурентов и регионов.
+ * Индекс по productId - хеш-таблица с открытой адресацией (первая и последняя строка ключа),
+ * строки с одинаковым ключом связаны цепочкой. Объекты {@link ImportRow} - легкие
+ * представления, создаваемые при обращении
  */
 @Slf4j
-@Getter
 public class EntityRelationshipHolder {
 
-    // Структура для хранения строки данных
-    @Getter
-    public static class ImportRow {
-        private final Product product;
-        private final List<Competitor> competitors = new ArrayList<>();
-        private final List<Region> regions = new ArrayList<>();
-        private final String productId;
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final int NO_ROW = -1;
 
-        public ImportRow(Product product, String productId) {
-            this.product = product;
-            this.productId = productId;
+    /**
+     * Представление строки импорта поверх хранилища
+     */
+    public static final class ImportRow {
+        private final EntityRelationshipHolder holder;
+        private final int ordinal;
+
+        private ImportRow(EntityRelationshipHolder holder, int ordinal) {
+            this.holder = holder;
+            this.ordinal = ordinal;
         }
 
-        public void addCompetitor(Competitor competitor) {
-            competitors.add(competitor);
+        /**
+         * Порядковый номер строки в пакете
+         */
+        public int getOrdinal() {
+            return ordinal;
         }
 
-        public void addRegion(Region region) {
-            regions.add(region);
+        public String getProductId() {
+            return holder.productIds[ordinal];
         }
-    }
 
-    // Хранение всех строк импорта (поддерживает дубликаты)
-    private final List<ImportRow> importRows = new ArrayList<>();
+        public Product getProduct() {
+            int index = holder.productIndex[ordinal];
+            return index == NO_ROW ? null : holder.products.get(index);
+        }
 
-    // Индекс для быстрого поиска по productId (для стратегий SKIP и OVERRIDE)
-    private final Map<String, List<ImportRow>> rowsByProductId = new HashMap<>();
+        public List<Competitor> getCompetitors() {
+            return Collections.unmodifiableList(
+                    holder.competitors.subList(holder.competitorStart(ordinal), holder.competitorEnd[ordinal]));
+        }
+
+        public List<Region> getRegions() {
+            return Collections.unmodifiableList(
+                    holder.regions.subList(holder.regionStart(ordinal), holder.regionEnd[ordinal]));
+        }
 
-    // Текущая обрабатываемая строка
-    private ImportRow currentRow = null;
+        /**
+         * Хеш связанных записей строки: конкуренты и регионы в порядке файла (без хеша товара).
+         * Хранится в products.related_hash отдельно от content_hash
+         */
+        public long computeRelatedHash() {
+            ContentHash hash = new ContentHash();
+            List<Competitor> rowCompetitors = getCompetitors();
+            for (Competitor competitor : rowCompetitors) {
+                hash.add(competitor.computeContentHash());
+            }
+            hash.add(rowCompetitors.size());
+            List<Region> rowRegions = getRegions();
+            for (Region region : rowRegions) {
+                hash.add(region.computeContentHash());
+            }
+            return hash.add(rowRegions.size()).value();
+        }
+    }
+
+    // Столбцы строк: productId, позиция продукта в products (-1 - нет),
+    // конец диапазона в competitors/regions (начало - конец предыдущей строки),
+    // следующая строка с тем же productId (-1 - нет)
+    private String[] productIds;
+    private int[] productIndex;
+    private int[] competitorEnd;
+    private int[] regionEnd;
+    private int[] nextSameKey;
+    private int rowCount;
+
+    private final List<Product> products;
+    private final List<Competitor> competitors;
+    private final List<Region> regions;
+
+    // Записи справочника сетей не связаны с продуктом, хранятся только в порядке строк
+    private final List<AvHandbook> handbooks = new ArrayList<>();
+    private int committedHandbooks;
+
+    // Индекс по productId: ключ -> первая и последняя строка
+    private String[] indexKeys;
+    private int[] indexFirst;
+    private int[] indexLast;
+    private int indexSize;
+
+    // Текущая обрабатываемая строка: ее конкуренты и регионы уже лежат в конце общих списков
+    private boolean rowOpen;
+    private String currentProductId;
+    private Product currentProduct;
+
+    public EntityRelationshipHolder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedRows ожидаемое количество строк (размер пакета)
+     */
+    public EntityRelationshipHolder(int expectedRows) {
+        int capacity = Math.max(DEFAULT_CAPACITY, expectedRows);
+        productIds = new String[capacity];
+        productIndex = new int[capacity];
+        competitorEnd = new int[capacity];
+        regionEnd = new int[capacity];
+        nextSameKey = new int[capacity];
+        products = new ArrayList<>(capacity);
+        competitors = new ArrayList<>(capacity);
+        regions = new ArrayList<>();
+
+        int indexCapacity = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        indexKeys = new String[indexCapacity];
+        indexFirst = new int[indexCapacity];
+        indexLast = new int[indexCapacity];
+    }
 
     /**
      * Начать новую строку импорта
      */
     public void startNewRow(String productId) {
         log.debug("Starting new row with productId: {}", productId);
-        currentRow = null;
+        // Незавершенная строка (ошибка разбора) отбрасывается вместе со своими сущностями
+        discardCurrentRow();
         if (productId != null) {
-            // Для каждой строки создаем новый ImportRow
-            currentRow = new ImportRow(null, productId);
-            log.debug("Created new ImportRow for productId: {}", productId);
+            openRow(productId);
         }
     }
 
@@ -65,97 +151,89 @@ public class EntityRelationshipHolder {
      * Добавить продукт в текущую строку
      */
     public void addProduct(Product product) {
-        log.debug("Adding product with productId: {}, product.id: {}",
-                product != null ? product.getProductId() : "null",
-                product != null ? product.getId() : "null");
-
-        if (currentRow == null) {
+        if (!rowOpen) {
             // Если строка не была начата, создаем новую
-            String productId = product.getProductId();
-            currentRow = new ImportRow(product, productId);
-            log.debug("Created new ImportRow with product, productId: {}", productId);
-        } else {
-            // Создаем новую строку с продуктом, сохраняя связанные сущности
-            List<Competitor> tempCompetitors = new ArrayList<>(currentRow.getCompetitors());
-            List<Region> tempRegions = new ArrayList<>(currentRow.getRegions());
-
-            currentRow = new ImportRow(product, currentRow.getProductId());
-
-            // Восстанавливаем связанные сущности
-            tempCompetitors.forEach(currentRow::addCompetitor);
-            tempRegions.forEach(currentRow::addRegion);
-
-            log.debug("Replaced product in current row, kept {} competitors and {} regions",
-                    tempCompetitors.size(), tempRegions.size());
+            openRow(product.getProductId());
         }
+        // Продукт строки заменяется, связанные сущности сохраняются
+        currentProduct = product;
+        log.debug("Added product with productId: {} to current row {}", product.getProductId(), currentProductId);
     }
 
     /**
      * Добавить конкурента в текущую строку
      */
     public void addCompetitor(String productId, Competitor competitor) {
-        log.debug("Adding competitor for productId: {}, competitor.name: {}",
-                productId, competitor != null ? competitor.getCompetitorName() : "null");
-
-        if (currentRow == null) {
-            currentRow = new ImportRow(null, productId);
-            log.debug("Created new ImportRow for competitor, productId: {}", productId);
+        if (!rowOpen) {
+            openRow(productId);
         }
-        currentRow.addCompetitor(competitor);
-        log.debug("Added competitor to current row, total competitors: {}", currentRow.getCompetitors().size());
+        competitors.add(competitor);
     }
 
     /**
      * Добавить регион в текущую строку
      */
     public void addRegion(String productId, Region region) {
-        log.debug("Adding region for productId: {}, region.name: {}",
-                productId, region != null ? region.getRegion() : "null");
+        if (!rowOpen) {
+            openRow(productId);
+        }
+        regions.add(region);
+    }
 
-        if (currentRow == null) {
-            currentRow = new ImportRow(null, productId);
-            log.debug("Created new ImportRow for region, productId: {}", productId);
+    /**
+     * Добавить запись справочника сетей в текущую строку
+     */
+    public void addHandbook(String rowId, AvHandbook handbook) {
+        if (!rowOpen) {
+            openRow(rowId);
         }
-        currentRow.addRegion(region);
-        log.debug("Added region to current row, total regions: {}", currentRow.getRegions().size());
+        handbooks.add(handbook);
     }
 
     /**
      * Завершить текущую строку и добавить в общий список
      */
     public void finishCurrentRow() {
-        if (currentRow != null) {
-            log.debug("Finishing current row with identifier: {}, has product: {}, competitors: {}, regions: {}",
-                    currentRow.getProductId(),
-                    currentRow.getProduct() != null,
-                    currentRow.getCompetitors().size(),
-                    currentRow.getRegions().size());
-
-            // Для SINGLE импорта строка может не содержать продукт
-            // Проверяем, есть ли хоть какие-то сущности в строке
-            boolean hasAnyEntities = currentRow.getProduct() != null ||
-                    !currentRow.getCompetitors().isEmpty() ||
-                    !currentRow.getRegions().isEmpty();
-
-            if (hasAnyEntities) {
-                importRows.add(currentRow);
-                log.debug("Added row to importRows, total rows: {}", importRows.size());
-
-                // Добавляем в индекс для быстрого поиска
-                String identifier = currentRow.getProductId(); // это может быть и row_N для SINGLE
-                if (identifier != null) {
-                    rowsByProductId.computeIfAbsent(identifier, k -> new ArrayList<>()).add(currentRow);
-                    log.debug("Added row to index for identifier: {}, total rows for this identifier: {}",
-                            identifier, rowsByProductId.get(identifier).size());
-                }
-            } else {
-                log.warn("Current row has no entities, skipping. Identifier: {}", currentRow.getProductId());
-            }
+        if (!rowOpen) {
+            log.debug("No current row to finish");
+            return;
+        }
 
-            currentRow = null;
+        // Для SINGLE импорта строка может не содержать продукт
+        // Проверяем, есть ли хоть какие-то сущности в строке
+        boolean hasAnyEntities = currentProduct != null
+                || competitors.size() > committedCompetitors()
+                || regions.size() > committedRegions()
+                || handbooks.size() > committedHandbooks;
+        if (!hasAnyEntities) {
+            log.warn("Current row has no entities, skipping. Identifier: {}", currentProductId);
+            rowOpen = false;
+            currentProductId = null;
+            return;
+        }
+
+        ensureRowCapacity();
+        int row = rowCount++;
+        productIds[row] = currentProductId;
+        competitorEnd[row] = competitors.size();
+        regionEnd[row] = regions.size();
+        committedHandbooks = handbooks.size();
+        nextSameKey[row] = NO_ROW;
+        if (currentProduct != null) {
+            productIndex[row] = products.size();
+            products.add(currentProduct);
         } else {
-            log.debug("No current row to finish");
+            productIndex[row] = NO_ROW;
         }
+
+        // Добавляем в индекс для быстрого поиска (для SINGLE это row_N)
+        if (currentProductId != null) {
+            index(currentProductId, row);
+        }
+
+        rowOpen = false;
+        currentProductId = null;
+        currentProduct = null;
     }
 
     /**
@@ -163,40 +241,33 @@ public class EntityRelationshipHolder {
      */
     public void establishDatabaseRelationships(Map<String, Long> productIdToDbId) {
         log.info("Establishing database relationships for {} productIds", productIdToDbId.size());
-        log.debug("ProductId to DB ID mapping: {}", productIdToDbId);
 
         int establishedCompetitorLinks = 0;
         int establishedRegionLinks = 0;
 
-        for (ImportRow row : importRows) {
-            String productId = row.getProductId();
-            Long dbId = productIdToDbId.get(productId);
+        for (int row = 0; row < rowCount; row++) {
+            String productId = productIds[row];
+            Long dbId = productId != null ? productIdToDbId.get(productId) : null;
+            int fromCompetitor = competitorStart(row);
+            int fromRegion = regionStart(row);
 
-            log.debug("Processing row with productId: {}, dbId: {}", productId, dbId);
-
-            if (dbId != null) {
-                // Создаем объект Product только с ID для установки связи
-                Product productRef = new Product();
-                productRef.setId(dbId);
+            if (dbId == null) {
+                log.warn("No DB ID found for productId: {}, skipping {} competitors and {} regions",
+                        productId, competitorEnd[row] - fromCompetitor, regionEnd[row] - fromRegion);
+                continue;
+            }
 
-                // Устанавливаем связи для конкурентов
-                for (Competitor competitor : row.getCompetitors()) {
-                    log.debug("Setting product reference (id={}) for competitor: {}",
-                            dbId, competitor.getCompetitorName());
-                    competitor.setProduct(productRef);
-                    establishedCompetitorLinks++;
-                }
+            // Создаем объект Product только с ID для установки связи
+            Product productRef = new Product();
+            productRef.setId(dbId);
 
-                // Устанавливаем связи для регионов
-                for (Region region : row.getRegions()) {
-                    log.debug("Setting product reference (id={}) for region: {}",
-                            dbId, region.getRegion());
-                    region.setProduct(productRef);
-                    establishedRegionLinks++;
-                }
-            } else {
-                log.warn("No DB ID found for productId: {}, skipping {} competitors and {} regions",
-                        productId, row.getCompetitors().size(), row.getRegions().size());
+            for (int i = fromCompetitor; i < competitorEnd[row]; i++) {
+                competitors.get(i).setProduct(productRef);
+                establishedCompetitorLinks++;
+            }
+            for (int i = fromRegion; i < regionEnd[row]; i++) {
+                regions.get(i).setProduct(productRef);
+                establishedRegionLinks++;
             }
         }
 
@@ -205,59 +276,90 @@ public class EntityRelationshipHolder {
     }
 
     /**
-     * Получить все строки импорта
+     * Получить все строки импорта (изменяемая копия списка)
      */
     public List<ImportRow> getAllRows() {
-        log.debug("Getting all rows, count: {}", importRows.size());
-        return new ArrayList<>(importRows);
+        return new ArrayList<>(getRows());
+    }
+
+    /**
+     * Строки импорта в порядке файла без копирования
+     */
+    public List<ImportRow> getRows() {
+        return new RowList(null);
+    }
+
+    /**
+     * Первое вхождение каждого productId в порядке файла (для SKIP стратегии)
+     */
+    public List<ImportRow> getFirstRowsByProductId() {
+        return selectIndexedRows(indexFirst);
+    }
+
+    /**
+     * Последнее вхождение каждого productId в порядке файла (для OVERRIDE стратегии)
+     */
+    public List<ImportRow> getLastRowsByProductId() {
+        return selectIndexedRows(indexLast);
+    }
+
+    /**
+     * Последнее вхождение productId или null
+     */
+    public ImportRow findLastRow(String productId) {
+        if (productId == null) {
+            return null;
+        }
+        int slot = slot(productId);
+        return indexKeys[slot] != null ? new ImportRow(this, indexLast[slot]) : null;
     }
 
     /**
      * Получить все уникальные продукты (для SKIP стратегии)
      */
     public List<Product> getUniqueProducts() {
-        Map<String, Product> uniqueProducts = new LinkedHashMap<>();
-        for (ImportRow row : importRows) {
-            if (row.getProduct() != null && row.getProductId() != null) {
-                uniqueProducts.putIfAbsent(row.getProductId(), row.getProduct());
+        List<Product> uniqueProducts = new ArrayList<>(Math.min(indexSize, products.size()));
+        BitSet taken = new BitSet(indexKeys.length);
+        for (int row = 0; row < rowCount; row++) {
+            if (productIndex[row] != NO_ROW && productIds[row] != null) {
+                int slot = slot(productIds[row]);
+                if (!taken.get(slot)) {
+                    taken.set(slot);
+                    uniqueProducts.add(products.get(productIndex[row]));
+                }
             }
         }
-        log.debug("Found {} unique products from {} total rows", uniqueProducts.size(), importRows.size());
-        return new ArrayList<>(uniqueProducts.values());
+        log.debug("Found {} unique products from {} total rows", uniqueProducts.size(), rowCount);
+        return uniqueProducts;
     }
 
     /**
-     * Получить все продукты (включая дубликаты для IGNORE стратегии)
+     * Получить все продукты (включая дубликаты для IGNORE стратегии), только для чтения
      */
     public List<Product> getAllProducts() {
-        List<Product> allProducts = importRows.stream()
-                .map(ImportRow::getProduct)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-        log.debug("Getting all products, count: {}", allProducts.size());
-        return allProducts;
+        return Collections.unmodifiableList(products);
     }
 
     /**
      * Получить все конкуренты для продукта
      */
     public List<Competitor> getCompetitorsForProduct(String productId) {
-        List<Competitor> competitors = rowsByProductId.getOrDefault(productId, Collections.emptyList()).stream()
-                .flatMap(row -> row.getCompetitors().stream())
-                .collect(Collectors.toList());
-        log.debug("Found {} competitors for productId: {}", competitors.size(), productId);
-        return competitors;
+        List<Competitor> result = new ArrayList<>();
+        for (int row = firstRow(productId); row != NO_ROW; row = nextSameKey[row]) {
+            result.addAll(competitors.subList(competitorStart(row), competitorEnd[row]));
+        }
+        return result;
     }
 
     /**
      * Получить все регионы для продукта
      */
     public List<Region> getRegionsForProduct(String productId) {
-        List<Region> regions = rowsByProductId.getOrDefault(productId, Collections.emptyList()).stream()
-                .flatMap(row -> row.getRegions().stream())
-                .collect(Collectors.toList());
-        log.debug("Found {} regions for productId: {}", regions.size(), productId);
-        return regions;
+        List<Region> result = new ArrayList<>();
+        for (int row = firstRow(productId); row != NO_ROW; row = nextSameKey[row]) {
+            result.addAll(regions.subList(regionStart(row), regionEnd[row]));
+        }
+        return result;
     }
 
     /**
@@ -265,15 +367,14 @@ public class EntityRelationshipHolder {
      */
     public Map<String, List<Competitor>> getCompetitorsByProductId() {
         Map<String, List<Competitor>> result = new HashMap<>();
-        for (Map.Entry<String, List<ImportRow>> entry : rowsByProductId.entrySet()) {
-            List<Competitor> competitors = entry.getValue().stream()
-                    .flatMap(row -> row.getCompetitors().stream())
-                    .collect(Collectors.toList());
-            if (!competitors.isEmpty()) {
-                result.put(entry.getKey(), competitors);
+        for (String key : indexKeys) {
+            if (key != null) {
+                List<Competitor> list = getCompetitorsForProduct(key);
+                if (!list.isEmpty()) {
+                    result.put(key, list);
+                }
             }
         }
-        log.debug("Competitors by productId mapping size: {}", result.size());
         return result;
     }
 
@@ -282,43 +383,199 @@ public class EntityRelationshipHolder {
      */
     public Map<String, List<Region>> getRegionsByProductId() {
         Map<String, List<Region>> result = new HashMap<>();
-        for (Map.Entry<String, List<ImportRow>> entry : rowsByProductId.entrySet()) {
-            List<Region> regions = entry.getValue().stream()
-                    .flatMap(row -> row.getRegions().stream())
-                    .collect(Collectors.toList());
-            if (!regions.isEmpty()) {
-                result.put(entry.getKey(), regions);
+        for (String key : indexKeys) {
+            if (key != null) {
+                List<Region> list = getRegionsForProduct(key);
+                if (!list.isEmpty()) {
+                    result.put(key, list);
+                }
             }
         }
-        log.debug("Regions by productId mapping size: {}", result.size());
         return result;
     }
 
     /**
-     * Получить маппинг продуктов по productId
+     * Получить маппинг продуктов по productId (последнее вхождение с продуктом)
      */
     public Map<String, Product> getProductsByProductId() {
         Map<String, Product> result = new HashMap<>();
-        for (ImportRow row : importRows) {
-            if (row.getProduct() != null && row.getProductId() != null) {
-                result.put(row.getProductId(), row.getProduct());
+        for (int row = 0; row < rowCount; row++) {
+            if (productIndex[row] != NO_ROW && productIds[row] != null) {
+                result.put(productIds[row], products.get(productIndex[row]));
             }
         }
-        log.debug("Products by productId mapping size: {}", result.size());
         return result;
     }
 
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getCompetitorCount() {
+        return committedCompetitors();
+    }
+
+    public int getRegionCount() {
+        return committedRegions();
+    }
+
+    public int getHandbookCount() {
+        return committedHandbooks;
+    }
+
+    /**
+     * Записи справочника сетей завершенных строк
+     */
+    public List<AvHandbook> getHandbooks() {
+        return Collections.unmodifiableList(handbooks.subList(0, committedHandbooks));
+    }
+
     /**
      * Получить общее количество сущностей
      */
     public int getTotalEntitiesCount() {
-        int count = 0;
-        for (ImportRow row : importRows) {
-            if (row.getProduct() != null) count++;
-            count += row.getCompetitors().size();
-            count += row.getRegions().size();
+        return products.size() + committedCompetitors() + committedRegions() + committedHandbooks;
+    }
+
+    private void openRow(String productId) {
+        rowOpen = true;
+        currentProductId = productId;
+        currentProduct = null;
+    }
+
+    private void discardCurrentRow() {
+        if (!rowOpen) {
+            return;
+        }
+        trim(competitors, committedCompetitors());
+        trim(regions, committedRegions());
+        trim(handbooks, committedHandbooks);
+        rowOpen = false;
+        currentProductId = null;
+        currentProduct = null;
+    }
+
+    private static void trim(List<?> list, int size) {
+        if (list.size() > size) {
+            list.subList(size, list.size()).clear();
+        }
+    }
+
+    private int competitorStart(int row) {
+        return row == 0 ? 0 : competitorEnd[row - 1];
+    }
+
+    private int regionStart(int row) {
+        return row == 0 ? 0 : regionEnd[row - 1];
+    }
+
+    private int committedCompetitors() {
+        return rowCount == 0 ? 0 : competitorEnd[rowCount - 1];
+    }
+
+    private int committedRegions() {
+        return rowCount == 0 ? 0 : regionEnd[rowCount - 1];
+    }
+
+    private void ensureRowCapacity() {
+        if (rowCount < productIds.length) {
+            return;
+        }
+        int capacity = productIds.length * 2;
+        productIds = Arrays.copyOf(productIds, capacity);
+        productIndex = Arrays.copyOf(productIndex, capacity);
+        competitorEnd = Arrays.copyOf(competitorEnd, capacity);
+        regionEnd = Arrays.copyOf(regionEnd, capacity);
+        nextSameKey = Arrays.copyOf(nextSameKey, capacity);
+    }
+
+    private List<ImportRow> selectIndexedRows(int[] indexRows) {
+        BitSet selected = new BitSet(rowCount);
+        for (int slot = 0; slot < indexKeys.length; slot++) {
+            if (indexKeys[slot] != null) {
+                selected.set(indexRows[slot]);
+            }
+        }
+        return new RowList(selected);
+    }
+
+    private int firstRow(String productId) {
+        if (productId == null) {
+            return NO_ROW;
+        }
+        int slot = slot(productId);
+        return indexKeys[slot] != null ? indexFirst[slot] : NO_ROW;
+    }
+
+    /**
+     * Ячейка ключа или первая свободная ячейка цепочки проб
+     */
+    private int slot(String key) {
+        int mask = indexKeys.length - 1;
+        int h = key.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (indexKeys[slot] != null && !indexKeys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void index(String key, int row) {
+        int slot = slot(key);
+        if (indexKeys[slot] != null) {
+            nextSameKey[indexLast[slot]] = row;
+            indexLast[slot] = row;
+            return;
+        }
+        indexKeys[slot] = key;
+        indexFirst[slot] = row;
+        indexLast[slot] = row;
+        // Заполнение таблицы не более 50%
+        if (++indexSize * 2 > indexKeys.length) {
+            growIndex();
+        }
+    }
+
+    private void growIndex() {
+        String[] oldKeys = indexKeys;
+        int[] oldFirst = indexFirst;
+        int[] oldLast = indexLast;
+        indexKeys = new String[oldKeys.length * 2];
+        indexFirst = new int[oldKeys.length * 2];
+        indexLast = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slot(oldKeys[i]);
+                indexKeys[slot] = oldKeys[i];
+                indexFirst[slot] = oldFirst[i];
+                indexLast[slot] = oldLast[i];
+            }
+        }
+    }
+
+    /**
+     * Список строк (все или отмеченные) в порядке файла
+     */
+    private final class RowList extends AbstractList<ImportRow> implements RandomAccess {
+        private final int[] ordinals;
+
+        private RowList(BitSet selected) {
+            if (selected == null) {
+                ordinals = null;
+            } else {
+                ordinals = selected.stream().toArray();
+            }
+        }
+
+        @Override
+        public ImportRow get(int index) {
+            int ordinal = ordinals == null ? Objects.checkIndex(index, rowCount) : ordinals[index];
+            return new ImportRow(EntityRelationshipHolder.this, ordinal);
+        }
+
+        @Override
+        public int size() {
+            return ordinals == null ? rowCount : ordinals.length;
         }
-        log.debug("Total entities count: {}", count);
-        return count;
     }
-}
\ No newline at end of file
+}
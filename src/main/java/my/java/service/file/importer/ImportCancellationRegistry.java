@@ -0,0 +1,64 @@
+package my.java.service.file.importer;
+
+import lombok.extern.slf4j.Slf4j;
+import my.java.exception.ImportCancelledException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр запросов на отмену импорта.
+ * Цикл импорта периодически опрашивает реестр между пакетами и прерывает работу,
+ * если для операции запрошена отмена.
+ */
+@Component
+@Slf4j
+public class ImportCancellationRegistry {
+
+    // operationId -> нужно ли откатывать уже записанные данные
+    private final Map<Long, Boolean> cancellationRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Запросить отмену операции
+     *
+     * @param operationId идентификатор операции
+     * @param rollback удалить ли данные, уже записанные операцией
+     */
+    public void requestCancellation(Long operationId, boolean rollback) {
+        log.info("Cancellation requested for operation {} (rollback={})", operationId, rollback);
+        cancellationRequests.merge(operationId, rollback, Boolean::logicalOr);
+    }
+
+    /**
+     * Проверить, запрошена ли отмена операции
+     */
+    public boolean isCancellationRequested(Long operationId) {
+        return operationId != null && cancellationRequests.containsKey(operationId);
+    }
+
+    /**
+     * Проверить, запрошен ли откат данных при отмене
+     */
+    public boolean isRollbackRequested(Long operationId) {
+        return operationId != null && cancellationRequests.getOrDefault(operationId, false);
+    }
+
+    /**
+     * Бросает ImportCancelledException, если для операции запрошена отмена
+     */
+    public void checkNotCancelled(Long operationId) {
+        if (isCancellationRequested(operationId)) {
+            throw new ImportCancelledException(operationId);
+        }
+    }
+
+    /**
+     * Удалить запрос на отмену после завершения операции
+     */
+    public void clear(Long operationId) {
+        if (operationId != null) {
+            cancellationRequests.remove(operationId);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 // src/main/java/my/java/service/file/importer/ImportOrchestratorService.java
 package my.java.service.file.importer;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import my.java.exception.FileOperationException;
@@ -10,16 +12,22 @@ import my.java.model.FileOperation;
 import my.java.repository.FieldMappingRepository;
 import my.java.repository.FileOperationRepository;
 import my.java.service.client.ClientService;
+import my.java.service.file.analyzer.CsvAnalysisCache;
 import my.java.service.file.analyzer.CsvAnalysisResult;
 import my.java.service.file.analyzer.CsvFileAnalyzer;
 import my.java.util.PathResolver;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -33,15 +41,39 @@ public class ImportOrchestratorService {
 
     private final CsvImportService csvImportService;
     private final CsvFileAnalyzer csvFileAnalyzer;
+    private final CsvAnalysisCache analysisCache;
+    private final ObjectMapper objectMapper;
     private final ClientService clientService;
     private final FieldMappingRepository fieldMappingRepository;
     private final FileOperationRepository fileOperationRepository;
     private final PathResolver pathResolver;
+    private final ImportCancellationRegistry cancellationRegistry;
+    private final ImportPurgeService importPurgeService;
+
+    @Value("${application.import.duplicate-file-policy:LINK}")
+    private DuplicateFilePolicy duplicateFilePolicy;
+
+    // Статусы, в которых операция считается импортом файла (выполненным или выполняющимся)
+    private static final Set<FileOperation.OperationStatus> DUPLICATE_STATUSES = EnumSet.of(
+            FileOperation.OperationStatus.PENDING,
+            FileOperation.OperationStatus.PROCESSING,
+            FileOperation.OperationStatus.COMPLETED);
 
     /**
-     * Запуск импорта файла
+     * Запуск импорта файла с политикой повторной загрузки из настроек
      */
     public FileOperation startImport(Long clientId, MultipartFile file, Long mappingId) {
+        return startImport(clientId, file, mappingId, duplicateFilePolicy);
+    }
+
+    /**
+     * Запуск импорта файла
+     *
+     * @param duplicatePolicy поведение, если тот же файл уже импортирован этим шаблоном
+     * @throws FileOperationException при ошибке или повторной загрузке (для LINK - с адресом предыдущей операции)
+     */
+    public FileOperation startImport(Long clientId, MultipartFile file, Long mappingId,
+                                     DuplicateFilePolicy duplicatePolicy) {
         log.info("=== Starting import process ===");
         log.info("Client ID: {}", clientId);
         log.info("Mapping ID: {}", mappingId);
@@ -65,16 +97,25 @@ public class ImportOrchestratorService {
             validateFile(file, mapping);
             log.info("File validation passed");
 
-            // Сохраняем файл во временную директорию
+            // Сохраняем файл во временную директорию, хеш считается при копировании
             log.info("Saving file to temporary directory...");
-            Path tempFile = pathResolver.saveToTempFile(file, "import_" + clientId);
-            log.info("File saved to: {}", tempFile.toAbsolutePath());
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            Path tempFile = pathResolver.saveToTempFile(file, "import_" + clientId, digest);
+            String fileHash = HexFormat.of().formatHex(digest.digest());
+            log.info("File saved to: {} (SHA-256 {})", tempFile.toAbsolutePath(), fileHash);
+
+            // Повторная загрузка того же файла: один поиск по индексу вместо полного импорта
+            Optional<FileOperation> previous = findPreviousImport(client, fileHash, mapping);
+            if (previous.isPresent()) {
+                handleDuplicate(previous.get(), duplicatePolicy, tempFile);
+            }
 
-            // Анализируем CSV файл
+            // Анализируем CSV файл (повторно загруженный файл берется из кэша или прошлой операции)
             CsvAnalysisResult analysisResult = null;
             if (file.getOriginalFilename().toLowerCase().endsWith(".csv")) {
                 log.info("Analyzing CSV file structure...");
-                analysisResult = csvFileAnalyzer.analyzeFile(tempFile);
+                analysisResult = findStoredAnalysis(fileHash)
+                        .orElseGet(() -> csvFileAnalyzer.analyzeFile(tempFile, fileHash));
                 log.info("CSV analysis completed - detected encoding: {}, delimiter: '{}', {} headers",
                         analysisResult.getEncoding(), analysisResult.getDelimiter(),
                         analysisResult.getHeaders().size());
@@ -86,36 +127,24 @@ public class ImportOrchestratorService {
 
             // Создаем операцию
             log.info("Creating file operation record...");
-            FileOperation operation = createFileOperation(client, file, mapping, tempFile, analysisResult);
+            FileOperation operation = createFileOperation(client, file, mapping, tempFile, fileHash, analysisResult);
             operation = fileOperationRepository.save(operation);
             log.info("Created file operation with ID: {}", operation.getId());
 
             // Запускаем асинхронную обработку
             log.info("Starting async import processing...");
-            CompletableFuture<FileOperation> future = csvImportService.importCsvAsync(
-                    tempFile, mapping, client, operation);
-
-            // Добавляем обработчик завершения для очистки временных файлов
-            FileOperation finalOperation = operation;
-            future.whenComplete((result, throwable) -> {
-                if (throwable != null) {
-                    log.error("Import failed for operation {}: {}", finalOperation.getId(), throwable.getMessage());
-                } else {
-                    log.info("Import completed successfully for operation {}", finalOperation.getId());
-                }
-
-                // Очищаем временный файл
-                try {
-                    pathResolver.deleteFile(tempFile);
-                    log.debug("Cleaned up temporary file: {}", tempFile);
-                } catch (Exception e) {
-                    log.warn("Failed to delete temp file {}: {}", tempFile, e.getMessage());
-                }
-            });
+            submitImport(tempFile, mapping, client, operation);
 
             log.info("=== Import process initiated successfully ===");
             return operation;
 
+        } catch (FileOperationException e) {
+            if (e.getOperationId() != null) {
+                throw e; // Повторная загрузка, перенаправление на предыдущую операцию
+            }
+            log.error("=== Error starting import ===");
+            log.error("Error details: {}", e.getMessage(), e);
+            throw new FileOperationException("Ошибка запуска импорта: " + e.getMessage(), e);
         } catch (Exception e) {
             log.error("=== Error starting import ===");
             log.error("Error details: {}", e.getMessage(), e);
@@ -123,6 +152,84 @@ public class ImportOrchestratorService {
         }
     }
 
+    /**
+     * Предыдущий импорт того же файла тем же шаблоном (выполненный или выполняющийся)
+     */
+    private Optional<FileOperation> findPreviousImport(Client client, String fileHash, FieldMapping mapping) {
+        return fileOperationRepository.findFirstByClientAndFileHashAndFieldMappingIdAndStatusInOrderByIdDesc(
+                client, fileHash, mapping.getId(), DUPLICATE_STATUSES);
+    }
+
+    /**
+     * Обработка повторной загрузки согласно политике.
+     * Для REJECT и LINK временный файл удаляется и импорт не запускается
+     */
+    private void handleDuplicate(FileOperation previous, DuplicateFilePolicy policy, Path tempFile) {
+        if (policy == DuplicateFilePolicy.FORCE) {
+            log.info("File is identical to operation {}, re-importing (policy FORCE)", previous.getId());
+            return;
+        }
+
+        log.info("File is identical to operation {} ({}), policy {}", previous.getId(), previous.getStatus(), policy);
+        try {
+            pathResolver.deleteFile(tempFile);
+        } catch (Exception e) {
+            log.warn("Failed to delete temp file {}: {}", tempFile, e.getMessage());
+        }
+
+        if (policy == DuplicateFilePolicy.LINK) {
+            throw new FileOperationException(
+                    "Этот файл уже импортирован этим шаблоном: операция #" + previous.getId(),
+                    "/operations/" + previous.getId() + "/status",
+                    String.valueOf(previous.getId()));
+        }
+        throw new FileOperationException("Этот файл уже импортирован этим шаблоном (операция #"
+                + previous.getId() + "). Для повторного импорта включите принудительную загрузку");
+    }
+
+    /**
+     * Возобновление прерванной операции импорта.
+     * Чтение продолжается с последней контрольной точки, если она была сохранена
+     *
+     * @param operation операция в статусе PENDING или PROCESSING
+     * @param tempFile сохраненный временный файл операции
+     */
+    public void resumeImport(FileOperation operation, Path tempFile) {
+        Client client = clientService.findClientEntityById(operation.getClient().getId())
+                .orElseThrow(() -> new FileOperationException("Клиент не найден"));
+
+        FieldMapping mapping = fieldMappingRepository.findByIdWithDetails(operation.getFieldMappingId())
+                .orElseThrow(() -> new FileOperationException("Шаблон маппинга не найден"));
+
+        log.info("Resuming import operation {} for file {}", operation.getId(), tempFile);
+        submitImport(tempFile, mapping, client, operation);
+    }
+
+    /**
+     * Запуск асинхронного импорта с очисткой временного файла по завершении
+     */
+    private void submitImport(Path tempFile, FieldMapping mapping, Client client, FileOperation operation) {
+        CompletableFuture<FileOperation> future = csvImportService.importCsvAsync(
+                tempFile, mapping, client, operation);
+
+        // Добавляем обработчик завершения для очистки временных файлов
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                log.error("Import failed for operation {}: {}", operation.getId(), throwable.getMessage());
+            } else {
+                log.info("Import completed successfully for operation {}", operation.getId());
+            }
+
+            // Очищаем временный файл
+            try {
+                pathResolver.deleteFile(tempFile);
+                log.debug("Cleaned up temporary file: {}", tempFile);
+            } catch (Exception e) {
+                log.warn("Failed to delete temp file {}: {}", tempFile, e.getMessage());
+            }
+        });
+    }
+
     /**
      * Форматирование размера файла для логов
      */
@@ -169,6 +276,59 @@ public class ImportOrchestratorService {
         }
     }
 
+    /**
+     * Результат анализа того же файла: из кэша анализатора или из последней операции с таким хешем
+     */
+    private Optional<CsvAnalysisResult> findStoredAnalysis(String fileHash) {
+        Optional<CsvAnalysisResult> cached = analysisCache.get(fileHash);
+        if (cached.isPresent()) {
+            log.info("Reusing cached analysis for file hash {}", fileHash);
+            return cached;
+        }
+
+        return fileOperationRepository.findFirstByFileHashAndAnalysisResultIsNotNullOrderByIdDesc(fileHash)
+                .flatMap(previous -> {
+                    try {
+                        CsvAnalysisResult stored = objectMapper.readValue(previous.getAnalysisResult(), CsvAnalysisResult.class);
+                        log.info("Reusing analysis of operation {} for file hash {}", previous.getId(), fileHash);
+                        analysisCache.put(stored);
+                        return Optional.of(stored);
+                    } catch (JsonProcessingException e) {
+                        log.warn("Stored analysis of operation {} is unreadable: {}", previous.getId(), e.getMessage());
+                        return Optional.empty();
+                    }
+                });
+    }
+
+    /**
+     * Сериализация результата анализа для сохранения в операции
+     */
+    private String serializeAnalysis(CsvAnalysisResult analysisResult) {
+        if (analysisResult == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(analysisResult);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize analysis result: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Сравнение кодировок с учетом псевдонимов ("Windows-1251" и "cp1251" - одна кодировка)
+     */
+    private boolean isSameEncoding(String detected, String expected) {
+        if (detected == null || expected == null) {
+            return detected == expected;
+        }
+        try {
+            return Charset.forName(detected).equals(Charset.forName(expected));
+        } catch (IllegalArgumentException e) {
+            return detected.equalsIgnoreCase(expected);
+        }
+    }
+
     /**
      * Валидация структуры CSV файла
      */
@@ -180,7 +340,7 @@ public class ImportOrchestratorService {
                 mapping.getFileEncoding(), mapping.getCsvDelimiter());
 
         // Проверка кодировки
-        if (!analysisResult.getEncoding().equals(mapping.getFileEncoding())) {
+        if (!isSameEncoding(analysisResult.getEncoding(), mapping.getFileEncoding())) {
             log.warn("File encoding '{}' differs from mapping encoding '{}'",
                     analysisResult.getEncoding(), mapping.getFileEncoding());
             log.warn("This may cause character encoding issues during import");
@@ -233,11 +393,9 @@ public class ImportOrchestratorService {
      * Создание операции импорта файла
      */
     private FileOperation createFileOperation(Client client, MultipartFile file,
-                                              FieldMapping mapping, Path tempFile,
+                                              FieldMapping mapping, Path tempFile, String fileHash,
                                               CsvAnalysisResult analysisResult) {
 
-        String fileHash = calculateFileHash(file);
-
         return FileOperation.builder()
                 .client(client)
                 .operationType(FileOperation.OperationType.IMPORT)
@@ -250,7 +408,8 @@ public class ImportOrchestratorService {
                 .processingProgress(0)
                 .processedRecords(0)
                 .fileHash(fileHash)
-                .totalRecords(analysisResult != null ? (int) analysisResult.getEstimatedLines() : 0)
+                .totalRecords(analysisResult != null ? (int) analysisResult.getRecordCount() : 0)
+                .analysisResult(serializeAnalysis(analysisResult))
                 .processingParams(buildProcessingParams(mapping, analysisResult))
                 .build();
     }
@@ -268,30 +427,6 @@ public class ImportOrchestratorService {
         }
     }
 
-    /**
-     * Расчет хеша файла для проверки целостности
-     */
-    private String calculateFileHash(MultipartFile file) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(file.getBytes());
-
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            return hexString.toString();
-
-        } catch (Exception e) {
-            log.warn("Failed to calculate file hash: {}", e.getMessage());
-            return null;
-        }
-    }
-
     /**
      * Построение параметров обработки
      */
@@ -308,6 +443,7 @@ public class ImportOrchestratorService {
             params.append(";detected_encoding=").append(analysisResult.getEncoding());
             params.append(";detected_delimiter=").append(analysisResult.getDelimiter());
             params.append(";estimated_lines=").append(analysisResult.getEstimatedLines());
+            params.append(";record_count=").append(analysisResult.getRecordCount());
             params.append(";file_size=").append(analysisResult.getFileSize());
         }
 
@@ -323,17 +459,66 @@ public class ImportOrchestratorService {
     }
 
     /**
-     * Отмена операции (если возможно)
+     * Отмена операции (если возможно).
+     * Ожидающая операция отменяется сразу, выполняющейся операции передается запрос
+     * на кооперативную отмену, который проверяется между пакетами
+     *
+     * @param operationId идентификатор операции
+     * @param rollback удалить ли данные, уже записанные выполняющейся операцией
+     * @return true, если отмена принята
      */
-    public boolean cancelOperation(Long operationId) {
+    public boolean cancelOperation(Long operationId, boolean rollback) {
         FileOperation operation = getOperationStatus(operationId);
 
-        if (operation.getStatus() == FileOperation.OperationStatus.PENDING) {
-            operation.markAsFailed("Операция отменена пользователем");
-            fileOperationRepository.save(operation);
-            return true;
+        switch (operation.getStatus()) {
+            case PENDING -> {
+                cancellationRegistry.requestCancellation(operationId, false);
+                operation.markAsCancelled("Операция отменена пользователем");
+                fileOperationRepository.save(operation);
+                return true;
+            }
+            case PROCESSING -> {
+                cancellationRegistry.requestCancellation(operationId, rollback);
+                return true;
+            }
+            default -> {
+                return false; // Операция уже завершена
+            }
+        }
+    }
+
+    /**
+     * Запуск удаления всех данных, записанных операцией импорта.
+     * Прогресс удаления отображается в новой операции (тип PROCESS), ее можно отменить
+     *
+     * @param operationId завершенная (или отмененная, неудачная) операция импорта
+     * @return операция удаления
+     */
+    public FileOperation startPurge(Long operationId) {
+        FileOperation target = getOperationStatus(operationId);
+
+        if (target.getOperationType() != FileOperation.OperationType.IMPORT) {
+            throw new FileOperationException("Удалить можно только данные операции импорта");
+        }
+        if (target.getStatus() == FileOperation.OperationStatus.PENDING
+                || target.getStatus() == FileOperation.OperationStatus.PROCESSING) {
+            throw new FileOperationException("Операция еще выполняется: отмените ее с удалением загруженных данных");
         }
 
-        return false; // Нельзя отменить операцию в процессе
+        FileOperation purge = FileOperation.builder()
+                .client(target.getClient())
+                .operationType(FileOperation.OperationType.PROCESS)
+                .fileName(target.getFileName())
+                .fileType(ImportPurgeService.PURGE_FILE_TYPE)
+                .status(FileOperation.OperationStatus.PENDING)
+                .processingProgress(0)
+                .processedRecords(0)
+                .processingParams(ImportPurgeService.PURGE_PARAM + target.getId())
+                .build();
+        purge = fileOperationRepository.save(purge);
+
+        log.info("Starting purge of operation {} as operation {}", target.getId(), purge.getId());
+        importPurgeService.purgeAsync(purge, target.getId());
+        return purge;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,389 @@
+package my.java.service.file.importer;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import my.java.exception.ImportCancelledException;
+import my.java.model.FileOperation;
+import my.java.repository.FileOperationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Удаление всех данных, записанных одной операцией импорта (по operation_id).
+ * Строки удаляются порциями по возрастанию id (без OFFSET), каждая порция - отдельная
+ * транзакция; между порциями выдерживается пауза, ограничивающая скорость записи WAL
+ * и отставание реплик. Секции competitor_data, целиком состоящие из строк операции,
+ * очищаются командой TRUNCATE вместо построчного удаления.
+ * <p>
+ * Порядок: конкуренты и регионы операции, записи справочника сетей (ссылки конкурентов
+ * на них обнуляются по внешнему ключу), затем ее товары (связанные с ними строки
+ * других операций удаляются каскадно по внешнему ключу)
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ImportPurgeService {
+
+    public static final String PURGE_FILE_TYPE = "PURGE";
+    public static final String PURGE_PARAM = "purge_operation_id=";
+
+    // Наибольшая пауза ради ограничения скорости WAL за одну порцию
+    private static final long MAX_THROTTLE_SLEEP_MS = 10_000;
+    // Интервал проверки отставания реплик
+    private static final long LAG_POLL_MS = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final FileOperationRepository fileOperationRepository;
+    private final ImportCancellationRegistry cancellationRegistry;
+    private final ImportWalProbe walProbe;
+
+    @Value("${application.purge.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${application.purge.pause-ms:20}")
+    private long pauseMs;
+
+    // Предельная скорость записи WAL, байт в секунду (0 - без ограничения)
+    @Value("${application.purge.max-wal-bytes-per-second:33554432}")
+    private long maxWalBytesPerSecond;
+
+    // Предельное отставание реплик, байт WAL (0 - не проверяется)
+    @Value("${application.purge.max-replication-lag-bytes:268435456}")
+    private long maxReplicationLagBytes;
+
+    // Сколько ждать реплику за одну порцию, прежде чем продолжить
+    @Value("${application.purge.max-lag-wait-ms:60000}")
+    private long maxLagWaitMs;
+
+    // Ожидание блокировки секции для TRUNCATE (не дольше - построчное удаление)
+    @Value("${application.purge.lock-timeout-ms:2000}")
+    private long lockTimeoutMs;
+
+    // Операции импорта, данные которых удаляются сейчас
+    private final Set<Long> purging = ConcurrentHashMap.newKeySet();
+
+    private TransactionTemplate truncateTransaction;
+
+    @PostConstruct
+    public void initTransactionTemplate() {
+        truncateTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Счетчики удаленных строк
+     */
+    @Getter
+    public static final class PurgeResult {
+        private long competitors;
+        private long regions;
+        private long handbooks;
+        private long products;
+        private int truncatedPartitions;
+
+        public long getTotal() {
+            return competitors + regions + handbooks + products;
+        }
+
+        String toProcessingParams() {
+            return "purged_competitors=" + competitors
+                    + ";purged_regions=" + regions
+                    + ";purged_handbooks=" + handbooks
+                    + ";purged_products=" + products
+                    + ";truncated_partitions=" + truncatedPartitions;
+        }
+    }
+
+    /**
+     * Асинхронное удаление данных операции импорта с отображением прогресса
+     * в отдельной операции (тип PROCESS), которую можно отменить как импорт
+     *
+     * @param purgeOperation операция удаления (статус PENDING)
+     * @param targetOperationId операция импорта, данные которой удаляются
+     */
+    @Async("fileProcessingExecutor")
+    public CompletableFuture<FileOperation> purgeAsync(FileOperation purgeOperation, Long targetOperationId) {
+        PurgeResult result = new PurgeResult();
+        try {
+            if (cancellationRegistry.isCancellationRequested(purgeOperation.getId())) {
+                purgeOperation.markAsCancelled("Операция отменена пользователем");
+                fileOperationRepository.save(purgeOperation);
+                return CompletableFuture.completedFuture(purgeOperation);
+            }
+            purgeOperation.markAsProcessing();
+            fileOperationRepository.save(purgeOperation);
+
+            purge(targetOperationId, purgeOperation, result);
+
+            purgeOperation.markAsCompleted((int) result.getTotal());
+            purgeOperation.setProcessedRecords((int) result.getTotal());
+            purgeOperation.setProcessingParams(purgeOperation.getProcessingParams() + ";" + result.toProcessingParams());
+            fileOperationRepository.save(purgeOperation);
+
+            // Файл операции снова можно импортировать: завершенная операция больше не считается загрузкой
+            fileOperationRepository.findById(targetOperationId).ifPresent(target -> {
+                if (target.getStatus() == FileOperation.OperationStatus.COMPLETED) {
+                    target.setStatus(FileOperation.OperationStatus.CANCELLED);
+                    target.setErrorMessage("Данные операции удалены (операция #" + purgeOperation.getId() + ")");
+                    fileOperationRepository.save(target);
+                }
+            });
+
+            log.info("Purge of operation {} completed: {} competitors, {} regions, {} handbook records, {} products, " +
+                            "{} partitions truncated", targetOperationId, result.getCompetitors(), result.getRegions(),
+                    result.getHandbooks(), result.getProducts(), result.getTruncatedPartitions());
+            return CompletableFuture.completedFuture(purgeOperation);
+
+        } catch (ImportCancelledException e) {
+            log.info("Purge of operation {} cancelled after {} rows", targetOperationId, result.getTotal());
+            purgeOperation.setProcessingParams(purgeOperation.getProcessingParams() + ";" + result.toProcessingParams());
+            purgeOperation.markAsCancelled("Удаление остановлено пользователем, удалено записей: " + result.getTotal());
+            fileOperationRepository.save(purgeOperation);
+            return CompletableFuture.completedFuture(purgeOperation);
+
+        } catch (Exception e) {
+            log.error("Purge of operation {} failed: {}", targetOperationId, e.getMessage(), e);
+            purgeOperation.markAsFailed("Ошибка удаления данных: " + e.getMessage());
+            fileOperationRepository.save(purgeOperation);
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            cancellationRegistry.clear(purgeOperation.getId());
+        }
+    }
+
+    /**
+     * Синхронное удаление данных операции (например, при отмене импорта с откатом)
+     */
+    public PurgeResult purge(Long operationId) {
+        PurgeResult result = new PurgeResult();
+        purge(operationId, null, result);
+        return result;
+    }
+
+    /**
+     * @param progress операция, в которой отображается прогресс и проверяется отмена (или null)
+     */
+    private void purge(Long operationId, FileOperation progress, PurgeResult result) {
+        if (!purging.add(operationId)) {
+            throw new IllegalStateException("Данные операции " + operationId + " уже удаляются");
+        }
+        try {
+            long start = System.nanoTime();
+            String startLsn = walProbe.currentLsn();
+            long total = countRows(operationId);
+            log.info("Purging {} rows of operation {}", total, operationId);
+            if (progress != null) {
+                progress.setTotalRecords((int) Math.min(Integer.MAX_VALUE, total));
+            }
+
+            clearStage(operationId);
+
+            result.truncatedPartitions = truncateOwnedPartitions(operationId, result);
+            reportProgress(progress, result, total);
+
+            result.competitors += deleteInChunks("competitor_data", operationId, progress, result, total, start, startLsn);
+            result.regions += deleteInChunks("region_data", operationId, progress, result, total, start, startLsn);
+            result.handbooks += deleteInChunks("av_handbook", operationId, progress, result, total, start, startLsn);
+            result.products += deleteInChunks("products", operationId, progress, result, total, start, startLsn);
+
+            log.info("Purge of operation {}: {} rows in {} ms, WAL {} bytes", operationId, result.getTotal(),
+                    (System.nanoTime() - start) / 1_000_000, walProbe.bytesSince(startLsn));
+        } finally {
+            purging.remove(operationId);
+        }
+    }
+
+    private long countRows(Long operationId) {
+        Long count = jdbcTemplate.queryForObject("""
+                SELECT (SELECT COUNT(*) FROM competitor_data WHERE operation_id = ?)
+                     + (SELECT COUNT(*) FROM region_data WHERE operation_id = ?)
+                     + (SELECT COUNT(*) FROM av_handbook WHERE operation_id = ?)
+                     + (SELECT COUNT(*) FROM products WHERE operation_id = ?)
+                """, Long.class, operationId, operationId, operationId, operationId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Промежуточные строки прерванной записи через staging-таблицы
+     */
+    private void clearStage(Long operationId) {
+        int staged = jdbcTemplate.update("DELETE FROM import_stage_competitors WHERE operation_id = ?", operationId)
+                + jdbcTemplate.update("DELETE FROM import_stage_regions WHERE operation_id = ?", operationId)
+                + jdbcTemplate.update("DELETE FROM import_stage_products WHERE operation_id = ?", operationId);
+        if (staged > 0) {
+            log.info("Removed {} staged rows of operation {}", staged, operationId);
+        }
+    }
+
+    /**
+     * Секции competitor_data, содержащие только строки операции (например, исторический месяц,
+     * загруженный одним файлом), очищаются целиком: TRUNCATE не пишет WAL на каждую строку
+     * и не оставляет мертвых версий строк
+     *
+     * @return количество очищенных секций
+     */
+    private int truncateOwnedPartitions(Long operationId, PurgeResult result) {
+        List<String> partitions = jdbcTemplate.queryForList("""
+                SELECT c.relname
+                FROM pg_inherits h
+                JOIN pg_class c ON c.oid = h.inhrelid
+                WHERE h.inhparent = to_regclass('competitor_data')
+                ORDER BY c.relname
+                """, String.class);
+
+        int truncated = 0;
+        for (String partition : partitions) {
+            if (!ownedBy(partition, operationId)) {
+                continue;
+            }
+            try {
+                Long rows = truncateTransaction.execute(status -> {
+                    jdbcTemplate.execute("SET LOCAL lock_timeout = " + Math.max(1, lockTimeoutMs));
+                    jdbcTemplate.execute("LOCK TABLE " + partition + " IN ACCESS EXCLUSIVE MODE");
+                    // Повторная проверка под блокировкой: строки могли добавиться после первой
+                    if (!ownedBy(partition, operationId)) {
+                        return null;
+                    }
+                    Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partition, Long.class);
+                    jdbcTemplate.execute("TRUNCATE " + partition);
+                    return count;
+                });
+                if (rows != null) {
+                    result.competitors += rows;
+                    truncated++;
+                    log.info("Partition {} truncated ({} rows of operation {})", partition, rows, operationId);
+                }
+            } catch (DataAccessException e) {
+                log.info("Partition {} is not truncated, rows will be deleted in chunks: {}", partition, e.getMessage());
+            }
+        }
+        return truncated;
+    }
+
+    /**
+     * Есть ли в секции строки операции и нет ли строк других операций
+     */
+    private boolean ownedBy(String partition, Long operationId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + partition + " WHERE operation_id = ?) " +
+                        "AND NOT EXISTS (SELECT 1 FROM " + partition + " WHERE operation_id IS DISTINCT FROM ?)",
+                Boolean.class, operationId, operationId));
+    }
+
+    /**
+     * Удаление строк операции порциями по возрастанию id
+     *
+     * @return количество удаленных строк
+     */
+    private long deleteInChunks(String table, Long operationId, FileOperation progress, PurgeResult result,
+                                long total, long startNanos, String startLsn) {
+        String sql = "WITH chunk AS (SELECT id FROM " + table +
+                " WHERE operation_id = ? AND id > ? ORDER BY id LIMIT ?), " +
+                "deleted AS (DELETE FROM " + table + " t USING chunk WHERE t.id = chunk.id RETURNING t.id) " +
+                "SELECT COUNT(*), COALESCE(MAX(id), 0) FROM deleted";
+
+        long lastId = 0;
+        long deleted = 0;
+        while (true) {
+            if (progress != null) {
+                cancellationRegistry.checkNotCancelled(progress.getId());
+            }
+            long[] chunk = jdbcTemplate.queryForObject(sql,
+                    (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)},
+                    operationId, lastId, Math.max(1, chunkSize));
+            if (chunk == null || chunk[0] == 0) {
+                break;
+            }
+            deleted += chunk[0];
+            lastId = chunk[1];
+
+            log.debug("Purged {} rows of operation {} from {} (up to id {})", chunk[0], operationId, table, lastId);
+            reportProgress(progress, result, total, deleted);
+            throttle(startNanos, startLsn, progress);
+        }
+        if (deleted > 0) {
+            log.info("Purged {} rows of operation {} from {}", deleted, operationId, table);
+        }
+        return deleted;
+    }
+
+    private void reportProgress(FileOperation progress, PurgeResult result, long total) {
+        reportProgress(progress, result, total, 0);
+    }
+
+    /**
+     * Прогресс в той же операции, которую опрашивает страница статуса импорта
+     *
+     * @param current удалено в текущей таблице (еще не учтено в result)
+     */
+    private void reportProgress(FileOperation progress, PurgeResult result, long total, long current) {
+        if (progress == null) {
+            return;
+        }
+        long done = result.getTotal() + current;
+        progress.setProcessedRecords((int) Math.min(Integer.MAX_VALUE, done));
+        progress.setProcessingProgress(total > 0 ? (int) Math.min(100, done * 100 / total) : 0);
+        try {
+            fileOperationRepository.save(progress);
+        } catch (Exception e) {
+            log.warn("Failed to update purge progress: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Пауза между порциями: постоянная, до средней скорости WAL не выше предельной
+     * и до снижения отставания реплик
+     */
+    private void throttle(long startNanos, String startLsn, FileOperation progress) {
+        long sleepMs = pauseMs;
+
+        if (maxWalBytesPerSecond > 0) {
+            long walBytes = walProbe.bytesSince(startLsn);
+            if (walBytes > 0) {
+                long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+                long requiredMs = walBytes * 1000 / maxWalBytesPerSecond;
+                sleepMs = Math.max(sleepMs, Math.min(MAX_THROTTLE_SLEEP_MS, requiredMs - elapsedMs));
+            }
+        }
+        sleep(sleepMs);
+
+        if (maxReplicationLagBytes > 0) {
+            long waited = 0;
+            long lag;
+            while ((lag = walProbe.replicationLagBytes()) > maxReplicationLagBytes && waited < maxLagWaitMs) {
+                if (waited == 0) {
+                    log.info("Replication lag {} bytes exceeds {}, purge paused", lag, maxReplicationLagBytes);
+                }
+                if (progress != null) {
+                    cancellationRegistry.checkNotCancelled(progress.getId());
+                }
+                sleep(LAG_POLL_MS);
+                waited += LAG_POLL_MS;
+            }
+        }
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Удаление данных прервано", e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+// src/main/java/my/java/service/file/importer/ImportRecoveryService.java
+package my.java.service.file.importer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import my.java.model.FileOperation;
+import my.java.repository.FileOperationRepository;
+import my.java.repository.ImportCheckpointRepository;
+import my.java.util.PathResolver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Восстановление импортов, прерванных остановкой приложения.
+ * При старте находит операции в статусе PENDING/PROCESSING и возобновляет их
+ * с последней контрольной точки, если временный файл еще существует.
+ * Прерванное удаление данных операции запускается заново (повторное удаление безопасно)
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ImportRecoveryService {
+
+    private final FileOperationRepository fileOperationRepository;
+    private final ImportOrchestratorService importOrchestratorService;
+    private final PathResolver pathResolver;
+    private final ImportCheckpointRepository checkpointRepository;
+    private final ImportPurgeService importPurgeService;
+
+    @Value("${application.import.recovery.enabled:true}")
+    private boolean recoveryEnabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedImports() {
+        List<FileOperation> interrupted = new ArrayList<>();
+        interrupted.addAll(fileOperationRepository.findByStatus(FileOperation.OperationStatus.PROCESSING));
+        interrupted.addAll(fileOperationRepository.findByStatus(FileOperation.OperationStatus.PENDING));
+        interrupted.stream().filter(ImportRecoveryService::isPurge).forEach(this::resumePurge);
+        interrupted.removeIf(op -> op.getOperationType() != FileOperation.OperationType.IMPORT);
+
+        if (interrupted.isEmpty()) {
+            return;
+        }
+
+        log.info("Found {} interrupted import operations", interrupted.size());
+
+        for (FileOperation operation : interrupted) {
+            if (!recoveryEnabled) {
+                markInterrupted(operation, "Импорт прерван остановкой приложения");
+                continue;
+            }
+
+            Path tempFile = operation.getSourceFilePath() != null
+                    ? Paths.get(operation.getSourceFilePath())
+                    : null;
+
+            if (tempFile == null || !pathResolver.fileExists(tempFile) || operation.getFieldMappingId() == null) {
+                markInterrupted(operation, "Импорт прерван остановкой приложения, исходный файл недоступен");
+                continue;
+            }
+
+            try {
+                importOrchestratorService.resumeImport(operation, tempFile);
+            } catch (Exception e) {
+                log.error("Failed to resume import operation {}: {}", operation.getId(), e.getMessage(), e);
+                markInterrupted(operation, "Не удалось возобновить импорт: " + e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isPurge(FileOperation operation) {
+        return operation.getOperationType() == FileOperation.OperationType.PROCESS
+                && ImportPurgeService.PURGE_FILE_TYPE.equals(operation.getFileType())
+                && operation.getProcessingParams() != null
+                && operation.getProcessingParams().startsWith(ImportPurgeService.PURGE_PARAM);
+    }
+
+    private void resumePurge(FileOperation operation) {
+        String params = operation.getProcessingParams();
+        int end = params.indexOf(';');
+        String targetId = params.substring(ImportPurgeService.PURGE_PARAM.length(), end >= 0 ? end : params.length());
+        try {
+            log.info("Resuming purge operation {} of import operation {}", operation.getId(), targetId);
+            importPurgeService.purgeAsync(operation, Long.valueOf(targetId));
+        } catch (Exception e) {
+            log.error("Failed to resume purge operation {}: {}", operation.getId(), e.getMessage(), e);
+            operation.markAsFailed("Не удалось возобновить удаление данных: " + e.getMessage());
+            fileOperationRepository.save(operation);
+        }
+    }
+
+    private void markInterrupted(FileOperation operation, String message) {
+        log.warn("Operation {} cannot be resumed: {}", operation.getId(), message);
+        operation.markAsFailed(message);
+        fileOperationRepository.save(operation);
+        checkpointRepository.deleteById(operation.getId());
+
+        if (operation.getSourceFilePath() != null) {
+            pathResolver.deleteFile(Paths.get(operation.getSourceFilePath()));
+        }
+    }
+}
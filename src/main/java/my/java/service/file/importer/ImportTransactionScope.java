@@ -0,0 +1,21 @@
+package my.java.service.file.importer;
+
+/**
+ * Границы транзакций при импорте
+ */
+public enum ImportTransactionScope {
+    BATCH,   // Одна транзакция на пакет: продукты и связанные записи фиксируются вместе
+    BATCHES, // Одна транзакция на N пакетов (application.import.transaction-batches)
+    FILE;    // Одна транзакция на весь файл
+
+    /**
+     * Количество пакетов, фиксируемых одной транзакцией
+     */
+    public int batchesPerTransaction(int configuredBatches) {
+        return switch (this) {
+            case BATCH -> 1;
+            case BATCHES -> Math.max(1, configuredBatches);
+            case FILE -> Integer.MAX_VALUE;
+        };
+    }
+}
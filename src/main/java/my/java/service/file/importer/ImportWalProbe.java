@@ -0,0 +1,64 @@
+package my.java.service.file.importer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Замер объема WAL, записанного PostgreSQL за время импорта.
+ * Значение общее для всего кластера, поэтому при параллельной нагрузке оно приблизительное
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ImportWalProbe {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Текущая позиция WAL или null, если она недоступна
+     */
+    public String currentLsn() {
+        try {
+            return jdbcTemplate.queryForObject("SELECT pg_current_wal_lsn()::text", String.class);
+        } catch (Exception e) {
+            log.debug("WAL position is not available: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Количество байт WAL, записанных с указанной позиции, или -1, если замер невозможен
+     */
+    public long bytesSince(String startLsn) {
+        if (startLsn == null) {
+            return -1;
+        }
+        try {
+            Long bytes = jdbcTemplate.queryForObject(
+                    "SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), ?::pg_lsn)::bigint", Long.class, startLsn);
+            return bytes != null ? bytes : -1;
+        } catch (Exception e) {
+            log.debug("WAL difference is not available: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Наибольшее отставание реплик (байт WAL, еще не примененных репликой) или 0,
+     * если реплик нет или статистика репликации недоступна
+     */
+    public long replicationLagBytes() {
+        try {
+            Long bytes = jdbcTemplate.queryForObject("""
+                    SELECT COALESCE(MAX(pg_wal_lsn_diff(pg_current_wal_lsn(), replay_lsn)), 0)::bigint
+                    FROM pg_stat_replication
+                    """, Long.class);
+            return bytes != null ? bytes : 0;
+        } catch (Exception e) {
+            log.debug("Replication lag is not available: {}", e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+// src/main/java/my/java/service/file/importer/ImportWritePipeline.java
+package my.java.service.file.importer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ограниченный буфер передачи подготовленных пакетов от потока разбора к потоку записи.
+ * Пока писатель сохраняет пакет N, разборщик готовит следующие пакеты;
+ * при заполнении буфера разборщик ждет. Ошибка любой стороны останавливает обе
+ *
+ * @param <T> тип передаваемого пакета
+ */
+@Slf4j
+public class ImportWritePipeline<T> {
+
+    private static final Object END = new Object();
+    private static final Object ABORT = new Object();
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final BlockingQueue<Object> queue;
+    private final AtomicReference<Throwable> writerFailure = new AtomicReference<>();
+
+    /**
+     * @param capacity количество пакетов, ожидающих записи (1 - двойная буферизация, 2 - тройная)
+     */
+    public ImportWritePipeline(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /**
+     * Разбор в текущем потоке и запись в потоке исполнителя через буфер.
+     * Если свободного потока записи нет, пакеты записываются последовательно в текущем потоке.
+     * Ошибка писателя пробрасывается в поток разбора, ошибка разбора останавливает писателя
+     *
+     * @param executor исполнитель потока записи
+     * @param reader источник пакетов потока разбора
+     * @param writer запись всех пакетов источника
+     */
+    public void run(AsyncTaskExecutor executor, Source<T> reader, Writer<T> writer) {
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    writer.writeAll(this::take);
+                } catch (Throwable e) {
+                    fail(e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.warn("No free import writer thread, writing batches sequentially");
+            writer.writeAll(reader);
+            return;
+        }
+
+        try {
+            T batch;
+            while ((batch = reader.next()) != null) {
+                put(batch);
+            }
+            finish();
+            awaitWriter(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new IllegalStateException("Импорт прерван", e);
+        } catch (RuntimeException e) {
+            // Ошибка писателя уже остановила запись, ошибку разбора передаем писателю
+            abort();
+            awaitWriterQuietly(task);
+            throw e;
+        }
+    }
+
+    /**
+     * Ожидание завершения потока записи с пробросом его ошибки
+     */
+    private void awaitWriter(Future<?> task) throws InterruptedException {
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            fail(e.getCause());
+        }
+        rethrowWriterFailure();
+    }
+
+    private void awaitWriterQuietly(Future<?> task) {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.debug("Import writer finished with error: {}", e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Передача пакета писателю. Блокируется, пока в буфере нет места.
+     * Если писатель завершился с ошибкой, она пробрасывается в поток разбора
+     */
+    public void put(T batch) throws InterruptedException {
+        while (!queue.offer(batch, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            rethrowWriterFailure();
+        }
+        rethrowWriterFailure();
+    }
+
+    /**
+     * Получение следующего пакета писателем
+     *
+     * @return пакет или null, если разбор файла завершен
+     * @throws AbortedException если разбор прерван ошибкой
+     */
+    @SuppressWarnings("unchecked")
+    public T take() throws InterruptedException {
+        Object item = queue.take();
+        if (item == END) {
+            // Оставляем маркер для повторных вызовов
+            queue.offer(END);
+            return null;
+        }
+        if (item == ABORT) {
+            queue.offer(ABORT);
+            throw new AbortedException();
+        }
+        return (T) item;
+    }
+
+    /**
+     * Сигнал писателю о том, что все пакеты переданы
+     */
+    public void finish() throws InterruptedException {
+        put(castMarker(END));
+    }
+
+    /**
+     * Прерывание записи: необработанные пакеты отбрасываются
+     */
+    public void abort() {
+        queue.clear();
+        queue.offer(ABORT);
+    }
+
+    /**
+     * Регистрация ошибки писателя
+     */
+    public void fail(Throwable failure) {
+        writerFailure.compareAndSet(null, failure);
+        queue.clear();
+    }
+
+    public Throwable getWriterFailure() {
+        return writerFailure.get();
+    }
+
+    private void rethrowWriterFailure() {
+        Throwable failure = writerFailure.get();
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        throw new IllegalStateException("Ошибка записи пакета: " + failure.getMessage(), failure);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T castMarker(Object marker) {
+        return (T) marker;
+    }
+
+    /**
+     * Источник пакетов
+     */
+    @FunctionalInterface
+    public interface Source<T> {
+        /**
+         * @return следующий пакет или null, если пакетов больше нет
+         */
+        T next() throws InterruptedException;
+    }
+
+    /**
+     * Запись всех пакетов источника
+     */
+    @FunctionalInterface
+    public interface Writer<T> {
+        void writeAll(Source<T> source);
+    }
+
+    /**
+     * Запись прервана со стороны потока разбора
+     */
+    public static class AbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public AbortedException() {
+            super("Запись прервана: разбор файла завершился с ошибкой");
+        }
+    }
+}
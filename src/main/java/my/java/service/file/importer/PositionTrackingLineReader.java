@@ -0,0 +1,179 @@
+// src/main/java/my/java/service/file/importer/PositionTrackingLineReader.java
+package my.java.service.file.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Чтение CSV-записей файла с учетом смещения в байтах.
+ * Позволяет сохранить позицию после записанного пакета и продолжить чтение с нее.
+ * Запись заканчивается байтом '\n' вне кавычек: перевод строки внутри значения в кавычках
+ * (и экранированный обратной косой чертой) остается частью записи, поэтому сохраненная
+ * позиция всегда приходится на границу записи. Кавычки учитываются так же, как при разборе
+ * строки импорта, и записи совпадают с подсчетом при анализе файла.
+ * <p>
+ * Разделители ищутся по байтам, поэтому кодировка должна быть ASCII-совместимой
+ * (UTF-8, windows-1251, KOI8-R, ISO-8859-1 и т.п.); для UTF-16/UTF-32 чтение не поддерживается.
+ * Метка порядка байтов UTF-8 в начале файла пропускается
+ */
+public class PositionTrackingLineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    // Символы, которые должны кодироваться одним байтом со своим ASCII-кодом
+    private static final String ASCII_PROBE = "\n\r\"',;|\t\\ azAZ09";
+
+    private final FileChannel channel;
+    private final InputStream input;
+    private final Charset charset;
+    // Символ кавычек (-1 - записи разделяются только переводом строки)
+    private final int quote;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferLength = 0;
+    private int bufferPosition = 0;
+
+    private byte[] lineBytes = new byte[256];
+
+    /**
+     * Смещение в байтах сразу после последней прочитанной записи
+     */
+    private long position;
+
+    /**
+     * Чтение без учета кавычек (запись - одна строка файла)
+     */
+    public PositionTrackingLineReader(Path file, Charset charset) throws IOException {
+        this(file, charset, null);
+    }
+
+    /**
+     * @param quoteChar символ кавычек CSV (null или пустая строка - без учета кавычек)
+     * @throws IllegalArgumentException если кодировка не ASCII-совместима
+     */
+    public PositionTrackingLineReader(Path file, Charset charset, String quoteChar) throws IOException {
+        if (!isAsciiCompatible(charset)) {
+            throw new IllegalArgumentException("Кодировка " + charset.name() + " не поддерживается импортом: "
+                    + "сохраните файл в UTF-8 или windows-1251");
+        }
+        this.quote = quoteChar != null && !quoteChar.isEmpty() && quoteChar.charAt(0) < 0x80
+                ? quoteChar.charAt(0)
+                : -1;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.input = Channels.newInputStream(channel);
+        this.charset = charset;
+        this.position = 0;
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            skipBom();
+        }
+    }
+
+    /**
+     * Разделители CSV кодируются одним байтом с ASCII-кодом (смещения в байтах однозначны)
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        return Arrays.equals(ASCII_PROBE.getBytes(charset), ASCII_PROBE.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Переход к указанному смещению (начало записи, сохраненное ранее через {@link #getPosition()})
+     */
+    public void seek(long offset) throws IOException {
+        channel.position(offset);
+        bufferLength = 0;
+        bufferPosition = 0;
+        position = offset;
+    }
+
+    /**
+     * Чтение следующей записи без символов конца записи
+     *
+     * @return запись или null, если достигнут конец файла
+     */
+    public String readLine() throws IOException {
+        int lineLength = 0;
+        boolean readAnything = false;
+        boolean inQuotes = false;
+        boolean escaped = false;
+
+        while (true) {
+            if (!fill()) {
+                return readAnything ? decode(lineLength) : null;
+            }
+
+            readAnything = true;
+            byte b = buffer[bufferPosition++];
+            position++;
+
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == quote) {
+                // Удвоенная кавычка внутри значения меняет состояние дважды
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                return decode(lineLength);
+            }
+
+            if (lineLength == lineBytes.length) {
+                lineBytes = Arrays.copyOf(lineBytes, lineBytes.length * 2);
+            }
+            lineBytes[lineLength++] = b;
+        }
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    private boolean fill() throws IOException {
+        if (bufferPosition < bufferLength) {
+            return true;
+        }
+        bufferLength = input.read(buffer, 0, BUFFER_SIZE);
+        bufferPosition = 0;
+        if (bufferLength <= 0) {
+            bufferLength = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private void skipBom() throws IOException {
+        while (bufferLength < UTF8_BOM.length) {
+            int read = input.read(buffer, bufferLength, BUFFER_SIZE - bufferLength);
+            if (read <= 0) {
+                break;
+            }
+            bufferLength += read;
+        }
+        if (bufferLength >= UTF8_BOM.length && Arrays.equals(buffer, 0, UTF8_BOM.length, UTF8_BOM, 0, UTF8_BOM.length)) {
+            bufferPosition = UTF8_BOM.length;
+            position = UTF8_BOM.length;
+        }
+    }
+
+    private String decode(int length) {
+        if (length > 0 && lineBytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(lineBytes, 0, length, charset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,153 @@
+package my.java.service.file.importer;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import my.java.model.entity.Region;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш справочника регионов (regions) по клиентам.
+ * При первом обращении справочник клиента загружается целиком; отсутствующие значения
+ * добавляются одной командой INSERT ... ON CONFLICT DO NOTHING на пакет. Справочник пополняется
+ * в отдельной транзакции: откат пакета импорта не оставляет в кэше несуществующих ссылок
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RegionDictionaryCache {
+
+    private static final char KEY_SEPARATOR = '\u001F';
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    // clientId -> (город + адрес) -> regions.id
+    private final Map<Long, Map<String, Long>> clients = new ConcurrentHashMap<>();
+
+    private TransactionTemplate dictionaryTransaction;
+
+    @PostConstruct
+    public void initTransactionTemplate() {
+        dictionaryTransaction = new TransactionTemplate(transactionManager);
+        dictionaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Выставляет regionId всем регионам пакета
+     */
+    public void resolve(List<Region> regions) {
+        Map<Long, List<Region>> byClient = new HashMap<>();
+        for (Region region : regions) {
+            byClient.computeIfAbsent(region.getClientId(), k -> new ArrayList<>()).add(region);
+        }
+
+        for (Map.Entry<Long, List<Region>> entry : byClient.entrySet()) {
+            Map<String, Long> dictionary = clients.computeIfAbsent(entry.getKey(), this::load);
+
+            Map<String, Region> missing = new LinkedHashMap<>();
+            for (Region region : entry.getValue()) {
+                String key = key(region.getRegion(), region.getRegionAddress());
+                Long id = dictionary.get(key);
+                if (id != null) {
+                    region.setRegionId(id);
+                } else {
+                    missing.putIfAbsent(key, region);
+                }
+            }
+
+            if (!missing.isEmpty()) {
+                dictionary.putAll(insertMissing(entry.getKey(), missing.values()));
+                for (Region region : entry.getValue()) {
+                    if (region.getRegionId() == null) {
+                        region.setRegionId(dictionary.get(key(region.getRegion(), region.getRegionAddress())));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Сброс справочника клиента (например, после удаления его данных)
+     */
+    public void evict(Long clientId) {
+        clients.remove(clientId);
+    }
+
+    private Map<String, Long> load(Long clientId) {
+        Map<String, Long> dictionary = new ConcurrentHashMap<>();
+        dictionaryTransaction.executeWithoutResult(status -> jdbcTemplate.query(
+                "SELECT id, region, region_address FROM regions WHERE client_id = ?",
+                rs -> {
+                    dictionary.put(key(rs.getString(2), rs.getString(3)), rs.getLong(1));
+                }, clientId));
+        log.info("Loaded {} regions of client {}", dictionary.size(), clientId);
+        return dictionary;
+    }
+
+    /**
+     * Добавление отсутствующих значений и чтение их идентификаторов
+     * (в том числе добавленных параллельным импортом)
+     */
+    private Map<String, Long> insertMissing(Long clientId, Collection<Region> missing) {
+        String[] names = new String[missing.size()];
+        String[] addresses = new String[missing.size()];
+        int i = 0;
+        for (Region region : missing) {
+            names[i] = region.getRegion();
+            addresses[i] = region.getRegionAddress();
+            i++;
+        }
+
+        Map<String, Long> resolved = new HashMap<>();
+        dictionaryTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement("""
+                        INSERT INTO regions (client_id, region, region_address, created_at)
+                        SELECT ?, t.region, t.region_address, CURRENT_TIMESTAMP
+                        FROM unnest(?::varchar[], ?::varchar[]) AS t(region, region_address)
+                        ON CONFLICT DO NOTHING
+                        """);
+                ps.setLong(1, clientId);
+                ps.setArray(2, con.createArrayOf("varchar", names));
+                ps.setArray(3, con.createArrayOf("varchar", addresses));
+                return ps;
+            });
+
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement("""
+                        SELECT r.id, r.region, r.region_address
+                        FROM regions r
+                        JOIN unnest(?::varchar[], ?::varchar[]) AS t(region, region_address)
+                          ON COALESCE(r.region, '') = COALESCE(t.region, '')
+                         AND COALESCE(r.region_address, '') = COALESCE(t.region_address, '')
+                        WHERE r.client_id = ?
+                        """);
+                ps.setArray(1, con.createArrayOf("varchar", names));
+                ps.setArray(2, con.createArrayOf("varchar", addresses));
+                ps.setLong(3, clientId);
+                return ps;
+            }, rs -> {
+                resolved.put(key(rs.getString(2), rs.getString(3)), rs.getLong(1));
+            });
+        });
+
+        log.debug("Added {} regions to dictionary of client {}", resolved.size(), clientId);
+        return resolved;
+    }
+
+    /**
+     * Ключ справочника: NULL и пустая строка не различаются (как в уникальном индексе)
+     */
+    private static String key(String region, String address) {
+        return (region != null ? region : "") + KEY_SEPARATOR + (address != null ? address : "");
+    }
+}
@@ -0,0 +1,345 @@
+package my.java.service.file.importer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import my.java.model.entity.Competitor;
+import my.java.model.entity.Product;
+import my.java.model.entity.Region;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Запись пакета COMBINED импорта через промежуточные таблицы.
+ * Строки пакета загружаются командой COPY в нежурналируемые таблицы import_stage_*
+ * с бизнес-ключом product_id; идентификаторы товаров (найденные или выданные последовательностью)
+ * проставляются запросами, и конкуренты с регионами вставляются через INSERT ... SELECT ... JOIN.
+ * В Java не возвращаются ни идентификаторы, ни ссылки на товары
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class StagingCombinedWriter {
+
+    private static final String PRODUCT_COLUMNS = """
+            client_id, data_source, product_id, product_name, product_brand, product_bar,
+            product_description, product_url, product_category1, product_category2, product_category3,
+            product_price, product_analog, product_additional1, product_additional2, product_additional3,
+            product_additional4, product_additional5""";
+
+    private static final String COMPETITOR_COLUMNS = """
+            competitor_name, competitor_price, competitor_promotional_price, competitor_time,
+            competitor_date, competitor_local_date_time, competitor_stock_status, competitor_additional_price,
+            competitor_commentary, competitor_product_name, competitor_additional, competitor_additional2,
+            competitor_url, competitor_web_cache_url, competitor_price_value, competitor_promotional_price_value,
+            competitor_observed_at, observed_month, handbook_id""";
+
+    /**
+     * Естественный ключ конкурента (uq_competitor_data_natural_key) в рамках одного клиента
+     */
+    private static final String COMPETITOR_KEY = """
+            s.target_id, COALESCE(c.competitor_name, ''), md5(COALESCE(c.competitor_url, '')), c.observed_month""";
+
+    private static final String COMPETITOR_OVERRIDE_CONFLICT = """
+             ON CONFLICT (client_id, (COALESCE(product_id, 0)), (COALESCE(competitor_name, '')),
+                         (md5(COALESCE(competitor_url, ''))), observed_month)
+            DO UPDATE SET
+                competitor_price = EXCLUDED.competitor_price,
+                competitor_promotional_price = EXCLUDED.competitor_promotional_price,
+                competitor_time = EXCLUDED.competitor_time,
+                competitor_date = EXCLUDED.competitor_date,
+                competitor_local_date_time = EXCLUDED.competitor_local_date_time,
+                competitor_stock_status = EXCLUDED.competitor_stock_status,
+                competitor_additional_price = EXCLUDED.competitor_additional_price,
+                competitor_commentary = EXCLUDED.competitor_commentary,
+                competitor_product_name = EXCLUDED.competitor_product_name,
+                competitor_additional = EXCLUDED.competitor_additional,
+                competitor_additional2 = EXCLUDED.competitor_additional2,
+                competitor_web_cache_url = EXCLUDED.competitor_web_cache_url,
+                competitor_price_value = EXCLUDED.competitor_price_value,
+                competitor_promotional_price_value = EXCLUDED.competitor_promotional_price_value,
+                competitor_observed_at = EXCLUDED.competitor_observed_at,
+                handbook_id = COALESCE(EXCLUDED.handbook_id, competitor_data.handbook_id)""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RegionDictionaryCache regionDictionaryCache;
+
+    /**
+     * Поддерживается ли стратегия (DELTA сравнивает строки со снимком в памяти и пишет сама)
+     */
+    public boolean supports(DuplicateStrategy strategy) {
+        return strategy == DuplicateStrategy.IGNORE
+                || strategy == DuplicateStrategy.SKIP
+                || strategy == DuplicateStrategy.OVERRIDE;
+    }
+
+    /**
+     * Запись пакета. Выполняется в транзакции пакета, поэтому промежуточные строки
+     * видны только ей и при ошибке откатываются вместе с записанными данными
+     */
+    @Transactional
+    public BatchSaveResult write(EntityRelationshipHolder holder, DuplicateStrategy strategy,
+                                 Long clientId, Long operationId) {
+        BatchSaveResult result = new BatchSaveResult();
+        List<EntityRelationshipHolder.ImportRow> rows = selectRows(holder, strategy);
+        if (rows.isEmpty()) {
+            return result;
+        }
+
+        copyRows(rows, clientId, operationId);
+
+        if (strategy != DuplicateStrategy.IGNORE) {
+            // Существующие товары клиента по бизнес-ключу
+            jdbcTemplate.update("""
+                    UPDATE import_stage_products s SET target_id = p.id
+                    FROM products p
+                    WHERE s.operation_id = ? AND s.product_id IS NOT NULL
+                      AND p.client_id = s.client_id AND p.product_id = s.product_id
+                    """, operationId);
+        }
+
+        // Новым товарам идентификаторы выдаются заранее, чтобы связать с ними строки пакета
+        int newProducts = jdbcTemplate.update("""
+                UPDATE import_stage_products
+                SET target_id = nextval(pg_get_serial_sequence('products', 'id')), is_new = TRUE
+                WHERE operation_id = ? AND target_id IS NULL
+                """, operationId);
+        int existingProducts = rows.size() - newProducts;
+
+        result.setSaved(jdbcTemplate.update(
+                "INSERT INTO products (id, " + PRODUCT_COLUMNS + ", operation_id, content_hash, created_at, updated_at) " +
+                        "SELECT target_id, " + PRODUCT_COLUMNS + ", operation_id, content_hash, " +
+                        "CURRENT_TIMESTAMP, CURRENT_TIMESTAMP " +
+                        "FROM import_stage_products WHERE operation_id = ? AND is_new ORDER BY row_no",
+                operationId));
+
+        boolean override = strategy == DuplicateStrategy.OVERRIDE;
+        if (override && existingProducts > 0) {
+            // Связанные записи переписываются только у измененных товаров (до обновления хеша)
+            deleteRelatedOfChanged(operationId);
+            int updated = updateExistingProducts(operationId);
+            result.setUpdated(updated);
+            result.setUnchanged(existingProducts - updated);
+        } else if (strategy == DuplicateStrategy.SKIP) {
+            result.addSkipped(existingProducts);
+        }
+
+        // При SKIP связанные записи существующих товаров не пишутся
+        String relatedFilter = strategy == DuplicateStrategy.SKIP ? " AND s.is_new" : "";
+        // OVERRIDE обновляет запись конкурента с тем же естественным ключом (у неизмененных товаров
+        // она сохранилась); повторы ключа в пакете отбрасываются - команда не меняет строку дважды
+        int competitors = jdbcTemplate.update(
+                "INSERT INTO competitor_data (client_id, product_id, operation_id, " + COMPETITOR_COLUMNS + ", created_at, updated_at) " +
+                        "SELECT " + (override ? "DISTINCT ON (" + COMPETITOR_KEY + ") " : "") +
+                        "c.client_id, s.target_id, c.operation_id, " + prefixed("c.", COMPETITOR_COLUMNS) +
+                        ", CURRENT_TIMESTAMP, CURRENT_TIMESTAMP " +
+                        "FROM import_stage_competitors c " +
+                        "JOIN import_stage_products s ON s.operation_id = c.operation_id AND s.row_no = c.row_no " +
+                        "WHERE c.operation_id = ?" + relatedFilter +
+                        (override
+                                ? " ORDER BY " + COMPETITOR_KEY + ", c.row_no DESC, c.ctid DESC" + COMPETITOR_OVERRIDE_CONFLICT
+                                // Естественный ключ конкурента уникален (uq_competitor_data_natural_key)
+                                : " ON CONFLICT DO NOTHING"),
+                operationId);
+        // У неизмененных товаров OVERRIDE регионы остались, добавляются только новые
+        String regionFilter = override
+                ? " AND NOT EXISTS (SELECT 1 FROM region_data d WHERE d.product_id = s.target_id AND d.region_id = r.region_id)"
+                : relatedFilter;
+        int regions = jdbcTemplate.update(
+                "INSERT INTO region_data (client_id, product_id, region_id, operation_id, created_at, updated_at) " +
+                        "SELECT r.client_id, s.target_id, r.region_id, r.operation_id, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP " +
+                        "FROM import_stage_regions r " +
+                        "JOIN import_stage_products s ON s.operation_id = r.operation_id AND s.row_no = r.row_no " +
+                        "WHERE r.operation_id = ?" + regionFilter,
+                operationId);
+        result.setSaved(result.getSaved() + competitors + regions);
+
+        if (override && existingProducts > 0) {
+            invalidateRelatedHashes(operationId);
+        }
+
+        // Промежуточные строки больше не нужны (при ошибке они откатываются вместе с транзакцией)
+        clearStage(operationId);
+
+        log.debug("Staged batch of operation {}: {} products ({} new), {} competitors, {} regions",
+                operationId, rows.size(), newProducts, competitors, regions);
+        return result;
+    }
+
+    /**
+     * Строки пакета для записи: IGNORE - все, SKIP - первое вхождение productId,
+     * OVERRIDE - последнее вхождение (как в стратегиях дубликатов)
+     */
+    private List<EntityRelationshipHolder.ImportRow> selectRows(EntityRelationshipHolder holder,
+                                                                DuplicateStrategy strategy) {
+        List<EntityRelationshipHolder.ImportRow> rows = switch (strategy) {
+            case IGNORE -> holder.getAllRows();
+            case OVERRIDE -> new ArrayList<>(holder.getLastRowsByProductId());
+            default -> new ArrayList<>(holder.getFirstRowsByProductId());
+        };
+        rows.removeIf(row -> row.getProduct() == null);
+        return rows;
+    }
+
+    /**
+     * Загрузка строк пакета в промежуточные таблицы командой COPY
+     */
+    private void copyRows(List<EntityRelationshipHolder.ImportRow> rows, Long clientId, Long operationId) {
+        StringBuilder products = new StringBuilder(rows.size() * 256);
+        StringBuilder competitors = new StringBuilder();
+        StringBuilder regions = new StringBuilder();
+
+        // Регионы загружаются уже ссылками на справочник
+        List<Region> rowRegions = new ArrayList<>();
+        for (EntityRelationshipHolder.ImportRow row : rows) {
+            rowRegions.addAll(row.getRegions());
+        }
+        regionDictionaryCache.resolve(rowRegions);
+
+        for (int rowNo = 0; rowNo < rows.size(); rowNo++) {
+            EntityRelationshipHolder.ImportRow row = rows.get(rowNo);
+            Product p = row.getProduct();
+            csvLine(products, operationId, rowNo, clientId,
+                    p.getDataSource() != null ? p.getDataSource().name() : "FILE",
+                    p.getProductId(), p.getProductName(), p.getProductBrand(), p.getProductBar(),
+                    p.getProductDescription(), p.getProductUrl(), p.getProductCategory1(),
+                    p.getProductCategory2(), p.getProductCategory3(),
+                    p.getProductPrice() != null ? p.getProductPrice().toPlainString() : null,
+                    p.getProductAnalog(), p.getProductAdditional1(), p.getProductAdditional2(),
+                    p.getProductAdditional3(), p.getProductAdditional4(), p.getProductAdditional5(),
+                    p.computeContentHash(), row.computeRelatedHash());
+
+            for (Competitor c : row.getCompetitors()) {
+                csvLine(competitors, operationId, rowNo, clientId,
+                        c.getCompetitorName(), c.getCompetitorPrice(), c.getCompetitorPromotionalPrice(),
+                        c.getCompetitorTime(), c.getCompetitorDate(),
+                        c.getCompetitorLocalDateTime() != null ? c.getCompetitorLocalDateTime().toString() : null,
+                        c.getCompetitorStockStatus(), c.getCompetitorAdditionalPrice(), c.getCompetitorCommentary(),
+                        c.getCompetitorProductName(), c.getCompetitorAdditional(), c.getCompetitorAdditional2(),
+                        c.getCompetitorUrl(), c.getCompetitorWebCacheUrl(),
+                        c.getCompetitorPriceValue() != null ? c.getCompetitorPriceValue().toPlainString() : null,
+                        c.getCompetitorPromotionalPriceValue() != null
+                                ? c.getCompetitorPromotionalPriceValue().toPlainString() : null,
+                        c.getCompetitorObservedAt() != null ? c.getCompetitorObservedAt().toString() : null,
+                        c.getObservedMonth() != null ? c.getObservedMonth().toString() : null,
+                        c.getHandbookId());
+            }
+            for (Region r : row.getRegions()) {
+                csvLine(regions, operationId, rowNo, clientId, r.getRegionId());
+            }
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+            try {
+                copyManager.copyIn("COPY import_stage_products (operation_id, row_no, " + PRODUCT_COLUMNS +
+                        ", content_hash, related_hash) FROM STDIN WITH (FORMAT csv)", new StringReader(products.toString()));
+                if (!competitors.isEmpty()) {
+                    copyManager.copyIn("COPY import_stage_competitors (operation_id, row_no, client_id, " +
+                            COMPETITOR_COLUMNS + ") FROM STDIN WITH (FORMAT csv)", new StringReader(competitors.toString()));
+                }
+                if (!regions.isEmpty()) {
+                    copyManager.copyIn("COPY import_stage_regions (operation_id, row_no, client_id, region_id) " +
+                            "FROM STDIN WITH (FORMAT csv)", new StringReader(regions.toString()));
+                }
+            } catch (IOException e) {
+                throw new SQLException("COPY into staging tables failed: " + e.getMessage(), e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Обновление существующих товаров, содержимое которых изменилось
+     */
+    private int updateExistingProducts(Long operationId) {
+        return jdbcTemplate.update("""
+                UPDATE products p SET
+                    product_name = s.product_name, product_brand = s.product_brand, product_bar = s.product_bar,
+                    product_description = s.product_description, product_url = s.product_url,
+                    product_category1 = s.product_category1, product_category2 = s.product_category2,
+                    product_category3 = s.product_category3, product_price = s.product_price,
+                    product_analog = s.product_analog, product_additional1 = s.product_additional1,
+                    product_additional2 = s.product_additional2, product_additional3 = s.product_additional3,
+                    product_additional4 = s.product_additional4, product_additional5 = s.product_additional5,
+                    content_hash = s.content_hash, updated_at = CURRENT_TIMESTAMP
+                FROM import_stage_products s
+                WHERE s.operation_id = ? AND NOT s.is_new AND p.id = s.target_id
+                  AND p.content_hash IS DISTINCT FROM s.content_hash
+                """, operationId);
+    }
+
+    /**
+     * Удаление прежних конкурентов и регионов существующих товаров, содержимое которых изменилось.
+     * Вызывается до {@link #updateExistingProducts}, пока в products хранится прежний хеш
+     */
+    private void deleteRelatedOfChanged(Long operationId) {
+        String changedIds = """
+                SELECT s.target_id FROM import_stage_products s
+                JOIN products p ON p.id = s.target_id
+                WHERE s.operation_id = ? AND NOT s.is_new AND p.content_hash IS DISTINCT FROM s.content_hash""";
+        jdbcTemplate.update("DELETE FROM competitor_data WHERE product_id IN (" + changedIds + ")", operationId);
+        jdbcTemplate.update("DELETE FROM region_data WHERE product_id IN (" + changedIds + ")", operationId);
+    }
+
+    /**
+     * Сброс хешей связанных записей, сверенных режимом DELTA, у существующих товаров,
+     * которым записаны другие связанные записи
+     */
+    private void invalidateRelatedHashes(Long operationId) {
+        jdbcTemplate.update("""
+                UPDATE products p SET related_hash = NULL
+                FROM import_stage_products s
+                WHERE s.operation_id = ? AND NOT s.is_new AND p.id = s.target_id
+                  AND p.related_hash IS NOT NULL AND p.related_hash <> s.related_hash
+                """, operationId);
+    }
+
+    private void clearStage(Long operationId) {
+        jdbcTemplate.update("DELETE FROM import_stage_competitors WHERE operation_id = ?", operationId);
+        jdbcTemplate.update("DELETE FROM import_stage_regions WHERE operation_id = ?", operationId);
+        jdbcTemplate.update("DELETE FROM import_stage_products WHERE operation_id = ?", operationId);
+    }
+
+    /**
+     * Строка в формате CSV команды COPY: NULL - пустое поле без кавычек, строки - в кавычках
+     */
+    private static void csvLine(StringBuilder out, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            Object value = values[i];
+            if (value instanceof String s) {
+                out.append('"');
+                for (int j = 0; j < s.length(); j++) {
+                    char c = s.charAt(j);
+                    if (c == '"') {
+                        out.append('"');
+                    }
+                    out.append(c);
+                }
+                out.append('"');
+            } else if (value != null) {
+                out.append(value);
+            }
+        }
+        out.append('\n');
+    }
+
+    private static String prefixed(String prefix, String columns) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (String column : columns.split(",")) {
+            joiner.add(prefix + column.trim());
+        }
+        return joiner.toString();
+    }
+}
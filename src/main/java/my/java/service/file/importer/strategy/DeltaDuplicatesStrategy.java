@@ -0,0 +1,320 @@
+package my.java.service.file.importer.strategy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import my.java.model.entity.Competitor;
+import my.java.model.entity.ImportableEntity;
+import my.java.model.entity.Product;
+import my.java.model.entity.Region;
+import my.java.repository.CompetitorRepository;
+import my.java.repository.RegionRepository;
+import my.java.service.file.importer.BatchEntityProcessor;
+import my.java.service.file.importer.BatchSaveResult;
+import my.java.service.file.importer.DuplicateStrategy;
+import my.java.service.file.importer.EntityRelationshipHolder;
+import my.java.util.SqlParameterChunks;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Стратегия DELTA: файл - полный снимок каталога клиента, записывается только разница.
+ * Перед первым пакетом операции из БД читается выборка (product_id, content_hash, related_hash)
+ * товаров клиента. Для каждой строки файла хеш товара и хеш его конкурентов и регионов
+ * сравниваются с сохраненными: новые товары вставляются, измененные обновляются (связанные записи
+ * перезаписываются), у товаров с изменившимися только связанными записями переписываются
+ * связанные записи, совпадающие не записываются. content_hash - тот же хеш товара, что в OVERRIDE. После файла товары, которых в нем
+ * не было, можно удалить ({@link #complete})
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class DeltaDuplicatesStrategy implements DuplicateHandlingStrategy {
+
+    private final BatchEntityProcessor batchEntityProcessor;
+    private final CompetitorRepository competitorRepository;
+    private final RegionRepository regionRepository;
+
+    // Снимки выполняющихся операций
+    private final Map<Long, OperationState> operations = new ConcurrentHashMap<>();
+
+    @Override
+    public BatchSaveResult process(List<ImportableEntity> entities, String entityType,
+                                   Long clientId, Map<String, Object> existingData) {
+
+        // Разница вычисляется только для товаров, остальные сущности записываются как есть
+        if (!"PRODUCT".equals(entityType)) {
+            return batchEntityProcessor.saveBatch(entities, entityType, DuplicateStrategy.IGNORE);
+        }
+        return processCombined(entities, Collections.emptyMap(), clientId, null);
+    }
+
+    @Override
+    public BatchSaveResult processCombined(List<ImportableEntity> productEntities,
+                                           Map<String, List<ImportableEntity>> relatedEntities,
+                                           Long clientId) {
+        return processCombined(productEntities, relatedEntities, clientId, null);
+    }
+
+    @Override
+    public BatchSaveResult processCombined(List<ImportableEntity> productEntities,
+                                           Map<String, List<ImportableEntity>> relatedEntities,
+                                           Long clientId,
+                                           EntityRelationshipHolder holder) {
+
+        BatchSaveResult result = new BatchSaveResult();
+        if (productEntities.isEmpty()) {
+            return result;
+        }
+
+        Long operationId = ((Product) productEntities.get(0)).getOperationId();
+        OperationState state = stateFor(operationId, clientId);
+
+        List<ImportableEntity> toInsert = new ArrayList<>();
+        List<Product> toUpdate = new ArrayList<>();
+        List<Product> relatedChanged = new ArrayList<>();
+        List<ImportableEntity> ambiguous = new ArrayList<>();
+        // Хеши связанных записей строк файла (нет строки - связанные записи не сравниваются)
+        Map<Product, Long> relatedHashes = new IdentityHashMap<>();
+        int unchanged = 0;
+
+        for (ImportableEntity entity : productEntities) {
+            Product product = (Product) entity;
+            // Последнее вхождение productId в пакете (как при OVERRIDE)
+            EntityRelationshipHolder.ImportRow row = holder != null ? holder.findLastRow(product.getProductId()) : null;
+            product.setContentHash(product.computeContentHash());
+            if (row != null) {
+                relatedHashes.put(product, row.computeRelatedHash());
+            }
+
+            DeltaSnapshot.Match match = product.getProductId() != null
+                    ? state.snapshot.lookup(product.getProductId())
+                    : null;
+
+            if (match == null) {
+                toInsert.add(product);
+            } else if (match.isAmbiguous()) {
+                ambiguous.add(product);
+            } else if (match.hasSameContent(product.getContentHash())) {
+                product.setId(match.getId());
+                Long relatedHash = relatedHashes.get(product);
+                if (relatedHash == null || match.hasSameRelated(relatedHash)) {
+                    unchanged++;
+                } else {
+                    // Товар не изменился: переписываются только связанные записи
+                    relatedChanged.add(product);
+                }
+            } else {
+                product.setId(match.getId());
+                toUpdate.add(product);
+            }
+        }
+
+        List<Product> written = new ArrayList<>(
+                toInsert.size() + toUpdate.size() + relatedChanged.size() + ambiguous.size());
+        List<Long> replacedIds = new ArrayList<>();
+
+        if (!toInsert.isEmpty()) {
+            BatchSaveResult insertResult = batchEntityProcessor.saveBatch(toInsert, "PRODUCT", DuplicateStrategy.IGNORE);
+            result.setSaved(insertResult.getSaved());
+            result.setFailed(insertResult.getFailed());
+            toInsert.forEach(e -> written.add((Product) e));
+        }
+
+        int updated = 0;
+        if (!toUpdate.isEmpty()) {
+            updated = batchEntityProcessor.updateProducts(toUpdate);
+            written.addAll(toUpdate);
+            toUpdate.forEach(p -> replacedIds.add(p.getId()));
+        }
+
+        if (!relatedChanged.isEmpty()) {
+            updated += relatedChanged.size();
+            written.addAll(relatedChanged);
+            relatedChanged.forEach(p -> replacedIds.add(p.getId()));
+        }
+        result.setUpdated(updated);
+
+        // Несколько товаров с одним product_id в БД: запись через OVERRIDE
+        if (!ambiguous.isEmpty()) {
+            BatchSaveResult overrideResult = batchEntityProcessor.saveBatch(ambiguous, "PRODUCT", DuplicateStrategy.OVERRIDE);
+            result.setSaved(result.getSaved() + overrideResult.getSaved());
+            result.setUpdated(result.getUpdated() + overrideResult.getUpdated());
+            result.setFailed(result.getFailed() + overrideResult.getFailed());
+            unchanged += overrideResult.getUnchanged();
+            for (ImportableEntity entity : ambiguous) {
+                Product product = (Product) entity;
+                written.add(product);
+                if (product.getId() != null) {
+                    replacedIds.add(product.getId());
+                }
+            }
+        }
+
+        int changed = toUpdate.size() + relatedChanged.size() + ambiguous.size();
+        result.setUnchanged(unchanged);
+        state.summary.add(toInsert.size(), changed, unchanged);
+
+        // Связанные записи измененных товаров заменяются новыми
+        if (!replacedIds.isEmpty()) {
+            deleteRelatedEntities(replacedIds);
+        }
+        boolean relatedSaved = saveRelatedEntities(written, holder, relatedEntities, result);
+
+        Map<Long, Long> storedRelatedHashes = new HashMap<>();
+        for (Product product : written) {
+            if (product.getId() == null) {
+                continue;
+            }
+            Long relatedHash = relatedSaved ? relatedHashes.get(product) : null;
+            if (relatedHash != null) {
+                storedRelatedHashes.put(product.getId(), relatedHash);
+            }
+            if (product.getProductId() != null) {
+                state.snapshot.recordWritten(product.getProductId(), product.getId(), product.getContentHash(),
+                        relatedHash != null ? relatedHash : DeltaSnapshot.NO_HASH);
+            }
+        }
+        // Связанные записи товаров теперь совпадают со строками файла
+        if (!storedRelatedHashes.isEmpty()) {
+            batchEntityProcessor.storeRelatedHashes(storedRelatedHashes);
+        }
+
+        log.info("DELTA strategy: {} inserted, {} changed, {} unchanged of {} products",
+                toInsert.size(), changed, unchanged, productEntities.size());
+
+        return result;
+    }
+
+    @Override
+    public DuplicateStrategy getType() {
+        return DuplicateStrategy.DELTA;
+    }
+
+    /**
+     * Завершение операции: подсчет (и при необходимости удаление) товаров,
+     * отсутствующих в файле. Состояние операции освобождается
+     *
+     * @param operationId идентификатор операции
+     * @param deleteMissing удалять ли товары, которых нет в файле
+     * @return итог или null, если операция не записала ни одного пакета
+     */
+    public DeltaSummary complete(Long operationId, boolean deleteMissing) {
+        OperationState state = operations.remove(operationId);
+        if (state == null) {
+            return null;
+        }
+
+        long[] missing = state.snapshot.unseenIds();
+        int deleted = 0;
+        if (deleteMissing && missing.length > 0) {
+            List<Long> ids = new ArrayList<>(missing.length);
+            for (long id : missing) {
+                ids.add(id);
+            }
+            deleted = batchEntityProcessor.deleteProductsByIds(ids);
+            log.info("DELTA operation {}: deleted {} products missing from the file", operationId, deleted);
+        }
+        state.summary.setMissing(missing.length, deleted);
+
+        log.info("DELTA operation {} summary: {}", operationId, state.summary.toProcessingParams());
+        return state.summary;
+    }
+
+    /**
+     * Освобождение состояния операции без подсчета итога (ошибка или отмена)
+     */
+    public void release(Long operationId) {
+        if (operationId != null && operations.remove(operationId) != null) {
+            log.debug("Released DELTA snapshot of operation {}", operationId);
+        }
+    }
+
+    private OperationState stateFor(Long operationId, Long clientId) {
+        return operations.computeIfAbsent(operationId, id -> {
+            long start = System.currentTimeMillis();
+            DeltaSnapshot.Builder builder = DeltaSnapshot.builder(clientId);
+            batchEntityProcessor.forEachProductHash(clientId, builder::add);
+            DeltaSnapshot snapshot = builder.build();
+
+            log.info("DELTA operation {}: loaded {} products of client {} in {} ms",
+                    id, snapshot.size(), clientId, System.currentTimeMillis() - start);
+
+            DeltaSummary summary = new DeltaSummary();
+            summary.setExisting(snapshot.size());
+            return new OperationState(snapshot, summary);
+        });
+    }
+
+    private void deleteRelatedEntities(List<Long> productIds) {
+        for (List<Long> chunk : SqlParameterChunks.partition(productIds)) {
+            competitorRepository.deleteByProductIdIn(chunk);
+            regionRepository.deleteByProductIdIn(chunk);
+        }
+    }
+
+    /**
+     * Запись связанных сущностей только для записанных товаров
+     *
+     * @param fallbackRelated связанные сущности без holder (записываются как есть)
+     * @return true, если все связанные записи записаны без ошибок
+     */
+    private boolean saveRelatedEntities(List<Product> written,
+                                     EntityRelationshipHolder holder,
+                                     Map<String, List<ImportableEntity>> fallbackRelated,
+                                     BatchSaveResult result) {
+        Map<String, List<ImportableEntity>> related = new HashMap<>();
+        if (holder == null) {
+            related.putAll(fallbackRelated);
+        } else {
+            List<ImportableEntity> competitors = new ArrayList<>();
+            List<ImportableEntity> regions = new ArrayList<>();
+            for (Product product : written) {
+                EntityRelationshipHolder.ImportRow row = holder.findLastRow(product.getProductId());
+                if (row == null || product.getId() == null) {
+                    continue;
+                }
+                Product productRef = new Product();
+                productRef.setId(product.getId());
+                for (Competitor competitor : row.getCompetitors()) {
+                    competitor.setProduct(productRef);
+                    competitors.add(competitor);
+                }
+                for (Region region : row.getRegions()) {
+                    region.setProduct(productRef);
+                    regions.add(region);
+                }
+            }
+            related.put("COMPETITOR", competitors);
+            related.put("REGION", regions);
+        }
+
+        boolean saved = true;
+        for (Map.Entry<String, List<ImportableEntity>> entry : related.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                BatchSaveResult relatedResult = batchEntityProcessor.saveBatch(
+                        entry.getValue(), entry.getKey(), DuplicateStrategy.IGNORE);
+                result.setSaved(result.getSaved() + relatedResult.getSaved());
+                result.setFailed(result.getFailed() + relatedResult.getFailed());
+                // Записи, уже существующие по естественному ключу, не вставляются
+                result.addSkipped(relatedResult.getSkipped());
+                saved &= relatedResult.getFailed() == 0;
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Снимок и итог выполняющейся операции
+     */
+    private static final class OperationState {
+        private final DeltaSnapshot snapshot;
+        private final DeltaSummary summary;
+
+        OperationState(DeltaSnapshot snapshot, DeltaSummary summary) {
+            this.snapshot = snapshot;
+            this.summary = summary;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package my.java.service.file.importer.strategy;
+
+import my.java.util.ContentHash;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Снимок текущего состояния товаров клиента для импорта в режиме DELTA.
+ * Хранит отсортированную по хешу ключа выборку (хеш product_id, id, хеш товара,
+ * хеш связанных записей) в примитивных массивах: 2 млн товаров занимают около 70 МБ. Каждая строка файла
+ * ищется двоичным поиском и отмечается как встреченная; товары, не встреченные
+ * до конца файла, отсутствуют в новом снимке каталога
+ */
+final class DeltaSnapshot {
+
+    // Хеш отсутствует (строка записана до появления content_hash или связанные записи не сверены)
+    static final long NO_HASH = Long.MIN_VALUE;
+
+    private final long clientId;
+    private final long[] keyHashes;
+    private final long[] ids;
+    private final long[] contentHashes;
+    private final long[] relatedHashes;
+    // Позиции, хеш ключа которых встречается в выборке несколько раз (дубликаты product_id)
+    private final BitSet ambiguous;
+    private final BitSet seen;
+
+    // Товары, записанные этой операцией (повторное вхождение productId в следующих пакетах)
+    private final Map<String, Match> written = new HashMap<>();
+
+    private DeltaSnapshot(long clientId, long[] keyHashes, long[] ids, long[] contentHashes, long[] relatedHashes) {
+        this.clientId = clientId;
+        this.keyHashes = keyHashes;
+        this.ids = ids;
+        this.contentHashes = contentHashes;
+        this.relatedHashes = relatedHashes;
+        this.ambiguous = new BitSet(keyHashes.length);
+        this.seen = new BitSet(keyHashes.length);
+
+        for (int i = 1; i < keyHashes.length; i++) {
+            if (keyHashes[i] == keyHashes[i - 1]) {
+                ambiguous.set(i - 1);
+                ambiguous.set(i);
+            }
+        }
+    }
+
+    /**
+     * Хеш ключа товара. Вероятность совпадения хешей разных ключей 64 бит
+     * для 2 млн товаров - порядка 1e-7
+     */
+    static long keyHash(String productId) {
+        return new ContentHash().add(productId).value();
+    }
+
+    long getClientId() {
+        return clientId;
+    }
+
+    int size() {
+        return keyHashes.length;
+    }
+
+    /**
+     * Поиск товара по ключу с отметкой о том, что товар присутствует в файле
+     *
+     * @return совпадение или null, если товара нет в БД
+     */
+    synchronized Match lookup(String productId) {
+        Match writtenMatch = written.get(productId);
+        if (writtenMatch != null) {
+            return writtenMatch;
+        }
+
+        long key = keyHash(productId);
+        int index = Arrays.binarySearch(keyHashes, key);
+        if (index < 0) {
+            return null;
+        }
+        if (ambiguous.get(index)) {
+            // Отмечаем все строки с этим ключом: их разрешает стратегия OVERRIDE
+            int from = index;
+            while (from > 0 && keyHashes[from - 1] == key) {
+                from--;
+            }
+            for (int i = from; i < keyHashes.length && keyHashes[i] == key; i++) {
+                seen.set(i);
+            }
+            return Match.AMBIGUOUS;
+        }
+        seen.set(index);
+        return new Match(ids[index], contentHashes[index], relatedHashes[index]);
+    }
+
+    /**
+     * Запоминает товар, записанный операцией
+     */
+    synchronized void recordWritten(String productId, long id, long contentHash, long relatedHash) {
+        written.put(productId, new Match(id, contentHash, relatedHash));
+    }
+
+    /**
+     * Идентификаторы товаров, не встреченных в файле (проход по выборке)
+     */
+    synchronized long[] unseenIds() {
+        long[] result = new long[keyHashes.length - seen.cardinality()];
+        int count = 0;
+        for (int i = seen.nextClearBit(0); i < keyHashes.length; i = seen.nextClearBit(i + 1)) {
+            result[count++] = ids[i];
+        }
+        return result;
+    }
+
+    /**
+     * Построение снимка из выборки в произвольном порядке
+     */
+    static Builder builder(long clientId) {
+        return new Builder(clientId);
+    }
+
+    /**
+     * Найденный товар: идентификатор и сохраненные хеши товара и связанных записей
+     */
+    static final class Match {
+        static final Match AMBIGUOUS = new Match(-1, NO_HASH, NO_HASH);
+
+        private final long id;
+        private final long contentHash;
+        private final long relatedHash;
+
+        Match(long id, long contentHash, long relatedHash) {
+            this.id = id;
+            this.contentHash = contentHash;
+            this.relatedHash = relatedHash;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        boolean isAmbiguous() {
+            return this == AMBIGUOUS;
+        }
+
+        boolean hasSameContent(long hash) {
+            return contentHash != NO_HASH && contentHash == hash;
+        }
+
+        boolean hasSameRelated(long hash) {
+            return relatedHash != NO_HASH && relatedHash == hash;
+        }
+    }
+
+    /**
+     * Накопление выборки в растущих примитивных массивах
+     */
+    static final class Builder {
+        private final long clientId;
+        private long[] keyHashes = new long[1024];
+        private long[] ids = new long[1024];
+        private long[] contentHashes = new long[1024];
+        private long[] relatedHashes = new long[1024];
+        private int size;
+
+        private Builder(long clientId) {
+            this.clientId = clientId;
+        }
+
+        void add(long id, String productId, Long contentHash, Long relatedHash) {
+            if (size == keyHashes.length) {
+                int capacity = size * 2;
+                keyHashes = Arrays.copyOf(keyHashes, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                contentHashes = Arrays.copyOf(contentHashes, capacity);
+                relatedHashes = Arrays.copyOf(relatedHashes, capacity);
+            }
+            keyHashes[size] = keyHash(productId);
+            ids[size] = id;
+            contentHashes[size] = contentHash != null ? contentHash : NO_HASH;
+            relatedHashes[size] = relatedHash != null ? relatedHash : NO_HASH;
+            size++;
+        }
+
+        DeltaSnapshot build() {
+            long[] keys = Arrays.copyOf(keyHashes, size);
+            long[] idValues = Arrays.copyOf(ids, size);
+            long[] hashes = Arrays.copyOf(contentHashes, size);
+            long[] related = Arrays.copyOf(relatedHashes, size);
+            sort(keys, idValues, hashes, related);
+            keyHashes = ids = contentHashes = relatedHashes = null;
+            return new DeltaSnapshot(clientId, keys, idValues, hashes, related);
+        }
+
+        /**
+         * Пирамидальная сортировка параллельных массивов по первому массиву:
+         * без упаковки в объекты и без дополнительной памяти
+         */
+        private static void sort(long[] keys, long[] a, long[] b, long[] c) {
+            int n = keys.length;
+            for (int i = n / 2 - 1; i >= 0; i--) {
+                siftDown(keys, a, b, c, i, n);
+            }
+            for (int end = n - 1; end > 0; end--) {
+                swap(keys, a, b, c, 0, end);
+                siftDown(keys, a, b, c, 0, end);
+            }
+        }
+
+        private static void siftDown(long[] keys, long[] a, long[] b, long[] c, int root, int n) {
+            while (true) {
+                int child = 2 * root + 1;
+                if (child >= n) {
+                    return;
+                }
+                if (child + 1 < n && keys[child + 1] > keys[child]) {
+                    child++;
+                }
+                if (keys[root] >= keys[child]) {
+                    return;
+                }
+                swap(keys, a, b, c, root, child);
+                root = child;
+            }
+        }
+
+        private static void swap(long[] keys, long[] a, long[] b, long[] c, int i, int j) {
+            long k = keys[i];
+            keys[i] = keys[j];
+            keys[j] = k;
+            long x = a[i];
+            a[i] = a[j];
+            a[j] = x;
+            long y = b[i];
+            b[i] = b[j];
+            b[j] = y;
+            long z = c[i];
+            c[i] = c[j];
+            c[j] = z;
+        }
+    }
+}
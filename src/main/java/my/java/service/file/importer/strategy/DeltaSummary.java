@@ -0,0 +1,50 @@
+package my.java.service.file.importer.strategy;
+
+import lombok.Getter;
+
+/**
+ * Итог импорта в режиме DELTA: разница между файлом и состоянием товаров клиента в БД
+ */
+@Getter
+public class DeltaSummary {
+
+    // Товаров клиента в БД до импорта
+    private int existing;
+    // Новые товары
+    private int inserted;
+    // Товары с измененным содержимым
+    private int changed;
+    // Товары без изменений (не записывались)
+    private int unchanged;
+    // Товары, отсутствующие в файле
+    private int missing;
+    // Удаленные отсутствующие товары
+    private int deleted;
+
+    synchronized void setExisting(int existing) {
+        this.existing = existing;
+    }
+
+    synchronized void add(int inserted, int changed, int unchanged) {
+        this.inserted += inserted;
+        this.changed += changed;
+        this.unchanged += unchanged;
+    }
+
+    synchronized void setMissing(int missing, int deleted) {
+        this.missing = missing;
+        this.deleted = deleted;
+    }
+
+    /**
+     * Представление для параметров обработки операции
+     */
+    public synchronized String toProcessingParams() {
+        return "delta_existing=" + existing
+                + ";delta_inserted=" + inserted
+                + ";delta_changed=" + changed
+                + ";delta_unchanged=" + unchanged
+                + ";delta_missing=" + missing
+                + ";delta_deleted=" + deleted;
+    }
+}
@@ -18,7 +18,10 @@ import java.util.Map;
 
 /**
  * Стратегия игнорирования дубликатов
- * Все записи сохраняются без проверки на дубликаты - каждая строка файла = новая запись в БД
+ * Все записи сохраняются без проверки на дубликаты - каждая строка файла = новая запись в БД.
+ * Исключение - записи конкурентов: при совпадении естественного ключа
+ * (uq_competitor_data_natural_key) существующая запись сохраняется, а строка файла
+ * учитывается как пропущенная
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -124,9 +127,10 @@ public class IgnoreDuplicatesStrategy implements DuplicateHandlingStrategy {
                         entities, entityType, DuplicateStrategy.IGNORE);
                 result.setSaved(result.getSaved() + relatedResult.getSaved());
                 result.setFailed(result.getFailed() + relatedResult.getFailed());
+                result.addSkipped(relatedResult.getSkipped());
 
-                log.info("{} save result: saved={}, failed={}",
-                        entityType, relatedResult.getSaved(), relatedResult.getFailed());
+                log.info("{} save result: saved={}, skipped={}, failed={}", entityType,
+                        relatedResult.getSaved(), relatedResult.getSkipped(), relatedResult.getFailed());
 
                 // Добавляем ошибки если есть
                 if (!relatedResult.getErrors().isEmpty()) {
@@ -5,9 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import my.java.model.entity.ImportableEntity;
 import my.java.model.entity.Product;
-import my.java.repository.CompetitorRepository;
 import my.java.repository.ProductRepository;
-import my.java.repository.RegionRepository;
 import my.java.service.file.importer.BatchEntityProcessor;
 import my.java.service.file.importer.BatchSaveResult;
 import my.java.service.file.importer.DuplicateStrategy;
@@ -19,7 +17,10 @@ import java.util.stream.Collectors;
 /**
  * Стратегия перезаписи дубликатов
  * При обнаружении дубликата продукта обновляются все данные включая связанные записи.
- * Берется последнее вхождение productId из файла
+ * Берется последнее вхождение productId из файла.
+ * Связанные записи не удаляются: запись конкурента с тем же естественным ключом
+ * (товар, конкурент, URL, месяц наблюдения) обновляется, данные других месяцев сохраняются,
+ * а уже привязанный к товару регион повторно не добавляется
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -28,8 +29,6 @@ public class OverrideDuplicatesStrategy implements DuplicateHandlingStrategy {
 
     private final BatchEntityProcessor batchEntityProcessor;
     private final ProductRepository productRepository;
-    private final CompetitorRepository competitorRepository;
-    private final RegionRepository regionRepository;
 
     @Override
     public BatchSaveResult process(List<ImportableEntity> entities, String entityType,
@@ -62,24 +61,17 @@ public class OverrideDuplicatesStrategy implements DuplicateHandlingStrategy {
 
         result.setSaved(productResult.getSaved());
         result.setUpdated(productResult.getUpdated());
+        result.setUnchanged(productResult.getUnchanged());
 
-        // Шаг 2: Для обновленных продуктов нужно удалить старые связанные записи
         Set<String> processedProductIds = productEntities.stream()
                 .map(e -> ((Product) e).getProductId())
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
 
-        if (!processedProductIds.isEmpty()) {
-            // Получаем ID продуктов которые были обновлены
-            Set<String> updatedProductIds = getUpdatedProductIds(productEntities, clientId);
+        // Хеши связанных записей строк (для сверки с сохраненными режимом DELTA)
+        Map<Long, Long> relatedHashes = new HashMap<>();
 
-            if (!updatedProductIds.isEmpty()) {
-                log.info("OVERRIDE strategy: deleting old related entities for {} products", updatedProductIds.size());
-                deleteOldRelatedEntities(updatedProductIds, clientId);
-            }
-        }
-
-        // Шаг 3: Устанавливаем связи для новых записей
+        // Шаг 2: Устанавливаем связи для новых записей
         if (holder != null) {
             Map<String, Long> productIdToDbId = new HashMap<>();
 
@@ -91,14 +83,7 @@ public class OverrideDuplicatesStrategy implements DuplicateHandlingStrategy {
 
             // Устанавливаем связи для связанных сущностей
             // При OVERRIDE берем только последнее вхождение каждого productId
-            Map<String, EntityRelationshipHolder.ImportRow> lastRowByProductId = new HashMap<>();
-            for (EntityRelationshipHolder.ImportRow row : holder.getAllRows()) {
-                if (row.getProductId() != null) {
-                    lastRowByProductId.put(row.getProductId(), row);
-                }
-            }
-
-            for (EntityRelationshipHolder.ImportRow row : lastRowByProductId.values()) {
+            for (EntityRelationshipHolder.ImportRow row : holder.getLastRowsByProductId()) {
                 Long dbId = productIdToDbId.get(row.getProductId());
                 if (dbId != null) {
                     Product productRef = new Product();
@@ -111,11 +96,13 @@ public class OverrideDuplicatesStrategy implements DuplicateHandlingStrategy {
                     for (ImportableEntity region : row.getRegions()) {
                         ((my.java.model.entity.Region) region).setProduct(productRef);
                     }
+
+                    relatedHashes.put(dbId, row.computeRelatedHash());
                 }
             }
         }
 
-        // Шаг 4: Сохраняем новые связанные записи
+        // Шаг 3: Сохраняем связанные записи с перезаписью по естественному ключу
         for (Map.Entry<String, List<ImportableEntity>> entry : relatedEntities.entrySet()) {
             String entityType = entry.getKey();
             List<ImportableEntity> entities = entry.getValue();
@@ -124,13 +111,21 @@ public class OverrideDuplicatesStrategy implements DuplicateHandlingStrategy {
                 log.info("OVERRIDE strategy: saving {} {} entities", entities.size(), entityType);
 
                 BatchSaveResult relatedResult = batchEntityProcessor.saveBatch(
-                        entities, entityType, DuplicateStrategy.IGNORE);
+                        entities, entityType, DuplicateStrategy.OVERRIDE);
                 result.setSaved(result.getSaved() + relatedResult.getSaved());
+                result.setUpdated(result.getUpdated() + relatedResult.getUpdated());
+                result.addSkipped(relatedResult.getSkipped());
                 result.setFailed(result.getFailed() + relatedResult.getFailed());
             }
         }
 
-        log.info("OVERRIDE strategy completed: saved {}, updated {}", result.getSaved(), result.getUpdated());
+        // Связанные записи, отличные от сверенных режимом DELTA, требуют новой сверки
+        if (!relatedHashes.isEmpty()) {
+            batchEntityProcessor.invalidateRelatedHashes(relatedHashes);
+        }
+
+        log.info("OVERRIDE strategy completed: saved {}, updated {}, unchanged {}",
+                result.getSaved(), result.getUpdated(), result.getUnchanged());
 
         return result;
     }
@@ -139,47 +134,4 @@ public class OverrideDuplicatesStrategy implements DuplicateHandlingStrategy {
     public DuplicateStrategy getType() {
         return DuplicateStrategy.OVERRIDE;
     }
-
-    /**
-     * Получение ID обновленных продуктов
-     */
-    private Set<String> getUpdatedProductIds(List<ImportableEntity> productEntities, Long clientId) {
-        Set<String> productIds = productEntities.stream()
-                .map(e -> ((Product) e).getProductId())
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-
-        // Проверяем, какие из них уже существовали в БД
-        List<String> existingIds = productRepository.findExistingProductIds(clientId, new ArrayList<>(productIds));
-        return new HashSet<>(existingIds);
-    }
-
-    /**
-     * Удаление старых связанных записей для обновляемых продуктов
-     */
-    private void deleteOldRelatedEntities(Set<String> productIds, Long clientId) {
-        try {
-            // Получаем ID продуктов из БД
-            Map<String, Long> productIdToDbId = new HashMap<>();
-            for (String productId : productIds) {
-                productRepository.findByProductIdAndClientId(productId, clientId)
-                        .ifPresent(p -> productIdToDbId.put(productId, p.getId()));
-            }
-
-            if (!productIdToDbId.isEmpty()) {
-                List<Long> dbIds = new ArrayList<>(productIdToDbId.values());
-
-                // Удаляем старые записи конкурентов
-                log.debug("Deleting old competitor records for {} products", dbIds.size());
-                competitorRepository.deleteByProductIdIn(dbIds);
-
-                // Удаляем старые записи регионов
-                log.debug("Deleting old region records for {} products", dbIds.size());
-                regionRepository.deleteByProductIdIn(dbIds);
-            }
-        } catch (Exception e) {
-            log.error("Error deleting old related entities", e);
-            // Продолжаем выполнение даже если удаление не удалось
-        }
-    }
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import my.java.service.file.importer.BatchEntityProcessor;
 import my.java.service.file.importer.BatchSaveResult;
 import my.java.service.file.importer.DuplicateStrategy;
 import my.java.service.file.importer.EntityRelationshipHolder;
+import my.java.util.SqlParameterChunks;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -112,7 +113,7 @@ public class SkipDuplicatesStrategy implements DuplicateHandlingStrategy {
             // Фильтруем связанные сущности - оставляем только те, что связаны с новыми продуктами
             Map<String, List<ImportableEntity>> filteredRelatedEntities = new HashMap<>();
 
-            for (EntityRelationshipHolder.ImportRow row : holder.getAllRows()) {
+            for (EntityRelationshipHolder.ImportRow row : holder.getRows()) {
                 if (row.getProductId() != null && newProductIds.contains(row.getProductId())) {
                     Long dbId = productIdToDbId.get(row.getProductId());
                     if (dbId != null) {
@@ -142,6 +143,8 @@ public class SkipDuplicatesStrategy implements DuplicateHandlingStrategy {
                             entry.getValue(), entry.getKey(), DuplicateStrategy.IGNORE);
                     result.setSaved(result.getSaved() + relatedResult.getSaved());
                     result.setFailed(result.getFailed() + relatedResult.getFailed());
+                    // Записи, уже существующие по естественному ключу, не вставляются
+                    result.addSkipped(relatedResult.getSkipped());
                 }
             }
 
@@ -203,6 +206,11 @@ public class SkipDuplicatesStrategy implements DuplicateHandlingStrategy {
             return Collections.emptySet();
         }
 
-        return new HashSet<>(productRepository.findExistingProductIds(clientId, productIds));
+        // Запрашиваем частями, чтобы не превысить лимит параметров PostgreSQL
+        Set<String> existing = new HashSet<>();
+        for (List<String> chunk : SqlParameterChunks.partition(productIds)) {
+            existing.addAll(productRepository.findExistingProductIds(clientId, chunk));
+        }
+        return existing;
     }
 }
\ No newline at end of file
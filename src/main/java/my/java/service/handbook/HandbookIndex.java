@@ -0,0 +1,179 @@
+package my.java.service.handbook;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Неизменяемый снимок справочника розничных сетей (av_handbook) для сопоставления конкурентов при импорте.
+ * Записи доступны по сайту сети (хост без www.) и по коду или названию сети; внутри сети -
+ * по названию или коду региона. Поиск выполняется за O(1) без обращений к БД.
+ * <p>
+ * Снимок не меняется после построения: импорт закрепляет одну версию на всю операцию,
+ * а загрузка справочника публикует новый снимок со следующим номером версии
+ */
+public final class HandbookIndex {
+
+    public static final HandbookIndex EMPTY = new HandbookIndex(0, List.of());
+
+    private final long version;
+    private final int size;
+    private final Map<String, Network> byWebSite;
+    private final Map<String, Network> byNetwork;
+
+    private HandbookIndex(long version, List<Entry> entries) {
+        this.version = version;
+        this.size = entries.size();
+
+        Map<String, Network> webSites = new HashMap<>();
+        Map<String, Network> networks = new HashMap<>();
+        for (Entry entry : entries) {
+            String host = normalizeHost(entry.webSite);
+            if (host != null) {
+                webSites.computeIfAbsent(host, k -> new Network()).add(entry);
+            }
+            String code = normalizeName(entry.networkCode);
+            if (code != null) {
+                networks.computeIfAbsent(code, k -> new Network()).add(entry);
+            }
+            String name = normalizeName(entry.network);
+            if (name != null && !name.equals(code)) {
+                networks.computeIfAbsent(name, k -> new Network()).add(entry);
+            }
+        }
+        this.byWebSite = webSites;
+        this.byNetwork = networks;
+    }
+
+    /**
+     * Построение снимка
+     *
+     * @param version номер версии справочника
+     * @param entries записи в порядке возрастания id (при неоднозначности выбирается первая)
+     */
+    public static HandbookIndex build(long version, List<Entry> entries) {
+        return new HandbookIndex(version, entries);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Запись справочника для конкурента: сначала по сайту из URL, затем по коду или названию сети.
+     * Если сеть представлена несколькими записями, выбирается запись региона строки импорта
+     *
+     * @param competitorName название конкурента (код или название сети)
+     * @param competitorUrl URL страницы товара конкурента
+     * @param regionName город или регион строки импорта (может быть null)
+     * @return запись или null, если сеть не найдена или запись не определяется однозначно
+     */
+    public Entry find(String competitorName, String competitorUrl, String regionName) {
+        if (size == 0) {
+            return null;
+        }
+        Network network = null;
+        String host = normalizeHost(competitorUrl);
+        if (host != null) {
+            network = byWebSite.get(host);
+        }
+        if (network == null) {
+            String name = normalizeName(competitorName);
+            if (name != null) {
+                network = byNetwork.get(name);
+            }
+        }
+        return network != null ? network.select(normalizeName(regionName)) : null;
+    }
+
+    /**
+     * Хост сайта: без схемы, пути, порта и префикса www., в нижнем регистре
+     */
+    static String normalizeHost(String url) {
+        if (url == null) {
+            return null;
+        }
+        String host = url.trim().toLowerCase(Locale.ROOT);
+        int scheme = host.indexOf("://");
+        if (scheme >= 0) {
+            host = host.substring(scheme + 3);
+        }
+        int end = host.length();
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c == '/' || c == ':' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        host = host.substring(0, end);
+        if (host.startsWith("www.")) {
+            host = host.substring(4);
+        }
+        return host.isEmpty() ? null : host;
+    }
+
+    private static String normalizeName(String value) {
+        if (value == null) {
+            return null;
+        }
+        String name = value.trim().toLowerCase(Locale.ROOT);
+        return name.isEmpty() ? null : name;
+    }
+
+    /**
+     * Записи одной сети: единственная запись или первая запись каждого региона
+     */
+    private static final class Network {
+        private Entry first;
+        private boolean single = true;
+        private final Map<String, Entry> byRegion = new HashMap<>();
+
+        void add(Entry entry) {
+            if (first == null) {
+                first = entry;
+            } else if (first.id != entry.id) {
+                single = false;
+            }
+            String regionName = normalizeName(entry.regionName);
+            if (regionName != null) {
+                byRegion.putIfAbsent(regionName, entry);
+            }
+            String regionCode = normalizeName(entry.regionCode);
+            if (regionCode != null) {
+                byRegion.putIfAbsent(regionCode, entry);
+            }
+        }
+
+        Entry select(String region) {
+            if (single) {
+                return first;
+            }
+            return region != null ? byRegion.get(region) : null;
+        }
+    }
+
+    /**
+     * Запись справочника
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Entry {
+        private final long id;
+        private final String networkCode;
+        private final String network;
+        private final String priceZoneCode;
+        private final String webSite;
+        private final String regionCode;
+        private final String regionName;
+    }
+}
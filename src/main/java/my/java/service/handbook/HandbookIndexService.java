@@ -0,0 +1,63 @@
+package my.java.service.handbook;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Публикация снимков справочника розничных сетей.
+ * Справочник загружается при первом обращении и после каждого импорта справочника;
+ * читатели получают готовый неизменяемый снимок без блокировок
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class HandbookIndexService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AtomicReference<HandbookIndex> current = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * Текущий снимок справочника (при ошибке первой загрузки - пустой)
+     */
+    public HandbookIndex current() {
+        HandbookIndex index = current.get();
+        if (index != null) {
+            return index;
+        }
+        try {
+            return reload();
+        } catch (DataAccessException e) {
+            log.warn("Retail network handbook is not available: {}", e.getMessage());
+            return HandbookIndex.EMPTY;
+        }
+    }
+
+    /**
+     * Загрузка справочника из БД и публикация нового снимка
+     */
+    public synchronized HandbookIndex reload() {
+        long start = System.currentTimeMillis();
+        List<HandbookIndex.Entry> entries = jdbcTemplate.query("""
+                SELECT id, handbook_retail_network_code, handbook_retail_network, handbook_price_zone_code,
+                       handbook_web_site, handbook_region_code, handbook_region_name
+                FROM av_handbook
+                ORDER BY id
+                """, (rs, rowNum) -> new HandbookIndex.Entry(rs.getLong(1), rs.getString(2), rs.getString(3),
+                rs.getString(4), rs.getString(5), rs.getString(6), rs.getString(7)));
+
+        HandbookIndex index = HandbookIndex.build(versions.incrementAndGet(), entries);
+        current.set(index);
+        log.info("Retail network handbook version {} loaded: {} records in {} ms",
+                index.getVersion(), index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+}
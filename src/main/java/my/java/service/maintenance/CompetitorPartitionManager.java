@@ -0,0 +1,217 @@
+package my.java.service.maintenance;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Обслуживание месячных секций competitor_data (секционирована по observed_month, см. V16):
+ * заранее создает секции на следующие месяцы, переносит в месячные секции строки,
+ * попавшие в секцию по умолчанию, и по истечении срока хранения отсоединяет
+ * (или удаляет) старые секции вместо DELETE
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CompetitorPartitionManager {
+
+    private static final String TABLE = "competitor_data";
+    private static final String DEFAULT_PARTITION = TABLE + "_default";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /**
+     * Что делать с секциями старше срока хранения
+     */
+    public enum RetentionAction {
+        // Секция отсоединяется и остается отдельной таблицей (архив)
+        DETACH,
+        // Секция отсоединяется и удаляется
+        DROP
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${application.partitions.competitor-data.enabled:true}")
+    private boolean enabled;
+
+    // Сколько месяцев вперед создаются секции
+    @Value("${application.partitions.competitor-data.months-ahead:3}")
+    private int monthsAhead;
+
+    // Срок хранения в месяцах (0 - без ограничения)
+    @Value("${application.partitions.competitor-data.retention-months:0}")
+    private int retentionMonths;
+
+    @Value("${application.partitions.competitor-data.retention-action:DETACH}")
+    private RetentionAction retentionAction;
+
+    private TransactionTemplate partitionTransaction;
+
+    @PostConstruct
+    public void initTransactionTemplate() {
+        partitionTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        maintainQuietly();
+    }
+
+    @Scheduled(cron = "${application.partitions.competitor-data.cron:0 30 2 * * *}")
+    public void maintainOnSchedule() {
+        maintainQuietly();
+    }
+
+    private void maintainQuietly() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            maintain();
+        } catch (Exception e) {
+            log.error("Partition maintenance of {} failed: {}", TABLE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Один проход обслуживания секций
+     */
+    public synchronized void maintain() {
+        if (!isPartitioned()) {
+            log.debug("Table {} is not partitioned, maintenance skipped", TABLE);
+            return;
+        }
+
+        LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+        LocalDate cutoff = retentionMonths > 0 ? currentMonth.minusMonths(retentionMonths) : null;
+        Map<LocalDate, String> partitions = listPartitions();
+
+        int created = 0;
+        for (int i = 0; i <= monthsAhead; i++) {
+            created += ensurePartition(currentMonth.plusMonths(i), partitions);
+        }
+        // Строки вне существующих секций (исторические и будущие даты)
+        for (LocalDate month : jdbcTemplate.queryForList(
+                "SELECT DISTINCT observed_month FROM " + DEFAULT_PARTITION, LocalDate.class)) {
+            if (cutoff == null || !month.isBefore(cutoff)) {
+                created += ensurePartition(month.withDayOfMonth(1), partitions);
+            }
+        }
+
+        int retired = 0;
+        if (cutoff != null) {
+            for (Map.Entry<LocalDate, String> partition : partitions.entrySet()) {
+                if (partition.getKey().isBefore(cutoff)) {
+                    retire(partition.getValue());
+                    retired++;
+                }
+            }
+        }
+
+        if (created > 0 || retired > 0) {
+            log.info("Partitions of {}: {} created, {} {}", TABLE, created, retired,
+                    retentionAction == RetentionAction.DROP ? "dropped" : "detached");
+        }
+    }
+
+    private boolean isPartitioned() {
+        List<String> kind = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, TABLE);
+        return !kind.isEmpty() && "p".equals(kind.get(0));
+    }
+
+    /**
+     * Месячные секции по месяцу начала (по имени competitor_data_pYYYYMM)
+     */
+    private Map<LocalDate, String> listPartitions() {
+        Map<LocalDate, String> partitions = new TreeMap<>();
+        for (String name : jdbcTemplate.queryForList("""
+                SELECT c.relname
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = to_regclass(?)
+                """, String.class, TABLE)) {
+            if (!name.startsWith(PARTITION_PREFIX)) {
+                continue;
+            }
+            try {
+                LocalDate month = LocalDate.parse(name.substring(PARTITION_PREFIX.length()) + "01",
+                        DateTimeFormatter.ofPattern("yyyyMMdd"));
+                partitions.put(month, name);
+            } catch (DateTimeParseException e) {
+                log.debug("Partition {} does not follow the monthly naming, ignored", name);
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Создание секции месяца. Строки этого месяца из секции по умолчанию переносятся в новую
+     * секцию в той же транзакции: иначе PostgreSQL не позволит создать пересекающуюся секцию.
+     * Запись в таблицу на время переноса блокируется
+     *
+     * @return 1, если секция создана
+     */
+    private int ensurePartition(LocalDate month, Map<LocalDate, String> partitions) {
+        if (partitions.containsKey(month)) {
+            return 0;
+        }
+        String name = PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+        String from = month.toString();
+        String to = month.plusMonths(1).toString();
+
+        int moved = partitionTransaction.execute(status -> {
+            jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN SHARE ROW EXCLUSIVE MODE");
+            Integer pending = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + DEFAULT_PARTITION +
+                    " WHERE observed_month >= ?::date AND observed_month < ?::date", Integer.class, from, to);
+
+            if (pending == null || pending == 0) {
+                jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF " + TABLE +
+                        " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+                return 0;
+            }
+
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int count = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION +
+                    " WHERE observed_month >= ?::date AND observed_month < ?::date RETURNING *) " +
+                    "INSERT INTO " + name + " SELECT * FROM moved", from, to);
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + name +
+                    " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            return count;
+        });
+
+        partitions.put(month, name);
+        log.info("Created partition {} for {} ({} rows moved from {})", name, from, moved, DEFAULT_PARTITION);
+        return 1;
+    }
+
+    /**
+     * Отсоединение секции старше срока хранения; при DROP - удаление таблицы секции
+     */
+    private void retire(String name) {
+        partitionTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+            if (retentionAction == RetentionAction.DROP) {
+                jdbcTemplate.execute("DROP TABLE " + name);
+            }
+        });
+        log.info("Partition {} {}", name, retentionAction == RetentionAction.DROP ? "dropped" : "detached");
+    }
+}
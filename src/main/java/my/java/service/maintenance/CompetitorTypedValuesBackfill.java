@@ -0,0 +1,189 @@
+package my.java.service.maintenance;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import my.java.model.entity.Competitor;
+import my.java.util.transformer.ValueTransformerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Дозаполнение типизированных цен и даты/времени конкурентов, загруженных до их появления.
+ * Строки обходятся порциями по возрастанию id (без OFFSET), значения разбираются
+ * тем же кодом, что при импорте ({@link Competitor#resolveTypedValues()}),
+ * и записываются одной командой UPDATE на порцию
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CompetitorTypedValuesBackfill {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ValueTransformerFactory transformerFactory;
+
+    @Value("${application.maintenance.typed-backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${application.maintenance.typed-backfill.chunk-size:5000}")
+    private int chunkSize;
+
+    // Пауза между порциями, чтобы не мешать импорту
+    @Value("${application.maintenance.typed-backfill.pause-ms:50}")
+    private long pauseMs;
+
+    @Async("statsExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            backfill();
+        } catch (Exception e) {
+            log.error("Competitor typed values backfill failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Обход строк без типизированных значений
+     *
+     * @return количество заполненных строк
+     */
+    public long backfill() {
+        long start = System.currentTimeMillis();
+        long lastId = 0;
+        long scanned = 0;
+        long filled = 0;
+
+        while (true) {
+            List<Competitor> chunk = jdbcTemplate.query("""
+                    SELECT id, competitor_price, competitor_promotional_price, competitor_date,
+                           competitor_time, competitor_local_date_time
+                    FROM competitor_data
+                    WHERE id > ?
+                      AND competitor_price_value IS NULL
+                      AND competitor_promotional_price_value IS NULL
+                      AND competitor_observed_at IS NULL
+                    ORDER BY id
+                    LIMIT ?
+                    """, (rs, rowNum) -> {
+                Competitor competitor = new Competitor();
+                competitor.setId(rs.getLong(1));
+                competitor.setCompetitorPrice(rs.getString(2));
+                competitor.setCompetitorPromotionalPrice(rs.getString(3));
+                competitor.setCompetitorDate(rs.getString(4));
+                competitor.setCompetitorTime(rs.getString(5));
+                Timestamp localDateTime = rs.getTimestamp(6);
+                competitor.setCompetitorLocalDateTime(localDateTime != null ? localDateTime.toLocalDateTime() : null);
+                return competitor;
+            }, lastId, chunkSize);
+
+            if (chunk.isEmpty()) {
+                break;
+            }
+            scanned += chunk.size();
+            lastId = chunk.get(chunk.size() - 1).getId();
+
+            List<Competitor> resolved = new ArrayList<>(chunk.size());
+            for (Competitor competitor : chunk) {
+                competitor.setTransformerFactory(transformerFactory);
+                competitor.resolveTypedValues();
+                if (competitor.getCompetitorPriceValue() != null
+                        || competitor.getCompetitorPromotionalPriceValue() != null
+                        || competitor.getCompetitorObservedAt() != null) {
+                    resolved.add(competitor);
+                }
+            }
+            if (!resolved.isEmpty()) {
+                filled += update(resolved);
+            }
+
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            if (!pause()) {
+                break;
+            }
+        }
+
+        if (scanned > 0) {
+            log.info("Competitor typed values backfill: {} rows scanned, {} filled in {} ms",
+                    scanned, filled, System.currentTimeMillis() - start);
+        }
+        return filled;
+    }
+
+    private int update(List<Competitor> competitors) {
+        int size = competitors.size();
+        Long[] ids = new Long[size];
+        String[] prices = new String[size];
+        String[] promotionalPrices = new String[size];
+        String[] observedAt = new String[size];
+        for (int i = 0; i < size; i++) {
+            Competitor c = competitors.get(i);
+            ids[i] = c.getId();
+            prices[i] = Objects.toString(c.getCompetitorPriceValue(), null);
+            promotionalPrices[i] = Objects.toString(c.getCompetitorPromotionalPriceValue(), null);
+            observedAt[i] = Objects.toString(c.getCompetitorObservedAt(), null);
+        }
+
+        return jdbcTemplate.update(con -> {
+            // Строка переносится в секцию месяца наблюдения, если там нет записи с тем же
+            // естественным ключом; иначе дата наблюдения не заполняется
+            PreparedStatement ps = con.prepareStatement("""
+                    WITH t AS (
+                        SELECT * FROM unnest(?::bigint[], ?::varchar[], ?::varchar[], ?::varchar[])
+                            AS t(id, price, promotional_price, observed_at)
+                    ), m AS (
+                        SELECT t.id, t.price, t.promotional_price,
+                               CASE WHEN NOT EXISTS (
+                                   SELECT 1 FROM competitor_data d
+                                   WHERE d.observed_month = date_trunc('month', t.observed_at::timestamp)::date
+                                     AND d.client_id = c.client_id
+                                     AND COALESCE(d.product_id, 0) = COALESCE(c.product_id, 0)
+                                     AND COALESCE(d.competitor_name, '') = COALESCE(c.competitor_name, '')
+                                     AND md5(COALESCE(d.competitor_url, '')) = md5(COALESCE(c.competitor_url, ''))
+                                     AND d.id <> c.id
+                               ) THEN t.observed_at::timestamp END AS observed_at
+                        FROM t
+                        JOIN competitor_data c ON c.id = t.id
+                    )
+                    UPDATE competitor_data c
+                    SET competitor_price_value = m.price::numeric,
+                        competitor_promotional_price_value = m.promotional_price::numeric,
+                        competitor_observed_at = m.observed_at,
+                        observed_month = COALESCE(date_trunc('month', m.observed_at)::date, c.observed_month)
+                    FROM m
+                    WHERE c.id = m.id
+                    """);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            ps.setArray(2, con.createArrayOf("varchar", prices));
+            ps.setArray(3, con.createArrayOf("varchar", promotionalPrices));
+            ps.setArray(4, con.createArrayOf("varchar", observedAt));
+            return ps;
+        });
+    }
+
+    private boolean pause() {
+        if (pauseMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
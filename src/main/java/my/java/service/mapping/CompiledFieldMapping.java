@@ -0,0 +1,184 @@
+package my.java.service.mapping;
+
+import lombok.extern.slf4j.Slf4j;
+import my.java.model.FieldMapping;
+import my.java.model.FieldMappingDetail;
+import my.java.model.entity.ImportableEntity;
+import my.java.util.transformer.CompiledTransformer;
+import my.java.util.transformer.ValueTransformerFactory;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Скомпилированный шаблон маппинга: детали сгруппированы по сущностям,
+ * трансформации подготовлены один раз на колонку. Применение к строке CSV
+ * не требует повторной группировки, разбора параметров и поиска трансформаторов
+ */
+@Slf4j
+final class CompiledFieldMapping {
+
+    private final FieldMapping source;
+    private final List<List<String>> fingerprint;
+    private final List<EntityPlan> entities;
+
+    private CompiledFieldMapping(FieldMapping source, List<List<String>> fingerprint, List<EntityPlan> entities) {
+        this.source = source;
+        this.fingerprint = fingerprint;
+        this.entities = entities;
+    }
+
+    /**
+     * Компиляция шаблона
+     *
+     * @param mapping шаблон маппинга с загруженными деталями
+     * @param creators фабрики сущностей по типу
+     * @param transformerFactory фабрика трансформаторов
+     */
+    static CompiledFieldMapping compile(FieldMapping mapping,
+                                        Map<String, Supplier<ImportableEntity>> creators,
+                                        ValueTransformerFactory transformerFactory) {
+        Map<String, List<ColumnPlan>> columnsByEntity = new LinkedHashMap<>();
+
+        for (FieldMappingDetail detail : mapping.getDetails()) {
+            if (detail.getTargetEntity() == null) {
+                continue;
+            }
+            columnsByEntity.computeIfAbsent(detail.getTargetEntity(), k -> new ArrayList<>())
+                    .add(new ColumnPlan(detail, compileTransformation(detail, transformerFactory)));
+        }
+
+        List<EntityPlan> entities = new ArrayList<>(columnsByEntity.size());
+        for (Map.Entry<String, List<ColumnPlan>> entry : columnsByEntity.entrySet()) {
+            Supplier<ImportableEntity> creator = creators.get(entry.getKey());
+            if (creator == null) {
+                log.warn("Unknown entity type '{}' in field mapping '{}'", entry.getKey(), mapping.getName());
+                continue;
+            }
+            entities.add(new EntityPlan(entry.getKey(), creator, entry.getValue().toArray(new ColumnPlan[0])));
+        }
+
+        log.debug("Compiled field mapping '{}': {} entity types, {} transformations",
+                mapping.getName(), entities.size(),
+                entities.stream().flatMap(e -> Arrays.stream(e.columns)).filter(c -> c.transformer != null).count());
+
+        return new CompiledFieldMapping(mapping, fingerprintOf(mapping), Collections.unmodifiableList(entities));
+    }
+
+    private static CompiledTransformer<?> compileTransformation(FieldMappingDetail detail,
+                                                                ValueTransformerFactory transformerFactory) {
+        String type = detail.getTransformationType();
+        if (type == null || type.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return transformerFactory.compile(type, detail.getTransformationParams());
+        } catch (IllegalArgumentException e) {
+            log.warn("Transformation for field '{}' is ignored: {}", detail.getSourceField(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Соответствует ли план указанному экземпляру шаблона.
+     * Тот же экземпляр проверяется по ссылке, другой - по содержимому деталей
+     */
+    boolean isCompiledFrom(FieldMapping mapping) {
+        return source == mapping || fingerprint.equals(fingerprintOf(mapping));
+    }
+
+    /**
+     * План с тем же содержимым, привязанный к другому экземпляру шаблона
+     */
+    CompiledFieldMapping rebind(FieldMapping mapping) {
+        return new CompiledFieldMapping(mapping, fingerprint, entities);
+    }
+
+    FieldMapping getSource() {
+        return source;
+    }
+
+    List<EntityPlan> getEntities() {
+        return entities;
+    }
+
+    private static List<List<String>> fingerprintOf(FieldMapping mapping) {
+        List<List<String>> result = new ArrayList<>(mapping.getDetails().size());
+        for (FieldMappingDetail detail : mapping.getDetails()) {
+            result.add(Arrays.asList(detail.getSourceField(), detail.getTargetField(), detail.getTargetEntity(),
+                    detail.getTransformationType(), detail.getTransformationParams(), detail.getDefaultValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Колонки одной целевой сущности
+     */
+    static final class EntityPlan {
+        private final String entityType;
+        private final Supplier<ImportableEntity> creator;
+        private final ColumnPlan[] columns;
+
+        EntityPlan(String entityType, Supplier<ImportableEntity> creator, ColumnPlan[] columns) {
+            this.entityType = entityType;
+            this.creator = creator;
+            this.columns = columns;
+        }
+
+        String getEntityType() {
+            return entityType;
+        }
+
+        ImportableEntity newEntity() {
+            return creator.get();
+        }
+
+        /**
+         * Значения полей сущности из строки CSV: исходные строки
+         * и типизированные результаты трансформаций
+         */
+        Map<String, Object> extract(Map<String, String> csvRow) {
+            Map<String, Object> entityData = new HashMap<>(columns.length * 2);
+            for (ColumnPlan column : columns) {
+                entityData.put(column.targetField, column.apply(csvRow.get(column.sourceField)));
+            }
+            return entityData;
+        }
+    }
+
+    /**
+     * Одна колонка: значение по умолчанию и трансформация. Результат трансформации
+     * передается сущности типизированным, без обратного приведения к строке
+     */
+    static final class ColumnPlan {
+        private final String sourceField;
+        private final String targetField;
+        private final String defaultValue;
+        private final CompiledTransformer<?> transformer;
+
+        ColumnPlan(FieldMappingDetail detail, CompiledTransformer<?> transformer) {
+            this.sourceField = detail.getSourceField();
+            this.targetField = detail.getTargetField();
+            this.defaultValue = detail.getDefaultValue();
+            this.transformer = transformer;
+        }
+
+        Object apply(String value) {
+            // Если значение пустое, используем значение по умолчанию
+            if (value == null || value.isBlank()) {
+                value = defaultValue;
+            }
+            if (value == null || transformer == null) {
+                return value;
+            }
+
+            Object transformed = transformer.transform(value);
+            if (transformed == null) {
+                // Исходное значение остается на разбор сущности
+                log.trace("Transformation of '{}' for field '{}' returned no value", value, targetField);
+                return value;
+            }
+            return transformed;
+        }
+    }
+}
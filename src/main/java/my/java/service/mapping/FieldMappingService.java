@@ -14,6 +14,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -28,6 +29,9 @@ public class FieldMappingService {
     private final ClientService clientService;
     private final ValueTransformerFactory transformerFactory;
 
+    // Скомпилированные шаблоны по ID шаблона
+    private final Map<Long, CompiledFieldMapping> compiledMappings = new ConcurrentHashMap<>();
+
     /**
      * Получить все шаблоны для клиента
      */
@@ -150,6 +154,7 @@ public class FieldMappingService {
 
         log.debug("Saving mapping with {} details", mapping.getDetails().size());
         FieldMapping updatedMapping = fieldMappingRepository.save(mapping);
+        compiledMappings.remove(id);
         log.info("Updated field mapping with id: {}, details count: {}", id, updatedMapping.getDetails().size());
 
         return mapToDto(updatedMapping);
@@ -168,6 +173,7 @@ public class FieldMappingService {
         }
 
         fieldMappingRepository.deleteById(id);
+        compiledMappings.remove(id);
         log.info("Deleted field mapping with id: {}", id);
         return true;
     }
@@ -196,94 +202,73 @@ public class FieldMappingService {
     }
 
     /**
-     * Применить шаблон маппинга к данным из CSV
+     * Применить шаблон маппинга к данным из CSV.
+     * Шаблон компилируется один раз (см. {@link CompiledFieldMapping}), трансформации
+     * из деталей применяются подготовленными трансформаторами колонок
      */
     public Map<String, ImportableEntity> applyMapping(FieldMapping mapping, Map<String, String> csvRow) {
-        log.debug("Applying field mapping '{}' to CSV row with {} fields", mapping.getName(), csvRow.size());
-        log.debug("CSV row keys: {}", csvRow.keySet());
+        CompiledFieldMapping compiled = getCompiledMapping(mapping);
 
-        // Показываем первые несколько значений для диагностики
-        csvRow.entrySet().stream().limit(3).forEach(entry ->
-                log.debug("CSV field '{}' = '{}'", entry.getKey(), entry.getValue())
-        );
+        if (log.isTraceEnabled()) {
+            log.trace("Applying field mapping '{}' to CSV row with {} fields", mapping.getName(), csvRow.size());
+        }
 
         Map<String, ImportableEntity> result = new HashMap<>();
 
-        // Группируем детали по целевым сущностям
-        Map<String, List<FieldMappingDetail>> detailsByEntity = mapping.getDetails().stream()
-                .filter(d -> d.getTargetEntity() != null)
-                .collect(Collectors.groupingBy(FieldMappingDetail::getTargetEntity));
-
-        log.debug("Found mappings for {} entity types: {}", detailsByEntity.size(), detailsByEntity.keySet());
-
         // Обрабатываем каждую сущность
-        for (Map.Entry<String, List<FieldMappingDetail>> entry : detailsByEntity.entrySet()) {
-            String entityType = entry.getKey();
-            List<FieldMappingDetail> details = entry.getValue();
+        for (CompiledFieldMapping.EntityPlan plan : compiled.getEntities()) {
+            String entityType = plan.getEntityType();
 
-            log.debug("Processing entity type '{}' with {} field mappings", entityType, details.size());
-
-            ImportableEntity entity = createEntityByType(entityType);
-            if (entity == null) {
-                log.warn("Unknown entity type: {}", entityType);
-                continue;
-            }
+            ImportableEntity entity = plan.newEntity();
 
             // Устанавливаем трансформер
             entity.setTransformerFactory(transformerFactory);
 
-            // Создаем Map для заполнения сущности
-            Map<String, String> entityData = new HashMap<>();
-
-            for (FieldMappingDetail detail : details) {
-                String sourceField = detail.getSourceField();
-                String targetField = detail.getTargetField();
-                String sourceValue = csvRow.get(sourceField);
-
-                log.debug("Mapping: '{}' -> '{}', value: '{}'", sourceField, targetField, sourceValue);
-
-                // Если значение пустое, используем значение по умолчанию
-                if (sourceValue == null || sourceValue.trim().isEmpty()) {
-                    sourceValue = detail.getDefaultValue();
-                    if (sourceValue != null) {
-                        log.trace("Using default value for '{}': '{}'", targetField, sourceValue);
-                    }
-                }
-
-                // Применяем трансформацию если нужно
-                if (sourceValue != null && detail.getTransformationType() != null) {
-                    log.trace("Applying transformation '{}' to value '{}'", detail.getTransformationType(), sourceValue);
-                    // TODO: Применить трансформацию через ValueTransformerFactory
-                }
+            // Значения полей после значений по умолчанию и трансформаций
+            Map<String, Object> entityData = plan.extract(csvRow);
 
-                entityData.put(targetField, sourceValue);
-            }
-
-            log.debug("Created entity data for '{}': {}", entityType, entityData);
-
-            // Заполняем сущность данными
-            boolean fillSuccess = entity.fillFromMap(entityData);
+            // Заполняем сущность данными, результаты трансформаций передаются типизированными
+            boolean fillSuccess = entity.fillFromValues(entityData);
 
             if (fillSuccess) {
-                // Сущность уже заполнена методом fillFromMap, добавляем её в результат
+                // Сущность уже заполнена методом fillFromValues, добавляем её в результат
                 result.put(entityType, entity);
-                log.debug("Successfully filled entity '{}' with data", entityType);
             } else {
                 log.warn("Failed to fill entity '{}' from data: {}", entityType, entityData);
             }
         }
 
-        log.debug("Mapping result: created {} entities", result.size());
         return result;
     }
 
+    /**
+     * Скомпилированный шаблон из кэша. План перекомпилируется, если детали шаблона изменились
+     */
+    private CompiledFieldMapping getCompiledMapping(FieldMapping mapping) {
+        if (mapping.getId() == null) {
+            return CompiledFieldMapping.compile(mapping, ENTITY_CREATORS, transformerFactory);
+        }
+
+        CompiledFieldMapping cached = compiledMappings.get(mapping.getId());
+        if (cached != null && cached.getSource() == mapping) {
+            return cached;
+        }
+
+        CompiledFieldMapping compiled = cached != null && cached.isCompiledFrom(mapping)
+                ? cached.rebind(mapping)
+                : CompiledFieldMapping.compile(mapping, ENTITY_CREATORS, transformerFactory);
+        compiledMappings.put(mapping.getId(), compiled);
+        return compiled;
+    }
+
     /**
      * Создать сущность по типу
      */
     private static final Map<String, java.util.function.Supplier<ImportableEntity>> ENTITY_CREATORS = Map.of(
             "PRODUCT", Product::new,
             "COMPETITOR", Competitor::new,
-            "REGION", Region::new
+            "REGION", Region::new,
+            "HANDBOOK", AvHandbook::new
     );
 
     private ImportableEntity createEntityByType(String entityType) {
@@ -372,6 +357,7 @@ public class FieldMappingService {
                 .transformationParams(entity.getTransformationParams())
                 .defaultValue(entity.getDefaultValue())
                 .orderIndex(entity.getOrderIndex())
+                .lowCardinality(entity.getLowCardinality())
                 .targetEntityDisplay(entity.getTargetEntityDisplay())
                 .fullTargetFieldName(entity.getFullTargetFieldName())
                 .build();
@@ -390,6 +376,7 @@ public class FieldMappingService {
                 .transformationParams(dto.getTransformationParams())
                 .defaultValue(dto.getDefaultValue())
                 .orderIndex(dto.getOrderIndex() != null ? dto.getOrderIndex() : 0)
+                .lowCardinality(dto.getLowCardinality())
                 .build();
     }
 }
\ No newline at end of file
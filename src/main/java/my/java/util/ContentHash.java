@@ -0,0 +1,72 @@
+package my.java.util;
+
+import java.math.BigDecimal;
+
+/**
+ * 64-битный хеш содержимого записи для обнаружения изменений без сравнения всех полей.
+ * Поля хешируются по порядку (FNV-1a по символам) с разделителем и отдельной меткой null,
+ * поэтому ("ab", null) и ("a", "b") дают разные значения. Итог перемешивается
+ * финализатором MurmurHash3 для равномерного распределения битов
+ */
+public final class ContentHash {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Метки, не встречающиеся среди символов UTF-16 в обычном тексте
+    private static final char FIELD_SEPARATOR = '\u001F';
+    private static final char NULL_MARKER = '\u0000';
+
+    private long hash = FNV_OFFSET_BASIS;
+
+    /**
+     * Добавляет строковое поле
+     */
+    public ContentHash add(String value) {
+        if (value == null) {
+            mix(NULL_MARKER);
+        } else {
+            for (int i = 0; i < value.length(); i++) {
+                mix(value.charAt(i));
+            }
+        }
+        mix(FIELD_SEPARATOR);
+        return this;
+    }
+
+    /**
+     * Добавляет числовое поле. Масштаб не учитывается: 10.5 и 10.50 считаются одним значением
+     */
+    public ContentHash add(BigDecimal value) {
+        return add(value != null ? value.stripTrailingZeros().toPlainString() : null);
+    }
+
+    /**
+     * Добавляет числовое поле или хеш вложенной записи
+     */
+    public ContentHash add(long value) {
+        for (int shift = 48; shift >= 0; shift -= 16) {
+            mix((char) (value >>> shift));
+        }
+        mix(FIELD_SEPARATOR);
+        return this;
+    }
+
+    /**
+     * Итоговое значение хеша
+     */
+    public long value() {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private void mix(char c) {
+        hash ^= c;
+        hash *= FNV_PRIME;
+    }
+}
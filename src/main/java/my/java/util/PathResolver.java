@@ -8,10 +8,13 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
@@ -81,6 +84,29 @@ public class PathResolver {
         return tempFile;
     }
 
+    /**
+     * Сохраняет загруженный файл во временную директорию, одновременно вычисляя хеш содержимого.
+     * Файл читается один раз, без загрузки целиком в память
+     *
+     * @param digest алгоритм хеширования, который обновляется по мере копирования
+     */
+    public Path saveToTempFile(MultipartFile file, String prefix, MessageDigest digest) throws IOException {
+        Path tempDirPath = getAbsoluteTempDir();
+        Files.createDirectories(tempDirPath);
+
+        String originalFilename = file.getOriginalFilename();
+        String filename = prefix + "_" + UUID.randomUUID() +
+                (originalFilename != null ? getFileExtension(originalFilename) : "");
+
+        Path tempFile = tempDirPath.resolve(filename);
+
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        log.debug("Сохранен временный файл: {}", tempFile.toAbsolutePath());
+        return tempFile;
+    }
+
     /**
      * Создает пустой временный файл
      */
@@ -0,0 +1,46 @@
+package my.java.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Разбиение списков параметров для запросов с IN (...).
+ * PostgreSQL (протокол JDBC-драйвера) допускает не более 32767 параметров в одном запросе
+ */
+public final class SqlParameterChunks {
+
+    /**
+     * Максимальное количество параметров привязки в одном запросе PostgreSQL
+     */
+    public static final int MAX_BIND_PARAMETERS = 32767;
+
+    /**
+     * Размер части по умолчанию: с запасом для дополнительных параметров запроса
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    private SqlParameterChunks() {
+    }
+
+    /**
+     * Разбивает коллекцию на части размером не более chunkSize
+     */
+    public static <T> List<List<T>> partition(Collection<T> values, int chunkSize) {
+        int size = Math.max(1, Math.min(chunkSize, MAX_BIND_PARAMETERS - 1));
+        List<T> list = values instanceof List<T> l ? l : new ArrayList<>(values);
+
+        List<List<T>> chunks = new ArrayList<>((list.size() + size - 1) / size);
+        for (int from = 0; from < list.size(); from += size) {
+            chunks.add(list.subList(from, Math.min(list.size(), from + size)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Разбивает коллекцию на части размера по умолчанию
+     */
+    public static <T> List<List<T>> partition(Collection<T> values) {
+        return partition(values, DEFAULT_CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,83 @@
+package my.java.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный пул канонических строк для повторяющихся значений столбцов импорта
+ * (имя конкурента, регион, бренд, категории). Повторное значение заменяется уже
+ * сохраненным экземпляром, поэтому тысячи одинаковых строк пакета занимают память один раз,
+ * а сравнение таких строк завершается на проверке ссылок.
+ * <p>
+ * Таблица фиксированного размера без блокировок: ячейка выбирается по хешу строки,
+ * проверяется несколько соседних ячеек, при промахе значение записывается в свободную
+ * или вытесняет первую из них. Вытеснение лишь снижает долю совпадений, результат
+ * всегда равен исходной строке
+ */
+public final class StringInterner {
+
+    // Сколько соседних ячеек проверяется при поиске
+    private static final int PROBES = 4;
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+    private final int maxLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity количество ячеек (округляется вверх до степени двойки)
+     * @param maxLength строки длиннее не сохраняются в пуле
+     */
+    public StringInterner(int capacity, int maxLength) {
+        int size = Integer.highestOneBit(Math.max(PROBES, capacity - 1)) << 1;
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Канонический экземпляр строки
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > maxLength) {
+            return value;
+        }
+        if (value.isEmpty()) {
+            return "";
+        }
+
+        int h = value.hashCode();
+        int start = (h ^ (h >>> 16)) & mask;
+        int free = -1;
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            String cached = table.get(slot);
+            if (cached == null) {
+                if (free < 0) {
+                    free = slot;
+                }
+            } else if (cached.hashCode() == h && cached.equals(value)) {
+                hits.increment();
+                return cached;
+            }
+        }
+
+        misses.increment();
+        if (free >= 0) {
+            // Ячейку мог занять другой поток - тогда строка просто не сохраняется
+            table.compareAndSet(free, null, value);
+        } else {
+            table.set(start, value);
+        }
+        return value;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
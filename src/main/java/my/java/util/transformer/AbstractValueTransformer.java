@@ -2,6 +2,8 @@ package my.java.util.transformer;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.function.Function;
+
 /**
  * Абстрактная реализация трансформатора значений
  * @param <T> тип, в который будет преобразовано значение
@@ -76,18 +78,29 @@ public abstract class AbstractValueTransformer<T> implements ValueTransformer<T>
      * @return значение по умолчанию
      */
     protected String getDefaultValue(String params, String defaultValue) {
-        if (params == null || params.trim().isEmpty()) {
-            return defaultValue;
-        }
-
         // Формат params: "default=value|param2=value2|..."
-        String[] parts = params.split("\\|");
-        for (String part : parts) {
-            if (part.startsWith("default=")) {
-                return part.substring("default=".length());
+        return TransformerParams.of(params).get("default", defaultValue);
+    }
+
+    /**
+     * Трансформатор для конкретных параметров, вызывающий {@link #transform(String, String)}.
+     * Вспомогательный метод для реализаций {@link #compile(TransformerParams)}
+     *
+     * @param transform функция преобразования непустого значения
+     * @param emptyValue результат для пустого значения
+     */
+    protected CompiledTransformer<T> compiled(Function<String, T> transform, T emptyValue) {
+        Class<T> type = targetType;
+        return new CompiledTransformer<>() {
+            @Override
+            public T transform(String value) {
+                return isEmpty(value) ? emptyValue : transform.apply(value);
             }
-        }
 
-        return defaultValue;
+            @Override
+            public Class<T> getTargetType() {
+                return type;
+            }
+        };
     }
 }
\ No newline at end of file
@@ -54,6 +54,11 @@ public class BooleanTransformer extends AbstractValueTransformer<Boolean> {
         }
     }
 
+    @Override
+    public CompiledTransformer<Boolean> compile(TransformerParams params) {
+        return compiled(value -> transform(value, null), handleEmpty(params.getRaw()));
+    }
+
     @Override
     protected Boolean handleEmpty(String params) {
         String defaultValue = getDefaultValue(params, null);
@@ -69,20 +74,8 @@ public class BooleanTransformer extends AbstractValueTransformer<Boolean> {
             return "";
         }
 
-        // Проверяем, есть ли указание формата в параметрах
-        if (params != null && !params.isEmpty()) {
-            // Формат: "true=Да|false=Нет"
-            String[] parts = params.split("\\|");
-            for (String part : parts) {
-                if (value && part.startsWith("true=")) {
-                    return part.substring("true=".length());
-                } else if (!value && part.startsWith("false=")) {
-                    return part.substring("false=".length());
-                }
-            }
-        }
-
-        // По умолчанию возвращаем стандартный текст
-        return value ? "true" : "false";
+        // Формат: "true=Да|false=Нет", по умолчанию возвращаем стандартный текст
+        TransformerParams parsed = TransformerParams.of(params);
+        return value ? parsed.get("true", "true") : parsed.get("false", "false");
     }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package my.java.util.transformer;
+
+import java.text.ParsePosition;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Скомпилированный шаблон даты/времени: форматтер создается один раз на шаблон,
+ * а "форма" шаблона (позиции цифр, букв и разделителей) позволяет отбросить
+ * неподходящие шаблоны без попытки разбора
+ */
+final class CompiledDateTimePattern {
+
+    private static final int MAX_CACHED_PATTERNS = 256;
+    private static final Map<String, CompiledDateTimePattern> CACHE = new ConcurrentHashMap<>();
+
+    private final String pattern;
+    private final DateTimeFormatter formatter;
+
+    /**
+     * Форма значения: 'd' - цифра, 'a' - буква, остальное - литерал.
+     * null, если ширина полей шаблона переменная и форму заранее вычислить нельзя
+     */
+    private final String shape;
+
+    private CompiledDateTimePattern(String pattern) {
+        this.pattern = pattern;
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+        this.shape = computeShape(pattern);
+    }
+
+    /**
+     * Получение скомпилированного шаблона из кэша
+     *
+     * @throws IllegalArgumentException если шаблон некорректен
+     */
+    static CompiledDateTimePattern of(String pattern) {
+        CompiledDateTimePattern compiled = CACHE.get(pattern);
+        if (compiled != null) {
+            return compiled;
+        }
+        compiled = new CompiledDateTimePattern(pattern);
+        if (CACHE.size() < MAX_CACHED_PATTERNS) {
+            CACHE.putIfAbsent(pattern, compiled);
+        }
+        return compiled;
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    DateTimeFormatter getFormatter() {
+        return formatter;
+    }
+
+    /**
+     * Быстрая проверка, может ли значение соответствовать шаблону
+     */
+    boolean matchesShape(String value) {
+        if (shape == null) {
+            return true;
+        }
+        if (value.length() != shape.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char expected = shape.charAt(i);
+            char actual = value.charAt(i);
+            boolean matches = switch (expected) {
+                case 'd' -> actual >= '0' && actual <= '9';
+                case 'a' -> Character.isLetter(actual);
+                default -> actual == expected;
+            };
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Разбор без разрешения полей и без исключений
+     *
+     * @return разобранные поля или null, если значение не соответствует шаблону
+     */
+    TemporalAccessor parseUnresolved(String value) {
+        ParsePosition position = new ParsePosition(0);
+        TemporalAccessor parsed = formatter.parseUnresolved(value, position);
+        if (parsed == null || position.getErrorIndex() >= 0 || position.getIndex() != value.length()) {
+            return null;
+        }
+        return parsed;
+    }
+
+    /**
+     * Вычисление формы шаблона. Поддерживаются поля фиксированной ширины
+     * (yyyy, MM, dd, HH, hh, mm, ss, S..., a) и литералы
+     */
+    private static String computeShape(String pattern) {
+        StringBuilder shape = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+
+            if (c == '\'') {
+                int end = pattern.indexOf('\'', i + 1);
+                if (end < 0 || end == i + 1) {
+                    return null;
+                }
+                shape.append(pattern, i + 1, end);
+                i = end + 1;
+                continue;
+            }
+
+            if (!Character.isLetter(c)) {
+                shape.append(c);
+                i++;
+                continue;
+            }
+
+            int count = 1;
+            while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+                count++;
+            }
+
+            switch (c) {
+                case 'y', 'u' -> {
+                    if (count != 2 && count != 4) {
+                        return null;
+                    }
+                    shape.append("d".repeat(count));
+                }
+                case 'M', 'd', 'H', 'h', 'm', 's' -> {
+                    if (count != 2) {
+                        return null;
+                    }
+                    shape.append("dd");
+                }
+                case 'S' -> shape.append("d".repeat(count));
+                case 'a' -> shape.append("aa");
+                default -> {
+                    return null;
+                }
+            }
+            i += count;
+        }
+        return shape.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package my.java.util.transformer;
+
+/**
+ * Трансформатор, специализированный под конкретные параметры (одну колонку маппинга).
+ * Параметры разобраны, классы и справочники разрешены заранее,
+ * поэтому преобразование значения не требует повторной подготовки
+ * @param <T> тип, в который будет преобразовано значение
+ */
+public interface CompiledTransformer<T> {
+
+    /**
+     * Преобразует строковое значение в заданный тип
+     *
+     * @param value строковое значение для преобразования
+     * @return преобразованное значение или null, если преобразование невозможно
+     */
+    T transform(String value);
+
+    /**
+     * Возвращает тип, в который преобразуется значение
+     *
+     * @return класс типа
+     */
+    Class<T> getTargetType();
+}
@@ -4,13 +4,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.time.*;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Трансформатор для значений даты и времени
+ * Трансформатор для значений даты и времени.
+ * Форматтеры компилируются один раз, шаблон выбирается по форме значения,
+ * разбор выполняется без исключений, а удачный шаблон запоминается для колонки
  * @param <T> конкретный тип даты/времени (LocalDate, LocalDateTime, и т.д.)
  */
 @Slf4j
@@ -30,6 +36,15 @@ public abstract class DateTimeTransformer<T> extends AbstractValueTransformer<T>
             "dd/MM/yyyy HH:mm:ss", "MM/dd/yyyy HH:mm:ss"
     );
 
+    // Ограничение числа отслеживаемых колонок (ключей параметров)
+    private static final int MAX_TRACKED_COLUMNS = 1024;
+
+    // Первые ошибки колонки журналируются сразу, затем - каждая WARN_EVERY-я
+    private static final int WARN_FIRST = 5;
+    private static final int WARN_EVERY = 1000;
+
+    private final Map<String, ColumnParser> columnParsers = new ConcurrentHashMap<>();
+
     /**
      * Конструктор трансформатора дат
      *
@@ -45,39 +60,47 @@ public abstract class DateTimeTransformer<T> extends AbstractValueTransformer<T>
             return handleEmpty(params);
         }
 
-        // Если указан формат в параметрах, используем его
-        String formatPattern = extractPatternFromParams(params);
-        if (formatPattern != null) {
-            try {
-                return parseDateTime(value.trim(), formatPattern);
-            } catch (DateTimeParseException e) {
-                log.warn("Could not parse date/time '{}' with pattern '{}': {}",
-                        value, formatPattern, e.getMessage());
-            }
+        return columnParser(params).parse(value.trim());
+    }
+
+    /**
+     * Отдельный парсер для колонки маппинга: выученный шаблон не делится с другими колонками
+     */
+    @Override
+    public CompiledTransformer<T> compile(TransformerParams params) {
+        String key = params.get("column", params.toString());
+        ColumnParser parser = new ColumnParser(key, params.get("pattern"));
+        return compiled(value -> parser.parse(value.trim()), handleEmpty(params.getRaw()));
+    }
+
+    /**
+     * Парсер колонки для заданных параметров. Колонку можно явно обозначить
+     * параметром "column=имя"; без него колонкой считается сама строка параметров
+     */
+    protected ColumnParser columnParser(String params) {
+        String key = params != null ? params : "";
+        ColumnParser parser = columnParsers.get(key);
+        if (parser != null) {
+            return parser;
         }
 
-        // Иначе пробуем различные стандартные форматы
-        for (String pattern : getDefaultPatterns()) {
-            try {
-                return parseDateTime(value.trim(), pattern);
-            } catch (DateTimeParseException e) {
-                // Игнорируем и продолжаем пробовать другие форматы
+        parser = new ColumnParser(key, extractPatternFromParams(params));
+        if (columnParsers.size() < MAX_TRACKED_COLUMNS) {
+            ColumnParser existing = columnParsers.putIfAbsent(key, parser);
+            if (existing != null) {
+                return existing;
             }
         }
-
-        log.warn("Could not parse date/time from '{}' using any of the standard patterns", value);
-        return null;
+        return parser;
     }
 
     /**
-     * Преобразует строку в дату/время с использованием указанного формата
+     * Разрешение разобранных полей в значение целевого типа без исключений
      *
-     * @param value строковое представление даты/времени
-     * @param pattern шаблон формата
-     * @return преобразованное значение даты/времени
-     * @throws DateTimeParseException если преобразование невозможно
+     * @param parsed неразрешенные поля, полученные из шаблона
+     * @return значение или null, если полей недостаточно или они некорректны
      */
-    protected abstract T parseDateTime(String value, String pattern) throws DateTimeParseException;
+    protected abstract T resolve(TemporalAccessor parsed);
 
     /**
      * Возвращает список шаблонов формата по умолчанию для этого типа даты/времени
@@ -93,19 +116,155 @@ public abstract class DateTimeTransformer<T> extends AbstractValueTransformer<T>
      * @return шаблон формата или null, если не указан
      */
     protected String extractPatternFromParams(String params) {
-        if (params == null || params.trim().isEmpty()) {
+        // Параметры в формате "pattern=yyyy-MM-dd|param2=value2|..."
+        return TransformerParams.of(params).get("pattern");
+    }
+
+    /**
+     * Форматирование значения по шаблону из параметров или первому шаблону по умолчанию
+     */
+    protected String format(TemporalAccessor value, String params) {
+        String pattern = extractPatternFromParams(params);
+        if (pattern == null) {
+            pattern = getDefaultPatterns().get(0); // Используем первый формат по умолчанию
+        }
+        return CompiledDateTimePattern.of(pattern).getFormatter().format(value);
+    }
+
+    // ===== Ручное разрешение полей =====
+
+    /**
+     * Дата из полей год/месяц/день с проверкой диапазонов
+     */
+    protected static LocalDate resolveDate(TemporalAccessor parsed) {
+        ChronoField yearField = parsed.isSupported(ChronoField.YEAR_OF_ERA) ? ChronoField.YEAR_OF_ERA
+                : parsed.isSupported(ChronoField.YEAR) ? ChronoField.YEAR : null;
+        if (yearField == null || !parsed.isSupported(ChronoField.MONTH_OF_YEAR)
+                || !parsed.isSupported(ChronoField.DAY_OF_MONTH)) {
             return null;
         }
 
-        // Параметры в формате "pattern=yyyy-MM-dd|param2=value2|..."
-        String[] parts = params.split("\\|");
-        for (String part : parts) {
-            if (part.startsWith("pattern=")) {
-                return part.substring("pattern=".length());
+        long year = parsed.getLong(yearField);
+        long month = parsed.getLong(ChronoField.MONTH_OF_YEAR);
+        long day = parsed.getLong(ChronoField.DAY_OF_MONTH);
+
+        if (year < Year.MIN_VALUE || year > Year.MAX_VALUE || month < 1 || month > 12 || day < 1) {
+            return null;
+        }
+        if (day > Month.of((int) month).length(Year.isLeap(year))) {
+            return null;
+        }
+        return LocalDate.of((int) year, (int) month, (int) day);
+    }
+
+    /**
+     * Время из полей часа (24- или 12-часового), минут, секунд и долей секунды
+     */
+    protected static LocalTime resolveTime(TemporalAccessor parsed) {
+        long hour;
+        if (parsed.isSupported(ChronoField.HOUR_OF_DAY)) {
+            hour = parsed.getLong(ChronoField.HOUR_OF_DAY);
+        } else if (parsed.isSupported(ChronoField.AMPM_OF_DAY)
+                && (parsed.isSupported(ChronoField.CLOCK_HOUR_OF_AMPM) || parsed.isSupported(ChronoField.HOUR_OF_AMPM))) {
+            long hourOfAmPm = parsed.isSupported(ChronoField.CLOCK_HOUR_OF_AMPM)
+                    ? parsed.getLong(ChronoField.CLOCK_HOUR_OF_AMPM) % 12
+                    : parsed.getLong(ChronoField.HOUR_OF_AMPM);
+            if (hourOfAmPm < 0 || hourOfAmPm > 11) {
+                return null;
             }
+            hour = hourOfAmPm + 12 * parsed.getLong(ChronoField.AMPM_OF_DAY);
+        } else {
+            return null;
         }
 
-        return null;
+        long minute = parsed.isSupported(ChronoField.MINUTE_OF_HOUR) ? parsed.getLong(ChronoField.MINUTE_OF_HOUR) : 0;
+        long second = parsed.isSupported(ChronoField.SECOND_OF_MINUTE) ? parsed.getLong(ChronoField.SECOND_OF_MINUTE) : 0;
+        long nano = parsed.isSupported(ChronoField.NANO_OF_SECOND) ? parsed.getLong(ChronoField.NANO_OF_SECOND) : 0;
+
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+                || nano < 0 || nano > 999_999_999) {
+            return null;
+        }
+        return LocalTime.of((int) hour, (int) minute, (int) second, (int) nano);
+    }
+
+    /**
+     * Разбор значений одной колонки: явный шаблон, затем выученный шаблон,
+     * затем шаблоны по умолчанию, совпадающие по форме
+     */
+    protected class ColumnParser {
+        private final String key;
+        private final CompiledDateTimePattern explicitPattern;
+        private final List<CompiledDateTimePattern> defaultPatterns;
+        private volatile CompiledDateTimePattern learnedPattern;
+        private final AtomicLong failures = new AtomicLong();
+
+        ColumnParser(String key, String explicitPattern) {
+            this.key = key;
+            this.explicitPattern = compileQuietly(explicitPattern);
+            this.defaultPatterns = getDefaultPatterns().stream()
+                    .map(CompiledDateTimePattern::of)
+                    .toList();
+        }
+
+        public T parse(String value) {
+            if (explicitPattern != null) {
+                T result = tryPattern(explicitPattern, value);
+                if (result != null) {
+                    return result;
+                }
+            }
+
+            CompiledDateTimePattern learned = learnedPattern;
+            if (learned != null) {
+                T result = tryPattern(learned, value);
+                if (result != null) {
+                    return result;
+                }
+            }
+
+            for (CompiledDateTimePattern pattern : defaultPatterns) {
+                if (pattern == learned || !pattern.matchesShape(value)) {
+                    continue;
+                }
+                T result = tryPattern(pattern, value);
+                if (result != null) {
+                    learnedPattern = pattern;
+                    return result;
+                }
+            }
+
+            reportFailure(value);
+            return null;
+        }
+
+        private T tryPattern(CompiledDateTimePattern pattern, String value) {
+            if (!pattern.matchesShape(value)) {
+                return null;
+            }
+            TemporalAccessor parsed = pattern.parseUnresolved(value);
+            return parsed != null ? resolve(parsed) : null;
+        }
+
+        private void reportFailure(String value) {
+            long count = failures.incrementAndGet();
+            if (count <= WARN_FIRST || count % WARN_EVERY == 0) {
+                log.warn("Could not parse date/time from '{}' (column '{}', {} failures so far)",
+                        value, key, count);
+            }
+        }
+
+        private CompiledDateTimePattern compileQuietly(String pattern) {
+            if (pattern == null) {
+                return null;
+            }
+            try {
+                return CompiledDateTimePattern.of(pattern);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid date/time pattern '{}': {}", pattern, e.getMessage());
+                return null;
+            }
+        }
     }
 }
 
@@ -120,9 +279,8 @@ class LocalDateTransformer extends DateTimeTransformer<LocalDate> {
     }
 
     @Override
-    protected LocalDate parseDateTime(String value, String pattern) throws DateTimeParseException {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
-        return LocalDate.parse(value, formatter);
+    protected LocalDate resolve(TemporalAccessor parsed) {
+        return resolveDate(parsed);
     }
 
     @Override
@@ -136,12 +294,7 @@ class LocalDateTransformer extends DateTimeTransformer<LocalDate> {
             return "";
         }
 
-        String pattern = extractPatternFromParams(params);
-        if (pattern == null) {
-            pattern = DEFAULT_DATE_PATTERNS.get(0); // Используем первый формат по умолчанию
-        }
-
-        return value.format(DateTimeFormatter.ofPattern(pattern));
+        return format(value, params);
     }
 }
 
@@ -156,9 +309,8 @@ class LocalTimeTransformer extends DateTimeTransformer<LocalTime> {
     }
 
     @Override
-    protected LocalTime parseDateTime(String value, String pattern) throws DateTimeParseException {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
-        return LocalTime.parse(value, formatter);
+    protected LocalTime resolve(TemporalAccessor parsed) {
+        return resolveTime(parsed);
     }
 
     @Override
@@ -172,12 +324,7 @@ class LocalTimeTransformer extends DateTimeTransformer<LocalTime> {
             return "";
         }
 
-        String pattern = extractPatternFromParams(params);
-        if (pattern == null) {
-            pattern = DEFAULT_TIME_PATTERNS.get(0); // Используем первый формат по умолчанию
-        }
-
-        return value.format(DateTimeFormatter.ofPattern(pattern));
+        return format(value, params);
     }
 }
 
@@ -192,9 +339,10 @@ class LocalDateTimeTransformer extends DateTimeTransformer<LocalDateTime> {
     }
 
     @Override
-    protected LocalDateTime parseDateTime(String value, String pattern) throws DateTimeParseException {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
-        return LocalDateTime.parse(value, formatter);
+    protected LocalDateTime resolve(TemporalAccessor parsed) {
+        LocalDate date = resolveDate(parsed);
+        LocalTime time = date != null ? resolveTime(parsed) : null;
+        return time != null ? LocalDateTime.of(date, time) : null;
     }
 
     @Override
@@ -208,12 +356,7 @@ class LocalDateTimeTransformer extends DateTimeTransformer<LocalDateTime> {
             return "";
         }
 
-        String pattern = extractPatternFromParams(params);
-        if (pattern == null) {
-            pattern = DEFAULT_DATETIME_PATTERNS.get(0); // Используем первый формат по умолчанию
-        }
-
-        return value.format(DateTimeFormatter.ofPattern(pattern));
+        return format(value, params);
     }
 }
 
@@ -228,16 +371,19 @@ class ZonedDateTimeTransformer extends DateTimeTransformer<ZonedDateTime> {
     }
 
     @Override
-    protected ZonedDateTime parseDateTime(String value, String pattern) throws DateTimeParseException {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
-        // Сначала пробуем преобразовать в ZonedDateTime
-        try {
-            return ZonedDateTime.parse(value, formatter);
-        } catch (DateTimeParseException e) {
-            // Если не получилось, преобразуем в LocalDateTime и добавляем текущую зону
-            LocalDateTime localDateTime = LocalDateTime.parse(value, formatter);
-            return localDateTime.atZone(ZoneId.systemDefault());
+    protected ZonedDateTime resolve(TemporalAccessor parsed) {
+        LocalDate date = resolveDate(parsed);
+        LocalTime time = date != null ? resolveTime(parsed) : null;
+        if (time == null) {
+            return null;
+        }
+
+        // Если зона не указана в значении, используем текущую зону
+        ZoneId zone = parsed.query(TemporalQueries.zone());
+        if (zone == null && parsed.isSupported(ChronoField.OFFSET_SECONDS)) {
+            zone = ZoneOffset.ofTotalSeconds((int) parsed.getLong(ChronoField.OFFSET_SECONDS));
         }
+        return ZonedDateTime.of(date, time, zone != null ? zone : ZoneId.systemDefault());
     }
 
     @Override
@@ -251,11 +397,6 @@ class ZonedDateTimeTransformer extends DateTimeTransformer<ZonedDateTime> {
             return "";
         }
 
-        String pattern = extractPatternFromParams(params);
-        if (pattern == null) {
-            pattern = DEFAULT_DATETIME_PATTERNS.get(0); // Используем первый формат по умолчанию
-        }
-
-        return value.format(DateTimeFormatter.ofPattern(pattern));
+        return format(value, params);
     }
 }
\ No newline at end of file
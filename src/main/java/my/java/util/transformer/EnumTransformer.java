@@ -5,14 +5,21 @@ import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Трансформатор для значений перечислений
+ * Трансформатор для значений перечислений.
+ * Класс перечисления и таблица сопоставления значений разрешаются один раз на строку параметров
  */
 @Component
 @Slf4j
 public class EnumTransformer extends AbstractValueTransformer<Enum<?>> {
 
+    private static final int MAX_CACHED_BINDINGS = 256;
+
+    // Подготовленные привязки по исходной строке параметров
+    private final Map<String, EnumBinding> bindings = new ConcurrentHashMap<>();
+
     /**
      * Конструктор трансформатора перечислений
      */
@@ -27,32 +34,14 @@ public class EnumTransformer extends AbstractValueTransformer<Enum<?>> {
             return handleEmpty(params);
         }
 
-        String enumClassName = extractParameter(params, "class", null);
-        if (enumClassName == null) {
-            log.warn("Enum class not specified in params: {}", params);
-            return null;
-        }
-
-        try {
-            Class<? extends Enum<?>> enumClass = (Class<? extends Enum<?>>) Class.forName(enumClassName);
-            String mapping = extractParameter(params, "mapping", null);
-
-            if (mapping != null) {
-                Map<String, String> mappings = parseMappings(mapping);
-                String enumValue = mappings.get(value.trim().toLowerCase());
-                if (enumValue != null) {
-                    return getEnumValue(enumClass, enumValue);
-                }
-            }
+        EnumBinding binding = getBinding(params);
+        return binding != null ? binding.lookup(value.trim()) : null;
+    }
 
-            return getEnumValue(enumClass, value.trim());
-        } catch (ClassNotFoundException e) {
-            log.warn("Enum class not found: {}", enumClassName, e);
-            return null;
-        } catch (Exception e) {
-            log.warn("Error transforming string to enum: {}", e.getMessage(), e);
-            return null;
-        }
+    @Override
+    public CompiledTransformer<Enum<?>> compile(TransformerParams params) {
+        EnumBinding binding = bind(params);
+        return compiled(value -> binding != null ? binding.lookup(value.trim()) : null, handleEmpty(params.getRaw()));
     }
 
     @Override
@@ -80,18 +69,7 @@ public class EnumTransformer extends AbstractValueTransformer<Enum<?>> {
     }
 
     protected String extractParameter(String params, String paramName, String defaultValue) {
-        if (params == null) {
-            return defaultValue;
-        }
-
-        String[] parts = params.split("\\|");
-        for (String part : parts) {
-            if (part.startsWith(paramName + "=")) {
-                return part.substring((paramName + "=").length());
-            }
-        }
-
-        return defaultValue;
+        return TransformerParams.of(params).get(paramName, defaultValue);
     }
 
     protected Map<String, String> parseMappings(String mapping) {
@@ -112,17 +90,91 @@ public class EnumTransformer extends AbstractValueTransformer<Enum<?>> {
         return result;
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    protected <E extends Enum<E>> Enum<?> getEnumValue(Class<? extends Enum<?>> enumClass, String value) {
+    private EnumBinding getBinding(String params) {
+        String key = params != null ? params : "";
+        EnumBinding binding = bindings.get(key);
+        if (binding != null) {
+            return binding;
+        }
+
+        binding = bind(TransformerParams.of(params));
+        if (binding != null && bindings.size() < MAX_CACHED_BINDINGS) {
+            bindings.putIfAbsent(key, binding);
+        }
+        return binding;
+    }
+
+    /**
+     * Разрешение класса перечисления и построение таблицы поиска
+     *
+     * @return привязка или null, если класс не указан или не найден
+     */
+    @SuppressWarnings("unchecked")
+    private EnumBinding bind(TransformerParams params) {
+        String enumClassName = params.get("class");
+        if (enumClassName == null) {
+            log.warn("Enum class not specified in params: {}", params);
+            return null;
+        }
+
+        Class<?> enumClass;
         try {
-            return Enum.valueOf((Class<E>) enumClass, value);
-        } catch (IllegalArgumentException e) {
-            for (Enum<?> enumValue : enumClass.getEnumConstants()) {
-                if (enumValue.name().equalsIgnoreCase(value)) {
-                    return enumValue;
+            enumClass = Class.forName(enumClassName);
+        } catch (ClassNotFoundException e) {
+            log.warn("Enum class not found: {}", enumClassName, e);
+            return null;
+        }
+        if (!enumClass.isEnum()) {
+            log.warn("Class is not an enum: {}", enumClassName);
+            return null;
+        }
+
+        return new EnumBinding((Class<? extends Enum<?>>) enumClass, parseMappings(params.get("mapping")));
+    }
+
+    /**
+     * Подготовленное сопоставление строк значениям перечисления.
+     * Порядок поиска: пользовательское сопоставление (без учета регистра),
+     * точное имя константы, имя константы без учета регистра
+     */
+    private static final class EnumBinding {
+        private final Class<? extends Enum<?>> enumClass;
+        private final Map<String, Enum<?>> mapped = new HashMap<>();
+        private final Map<String, Enum<?>> exact = new HashMap<>();
+        private final Map<String, Enum<?>> lowerCase = new HashMap<>();
+
+        EnumBinding(Class<? extends Enum<?>> enumClass, Map<String, String> mappings) {
+            this.enumClass = enumClass;
+            for (Enum<?> constant : enumClass.getEnumConstants()) {
+                exact.put(constant.name(), constant);
+                lowerCase.putIfAbsent(constant.name().toLowerCase(), constant);
+            }
+            for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+                Enum<?> constant = exact.get(mapping.getValue());
+                if (constant == null) {
+                    constant = lowerCase.get(mapping.getValue().toLowerCase());
                 }
+                if (constant != null) {
+                    mapped.put(mapping.getKey(), constant);
+                } else {
+                    log.warn("Unknown constant '{}' in mapping for enum {}", mapping.getValue(), enumClass.getName());
+                }
+            }
+        }
+
+        Enum<?> lookup(String value) {
+            String lower = value.toLowerCase();
+            Enum<?> constant = mapped.isEmpty() ? null : mapped.get(lower);
+            if (constant == null) {
+                constant = exact.get(value);
+            }
+            if (constant == null) {
+                constant = lowerCase.get(lower);
+            }
+            if (constant == null) {
+                log.warn("Error transforming string to enum: no constant '{}' in {}", value, enumClass.getName());
             }
-            throw e;
+            return constant;
         }
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,16 @@
 package my.java.util.transformer;
 
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Трансформатор для числовых значений
@@ -15,6 +19,11 @@ import java.util.Locale;
 @Slf4j
 public abstract class NumberTransformer<T extends Number> extends AbstractValueTransformer<T> {
 
+    private static final int MAX_CACHED_PARAMS = 256;
+
+    // Разобранные параметры кэшируются по исходной строке параметров
+    private final Map<String, NumberParams> paramsCache = new ConcurrentHashMap<>();
+
     /**
      * Конструктор трансформатора чисел
      *
@@ -30,6 +39,16 @@ public abstract class NumberTransformer<T extends Number> extends AbstractValueT
             return handleEmpty(params);
         }
 
+        return parseOrNull(value, getParams(params));
+    }
+
+    @Override
+    public CompiledTransformer<T> compile(TransformerParams params) {
+        NumberParams parsed = parseParams(params);
+        return compiled(value -> parseOrNull(value, parsed), handleEmpty(params.getRaw()));
+    }
+
+    private T parseOrNull(String value, NumberParams params) {
         try {
             return parseNumber(value.trim(), params);
         } catch (Exception e) {
@@ -42,44 +61,77 @@ public abstract class NumberTransformer<T extends Number> extends AbstractValueT
      * Преобразует строку в число с учетом локали и формата
      *
      * @param value строковое представление числа
-     * @param params параметры форматирования
+     * @param params разобранные параметры форматирования
      * @return преобразованное число
      * @throws ParseException если преобразование невозможно
      */
-    protected abstract T parseNumber(String value, String params) throws ParseException;
+    abstract T parseNumber(String value, NumberParams params) throws ParseException;
 
     /**
-     * Получает экземпляр NumberFormat на основе указанных параметров
+     * Получает экземпляр NumberFormat на основе указанных параметров.
+     * NumberFormat не потокобезопасен, поэтому возвращается копия закэшированного образца
      *
      * @param params параметры форматирования
      * @return настроенный NumberFormat
      */
     protected NumberFormat getNumberFormat(String params) {
+        return getParams(params).newNumberFormat();
+    }
+
+    NumberParams getParams(String params) {
+        String key = params != null ? params : "";
+        NumberParams parsed = paramsCache.get(key);
+        if (parsed == null) {
+            parsed = parseParams(TransformerParams.of(params));
+            if (paramsCache.size() < MAX_CACHED_PARAMS) {
+                paramsCache.putIfAbsent(key, parsed);
+            }
+        }
+        return parsed;
+    }
+
+    private NumberParams parseParams(TransformerParams params) {
         Locale locale = Locale.getDefault();
 
         // Проверяем, указана ли локаль в параметрах
-        if (params != null && params.contains("locale=")) {
-            String localeParam = extractParameter(params, "locale", null);
-            if (localeParam != null) {
-                // Формат локали: "язык_страна", например "ru_RU"
-                String[] localeParts = localeParam.split("_");
-                if (localeParts.length == 2) {
-                    locale = new Locale(localeParts[0], localeParts[1]);
-                } else if (localeParts.length == 1) {
-                    locale = new Locale(localeParts[0]);
-                }
+        String localeParam = params.get("locale");
+        if (localeParam != null) {
+            // Формат локали: "язык_страна", например "ru_RU"
+            String[] localeParts = localeParam.split("_");
+            if (localeParts.length == 2) {
+                locale = new Locale(localeParts[0], localeParts[1]);
+            } else if (localeParts.length == 1) {
+                locale = new Locale(localeParts[0]);
             }
         }
 
         // Получаем формат числа
-        String pattern = extractParameter(params, "pattern", null);
-        if (pattern != null) {
-            // Используем указанный шаблон
-            return new DecimalFormat(pattern);
-        } else {
-            // Используем стандартный числовой формат для локали
-            return NumberFormat.getNumberInstance(locale);
+        String pattern = params.get("pattern");
+        NumberFormat prototype = pattern != null
+                ? new DecimalFormat(pattern)                  // Используем указанный шаблон
+                : NumberFormat.getNumberInstance(locale);     // Стандартный числовой формат для локали
+
+        String decimal = params.get("decimal");
+        String grouping = params.get("grouping");
+        boolean stripCurrency = params.getFlag("currency", true);
+
+        PriceParser priceParser = decimal == null && grouping == null && stripCurrency
+                ? PriceParser.DEFAULT
+                : new PriceParser(
+                        decimal != null && !decimal.isEmpty() ? decimal.charAt(0) : PriceParser.AUTO,
+                        grouping != null && !grouping.isEmpty() ? grouping.charAt(0) : PriceParser.AUTO,
+                        stripCurrency);
+
+        Integer scale = null;
+        if (params.contains("scale")) {
+            try {
+                scale = params.getInt("scale", 0);
+            } catch (NumberFormatException e) {
+                log.warn("Invalid scale in number params '{}', using default", params);
+            }
         }
+
+        return new NumberParams(pattern, prototype, priceParser, scale);
     }
 
     /**
@@ -91,19 +143,33 @@ public abstract class NumberTransformer<T extends Number> extends AbstractValueT
      * @return значение параметра или значение по умолчанию
      */
     protected String extractParameter(String params, String paramName, String defaultValue) {
-        if (params == null) {
-            return defaultValue;
-        }
-
         // Параметры в формате "param1=value1|param2=value2|..."
-        String[] parts = params.split("\\|");
-        for (String part : parts) {
-            if (part.startsWith(paramName + "=")) {
-                return part.substring((paramName + "=").length());
-            }
-        }
+        return TransformerParams.of(params).get(paramName, defaultValue);
+    }
+}
 
-        return defaultValue;
+/**
+ * Разобранные параметры числового трансформатора
+ */
+@Value
+class NumberParams {
+    String pattern;
+    NumberFormat formatPrototype;
+    PriceParser priceParser;
+    Integer scale;
+
+    /**
+     * Указан ли явный шаблон DecimalFormat
+     */
+    boolean hasPattern() {
+        return pattern != null;
+    }
+
+    /**
+     * NumberFormat не потокобезопасен, поэтому возвращается копия образца
+     */
+    NumberFormat newNumberFormat() {
+        return (NumberFormat) formatPrototype.clone();
     }
 }
 
@@ -118,8 +184,8 @@ class IntegerTransformer extends NumberTransformer<Integer> {
     }
 
     @Override
-    protected Integer parseNumber(String value, String params) throws ParseException {
-        return getNumberFormat(params).parse(value).intValue();
+    Integer parseNumber(String value, NumberParams params) throws ParseException {
+        return params.newNumberFormat().parse(value).intValue();
     }
 
     @Override
@@ -147,8 +213,8 @@ class LongTransformer extends NumberTransformer<Long> {
     }
 
     @Override
-    protected Long parseNumber(String value, String params) throws ParseException {
-        return getNumberFormat(params).parse(value).longValue();
+    Long parseNumber(String value, NumberParams params) throws ParseException {
+        return params.newNumberFormat().parse(value).longValue();
     }
 
     @Override
@@ -176,8 +242,16 @@ class DoubleTransformer extends NumberTransformer<Double> {
     }
 
     @Override
-    protected Double parseNumber(String value, String params) throws ParseException {
-        return getNumberFormat(params).parse(value).doubleValue();
+    Double parseNumber(String value, NumberParams params) throws ParseException {
+        if (params.hasPattern()) {
+            return params.newNumberFormat().parse(value).doubleValue();
+        }
+
+        double result = params.getPriceParser().parseDouble(value);
+        if (Double.isNaN(result)) {
+            throw new ParseException("Not a number: " + value, 0);
+        }
+        return result;
     }
 
     @Override
@@ -192,4 +266,37 @@ class DoubleTransformer extends NumberTransformer<Double> {
             return value.toString();
         }
     }
-}
\ No newline at end of file
+}
+
+/**
+ * Трансформатор десятичных чисел (BigDecimal) для денежных колонок DECIMAL(15,2).
+ * Параметр "scale" задает количество знаков после запятой (по умолчанию 2)
+ */
+@Component
+class BigDecimalTransformer extends NumberTransformer<BigDecimal> {
+
+    private static final int DEFAULT_SCALE = 2;
+
+    public BigDecimalTransformer() {
+        super(BigDecimal.class);
+    }
+
+    @Override
+    BigDecimal parseNumber(String value, NumberParams params) throws ParseException {
+        int scale = params.getScale() != null ? params.getScale() : DEFAULT_SCALE;
+
+        BigDecimal result = params.getPriceParser().parseBigDecimal(value, scale);
+        if (result == null) {
+            throw new ParseException("Not a number: " + value, 0);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString(BigDecimal value, String params) {
+        if (value == null) {
+            return "";
+        }
+        return value.toPlainString();
+    }
+}
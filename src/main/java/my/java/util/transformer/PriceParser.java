@@ -0,0 +1,259 @@
+package my.java.util.transformer;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Быстрый разбор цен и десятичных чисел без NumberFormat и промежуточных строк.
+ * Понимает реальные форматы из файлов: "1 234,56", "1 234,56 руб.", "1,234.56",
+ * неразрывные пробелы в качестве разделителя групп, знак валюты в начале или в конце.
+ * Экземпляр неизменяемый и потокобезопасный
+ */
+public final class PriceParser {
+
+    /**
+     * Разделитель не задан: десятичный разделитель определяется по значению
+     */
+    public static final char AUTO = 0;
+
+    /**
+     * Разбор с автоопределением разделителей и отбрасыванием обозначения валюты
+     */
+    public static final PriceParser DEFAULT = new PriceParser(AUTO, AUTO, true);
+
+    private static final int MAX_DIGITS = 18;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    private final char decimalSeparator;
+    private final char groupingSeparator;
+    private final boolean stripCurrency;
+
+    /**
+     * @param decimalSeparator десятичный разделитель или {@link #AUTO}
+     * @param groupingSeparator дополнительный разделитель групп или {@link #AUTO};
+     *                          пробелы и апостроф разделителями групп считаются всегда
+     * @param stripCurrency отбрасывать ли нецифровые символы до и после числа ("руб.", "₽", "$")
+     */
+    public PriceParser(char decimalSeparator, char groupingSeparator, boolean stripCurrency) {
+        this.decimalSeparator = decimalSeparator;
+        this.groupingSeparator = groupingSeparator;
+        this.stripCurrency = stripCurrency;
+    }
+
+    /**
+     * Разбор значения в double
+     *
+     * @return число или {@link Double#NaN}, если значение не является числом
+     */
+    public double parseDouble(CharSequence value) {
+        long packed = parse(value);
+        if (packed == FAILED) {
+            return Double.NaN;
+        }
+        double result = unpackMantissa(packed) / POWERS_OF_TEN[unpackScale(packed)];
+        return unpackNegative(packed) ? -result : result;
+    }
+
+    /**
+     * Разбор значения в BigDecimal с округлением до указанного количества знаков
+     * (для колонок DECIMAL(15,2) - scale = 2)
+     *
+     * @return число или null, если значение не является числом
+     */
+    public BigDecimal parseBigDecimal(CharSequence value, int scale) {
+        long packed = parse(value);
+        if (packed == FAILED) {
+            return null;
+        }
+        long mantissa = unpackNegative(packed) ? -unpackMantissa(packed) : unpackMantissa(packed);
+        return BigDecimal.valueOf(mantissa, unpackScale(packed)).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    // ===== Разбор =====
+
+    private static final long FAILED = -1L;
+
+    // Результат упаковывается в long без создания объектов:
+    // знак (1 бит), порядок (3 бита, до 7 знаков), мантисса (до 18 цифр, 60 бит)
+    private static final int SCALE_SHIFT = 60;
+    private static final long MANTISSA_MASK = (1L << SCALE_SHIFT) - 1;
+
+    private static long pack(long mantissa, int scale, boolean negative) {
+        return mantissa | ((long) scale << SCALE_SHIFT) | (negative ? Long.MIN_VALUE : 0);
+    }
+
+    private static long unpackMantissa(long packed) {
+        return packed & MANTISSA_MASK;
+    }
+
+    private static int unpackScale(long packed) {
+        return (int) ((packed >>> SCALE_SHIFT) & 0x7);
+    }
+
+    private static boolean unpackNegative(long packed) {
+        return packed < 0 && packed != FAILED;
+    }
+
+    private long parse(CharSequence value) {
+        if (value == null) {
+            return FAILED;
+        }
+
+        int length = value.length();
+
+        // Границы числовой части: от первой до последней цифры
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < length; i++) {
+            if (isDigit(value.charAt(i))) {
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        if (first < 0) {
+            return FAILED;
+        }
+        // Значения вида ".5" и ",5"
+        if (first > 0 && (value.charAt(first - 1) == '.' || value.charAt(first - 1) == ',')) {
+            first--;
+        }
+
+        // Префикс: пробелы, знак, обозначение валюты
+        boolean negative = false;
+        for (int i = 0; i < first; i++) {
+            char c = value.charAt(i);
+            if (c == '-' || c == '\u2212') {
+                if (negative) {
+                    return FAILED;
+                }
+                negative = true;
+            } else if (c == '+' || isSpace(c)) {
+                // допустимо
+            } else if (!stripCurrency || c == '.' || c == ',') {
+                return FAILED;
+            }
+        }
+
+        // Суффикс: пробелы или обозначение валюты ("руб.", "р.", "₽")
+        for (int i = last + 1; i < length; i++) {
+            char c = value.charAt(i);
+            if (!isSpace(c) && !stripCurrency) {
+                return FAILED;
+            }
+        }
+
+        char decimal = resolveDecimalSeparator(value, first, last);
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean inFraction = false;
+
+        for (int i = first; i <= last; i++) {
+            char c = value.charAt(i);
+            if (isDigit(c)) {
+                if (mantissa == 0 && c == '0' && !inFraction) {
+                    continue; // ведущие нули не занимают разряды
+                }
+                if (digits == MAX_DIGITS) {
+                    if (inFraction) {
+                        continue; // лишние дробные знаки отбрасываем
+                    }
+                    return FAILED;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (inFraction) {
+                    scale++;
+                }
+            } else if (c == decimal) {
+                if (inFraction) {
+                    return FAILED;
+                }
+                inFraction = true;
+            } else if (!isGrouping(c, decimal)) {
+                return FAILED;
+            }
+        }
+
+        // Порядок хранится в 3 битах: точность ограничивается 7 знаками после запятой
+        while (scale > 7) {
+            mantissa /= 10;
+            scale--;
+        }
+
+        return pack(mantissa, scale, negative);
+    }
+
+    /**
+     * Определение десятичного разделителя.
+     * Если в числе есть и точка, и запятая, десятичным считается последний из них;
+     * если разделитель встречается несколько раз, это разделитель групп;
+     * единственный разделитель, за которым ровно три цифры и перед которым есть другой
+     * разделитель групп (пробел), тоже считается разделителем групп
+     */
+    private char resolveDecimalSeparator(CharSequence value, int first, int last) {
+        if (decimalSeparator != AUTO) {
+            return decimalSeparator;
+        }
+
+        int dots = 0;
+        int commas = 0;
+        int lastDot = -1;
+        int lastComma = -1;
+        boolean spaceGrouping = false;
+        for (int i = first; i <= last; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                dots++;
+                lastDot = i;
+            } else if (c == ',') {
+                commas++;
+                lastComma = i;
+            } else if (isSpace(c) || c == '\'') {
+                spaceGrouping = true;
+            }
+        }
+
+        if (dots > 0 && commas > 0) {
+            return lastDot > lastComma ? '.' : ',';
+        }
+        if (dots + commas == 0) {
+            return '.';
+        }
+
+        char candidate = dots > 0 ? '.' : ',';
+        if (candidate == groupingSeparator || dots > 1 || commas > 1) {
+            return candidate == '.' ? ',' : '.';
+        }
+
+        int position = dots > 0 ? lastDot : lastComma;
+        if (spaceGrouping && last - position == 3 && position < last) {
+            return candidate == '.' ? ',' : '.';
+        }
+        return candidate;
+    }
+
+    private boolean isGrouping(char c, char decimal) {
+        if (c == decimal) {
+            return false;
+        }
+        return isSpace(c) || c == '\'' || c == groupingSeparator
+                || (groupingSeparator == AUTO && (c == '.' || c == ','));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSpace(char c) {
+        // Обычный, неразрывный, узкий неразрывный и тонкий пробелы
+        return c == ' ' || c == '\u00A0' || c == '\u202F' || c == '\u2009' || c == '\t';
+    }
+}
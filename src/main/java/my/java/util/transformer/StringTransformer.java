@@ -22,14 +22,17 @@ public class StringTransformer extends AbstractValueTransformer<String> {
         }
 
         // Параметры могут содержать указание на обрезку пробелов
-        boolean trim = true;
-        if (params != null && params.contains("trim=false")) {
-            trim = false;
-        }
+        boolean trim = TransformerParams.of(params).getFlag("trim", true);
 
         return trim ? value.trim() : value;
     }
 
+    @Override
+    public CompiledTransformer<String> compile(TransformerParams params) {
+        boolean trim = params.getFlag("trim", true);
+        return compiled(trim ? String::trim : value -> value, handleEmpty(params.getRaw()));
+    }
+
     @Override
     protected String handleEmpty(String params) {
         return getDefaultValue(params, "");
@@ -0,0 +1,114 @@
+package my.java.util.transformer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Разобранные параметры трансформации в формате "param1=value1|param2=value2|...".
+ * Строка параметров разбирается один раз, а не при каждом преобразовании значения.
+ * Если параметр указан несколько раз, используется первое значение.
+ * Экземпляр неизменяемый и потокобезопасный
+ */
+public final class TransformerParams {
+
+    /**
+     * Пустые параметры
+     */
+    public static final TransformerParams EMPTY = new TransformerParams(null, Collections.emptyMap());
+
+    private static final int MAX_CACHED_PARAMS = 1024;
+    private static final Map<String, TransformerParams> CACHE = new ConcurrentHashMap<>();
+
+    private final String raw;
+    private final Map<String, String> values;
+
+    private TransformerParams(String raw, Map<String, String> values) {
+        this.raw = raw;
+        this.values = values;
+    }
+
+    /**
+     * Получение разобранных параметров из кэша
+     *
+     * @param params строка параметров (может быть null)
+     * @return разобранные параметры
+     */
+    public static TransformerParams of(String params) {
+        if (params == null || params.trim().isEmpty()) {
+            return EMPTY;
+        }
+
+        TransformerParams parsed = CACHE.get(params);
+        if (parsed != null) {
+            return parsed;
+        }
+
+        parsed = parse(params);
+        if (CACHE.size() < MAX_CACHED_PARAMS) {
+            CACHE.putIfAbsent(params, parsed);
+        }
+        return parsed;
+    }
+
+    private static TransformerParams parse(String params) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String part : params.split("\\|")) {
+            int separator = part.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            values.putIfAbsent(part.substring(0, separator), part.substring(separator + 1));
+        }
+        return new TransformerParams(params, Collections.unmodifiableMap(values));
+    }
+
+    /**
+     * Значение параметра или null, если параметр не указан
+     */
+    public String get(String name) {
+        return values.get(name);
+    }
+
+    /**
+     * Значение параметра или значение по умолчанию, если параметр не указан
+     */
+    public String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Значение параметра как число или значение по умолчанию
+     *
+     * @throws NumberFormatException если значение параметра не является целым числом
+     */
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    /**
+     * Значение параметра как флаг: "false" (без учета регистра) - ложь, любое другое - истина
+     */
+    public boolean getFlag(String name, boolean defaultValue) {
+        String value = values.get(name);
+        return value != null ? !"false".equalsIgnoreCase(value.trim()) : defaultValue;
+    }
+
+    public boolean contains(String name) {
+        return values.containsKey(name);
+    }
+
+    /**
+     * Исходная строка параметров (null для пустых параметров)
+     */
+    public String getRaw() {
+        return raw;
+    }
+
+    @Override
+    public String toString() {
+        return raw != null ? raw : "";
+    }
+}
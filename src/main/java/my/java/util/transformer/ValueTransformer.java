@@ -39,4 +39,27 @@ public interface ValueTransformer<T> {
      * @return строковое представление значения
      */
     String toString(T value, String params);
+
+    /**
+     * Подготавливает трансформатор для конкретных параметров.
+     * Реализация по умолчанию передает исходную строку параметров в {@link #transform};
+     * трансформаторы с дорогой подготовкой (разбор шаблонов, поиск классов) переопределяют метод
+     *
+     * @param params разобранные параметры
+     * @return трансформатор, специализированный под параметры
+     */
+    default CompiledTransformer<T> compile(TransformerParams params) {
+        String raw = params.getRaw();
+        return new CompiledTransformer<>() {
+            @Override
+            public T transform(String value) {
+                return ValueTransformer.this.transform(value, raw);
+            }
+
+            @Override
+            public Class<T> getTargetType() {
+                return ValueTransformer.this.getTargetType();
+            }
+        };
+    }
 }
\ No newline at end of file
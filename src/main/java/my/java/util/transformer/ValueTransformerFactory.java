@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -19,6 +20,23 @@ import java.util.Map;
 @Slf4j
 public class ValueTransformerFactory {
 
+    /**
+     * Типы трансформаций, доступные в шаблонах маппинга (FieldMappingDetail.transformationType)
+     */
+    private static final Map<String, Class<?>> TRANSFORMATION_TYPES = Map.ofEntries(
+            Map.entry("STRING", String.class),
+            Map.entry("INTEGER", Integer.class),
+            Map.entry("LONG", Long.class),
+            Map.entry("DOUBLE", Double.class),
+            Map.entry("DECIMAL", BigDecimal.class),
+            Map.entry("BOOLEAN", Boolean.class),
+            Map.entry("DATE", LocalDate.class),
+            Map.entry("TIME", LocalTime.class),
+            Map.entry("DATETIME", LocalDateTime.class),
+            Map.entry("ZONED_DATETIME", ZonedDateTime.class),
+            Map.entry("ENUM", Enum.class)
+    );
+
     private final Map<Class<?>, ValueTransformer<?>> transformers = new HashMap<>();
     private final ValueTransformer<String> defaultTransformer;
 
@@ -36,14 +54,24 @@ public class ValueTransformerFactory {
         }
 
         // Устанавливаем строковый трансформатор по умолчанию
-        if (transformers.containsKey(String.class)) {
-            defaultTransformer = (ValueTransformer<String>) transformers.get(String.class);
+        ValueTransformer<?> registered = transformers.get(String.class);
+        if (registered != null) {
+            defaultTransformer = asStringTransformer(registered);
         } else {
             defaultTransformer = new StringTransformer();
             transformers.put(String.class, defaultTransformer);
         }
     }
 
+    /**
+     * Приведение трансформатора, зарегистрированного под ключом String.class
+     */
+    // Ключ карты - getTargetType() трансформатора, поэтому под String.class лежит ValueTransformer<String>
+    @SuppressWarnings("unchecked")
+    private static ValueTransformer<String> asStringTransformer(ValueTransformer<?> transformer) {
+        return (ValueTransformer<String>) transformer;
+    }
+
     /**
      * Получает трансформатор для указанного типа
      *
@@ -82,6 +110,8 @@ public class ValueTransformerFactory {
             return (T) getTransformer(Long.class).transform(value, params);
         } else if (targetType == Double.class || targetType == double.class) {
             return (T) getTransformer(Double.class).transform(value, params);
+        } else if (targetType == BigDecimal.class) {
+            return (T) getTransformer(BigDecimal.class).transform(value, params);
         } else if (targetType == Boolean.class || targetType == boolean.class) {
             return (T) getTransformer(Boolean.class).transform(value, params);
         } else if (targetType == LocalDate.class) {
@@ -104,6 +134,52 @@ public class ValueTransformerFactory {
         }
     }
 
+    /**
+     * Подготавливает трансформатор по типу трансформации из шаблона маппинга.
+     * Параметры разбираются один раз; для ENUM класс перечисления задается параметром "class"
+     *
+     * @param transformationType тип трансформации (STRING, INTEGER, DECIMAL, DATE, ENUM и т.д.)
+     * @param params строка параметров трансформации
+     * @return трансформатор, специализированный под параметры
+     * @throws IllegalArgumentException если тип трансформации неизвестен
+     */
+    public CompiledTransformer<?> compile(String transformationType, String params) {
+        Class<?> targetType = transformationType != null
+                ? TRANSFORMATION_TYPES.get(transformationType.trim().toUpperCase())
+                : null;
+        if (targetType == null) {
+            throw new IllegalArgumentException("Неизвестный тип трансформации: " + transformationType);
+        }
+        return transformers.getOrDefault(targetType, defaultTransformer).compile(TransformerParams.of(params));
+    }
+
+    /**
+     * Каноническое строковое представление значения, которое однозначно
+     * разбирается трансформаторами без параметров (числа - без группировки и экспоненты)
+     *
+     * @param value значение
+     * @return строковое представление или null для null
+     */
+    public String toCanonicalString(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            return Double.isFinite(number) ? BigDecimal.valueOf(number).toPlainString() : null;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof String) {
+            return value.toString();
+        }
+        if (value instanceof Enum<?> enumValue) {
+            return enumValue.name();
+        }
+        return toString(value, null);
+    }
+
     /**
      * Проверяет возможность преобразования строки в указанный тип
      *
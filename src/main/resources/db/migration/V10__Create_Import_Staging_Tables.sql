@@ -0,0 +1,70 @@
+-- src/main/resources/db/migration/V10__Create_Import_Staging_Tables.sql
+
+-- Промежуточные таблицы COMBINED импорта (режим STAGING).
+-- Пакет загружается в них через COPY с бизнес-ключом product_id, связи конкурентов и регионов
+-- с товарами разрешаются запросами INSERT ... SELECT внутри PostgreSQL.
+-- Таблицы нежурналируемые: данные живут в пределах транзакции пакета и не пишутся в WAL
+CREATE UNLOGGED TABLE IF NOT EXISTS import_stage_products (
+                                                            operation_id BIGINT NOT NULL,
+                                                            row_no INTEGER NOT NULL,
+                                                            client_id BIGINT NOT NULL,
+                                                            data_source VARCHAR(20),
+                                                            product_id VARCHAR(255),
+                                                            product_name VARCHAR(400),
+                                                            product_brand VARCHAR(255),
+                                                            product_bar VARCHAR(255),
+                                                            product_description TEXT,
+                                                            product_url VARCHAR(1100),
+                                                            product_category1 VARCHAR(255),
+                                                            product_category2 VARCHAR(255),
+                                                            product_category3 VARCHAR(255),
+                                                            product_price DECIMAL(15,2),
+                                                            product_analog VARCHAR(255),
+                                                            product_additional1 VARCHAR(255),
+                                                            product_additional2 VARCHAR(255),
+                                                            product_additional3 VARCHAR(255),
+                                                            product_additional4 VARCHAR(255),
+                                                            product_additional5 VARCHAR(255),
+                                                            content_hash BIGINT,
+                                                            target_id BIGINT,
+                                                            is_new BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+CREATE UNLOGGED TABLE IF NOT EXISTS import_stage_competitors (
+                                                               operation_id BIGINT NOT NULL,
+                                                               row_no INTEGER NOT NULL,
+                                                               client_id BIGINT NOT NULL,
+                                                               competitor_name VARCHAR(400),
+                                                               competitor_price VARCHAR(255),
+                                                               competitor_promotional_price VARCHAR(255),
+                                                               competitor_time VARCHAR(255),
+                                                               competitor_date VARCHAR(255),
+                                                               competitor_local_date_time TIMESTAMP,
+                                                               competitor_stock_status VARCHAR(255),
+                                                               competitor_additional_price VARCHAR(255),
+                                                               competitor_commentary VARCHAR(1000),
+                                                               competitor_product_name VARCHAR(400),
+                                                               competitor_additional VARCHAR(255),
+                                                               competitor_additional2 VARCHAR(255),
+                                                               competitor_url VARCHAR(1200),
+                                                               competitor_web_cache_url VARCHAR(1200)
+);
+
+CREATE UNLOGGED TABLE IF NOT EXISTS import_stage_regions (
+                                                           operation_id BIGINT NOT NULL,
+                                                           row_no INTEGER NOT NULL,
+                                                           client_id BIGINT NOT NULL,
+                                                           region VARCHAR(255),
+                                                           region_address VARCHAR(400)
+);
+
+CREATE INDEX IF NOT EXISTS idx_import_stage_products_operation ON import_stage_products(operation_id, row_no);
+CREATE INDEX IF NOT EXISTS idx_import_stage_competitors_operation ON import_stage_competitors(operation_id);
+CREATE INDEX IF NOT EXISTS idx_import_stage_regions_operation ON import_stage_regions(operation_id);
+
+-- Комментарии
+COMMENT ON TABLE import_stage_products IS 'Промежуточные строки товаров пакета COMBINED импорта';
+COMMENT ON COLUMN import_stage_products.row_no IS 'Номер строки в пакете, по нему связываются конкуренты и регионы';
+COMMENT ON COLUMN import_stage_products.target_id IS 'products.id: найденный по product_id или выданный из последовательности';
+COMMENT ON TABLE import_stage_competitors IS 'Промежуточные строки конкурентов пакета COMBINED импорта';
+COMMENT ON TABLE import_stage_regions IS 'Промежуточные строки регионов пакета COMBINED импорта';
@@ -0,0 +1,6 @@
+-- src/main/resources/db/migration/V11__Add_Low_Cardinality_To_Mapping_Details.sql
+
+-- Признак столбца с повторяющимися значениями (регион, бренд, категория):
+-- при импорте значения хранятся в пуле канонических строк.
+-- NULL - признак определяется по статистике анализа файла
+ALTER TABLE field_mapping_details ADD COLUMN IF NOT EXISTS low_cardinality BOOLEAN;
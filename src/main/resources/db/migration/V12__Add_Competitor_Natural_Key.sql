@@ -0,0 +1,40 @@
+-- src/main/resources/db/migration/V12__Add_Competitor_Natural_Key.sql
+
+-- Естественный ключ записи конкурента: клиент, товар, конкурент, ссылка и месяц наблюдения.
+-- Повторный импорт цен за тот же месяц обновляет (OVERRIDE) или оставляет (SKIP, IGNORE)
+-- существующую запись вместо добавления новой; наблюдения других месяцев - история цен
+-- и сохраняются. Ссылка входит в индекс через md5: значения до 1200 символов превышают
+-- допустимый размер строки индекса
+
+-- Месяц наблюдения: месяц competitor_local_date_time, а если дата неизвестна - месяц загрузки
+ALTER TABLE competitor_data
+    ADD COLUMN IF NOT EXISTS observed_month DATE NOT NULL DEFAULT date_trunc('month', LOCALTIMESTAMP)::date;
+
+UPDATE competitor_data
+SET observed_month = date_trunc('month', COALESCE(competitor_local_date_time, created_at::timestamp,
+                                                  LOCALTIMESTAMP))::date;
+
+-- Удаляем только повторы одного наблюдаемого месяца, оставляя последнее наблюдение ключа.
+-- Записи разных месяцев не удаляются
+DELETE FROM competitor_data
+WHERE id IN (
+    SELECT id
+    FROM (
+        SELECT id,
+               row_number() OVER (
+                   PARTITION BY client_id, COALESCE(product_id, 0), COALESCE(competitor_name, ''),
+                                md5(COALESCE(competitor_url, '')), observed_month
+                   ORDER BY competitor_local_date_time DESC NULLS LAST, id DESC
+               ) AS rn
+        FROM competitor_data
+    ) ranked
+    WHERE rn > 1
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_competitor_data_natural_key
+    ON competitor_data (client_id, (COALESCE(product_id, 0)), (COALESCE(competitor_name, '')),
+                        (md5(COALESCE(competitor_url, ''))), observed_month);
+
+-- Комментарии
+COMMENT ON COLUMN competitor_data.observed_month IS 'Месяц наблюдения: месяц даты наблюдения или месяц загрузки';
+COMMENT ON INDEX uq_competitor_data_natural_key IS 'Естественный ключ записи конкурента для INSERT ... ON CONFLICT';
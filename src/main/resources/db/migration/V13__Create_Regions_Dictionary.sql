@@ -0,0 +1,48 @@
+-- src/main/resources/db/migration/V13__Create_Regions_Dictionary.sql
+
+-- Справочник регионов клиента: строка region_data хранит ссылку вместо текста
+-- города и адреса (до 400 символов), повторяющегося для каждого товара каждого импорта
+CREATE TABLE IF NOT EXISTS regions (
+                                       id BIGSERIAL PRIMARY KEY,
+                                       client_id BIGINT NOT NULL REFERENCES clients(id) ON DELETE CASCADE,
+                                       region VARCHAR(255),
+                                       region_address VARCHAR(400),
+                                       created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Ключ справочника; NULL и пустая строка не различаются
+CREATE UNIQUE INDEX IF NOT EXISTS uq_regions_client_region_address
+    ON regions (client_id, (COALESCE(region, '')), (COALESCE(region_address, '')));
+
+CREATE INDEX IF NOT EXISTS idx_regions_client_region ON regions(client_id, region);
+
+-- Переносим существующие значения в справочник
+INSERT INTO regions (client_id, region, region_address)
+SELECT DISTINCT client_id, region, region_address
+FROM region_data
+ON CONFLICT DO NOTHING;
+
+ALTER TABLE region_data ADD COLUMN IF NOT EXISTS region_id BIGINT REFERENCES regions(id);
+
+UPDATE region_data d
+SET region_id = r.id
+FROM regions r
+WHERE r.client_id = d.client_id
+  AND COALESCE(r.region, '') = COALESCE(d.region, '')
+  AND COALESCE(r.region_address, '') = COALESCE(d.region_address, '');
+
+-- Текстовые столбцы и их индексы больше не нужны
+DROP INDEX IF EXISTS idx_region_data_region;
+DROP INDEX IF EXISTS idx_region_data_client_region;
+ALTER TABLE region_data
+    DROP COLUMN IF EXISTS region,
+    DROP COLUMN IF EXISTS region_address;
+
+CREATE INDEX IF NOT EXISTS idx_region_data_region_id ON region_data(region_id);
+
+-- Промежуточная таблица STAGING получает уже разрешенную ссылку
+ALTER TABLE import_stage_regions ADD COLUMN IF NOT EXISTS region_id BIGINT;
+
+-- Комментарии
+COMMENT ON TABLE regions IS 'Справочник регионов клиента (город и адрес)';
+COMMENT ON COLUMN region_data.region_id IS 'Ссылка на справочник regions';
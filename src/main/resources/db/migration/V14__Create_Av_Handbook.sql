@@ -0,0 +1,32 @@
+-- src/main/resources/db/migration/V14__Create_Av_Handbook.sql
+
+-- Справочник розничных сетей: код и название сети, адрес точки, ценовая зона, сайт и регион.
+-- Таблица могла быть создана Hibernate по сущности AvHandbook, поэтому IF NOT EXISTS
+CREATE TABLE IF NOT EXISTS av_handbook (
+                                           id BIGSERIAL PRIMARY KEY,
+                                           handbook_retail_network_code VARCHAR(255),
+                                           handbook_retail_network VARCHAR(255),
+                                           handbook_physical_address VARCHAR(255),
+                                           handbook_price_zone_code VARCHAR(255),
+                                           handbook_web_site VARCHAR(255),
+                                           handbook_region_code VARCHAR(255),
+                                           handbook_region_name VARCHAR(255),
+                                           created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+                                           updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Ключ записи справочника для повторной загрузки (INSERT ... ON CONFLICT): сеть и адрес точки
+CREATE UNIQUE INDEX IF NOT EXISTS uq_av_handbook_network_address
+    ON av_handbook (handbook_retail_network_code, (COALESCE(handbook_physical_address, '')));
+
+-- Запись справочника, сопоставленная конкуренту при импорте
+ALTER TABLE competitor_data
+    ADD COLUMN IF NOT EXISTS handbook_id BIGINT REFERENCES av_handbook(id) ON DELETE SET NULL;
+
+CREATE INDEX IF NOT EXISTS idx_competitor_data_handbook_id ON competitor_data(handbook_id);
+
+ALTER TABLE import_stage_competitors ADD COLUMN IF NOT EXISTS handbook_id BIGINT;
+
+-- Комментарии
+COMMENT ON TABLE av_handbook IS 'Справочник розничных сетей, ценовых зон и регионов';
+COMMENT ON COLUMN competitor_data.handbook_id IS 'Запись справочника av_handbook (по сайту или коду сети и региону)';
@@ -0,0 +1,28 @@
+-- src/main/resources/db/migration/V15__Add_Competitor_Typed_Columns.sql
+
+-- Типизированные копии строковых цен и даты/времени конкурента. Заполняются при импорте,
+-- существующие строки дозаполняет CompetitorTypedValuesBackfill (форматы файлов разбираются
+-- тем же кодом, что при импорте: "1 234,56 руб.", "12.03.2024" и т.д.)
+ALTER TABLE competitor_data
+    ADD COLUMN IF NOT EXISTS competitor_price_value NUMERIC(15, 2),
+    ADD COLUMN IF NOT EXISTS competitor_promotional_price_value NUMERIC(15, 2),
+    ADD COLUMN IF NOT EXISTS competitor_observed_at TIMESTAMP;
+
+ALTER TABLE import_stage_competitors
+    ADD COLUMN IF NOT EXISTS competitor_price_value NUMERIC(15, 2),
+    ADD COLUMN IF NOT EXISTS competitor_promotional_price_value NUMERIC(15, 2),
+    ADD COLUMN IF NOT EXISTS competitor_observed_at TIMESTAMP;
+
+-- Минимальная цена конкурентов по товару
+CREATE INDEX IF NOT EXISTS idx_competitor_data_product_price
+    ON competitor_data(product_id, competitor_price_value)
+    WHERE competitor_price_value IS NOT NULL;
+
+-- Изменения цен клиента за период
+CREATE INDEX IF NOT EXISTS idx_competitor_data_client_observed_at
+    ON competitor_data(client_id, competitor_observed_at DESC);
+
+-- Комментарии
+COMMENT ON COLUMN competitor_data.competitor_price_value IS 'Цена конкурента (разобранное значение competitor_price)';
+COMMENT ON COLUMN competitor_data.competitor_promotional_price_value IS 'Акционная цена (разобранное значение competitor_promotional_price)';
+COMMENT ON COLUMN competitor_data.competitor_observed_at IS 'Дата и время наблюдения (competitor_local_date_time или competitor_date + competitor_time)';
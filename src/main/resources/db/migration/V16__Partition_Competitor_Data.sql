@@ -0,0 +1,115 @@
+-- src/main/resources/db/migration/V16__Partition_Competitor_Data.sql
+
+-- Перевод competitor_data на секционирование по месяцу наблюдения.
+-- Ключ секционирования - observed_month (первый день месяца наблюдения, а если дата
+-- наблюдения неизвестна - месяца загрузки; см. V12): уникальные ключи секционированной таблицы
+-- обязаны включать ключ секционирования, а выражения и NULL в нем недопустимы.
+-- Месяц переносится как есть: на нем уже построен естественный ключ V12.
+-- Секции на следующие месяцы создает и старые отсоединяет CompetitorPartitionManager
+
+ALTER TABLE competitor_data RENAME TO competitor_data_unpartitioned;
+ALTER SEQUENCE competitor_data_id_seq OWNED BY NONE;
+
+CREATE TABLE competitor_data (
+                                 id BIGINT NOT NULL DEFAULT nextval('competitor_data_id_seq'),
+                                 client_id BIGINT NOT NULL REFERENCES clients(id) ON DELETE CASCADE,
+                                 product_id BIGINT REFERENCES products(id) ON DELETE CASCADE,
+
+                                 competitor_name VARCHAR(400),
+                                 competitor_price VARCHAR(255),
+                                 competitor_promotional_price VARCHAR(255),
+                                 competitor_time VARCHAR(255),
+                                 competitor_date VARCHAR(255),
+                                 competitor_local_date_time TIMESTAMP,
+                                 competitor_stock_status VARCHAR(255),
+                                 competitor_additional_price VARCHAR(255),
+                                 competitor_commentary VARCHAR(1000),
+                                 competitor_product_name VARCHAR(400),
+                                 competitor_additional VARCHAR(255),
+                                 competitor_additional2 VARCHAR(255),
+                                 competitor_url VARCHAR(1200),
+                                 competitor_web_cache_url VARCHAR(1200),
+
+                                 competitor_price_value NUMERIC(15, 2),
+                                 competitor_promotional_price_value NUMERIC(15, 2),
+                                 competitor_observed_at TIMESTAMP,
+                                 observed_month DATE NOT NULL DEFAULT date_trunc('month', LOCALTIMESTAMP)::date,
+                                 handbook_id BIGINT REFERENCES av_handbook(id) ON DELETE SET NULL,
+
+                                 created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+                                 updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+) PARTITION BY RANGE (observed_month);
+
+-- Строки вне созданных секций (исторические или будущие даты) попадают в секцию по умолчанию,
+-- менеджер секций переносит их в месячные секции
+CREATE TABLE competitor_data_default PARTITION OF competitor_data DEFAULT;
+
+-- Месячные секции: от самого раннего месяца данных (не более пяти лет назад) до трех месяцев вперед
+DO $$
+    DECLARE
+        first_month DATE;
+        last_month DATE := (date_trunc('month', LOCALTIMESTAMP) + INTERVAL '3 months')::date;
+        month DATE;
+    BEGIN
+        SELECT MIN(observed_month)
+        INTO first_month
+        FROM competitor_data_unpartitioned;
+
+        -- Ошибочные даты в далеком прошлом остаются в секции по умолчанию
+        month := GREATEST(LEAST(COALESCE(first_month, last_month), date_trunc('month', LOCALTIMESTAMP)::date),
+                          (date_trunc('month', LOCALTIMESTAMP) - INTERVAL '5 years')::date);
+        WHILE month <= last_month LOOP
+                EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF competitor_data FOR VALUES FROM (%L) TO (%L)',
+                               'competitor_data_p' || to_char(month, 'YYYYMM'), month, (month + INTERVAL '1 month')::date);
+                month := (month + INTERVAL '1 month')::date;
+            END LOOP;
+    END $$;
+
+INSERT INTO competitor_data (
+    id, client_id, product_id, competitor_name, competitor_price, competitor_promotional_price,
+    competitor_time, competitor_date, competitor_local_date_time, competitor_stock_status,
+    competitor_additional_price, competitor_commentary, competitor_product_name, competitor_additional,
+    competitor_additional2, competitor_url, competitor_web_cache_url, competitor_price_value,
+    competitor_promotional_price_value, competitor_observed_at, observed_month, handbook_id,
+    created_at, updated_at
+)
+SELECT id, client_id, product_id, competitor_name, competitor_price, competitor_promotional_price,
+       competitor_time, competitor_date, competitor_local_date_time, competitor_stock_status,
+       competitor_additional_price, competitor_commentary, competitor_product_name, competitor_additional,
+       competitor_additional2, competitor_url, competitor_web_cache_url, competitor_price_value,
+       competitor_promotional_price_value, competitor_observed_at, observed_month, handbook_id, created_at, updated_at
+FROM competitor_data_unpartitioned;
+
+DROP TABLE competitor_data_unpartitioned;
+ALTER SEQUENCE competitor_data_id_seq OWNED BY competitor_data.id;
+
+-- Индексы создаются после переноса данных
+ALTER TABLE competitor_data ADD PRIMARY KEY (id, observed_month);
+
+CREATE INDEX idx_competitor_data_client_id ON competitor_data(client_id);
+CREATE INDEX idx_competitor_data_product_id ON competitor_data(product_id);
+CREATE INDEX idx_competitor_data_name ON competitor_data(competitor_name);
+CREATE INDEX idx_competitor_data_date ON competitor_data(competitor_local_date_time DESC);
+CREATE INDEX idx_competitor_data_client_name ON competitor_data(client_id, competitor_name);
+CREATE INDEX idx_competitor_data_handbook_id ON competitor_data(handbook_id);
+CREATE INDEX idx_competitor_data_product_price
+    ON competitor_data(product_id, competitor_price_value)
+    WHERE competitor_price_value IS NOT NULL;
+CREATE INDEX idx_competitor_data_client_observed_at
+    ON competitor_data(client_id, competitor_observed_at DESC);
+
+-- Естественный ключ записи конкурента в пределах месяца наблюдения
+CREATE UNIQUE INDEX uq_competitor_data_natural_key
+    ON competitor_data (client_id, (COALESCE(product_id, 0)), (COALESCE(competitor_name, '')),
+                        (md5(COALESCE(competitor_url, ''))), observed_month);
+
+CREATE TRIGGER update_competitor_data_updated_at
+    BEFORE UPDATE ON competitor_data
+    FOR EACH ROW
+EXECUTE FUNCTION update_updated_at_column();
+
+ALTER TABLE import_stage_competitors ADD COLUMN IF NOT EXISTS observed_month DATE;
+
+-- Комментарии
+COMMENT ON COLUMN competitor_data.observed_month IS 'Месяц наблюдения (ключ секционирования): месяц competitor_observed_at или месяц загрузки';
+COMMENT ON INDEX uq_competitor_data_natural_key IS 'Естественный ключ записи конкурента для INSERT ... ON CONFLICT';
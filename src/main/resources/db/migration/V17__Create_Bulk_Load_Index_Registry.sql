@@ -0,0 +1,13 @@
+-- src/main/resources/db/migration/V17__Create_Bulk_Load_Index_Registry.sql
+
+-- Индексы, удаленные на время массовой загрузки. Определение сохраняется до удаления индекса
+-- в той же транзакции, поэтому после сбоя приложения индекс восстанавливается при старте
+CREATE TABLE IF NOT EXISTS bulk_load_dropped_indexes (
+                                                         index_name VARCHAR(63) PRIMARY KEY,
+                                                         table_name VARCHAR(63) NOT NULL,
+                                                         index_definition TEXT NOT NULL,
+                                                         operation_id BIGINT,
+                                                         dropped_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON TABLE bulk_load_dropped_indexes IS 'Вторичные индексы, удаленные на время массовой загрузки (восстанавливаются CREATE INDEX CONCURRENTLY)';
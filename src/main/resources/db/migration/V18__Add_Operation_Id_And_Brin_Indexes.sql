@@ -0,0 +1,28 @@
+-- src/main/resources/db/migration/V18__Add_Operation_Id_And_Brin_Indexes.sql
+
+-- Операция импорта, создавшая запись (как products.operation_id). У строк, загруженных раньше, - NULL
+ALTER TABLE competitor_data
+    ADD COLUMN IF NOT EXISTS operation_id BIGINT REFERENCES file_operations(id);
+ALTER TABLE region_data
+    ADD COLUMN IF NOT EXISTS operation_id BIGINT REFERENCES file_operations(id);
+
+-- Импорт пишет строки пакетами в конец таблицы, поэтому created_at и operation_id в основном растут
+-- вместе с физическим порядком строк. Таблицы при этом меняются и на месте: OVERRIDE обновляет запись
+-- конкурента по естественному ключу, DELTA удаляет и заново вставляет связанные записи, менеджер секций
+-- переносит строки из секции по умолчанию, удаление данных операции освобождает страницы. Новые версии
+-- строк попадают в освободившееся место, и диапазоны страниц со временем перекрываются: индекс остается
+-- корректным, но отбирает больше страниц. BRIN-индекс хранит min/max на диапазон страниц: он в сотни раз
+-- меньше B-tree и почти не замедляет вставку, поэтому годится для выборки по периоду загрузки и операции,
+-- но не заменяет B-tree для точечного поиска. Новые диапазоны обобщаются автоочисткой (autosummarize)
+CREATE INDEX IF NOT EXISTS idx_competitor_data_created_at_brin
+    ON competitor_data USING brin (created_at) WITH (autosummarize = on);
+CREATE INDEX IF NOT EXISTS idx_competitor_data_operation_brin
+    ON competitor_data USING brin (operation_id) WITH (autosummarize = on);
+
+CREATE INDEX IF NOT EXISTS idx_region_data_created_at_brin
+    ON region_data USING brin (created_at) WITH (autosummarize = on);
+CREATE INDEX IF NOT EXISTS idx_region_data_operation_brin
+    ON region_data USING brin (operation_id) WITH (autosummarize = on);
+
+COMMENT ON COLUMN competitor_data.operation_id IS 'Операция импорта, создавшая запись';
+COMMENT ON COLUMN region_data.operation_id IS 'Операция импорта, создавшая запись';
@@ -0,0 +1,33 @@
+-- src/main/resources/db/migration/V19__Handbook_Key_Null_Network_Code.sql
+
+-- Ключ справочника сетей учитывал код сети как есть: NULL не равен NULL в уникальном индексе,
+-- поэтому записи без кода сети при каждой повторной загрузке добавлялись заново.
+-- Код сети, как и адрес, сравнивается через COALESCE (NULL и пустая строка не различаются)
+
+-- Дубликаты по новому ключу: остается последняя загруженная запись
+CREATE TEMPORARY TABLE av_handbook_duplicates AS
+SELECT id, keep_id
+FROM (SELECT id,
+             FIRST_VALUE(id) OVER (
+                 PARTITION BY COALESCE(handbook_retail_network_code, ''), COALESCE(handbook_physical_address, '')
+                 ORDER BY id DESC) AS keep_id
+      FROM av_handbook) ranked
+WHERE id <> keep_id;
+
+UPDATE competitor_data c
+SET handbook_id = d.keep_id
+FROM av_handbook_duplicates d
+WHERE c.handbook_id = d.id;
+
+DELETE FROM av_handbook h
+USING av_handbook_duplicates d
+WHERE h.id = d.id;
+
+DROP TABLE av_handbook_duplicates;
+
+DROP INDEX IF EXISTS uq_av_handbook_network_address;
+
+CREATE UNIQUE INDEX uq_av_handbook_network_address
+    ON av_handbook ((COALESCE(handbook_retail_network_code, '')), (COALESCE(handbook_physical_address, '')));
+
+COMMENT ON INDEX uq_av_handbook_network_address IS 'Ключ записи справочника для INSERT ... ON CONFLICT: код сети и адрес точки';
@@ -0,0 +1,12 @@
+-- src/main/resources/db/migration/V20__Add_Related_Hash_To_Products.sql
+
+-- 64-битный хеш связанных записей товара (конкуренты и регионы строки файла).
+-- content_hash во всех режимах - хеш только полей товара; related_hash записывает режим DELTA,
+-- когда связанные записи товара совпадают со строкой файла. Другие режимы сбрасывают его в NULL,
+-- если записали связанные записи с другим содержимым; NULL - связанные записи не сверены
+ALTER TABLE products ADD COLUMN IF NOT EXISTS related_hash BIGINT;
+
+ALTER TABLE import_stage_products ADD COLUMN IF NOT EXISTS related_hash BIGINT;
+
+-- Комментарии
+COMMENT ON COLUMN products.related_hash IS 'Хеш связанных конкурентов и регионов, записанных режимом DELTA';
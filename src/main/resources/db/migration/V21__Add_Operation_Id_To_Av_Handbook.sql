@@ -0,0 +1,11 @@
+-- src/main/resources/db/migration/V21__Add_Operation_Id_To_Av_Handbook.sql
+
+-- Операция импорта, создавшая запись справочника (по ней удаляются данные операции).
+-- Справочник общий для клиентов, поэтому удаление операции не удаляет записи, а обнуляет ссылку.
+-- Повторная загрузка справочника ссылку не меняет. У строк, загруженных раньше, - NULL
+ALTER TABLE av_handbook
+    ADD COLUMN IF NOT EXISTS operation_id BIGINT REFERENCES file_operations(id) ON DELETE SET NULL;
+
+CREATE INDEX IF NOT EXISTS idx_av_handbook_operation ON av_handbook(operation_id);
+
+COMMENT ON COLUMN av_handbook.operation_id IS 'Операция импорта, создавшая запись';
@@ -0,0 +1,11 @@
+-- src/main/resources/db/migration/V5__Add_Cancelled_Operation_Status.sql
+
+-- Добавляем статус CANCELLED для операций, отмененных пользователем
+ALTER TABLE file_operations
+    DROP CONSTRAINT IF EXISTS file_operations_status_check;
+
+ALTER TABLE file_operations
+    ADD CONSTRAINT file_operations_status_check
+        CHECK (status IN ('PENDING', 'PROCESSING', 'COMPLETED', 'FAILED', 'CANCELLED'));
+
+COMMENT ON COLUMN file_operations.status IS 'Статус операции: PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED';
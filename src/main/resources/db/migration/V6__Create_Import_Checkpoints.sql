@@ -0,0 +1,16 @@
+-- src/main/resources/db/migration/V6__Create_Import_Checkpoints.sql
+
+-- Контрольные точки импорта: позиция в файле после последнего записанного пакета
+CREATE TABLE IF NOT EXISTS import_checkpoints (
+                                                  operation_id BIGINT PRIMARY KEY REFERENCES file_operations(id) ON DELETE CASCADE,
+                                                  byte_offset BIGINT NOT NULL DEFAULT 0,
+                                                  line_number INTEGER NOT NULL DEFAULT 0,
+                                                  processed_records INTEGER NOT NULL DEFAULT 0,
+                                                  updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Комментарии
+COMMENT ON TABLE import_checkpoints IS 'Контрольные точки для возобновления прерванных импортов';
+COMMENT ON COLUMN import_checkpoints.byte_offset IS 'Смещение в байтах после последней строки записанного пакета';
+COMMENT ON COLUMN import_checkpoints.line_number IS 'Номер последней прочитанной строки файла';
+COMMENT ON COLUMN import_checkpoints.processed_records IS 'Количество обработанных записей на момент контрольной точки';
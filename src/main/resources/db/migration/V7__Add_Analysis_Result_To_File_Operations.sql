@@ -0,0 +1,10 @@
+-- src/main/resources/db/migration/V7__Add_Analysis_Result_To_File_Operations.sql
+
+-- Результат анализа файла сохраняется в операции и переиспользуется при повторной загрузке
+ALTER TABLE file_operations ADD COLUMN IF NOT EXISTS analysis_result TEXT;
+
+-- Поиск ранее проанализированного файла по хешу содержимого
+CREATE INDEX IF NOT EXISTS idx_file_operations_file_hash ON file_operations(file_hash);
+
+-- Комментарии
+COMMENT ON COLUMN file_operations.analysis_result IS 'Результат анализа файла (кодировка, разделитель, заголовки, статистика столбцов) в формате JSON';
@@ -0,0 +1,5 @@
+-- src/main/resources/db/migration/V8__Add_File_Hash_Dedup_Index.sql
+
+-- Проверка повторной загрузки файла одним индексным поиском перед постановкой импорта в очередь
+CREATE INDEX IF NOT EXISTS idx_file_operations_client_hash_mapping
+    ON file_operations(client_id, file_hash, field_mapping_id);
@@ -0,0 +1,6 @@
+-- src/main/resources/db/migration/V9__Add_Content_Hash_To_Products.sql
+
+-- 64-битный хеш импортируемых полей товара.
+-- При перезаписи (OVERRIDE) строки с совпадающим хешем не обновляются;
+-- у существующих строк значение NULL, они обновятся при следующем импорте
+ALTER TABLE products ADD COLUMN IF NOT EXISTS content_hash BIGINT;
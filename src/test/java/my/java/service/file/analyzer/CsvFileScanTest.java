@@ -0,0 +1,120 @@
+package my.java.service.file.analyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvFileScanTest {
+
+    @TempDir
+    Path dir;
+
+    private CsvFileScan scan(String content) throws IOException {
+        Path file = dir.resolve("scan.csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return CsvFileScan.scan(file, true);
+    }
+
+    @Test
+    void countsNonEmptyLines() throws IOException {
+        CsvFileScan scan = scan("id,name\n1,a\n\n   \n2,b\r\n3,c");
+        // Последняя строка без перевода строки тоже запись
+        assertEquals(4, scan.getRecordCount('"'));
+        assertEquals(4, scan.getRecordCount('\''));
+    }
+
+    @Test
+    void quotedNewlinesDoNotSplitRecords() throws IOException {
+        CsvFileScan scan = scan("id,description\n1,\"first line\nsecond line\"\n2,\"one\"\"quote\"\n");
+        assertEquals(3, scan.getRecordCount('"'));
+        // Для апострофа переводы строк внутри двойных кавычек - границы записей
+        assertEquals(4, scan.getRecordCount('\''));
+    }
+
+    @Test
+    void apostropheQuoting() throws IOException {
+        CsvFileScan scan = scan("id;name\n1;'multi\nline'\n");
+        assertEquals(2, scan.getRecordCount('\''));
+        assertEquals(3, scan.getRecordCount('"'));
+    }
+
+    @Test
+    void escapedQuoteDoesNotToggleQuoting() throws IOException {
+        CsvFileScan scan = scan("id,name\n1,\"say \\\"hi\nthere\"\n2,b\n");
+        assertEquals(3, scan.getRecordCount('"'));
+    }
+
+    @Test
+    void unbalancedQuoteFallsBackToPlainLines() throws IOException {
+        CsvFileScan scan = scan("id,name\n1,\"never closed\n2,b\n3,c\n");
+        assertEquals(4, scan.getRecordCount('"'));
+    }
+
+    @Test
+    void unknownQuoteCharUsesPlainLines() throws IOException {
+        CsvFileScan scan = scan("id,name\n1,\"a\nb\"\n");
+        assertEquals(3, scan.getRecordCount('|'));
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        CsvFileScan scan = scan("");
+        assertEquals(0, scan.getSize());
+        assertEquals(0, scan.getRecordCount('"'));
+        assertEquals(1, scan.getWindows().size());
+        assertEquals(0, scan.getHead().length);
+    }
+
+    @Test
+    void computesSha256OnlyWhenRequested() throws IOException, NoSuchAlgorithmException {
+        String content = "id,name\n1,молоко\n";
+        CsvFileScan scan = scan(content);
+        String expected = HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(expected, scan.getSha256());
+
+        assertNull(CsvFileScan.scan(dir.resolve("scan.csv"), false).getSha256());
+    }
+
+    @Test
+    void smallFileIsOneWindow() throws IOException {
+        String content = "id,name\n1,a\n";
+        CsvFileScan scan = scan(content);
+        List<byte[]> windows = scan.getWindows();
+        assertEquals(1, windows.size());
+        assertArrayEquals(content.getBytes(StandardCharsets.UTF_8), windows.get(0));
+    }
+
+    @Test
+    void largeFileWindowsMatchEncodingDetector() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int line = 0;
+        while (out.size() < 5 * CsvFileScan.WINDOW_SIZE) {
+            out.writeBytes(("row " + line++ + ",значение с кириллицей\n").getBytes(StandardCharsets.UTF_8));
+        }
+        Path file = dir.resolve("large.csv");
+        Files.write(file, out.toByteArray());
+
+        CsvFileScan scan = CsvFileScan.scan(file, false);
+        assertEquals(out.size(), scan.getSize());
+        assertEquals(line, scan.getRecordCount('"'));
+
+        List<byte[]> expected = EncodingDetector.readWindows(file);
+        List<byte[]> actual = scan.getWindows();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i), "window " + i);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package my.java.service.file.analyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncodingDetectorTest {
+
+    private static final String RUSSIAN_TEXT = """
+            Товар;Цена;Описание
+            Молоко пастеризованное;89,90;Свежее молоко от местного производителя
+            Хлеб ржаной нарезанный;45,00;Выпекается каждый день по старинному рецепту
+            Сыр российский весовой;699,00;Полутвердый сыр с нежным сливочным вкусом
+            """;
+
+    private final EncodingDetector detector = new EncodingDetector();
+
+    private String detect(byte[] content) {
+        return detector.detect(List.of(content));
+    }
+
+    @Test
+    void emptyContentIsUtf8() {
+        assertEquals("UTF-8", detector.detect(List.of()));
+        assertEquals("UTF-8", detect(new byte[0]));
+    }
+
+    @Test
+    void asciiIsUtf8() {
+        assertEquals("UTF-8", detect("id,name,price\n1,milk,89.90\n".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void byteOrderMarkDecides() {
+        assertEquals("UTF-8", detect(withPrefix(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF},
+                "id;name\n".getBytes(StandardCharsets.UTF_8))));
+        assertEquals("UTF-16LE", detect(withPrefix(new byte[]{(byte) 0xFF, (byte) 0xFE},
+                "id;name\n".getBytes(StandardCharsets.UTF_16LE))));
+        assertEquals("UTF-16BE", detect(withPrefix(new byte[]{(byte) 0xFE, (byte) 0xFF},
+                "id;name\n".getBytes(StandardCharsets.UTF_16BE))));
+    }
+
+    @Test
+    void bomOfOtherEncodingIsNotMistakenForUtf8() {
+        // Метка UTF-8 без третьего байта - не метка
+        assertNotEquals("UTF-8", detect(new byte[]{(byte) 0xEF, (byte) 0xBB}));
+    }
+
+    @Test
+    void russianTextInUtf8() {
+        assertEquals("UTF-8", detect(RUSSIAN_TEXT.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void russianTextInWindows1251() {
+        assertEquals("windows-1251", detect(RUSSIAN_TEXT.getBytes(Charset.forName("windows-1251"))));
+    }
+
+    @Test
+    void russianTextInKoi8r() {
+        assertEquals("KOI8-R", detect(RUSSIAN_TEXT.getBytes(Charset.forName("KOI8-R"))));
+    }
+
+    @Test
+    void brokenUtf8WithoutCyrillicFallsBackToSingleByteCharset() {
+        String detected = detect("Café crème brûlée\n".getBytes(StandardCharsets.ISO_8859_1));
+        assertNotEquals("UTF-8", detected);
+    }
+
+    @Test
+    void largeFileIsSampledByWindows(@TempDir Path dir) throws IOException {
+        // Кириллица только в середине файла: ее видит окно середины
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] asciiLine = "1,plain ascii line with some padding text\n".getBytes(StandardCharsets.US_ASCII);
+        while (out.size() < 2 * EncodingDetector.WINDOW_SIZE) {
+            out.writeBytes(asciiLine);
+        }
+        byte[] cyrillic = RUSSIAN_TEXT.getBytes(Charset.forName("windows-1251"));
+        for (int i = 0; i < 20; i++) {
+            out.writeBytes(cyrillic);
+        }
+        while (out.size() < 4 * EncodingDetector.WINDOW_SIZE + 1000) {
+            out.writeBytes(asciiLine);
+        }
+        Path file = dir.resolve("large.csv");
+        Files.write(file, out.toByteArray());
+
+        List<byte[]> windows = EncodingDetector.readWindows(file);
+        assertEquals(3, windows.size());
+        for (byte[] window : windows) {
+            assertTrue(window.length <= EncodingDetector.WINDOW_SIZE);
+        }
+        // Окна середины и конца начинаются с начала строки
+        assertEquals('1', windows.get(2)[0]);
+
+        assertEquals("windows-1251", detector.detect(file));
+    }
+
+    @Test
+    void smallFileIsReadWhole(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("small.csv");
+        Files.writeString(file, RUSSIAN_TEXT, StandardCharsets.UTF_8);
+
+        List<byte[]> windows = EncodingDetector.readWindows(file);
+        assertEquals(1, windows.size());
+        assertEquals(Files.size(file), windows.get(0).length);
+    }
+
+    @Test
+    void alignedWindowDropsPartialLines() {
+        List<byte[]> windows = new ArrayList<>();
+        EncodingDetector.addAligned(windows, "tail of line\nwhole line\nhead of".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(1, windows.size());
+        assertEquals("whole line", new String(windows.get(0), StandardCharsets.US_ASCII));
+
+        // Окно без полной строки не добавляется
+        EncodingDetector.addAligned(windows, "no newline at all".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(1, windows.size());
+    }
+
+    private static byte[] withPrefix(byte[] prefix, byte[] content) {
+        byte[] result = new byte[prefix.length + content.length];
+        System.arraycopy(prefix, 0, result, 0, prefix.length);
+        System.arraycopy(content, 0, result, prefix.length, content.length);
+        return result;
+    }
+}
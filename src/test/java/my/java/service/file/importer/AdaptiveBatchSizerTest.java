@@ -0,0 +1,101 @@
+package my.java.service.file.importer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveBatchSizerTest {
+
+    private static final long TARGET_MS = 100;
+    private static final long FAST = 10_000_000L;
+    private static final long SLOW = 500_000_000L;
+
+    private static AdaptiveBatchSizer sizer(int initial, int min, int max, int step, long maxBatchBytes) {
+        return new AdaptiveBatchSizer(true, initial, min, max, step, TARGET_MS, maxBatchBytes);
+    }
+
+    @Test
+    void growsByStepWhileWithinTarget() {
+        AdaptiveBatchSizer sizer = sizer(1000, 100, 10_000, 500, 0);
+        sizer.recordBatch(1000, 0, FAST);
+        assertEquals(1500, sizer.getBatchSize());
+        sizer.recordBatch(1500, 0, FAST);
+        assertEquals(2000, sizer.getBatchSize());
+    }
+
+    @Test
+    void halvesWhenOverTarget() {
+        AdaptiveBatchSizer sizer = sizer(4000, 100, 10_000, 500, 0);
+        sizer.recordBatch(4000, 0, SLOW);
+        assertEquals(2000, sizer.getBatchSize());
+        sizer.recordBatch(2000, 0, SLOW);
+        assertEquals(1000, sizer.getBatchSize());
+    }
+
+    @Test
+    void staysWithinBounds() {
+        AdaptiveBatchSizer sizer = sizer(9800, 100, 10_000, 500, 0);
+        sizer.recordBatch(9800, 0, FAST);
+        assertEquals(10_000, sizer.getBatchSize());
+        sizer.recordBatch(10_000, 0, FAST);
+        assertEquals(10_000, sizer.getBatchSize());
+
+        for (int i = 0; i < 20; i++) {
+            sizer.recordBatch(sizer.getBatchSize(), 0, SLOW);
+        }
+        assertEquals(100, sizer.getBatchSize());
+    }
+
+    @Test
+    void wideRowsAreLimitedByBatchBytes() {
+        // Средняя строка 1 КБ, лимит 1 МБ - не больше 1024 строк
+        AdaptiveBatchSizer sizer = sizer(2000, 100, 10_000, 500, 1024 * 1024);
+        sizer.recordBatch(2000, 2000L * 1024, FAST);
+        assertEquals(1024, sizer.getBatchSize());
+
+        // Ограничение по байтам не опускает размер ниже минимума
+        sizer.recordBatch(1024, 1024L * 100 * 1024, FAST);
+        assertEquals(100, sizer.getBatchSize());
+    }
+
+    @Test
+    void zeroBytesDoNotLimitSize() {
+        AdaptiveBatchSizer sizer = sizer(1000, 100, 10_000, 500, 1024);
+        sizer.recordBatch(1000, 0, FAST);
+        assertEquals(1500, sizer.getBatchSize());
+    }
+
+    @Test
+    void emptyBatchIsIgnored() {
+        AdaptiveBatchSizer sizer = sizer(1000, 100, 10_000, 500, 0);
+        sizer.recordBatch(0, 0, SLOW);
+        sizer.recordBatch(-1, 100, SLOW);
+        assertEquals(1000, sizer.getBatchSize());
+    }
+
+    @Test
+    void disabledSizerKeepsInitialSize() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(false, 50_000, 100, 10_000, 500, TARGET_MS, 1024);
+        sizer.recordBatch(50_000, 50_000L * 1024, SLOW);
+        assertEquals(50_000, sizer.getBatchSize());
+
+        assertEquals(1, new AdaptiveBatchSizer(false, 0, 100, 10_000, 500, TARGET_MS, 0).getBatchSize());
+    }
+
+    @Test
+    void constructorNormalizesSettings() {
+        // Начальный размер приводится к границам
+        assertEquals(10_000, sizer(50_000, 100, 10_000, 500, 0).getBatchSize());
+        assertEquals(100, sizer(10, 100, 10_000, 500, 0).getBatchSize());
+
+        // Максимум меньше минимума и нулевой шаг
+        AdaptiveBatchSizer sizer = sizer(10, 0, -5, 0, 0);
+        assertEquals(1, sizer.getBatchSize());
+        sizer.recordBatch(1, 0, FAST);
+        assertEquals(1, sizer.getBatchSize());
+
+        AdaptiveBatchSizer stepped = sizer(10, 1, 100, 0, 0);
+        stepped.recordBatch(10, 0, FAST);
+        assertEquals(11, stepped.getBatchSize());
+    }
+}
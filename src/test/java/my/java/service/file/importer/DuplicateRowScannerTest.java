@@ -0,0 +1,128 @@
+package my.java.service.file.importer;
+
+import my.java.util.PathResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DuplicateRowScannerTest {
+
+    // Значения без запятых внутри: для теста достаточно разбиения по разделителю
+    private static final Function<String, String[]> PARSER = line -> line.split(",", -1);
+
+    @TempDir
+    Path dir;
+
+    private DuplicateRowScanner scanner;
+
+    @BeforeEach
+    void setUp() {
+        PathResolver pathResolver = mock(PathResolver.class);
+        when(pathResolver.getAbsoluteTempDir()).thenReturn(dir.resolve("tmp"));
+        scanner = new DuplicateRowScanner(pathResolver, new ImportCancellationRegistry());
+        ReflectionTestUtils.setField(scanner, "maxKeysInMemory", 2_000_000);
+    }
+
+    private DuplicateRowScanner.DuplicateRows scan(String content, boolean lastWins) throws IOException {
+        Path file = dir.resolve("import.csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return scanner.scan(file, StandardCharsets.UTF_8, "\"", PARSER, "id", lastWins, 1L);
+    }
+
+    @Test
+    void firstOccurrenceWins() throws IOException {
+        // Строка 1 - заголовок
+        DuplicateRowScanner.DuplicateRows rows = scan("id,name\nA,1\nB,2\nA,3\nA,4\n", false);
+        assertEquals(2, rows.getCount());
+        assertFalse(rows.isDuplicate(2));
+        assertTrue(rows.isDuplicate(4));
+        assertTrue(rows.isDuplicate(5));
+    }
+
+    @Test
+    void lastOccurrenceWins() throws IOException {
+        DuplicateRowScanner.DuplicateRows rows = scan("id,name\nA,1\nB,2\nA,3\nA,4\n", true);
+        assertEquals(2, rows.getCount());
+        assertTrue(rows.isDuplicate(2));
+        assertTrue(rows.isDuplicate(4));
+        assertFalse(rows.isDuplicate(5));
+        assertFalse(rows.isDuplicate(3));
+    }
+
+    @Test
+    void quotedNewlinesKeepRecordNumbers() throws IOException {
+        // Запись 3 занимает три строки файла, номера записей совпадают с импортом
+        DuplicateRowScanner.DuplicateRows rows = scan(
+                "id,description\nA,plain\nB,\"multi\nline\nvalue\"\nA,again\n", false);
+        assertEquals(1, rows.getCount());
+        assertTrue(rows.isDuplicate(4));
+        assertFalse(rows.isDuplicate(3));
+    }
+
+    @Test
+    void emptyIdsAndBlankLinesAreIgnored() throws IOException {
+        DuplicateRowScanner.DuplicateRows rows = scan("id,name\n,1\n\n,2\nA,3\n", false);
+        assertEquals(0, rows.getCount());
+    }
+
+    @Test
+    void missingColumnDisablesFiltering() throws IOException {
+        DuplicateRowScanner.DuplicateRows rows = scan("code,name\nA,1\nA,2\n", false);
+        assertEquals(0, rows.getCount());
+    }
+
+    @Test
+    void manyUniqueKeysGrowTable() throws IOException {
+        StringBuilder content = new StringBuilder("id,name\n");
+        for (int i = 0; i < 5000; i++) {
+            content.append("P").append(i).append(",x\n");
+        }
+        content.append("P0,dup\nP4999,dup\n");
+
+        DuplicateRowScanner.DuplicateRows rows = scan(content.toString(), false);
+        assertEquals(2, rows.getCount());
+        assertTrue(rows.isDuplicate(5002));
+        assertTrue(rows.isDuplicate(5003));
+    }
+
+    @Test
+    void spilledRunsGiveSameResult() throws IOException {
+        StringBuilder content = new StringBuilder("id,name\n");
+        String[] ids = {"A", "B", "C", "A", "D", "B", "E", "A", "C"};
+        for (String id : ids) {
+            content.append(id).append(",x\n");
+        }
+
+        DuplicateRowScanner.DuplicateRows inMemoryFirst = scan(content.toString(), false);
+        DuplicateRowScanner.DuplicateRows inMemoryLast = scan(content.toString(), true);
+
+        // Серия сбрасывается на диск каждые два уникальных ключа
+        ReflectionTestUtils.setField(scanner, "maxKeysInMemory", 2);
+        DuplicateRowScanner.DuplicateRows spilledFirst = scan(content.toString(), false);
+        DuplicateRowScanner.DuplicateRows spilledLast = scan(content.toString(), true);
+
+        for (int line = 2; line <= ids.length + 1; line++) {
+            assertEquals(inMemoryFirst.isDuplicate(line), spilledFirst.isDuplicate(line), "first wins, line " + line);
+            assertEquals(inMemoryLast.isDuplicate(line), spilledLast.isDuplicate(line), "last wins, line " + line);
+        }
+        assertEquals(4, spilledFirst.getCount());
+        assertEquals(4, spilledLast.getCount());
+
+        // Временные серии удалены
+        try (Stream<Path> files = Files.list(dir.resolve("tmp"))) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package my.java.service.file.importer;
+
+import my.java.model.entity.Competitor;
+import my.java.model.entity.Product;
+import my.java.model.entity.Region;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityRelationshipHolderTest {
+
+    // Строки с одинаковым hashCode: ключи попадают в одну ячейку и разрешаются пробированием
+    private static final String[] COLLIDING = {
+            "AaAaAa", "AaAaBB", "AaBBAa", "AaBBBB", "BBAaAa", "BBAaBB", "BBBBAa", "BBBBBB"
+    };
+
+    private static void addRow(EntityRelationshipHolder holder, String productId, String name, int competitors) {
+        holder.startNewRow(productId);
+        Product product = new Product();
+        product.setProductId(productId);
+        product.setProductName(name);
+        holder.addProduct(product);
+        for (int i = 0; i < competitors; i++) {
+            Competitor competitor = new Competitor();
+            competitor.setCompetitorName(name + "-c" + i);
+            holder.addCompetitor(productId, competitor);
+        }
+        Region region = new Region();
+        region.setRegion(name + "-r");
+        holder.addRegion(productId, region);
+        holder.finishCurrentRow();
+    }
+
+    @Test
+    void keepsRowsAndRelatedEntitiesInFileOrder() {
+        EntityRelationshipHolder holder = new EntityRelationshipHolder();
+        addRow(holder, "A", "a1", 2);
+        addRow(holder, "B", "b1", 1);
+        addRow(holder, "A", "a2", 1);
+
+        assertEquals(3, holder.getRowCount());
+        assertEquals(4, holder.getCompetitorCount());
+        assertEquals(3, holder.getRegionCount());
+
+        List<EntityRelationshipHolder.ImportRow> rows = holder.getRows();
+        assertEquals("a1", rows.get(0).getProduct().getProductName());
+        assertEquals(List.of("a1-c0", "a1-c1"), rows.get(0).getCompetitors().stream()
+                .map(Competitor::getCompetitorName).toList());
+        assertEquals("b1-r", rows.get(1).getRegions().get(0).getRegion());
+        assertEquals(2, rows.get(2).getOrdinal());
+    }
+
+    @Test
+    void firstAndLastRowsByProductId() {
+        EntityRelationshipHolder holder = new EntityRelationshipHolder();
+        addRow(holder, "A", "a1", 1);
+        addRow(holder, "B", "b1", 1);
+        addRow(holder, "A", "a2", 1);
+        addRow(holder, "C", "c1", 0);
+        addRow(holder, "B", "b2", 1);
+
+        assertEquals(List.of("a1", "b1", "c1"), names(holder.getFirstRowsByProductId()));
+        // Последние вхождения - в порядке файла
+        assertEquals(List.of("a2", "c1", "b2"), names(holder.getLastRowsByProductId()));
+        assertEquals("a2", holder.findLastRow("A").getProduct().getProductName());
+        assertNull(holder.findLastRow("missing"));
+        assertNull(holder.findLastRow(null));
+
+        assertEquals(List.of("a1-c0", "a2-c0"), holder.getCompetitorsForProduct("A").stream()
+                .map(Competitor::getCompetitorName).toList());
+        assertEquals(3, holder.getUniqueProducts().size());
+        assertEquals(5, holder.getAllProducts().size());
+        assertEquals("b2", holder.getProductsByProductId().get("B").getProductName());
+    }
+
+    @Test
+    void collidingKeysAreDistinct() {
+        for (String key : COLLIDING) {
+            assertEquals(COLLIDING[0].hashCode(), key.hashCode());
+        }
+
+        EntityRelationshipHolder holder = new EntityRelationshipHolder();
+        for (String key : COLLIDING) {
+            addRow(holder, key, key + "-1", 1);
+        }
+        for (String key : COLLIDING) {
+            addRow(holder, key, key + "-2", 1);
+        }
+
+        assertEquals(COLLIDING.length, holder.getFirstRowsByProductId().size());
+        assertEquals(COLLIDING.length, holder.getUniqueProducts().size());
+        for (String key : COLLIDING) {
+            assertEquals(key + "-2", holder.findLastRow(key).getProduct().getProductName());
+            assertEquals(List.of(key + "-1-c0", key + "-2-c0"), holder.getCompetitorsForProduct(key).stream()
+                    .map(Competitor::getCompetitorName).toList());
+        }
+        assertNull(holder.findLastRow("CcCcCc"));
+        assertEquals(COLLIDING.length, holder.getCompetitorsByProductId().size());
+    }
+
+    @Test
+    void indexAndRowStorageGrowBeyondInitialCapacity() {
+        EntityRelationshipHolder holder = new EntityRelationshipHolder(1);
+        int keys = 1000;
+        for (int i = 0; i < keys; i++) {
+            addRow(holder, "P" + i, "p" + i, 1);
+        }
+        // Повторы после роста таблицы находят исходные ячейки
+        for (int i = 0; i < keys; i += 10) {
+            addRow(holder, "P" + i, "p" + i + "-dup", 1);
+        }
+
+        assertEquals(keys + keys / 10, holder.getRowCount());
+        assertEquals(keys, holder.getFirstRowsByProductId().size());
+        assertEquals(keys, holder.getLastRowsByProductId().size());
+        for (int i = 0; i < keys; i++) {
+            String expected = i % 10 == 0 ? "p" + i + "-dup" : "p" + i;
+            assertEquals(expected, holder.findLastRow("P" + i).getProduct().getProductName());
+        }
+        assertEquals(2, holder.getCompetitorsForProduct("P990").size());
+        assertEquals(1, holder.getRegionsForProduct("P991").size());
+    }
+
+    @Test
+    void unfinishedRowIsDiscarded() {
+        EntityRelationshipHolder holder = new EntityRelationshipHolder();
+        addRow(holder, "A", "a1", 1);
+
+        // Ошибка разбора: строка не завершена, ее конкуренты отбрасываются следующей строкой
+        holder.startNewRow("B");
+        holder.addCompetitor("B", new Competitor());
+        holder.addCompetitor("B", new Competitor());
+        addRow(holder, "C", "c1", 1);
+
+        assertEquals(2, holder.getRowCount());
+        assertEquals(2, holder.getCompetitorCount());
+        assertNull(holder.findLastRow("B"));
+        assertEquals("c1-c0", holder.getRows().get(1).getCompetitors().get(0).getCompetitorName());
+    }
+
+    @Test
+    void rowWithoutEntitiesIsSkipped() {
+        EntityRelationshipHolder holder = new EntityRelationshipHolder();
+        holder.startNewRow("A");
+        holder.finishCurrentRow();
+        assertEquals(0, holder.getRowCount());
+        assertEquals(0, holder.getTotalEntitiesCount());
+    }
+
+    @Test
+    void establishesDatabaseRelationships() {
+        EntityRelationshipHolder holder = new EntityRelationshipHolder();
+        addRow(holder, "A", "a1", 2);
+        addRow(holder, "B", "b1", 1);
+
+        holder.establishDatabaseRelationships(Map.of("A", 10L));
+
+        List<EntityRelationshipHolder.ImportRow> rows = holder.getRows();
+        for (Competitor competitor : rows.get(0).getCompetitors()) {
+            assertEquals(10L, competitor.getProduct().getId());
+        }
+        assertEquals(10L, rows.get(0).getRegions().get(0).getProduct().getId());
+        assertNull(rows.get(1).getCompetitors().get(0).getProduct());
+    }
+
+    private static List<String> names(List<EntityRelationshipHolder.ImportRow> rows) {
+        return rows.stream().map(row -> row.getProduct().getProductName()).toList();
+    }
+}
@@ -0,0 +1,201 @@
+package my.java.service.file.importer;
+
+import my.java.model.FileOperation;
+import my.java.repository.FileOperationRepository;
+import my.java.repository.ImportCheckpointRepository;
+import my.java.util.PathResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ImportRecoveryServiceTest {
+
+    private static final String SOURCE = "/tmp/import-1.csv";
+
+    private FileOperationRepository fileOperationRepository;
+    private ImportOrchestratorService importOrchestratorService;
+    private PathResolver pathResolver;
+    private ImportCheckpointRepository checkpointRepository;
+    private ImportPurgeService importPurgeService;
+    private ImportRecoveryService service;
+
+    @BeforeEach
+    void setUp() {
+        fileOperationRepository = mock(FileOperationRepository.class);
+        importOrchestratorService = mock(ImportOrchestratorService.class);
+        pathResolver = mock(PathResolver.class);
+        checkpointRepository = mock(ImportCheckpointRepository.class);
+        importPurgeService = mock(ImportPurgeService.class);
+        service = new ImportRecoveryService(fileOperationRepository, importOrchestratorService, pathResolver,
+                checkpointRepository, importPurgeService);
+        ReflectionTestUtils.setField(service, "recoveryEnabled", true);
+        when(fileOperationRepository.findByStatus(any())).thenReturn(new ArrayList<>());
+    }
+
+    private FileOperation importOperation(long id, FileOperation.OperationStatus status) {
+        FileOperation operation = new FileOperation();
+        operation.setId(id);
+        operation.setOperationType(FileOperation.OperationType.IMPORT);
+        operation.setStatus(status);
+        operation.setSourceFilePath(SOURCE);
+        operation.setFieldMappingId(7L);
+        return operation;
+    }
+
+    private void interrupted(FileOperation.OperationStatus status, FileOperation... operations) {
+        when(fileOperationRepository.findByStatus(status)).thenReturn(new ArrayList<>(List.of(operations)));
+    }
+
+    private void assertMarkedInterrupted(FileOperation operation, String message) {
+        assertEquals(FileOperation.OperationStatus.FAILED, operation.getStatus());
+        assertTrue(operation.getErrorMessage().startsWith(message), operation.getErrorMessage());
+        verify(fileOperationRepository).save(operation);
+        verify(checkpointRepository).deleteById(operation.getId());
+        verify(pathResolver).deleteFile(Paths.get(SOURCE));
+    }
+
+    @Test
+    void resumesImportWhenFileAndMappingAreAvailable() {
+        FileOperation processing = importOperation(1L, FileOperation.OperationStatus.PROCESSING);
+        FileOperation pending = importOperation(2L, FileOperation.OperationStatus.PENDING);
+        interrupted(FileOperation.OperationStatus.PROCESSING, processing);
+        interrupted(FileOperation.OperationStatus.PENDING, pending);
+        when(pathResolver.fileExists(Paths.get(SOURCE))).thenReturn(true);
+
+        service.recoverInterruptedImports();
+
+        verify(importOrchestratorService).resumeImport(processing, Paths.get(SOURCE));
+        verify(importOrchestratorService).resumeImport(pending, Paths.get(SOURCE));
+        verify(fileOperationRepository, never()).save(any());
+        verify(checkpointRepository, never()).deleteById(any());
+        verify(pathResolver, never()).deleteFile(any());
+    }
+
+    @Test
+    void disabledRecoveryMarksImportsInterrupted() {
+        ReflectionTestUtils.setField(service, "recoveryEnabled", false);
+        FileOperation operation = importOperation(1L, FileOperation.OperationStatus.PROCESSING);
+        interrupted(FileOperation.OperationStatus.PROCESSING, operation);
+        when(pathResolver.fileExists(any())).thenReturn(true);
+
+        service.recoverInterruptedImports();
+
+        assertMarkedInterrupted(operation, "Импорт прерван остановкой приложения");
+        verifyNoInteractions(importOrchestratorService);
+    }
+
+    @Test
+    void missingFileMarksImportInterrupted() {
+        FileOperation operation = importOperation(1L, FileOperation.OperationStatus.PROCESSING);
+        interrupted(FileOperation.OperationStatus.PROCESSING, operation);
+        when(pathResolver.fileExists(Paths.get(SOURCE))).thenReturn(false);
+
+        service.recoverInterruptedImports();
+
+        assertMarkedInterrupted(operation, "Импорт прерван остановкой приложения, исходный файл недоступен");
+        verifyNoInteractions(importOrchestratorService);
+    }
+
+    @Test
+    void missingMappingMarksImportInterrupted() {
+        FileOperation operation = importOperation(1L, FileOperation.OperationStatus.PENDING);
+        operation.setFieldMappingId(null);
+        interrupted(FileOperation.OperationStatus.PENDING, operation);
+        when(pathResolver.fileExists(Paths.get(SOURCE))).thenReturn(true);
+
+        service.recoverInterruptedImports();
+
+        assertMarkedInterrupted(operation, "Импорт прерван остановкой приложения, исходный файл недоступен");
+        verifyNoInteractions(importOrchestratorService);
+    }
+
+    @Test
+    void missingSourcePathMarksImportInterrupted() {
+        FileOperation operation = importOperation(1L, FileOperation.OperationStatus.PROCESSING);
+        operation.setSourceFilePath(null);
+        interrupted(FileOperation.OperationStatus.PROCESSING, operation);
+
+        service.recoverInterruptedImports();
+
+        assertEquals(FileOperation.OperationStatus.FAILED, operation.getStatus());
+        verify(checkpointRepository).deleteById(1L);
+        verify(pathResolver, never()).deleteFile(any());
+        verifyNoInteractions(importOrchestratorService);
+    }
+
+    @Test
+    void failedResumeMarksImportInterrupted() {
+        FileOperation failing = importOperation(1L, FileOperation.OperationStatus.PROCESSING);
+        FileOperation next = importOperation(2L, FileOperation.OperationStatus.PROCESSING);
+        interrupted(FileOperation.OperationStatus.PROCESSING, failing, next);
+        when(pathResolver.fileExists(Paths.get(SOURCE))).thenReturn(true);
+        doThrow(new IllegalStateException("маппинг удален"))
+                .when(importOrchestratorService).resumeImport(failing, Paths.get(SOURCE));
+
+        service.recoverInterruptedImports();
+
+        assertMarkedInterrupted(failing, "Не удалось возобновить импорт: маппинг удален");
+        // Ошибка одной операции не мешает возобновить остальные
+        verify(importOrchestratorService).resumeImport(next, Paths.get(SOURCE));
+        assertEquals(FileOperation.OperationStatus.PROCESSING, next.getStatus());
+    }
+
+    @Test
+    void resumesPurgeAndIgnoresOtherOperations() {
+        FileOperation purge = new FileOperation();
+        purge.setId(10L);
+        purge.setOperationType(FileOperation.OperationType.PROCESS);
+        purge.setFileType(ImportPurgeService.PURGE_FILE_TYPE);
+        purge.setStatus(FileOperation.OperationStatus.PROCESSING);
+        purge.setProcessingParams(ImportPurgeService.PURGE_PARAM + "42;purged_competitors=10");
+
+        FileOperation export = new FileOperation();
+        export.setId(11L);
+        export.setOperationType(FileOperation.OperationType.EXPORT);
+        export.setStatus(FileOperation.OperationStatus.PENDING);
+        export.setSourceFilePath(SOURCE);
+
+        interrupted(FileOperation.OperationStatus.PROCESSING, purge);
+        interrupted(FileOperation.OperationStatus.PENDING, export);
+
+        service.recoverInterruptedImports();
+
+        verify(importPurgeService).purgeAsync(purge, 42L);
+        verifyNoInteractions(importOrchestratorService);
+        verify(fileOperationRepository, never()).save(any());
+        assertEquals(FileOperation.OperationStatus.PENDING, export.getStatus());
+    }
+
+    @Test
+    void failedPurgeResumeMarksPurgeFailed() {
+        FileOperation purge = new FileOperation();
+        purge.setId(10L);
+        purge.setOperationType(FileOperation.OperationType.PROCESS);
+        purge.setFileType(ImportPurgeService.PURGE_FILE_TYPE);
+        purge.setStatus(FileOperation.OperationStatus.PENDING);
+        purge.setProcessingParams(ImportPurgeService.PURGE_PARAM + "not-a-number");
+        interrupted(FileOperation.OperationStatus.PENDING, purge);
+
+        service.recoverInterruptedImports();
+
+        assertEquals(FileOperation.OperationStatus.FAILED, purge.getStatus());
+        verify(fileOperationRepository).save(purge);
+        verifyNoInteractions(importPurgeService);
+    }
+
+    @Test
+    void nothingToRecover() {
+        service.recoverInterruptedImports();
+
+        verifyNoInteractions(importOrchestratorService, importPurgeService, checkpointRepository, pathResolver);
+        verify(fileOperationRepository, never()).save(any());
+    }
+}
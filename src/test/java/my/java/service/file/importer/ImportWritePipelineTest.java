@@ -0,0 +1,206 @@
+package my.java.service.file.importer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(10)
+class ImportWritePipelineTest {
+
+    private ThreadPoolTaskExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        // Как importWriterExecutor: без очереди, при нехватке потоков задача отклоняется
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("test-writer-");
+        executor.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private static ImportWritePipeline.Source<Integer> batches(int count) {
+        AtomicInteger next = new AtomicInteger();
+        return () -> next.get() < count ? next.incrementAndGet() : null;
+    }
+
+    private static List<Integer> drain(ImportWritePipeline.Source<Integer> source) {
+        List<Integer> written = new ArrayList<>();
+        try {
+            Integer batch;
+            while ((batch = source.next()) != null) {
+                written.add(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return written;
+    }
+
+    @Test
+    void writerDrainsAllBatchesInOrder() {
+        ImportWritePipeline<Integer> pipeline = new ImportWritePipeline<>(1);
+        List<Integer> written = new ArrayList<>();
+        AtomicReference<String> writerThread = new AtomicReference<>();
+
+        pipeline.run(executor, batches(500), source -> {
+            writerThread.set(Thread.currentThread().getName());
+            written.addAll(drain(source));
+        });
+
+        assertEquals(IntStream.rangeClosed(1, 500).boxed().collect(Collectors.toList()), written);
+        assertTrue(writerThread.get().startsWith("test-writer-"), writerThread.get());
+        assertNull(pipeline.getWriterFailure());
+    }
+
+    @Test
+    void takeAfterFinishKeepsReturningNull() throws InterruptedException {
+        ImportWritePipeline<Integer> pipeline = new ImportWritePipeline<>(2);
+        pipeline.put(1);
+        pipeline.finish();
+
+        assertEquals(1, pipeline.take());
+        assertNull(pipeline.take());
+        assertNull(pipeline.take());
+    }
+
+    @Test
+    void writerFailureSurfacesInReader() {
+        ImportWritePipeline<Integer> pipeline = new ImportWritePipeline<>(2);
+        IllegalStateException failure = new IllegalStateException("диск заполнен");
+        AtomicInteger read = new AtomicInteger();
+
+        // Источник бесконечен: разбор останавливается только ошибкой писателя
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> pipeline.run(executor, read::incrementAndGet, source -> {
+                    try {
+                        source.next();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw failure;
+                }));
+
+        assertSame(failure, thrown);
+        assertSame(failure, pipeline.getWriterFailure());
+        assertTrue(read.get() < 100, "reader continued after writer failure: " + read.get());
+    }
+
+    @Test
+    void checkedWriterFailureIsWrapped() {
+        ImportWritePipeline<Integer> pipeline = new ImportWritePipeline<>(1);
+        IOException failure = new IOException("соединение закрыто");
+        pipeline.fail(failure);
+        // Повторная ошибка не заменяет первую
+        pipeline.fail(new IllegalStateException("следствие"));
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> pipeline.put(1));
+        assertSame(failure, thrown.getCause());
+    }
+
+    @Test
+    void readerFailureAbortsWaitingWriter() {
+        ImportWritePipeline<Integer> pipeline = new ImportWritePipeline<>(2);
+        RuntimeException failure = new RuntimeException("ошибка разбора");
+        AtomicInteger read = new AtomicInteger();
+        AtomicReference<Throwable> writerError = new AtomicReference<>();
+        List<Integer> written = new ArrayList<>();
+
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> pipeline.run(executor, () -> {
+            if (read.incrementAndGet() > 3) {
+                throw failure;
+            }
+            return read.get();
+        }, source -> {
+            try {
+                written.addAll(drain(source));
+            } catch (ImportWritePipeline.AbortedException e) {
+                writerError.set(e);
+                throw e;
+            }
+        }));
+
+        assertSame(failure, thrown);
+        // Писатель не завершил запись как успешную и не ждет пакетов бесконечно
+        assertInstanceOf(ImportWritePipeline.AbortedException.class, writerError.get());
+        assertTrue(written.size() <= 3, written.toString());
+    }
+
+    @Test
+    void abortUnblocksWriterWaitingForBatch() throws InterruptedException {
+        ImportWritePipeline<Integer> pipeline = new ImportWritePipeline<>(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> writerError = new AtomicReference<>();
+
+        Thread writer = new Thread(() -> {
+            try {
+                pipeline.take();
+            } catch (Throwable e) {
+                writerError.set(e);
+            } finally {
+                done.countDown();
+            }
+        });
+        writer.start();
+
+        pipeline.abort();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(ImportWritePipeline.AbortedException.class, writerError.get());
+        // Маркер прерывания остается для повторных вызовов
+        assertThrows(ImportWritePipeline.AbortedException.class, pipeline::take);
+    }
+
+    @Test
+    void rejectedWriterFallsBackToSequentialWrites() throws InterruptedException {
+        // Единственный поток записи занят другим импортом
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch busy = new CountDownLatch(1);
+        executor.execute(() -> {
+            busy.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+
+        try {
+            ImportWritePipeline<Integer> pipeline = new ImportWritePipeline<>(1);
+            List<Integer> written = new ArrayList<>();
+            AtomicReference<Thread> writerThread = new AtomicReference<>();
+
+            pipeline.run(executor, batches(50), source -> {
+                writerThread.set(Thread.currentThread());
+                written.addAll(drain(source));
+            });
+
+            assertSame(Thread.currentThread(), writerThread.get());
+            assertEquals(IntStream.rangeClosed(1, 50).boxed().collect(Collectors.toList()), written);
+        } finally {
+            release.countDown();
+        }
+    }
+}
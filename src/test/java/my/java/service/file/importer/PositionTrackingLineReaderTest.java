@@ -0,0 +1,194 @@
+package my.java.service.file.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionTrackingLineReaderTest {
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    @TempDir
+    Path dir;
+
+    private Path write(byte[] content) throws IOException {
+        Path file = dir.resolve("import.csv");
+        Files.write(file, content);
+        return file;
+    }
+
+    private Path write(String content) throws IOException {
+        return write(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> readAll(Path file, Charset charset, String quoteChar) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (PositionTrackingLineReader reader = new PositionTrackingLineReader(file, charset, quoteChar)) {
+            String record;
+            while ((record = reader.readLine()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Test
+    void readsPlainLinesAndTracksPosition() throws IOException {
+        Path file = write("id,name\n1,a\n\n2,b");
+        try (PositionTrackingLineReader reader = new PositionTrackingLineReader(file, StandardCharsets.UTF_8)) {
+            assertEquals(0, reader.getPosition());
+            assertEquals("id,name", reader.readLine());
+            assertEquals(8, reader.getPosition());
+            assertEquals("1,a", reader.readLine());
+            assertEquals(12, reader.getPosition());
+            assertEquals("", reader.readLine());
+            // Последняя запись без перевода строки
+            assertEquals("2,b", reader.readLine());
+            assertEquals(Files.size(file), reader.getPosition());
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path file = write("");
+        assertEquals(List.of(), readAll(file, StandardCharsets.UTF_8, "\""));
+    }
+
+    @Test
+    void quotedFieldSpansLines() throws IOException {
+        Path file = write("id,description\n1,\"first line\nsecond line\"\n2,plain\n");
+        assertEquals(List.of("id,description", "1,\"first line\nsecond line\"", "2,plain"),
+                readAll(file, StandardCharsets.UTF_8, "\""));
+
+        // Без учета кавычек запись - строка файла
+        assertEquals(4, readAll(file, StandardCharsets.UTF_8, null).size());
+        assertEquals(4, readAll(file, StandardCharsets.UTF_8, "").size());
+    }
+
+    @Test
+    void apostropheQuoting() throws IOException {
+        Path file = write("id;name\n1;'multi\nline'\n2;\"not\nquoted\"\n");
+        assertEquals(List.of("id;name", "1;'multi\nline'", "2;\"not", "quoted\""),
+                readAll(file, StandardCharsets.UTF_8, "'"));
+    }
+
+    @Test
+    void doubledQuotesStayInsideValue() throws IOException {
+        Path file = write("1,\"say \"\"hi\"\"\nthere\"\n2,x\n");
+        assertEquals(List.of("1,\"say \"\"hi\"\"\nthere\"", "2,x"), readAll(file, StandardCharsets.UTF_8, "\""));
+    }
+
+    @Test
+    void backslashEscapesQuoteAndNewline() throws IOException {
+        // Экранированная кавычка не закрывает значение
+        Path quoted = write("1,\"a \\\"q\nb\"\n2,x\n");
+        assertEquals(List.of("1,\"a \\\"q\nb\"", "2,x"), readAll(quoted, StandardCharsets.UTF_8, "\""));
+
+        // Экранированный перевод строки вне кавычек не заканчивает запись
+        Path newline = write("1,a\\\nb\n2,x\n");
+        assertEquals(List.of("1,a\\\nb", "2,x"), readAll(newline, StandardCharsets.UTF_8, "\""));
+    }
+
+    @Test
+    void crlfEndingsAreStripped() throws IOException {
+        Path file = write("id,name\r\n1,\"x\r\ny\"\r\n2,z\r\n");
+        // Перевод строки внутри значения сохраняется как есть
+        assertEquals(List.of("id,name", "1,\"x\r\ny\"", "2,z"), readAll(file, StandardCharsets.UTF_8, "\""));
+    }
+
+    @Test
+    void utf8BomIsSkipped() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(UTF8_BOM);
+        out.writeBytes("id,name\n1,молоко\n".getBytes(StandardCharsets.UTF_8));
+        Path file = write(out.toByteArray());
+
+        try (PositionTrackingLineReader reader = new PositionTrackingLineReader(file, StandardCharsets.UTF_8, "\"")) {
+            assertEquals(3, reader.getPosition());
+            assertEquals("id,name", reader.readLine());
+            assertEquals(11, reader.getPosition());
+            assertEquals("1,молоко", reader.readLine());
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    void singleByteCharsets() throws IOException {
+        Charset cp1251 = Charset.forName("windows-1251");
+        Path file = write("id;название\n1;\"молоко\nпастеризованное\"\n".getBytes(cp1251));
+        assertEquals(List.of("id;название", "1;\"молоко\nпастеризованное\""), readAll(file, cp1251, "\""));
+    }
+
+    @Test
+    void rejectsCharsetsThatAreNotAsciiCompatible() throws IOException {
+        assertTrue(PositionTrackingLineReader.isAsciiCompatible(StandardCharsets.UTF_8));
+        assertTrue(PositionTrackingLineReader.isAsciiCompatible(Charset.forName("windows-1251")));
+        assertTrue(PositionTrackingLineReader.isAsciiCompatible(Charset.forName("KOI8-R")));
+        assertFalse(PositionTrackingLineReader.isAsciiCompatible(StandardCharsets.UTF_16LE));
+        assertFalse(PositionTrackingLineReader.isAsciiCompatible(StandardCharsets.UTF_16));
+
+        Path file = write("id\n".getBytes(StandardCharsets.UTF_16LE));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PositionTrackingLineReader(file, StandardCharsets.UTF_16LE, "\""));
+    }
+
+    @Test
+    void resumeFromStoredOffsetGivesSameRecords() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(UTF8_BOM);
+        out.writeBytes(("id,name,description\r\n"
+                + "1,молоко,\"многострочное\nописание\"\r\n"
+                + "2,\"хлеб, ржаной\",\"кавычки \"\"внутри\"\"\"\n"
+                + "\n"
+                + "3,сыр,\"экранированная \\\" кавычка\nи перевод строки\"\n"
+                + "4,последняя,без перевода строки").getBytes(StandardCharsets.UTF_8));
+        Path file = write(out.toByteArray());
+
+        List<String> records = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        try (PositionTrackingLineReader reader = new PositionTrackingLineReader(file, StandardCharsets.UTF_8, "\"")) {
+            offsets.add(reader.getPosition());
+            String record;
+            while ((record = reader.readLine()) != null) {
+                records.add(record);
+                offsets.add(reader.getPosition());
+            }
+        }
+        assertEquals(6, records.size());
+        assertEquals(Files.size(file), offsets.get(offsets.size() - 1));
+
+        // Продолжение с каждой сохраненной позиции дает оставшиеся записи полного чтения
+        for (int k = 0; k < offsets.size(); k++) {
+            List<String> resumed = new ArrayList<>();
+            try (PositionTrackingLineReader reader = new PositionTrackingLineReader(file, StandardCharsets.UTF_8, "\"")) {
+                reader.seek(offsets.get(k));
+                String record;
+                while ((record = reader.readLine()) != null) {
+                    resumed.add(record);
+                }
+                assertEquals(Files.size(file), reader.getPosition());
+            }
+            assertEquals(records.subList(k, records.size()), resumed, "resume from record " + k);
+        }
+    }
+
+    @Test
+    void recordsLongerThanBufferAreReadWhole() throws IOException {
+        String longValue = "x".repeat(200_000);
+        Path file = write("1,\"" + longValue + "\nend\"\n2,y\n");
+        List<String> records = readAll(file, StandardCharsets.UTF_8, "\"");
+        assertEquals(2, records.size());
+        assertEquals("1,\"" + longValue + "\nend\"", records.get(0));
+    }
+}
@@ -0,0 +1,142 @@
+package my.java.service.file.importer.strategy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaSnapshotTest {
+
+    private static long[] sorted(long[] ids) {
+        long[] copy = ids.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    void findsProductsAddedInAnyOrder() {
+        // Больше начальной емкости построителя, в случайном порядке
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(42));
+
+        DeltaSnapshot.Builder builder = DeltaSnapshot.builder(7L);
+        for (int i : order) {
+            builder.add(1000L + i, "P-" + i, (long) i, (long) -i);
+        }
+        DeltaSnapshot snapshot = builder.build();
+
+        assertEquals(7L, snapshot.getClientId());
+        assertEquals(5000, snapshot.size());
+        for (int i = 0; i < 5000; i++) {
+            DeltaSnapshot.Match match = snapshot.lookup("P-" + i);
+            assertNotNull(match, "P-" + i);
+            assertFalse(match.isAmbiguous());
+            assertEquals(1000L + i, match.getId());
+            assertTrue(match.hasSameContent(i));
+            assertTrue(match.hasSameRelated(-i));
+        }
+        assertNull(snapshot.lookup("P-5000"));
+        assertEquals(0, snapshot.unseenIds().length);
+    }
+
+    @Test
+    void comparesStoredHashes() {
+        DeltaSnapshot.Builder builder = DeltaSnapshot.builder(1L);
+        builder.add(1L, "A", 10L, 20L);
+        builder.add(2L, "B", null, null);
+        DeltaSnapshot snapshot = builder.build();
+
+        DeltaSnapshot.Match a = snapshot.lookup("A");
+        assertTrue(a.hasSameContent(10L));
+        assertFalse(a.hasSameContent(11L));
+        assertTrue(a.hasSameRelated(20L));
+        assertFalse(a.hasSameRelated(21L));
+
+        // Строка без хешей всегда считается измененной
+        DeltaSnapshot.Match b = snapshot.lookup("B");
+        assertFalse(b.hasSameContent(DeltaSnapshot.NO_HASH));
+        assertFalse(b.hasSameRelated(DeltaSnapshot.NO_HASH));
+    }
+
+    @Test
+    void duplicatedProductIdIsAmbiguous() {
+        DeltaSnapshot.Builder builder = DeltaSnapshot.builder(1L);
+        builder.add(1L, "A", 10L, 20L);
+        builder.add(2L, "DUP", 30L, 40L);
+        builder.add(3L, "B", 50L, 60L);
+        builder.add(4L, "DUP", 30L, 40L);
+        builder.add(5L, "DUP", 70L, 80L);
+        DeltaSnapshot snapshot = builder.build();
+
+        DeltaSnapshot.Match match = snapshot.lookup("DUP");
+        assertSame(DeltaSnapshot.Match.AMBIGUOUS, match);
+        assertTrue(match.isAmbiguous());
+        assertFalse(match.hasSameContent(30L));
+        assertFalse(match.hasSameRelated(40L));
+
+        // Все строки дублирующегося ключа отмечены как встреченные
+        assertArrayEquals(new long[]{1L, 3L}, sorted(snapshot.unseenIds()));
+        assertFalse(snapshot.lookup("A").isAmbiguous());
+    }
+
+    @Test
+    void rowsWrittenByOperationAreFoundAgain() {
+        DeltaSnapshot.Builder builder = DeltaSnapshot.builder(1L);
+        builder.add(1L, "A", 10L, 20L);
+        DeltaSnapshot snapshot = builder.build();
+
+        // Новый товар, записанный в предыдущем пакете
+        assertNull(snapshot.lookup("NEW"));
+        snapshot.recordWritten("NEW", 100L, 11L, 21L);
+        DeltaSnapshot.Match created = snapshot.lookup("NEW");
+        assertEquals(100L, created.getId());
+        assertTrue(created.hasSameContent(11L));
+        assertTrue(created.hasSameRelated(21L));
+
+        // Обновленный товар сравнивается с записанными хешами, а не со снимком
+        assertTrue(snapshot.lookup("A").hasSameContent(10L));
+        snapshot.recordWritten("A", 1L, 12L, 22L);
+        DeltaSnapshot.Match updated = snapshot.lookup("A");
+        assertEquals(1L, updated.getId());
+        assertFalse(updated.hasSameContent(10L));
+        assertTrue(updated.hasSameContent(12L));
+        assertTrue(updated.hasSameRelated(22L));
+
+        // Записанные товары не попадают в отсутствующие
+        assertEquals(0, snapshot.unseenIds().length);
+    }
+
+    @Test
+    void unseenIdsAreProductsMissingFromFile() {
+        DeltaSnapshot.Builder builder = DeltaSnapshot.builder(1L);
+        for (int i = 1; i <= 10; i++) {
+            builder.add(i, "P-" + i, (long) i, null);
+        }
+        DeltaSnapshot snapshot = builder.build();
+
+        assertArrayEquals(new long[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, sorted(snapshot.unseenIds()));
+
+        snapshot.lookup("P-2");
+        snapshot.lookup("P-5");
+        snapshot.lookup("P-5");
+        snapshot.lookup("P-missing");
+        assertArrayEquals(new long[]{1, 3, 4, 6, 7, 8, 9, 10}, sorted(snapshot.unseenIds()));
+    }
+
+    @Test
+    void emptySnapshot() {
+        DeltaSnapshot snapshot = DeltaSnapshot.builder(1L).build();
+
+        assertEquals(0, snapshot.size());
+        assertNull(snapshot.lookup("A"));
+        assertEquals(0, snapshot.unseenIds().length);
+    }
+}
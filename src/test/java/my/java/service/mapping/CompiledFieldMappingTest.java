@@ -0,0 +1,152 @@
+package my.java.service.mapping;
+
+import my.java.model.FieldMapping;
+import my.java.model.FieldMappingDetail;
+import my.java.model.entity.Competitor;
+import my.java.model.entity.ImportableEntity;
+import my.java.model.entity.Product;
+import my.java.util.transformer.CompiledTransformer;
+import my.java.util.transformer.ValueTransformerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CompiledFieldMappingTest {
+
+    private static final Map<String, Supplier<ImportableEntity>> CREATORS = Map.of(
+            "PRODUCT", Product::new,
+            "COMPETITOR", Competitor::new);
+
+    private ValueTransformerFactory transformerFactory;
+
+    @BeforeEach
+    void setUp() {
+        transformerFactory = mock(ValueTransformerFactory.class);
+        when(transformerFactory.toCanonicalString(any())).thenAnswer(invocation -> invocation.getArgument(0).toString());
+    }
+
+    private <T> void transformation(String type, Class<T> targetType, Function<String, T> function) {
+        CompiledTransformer<T> transformer = new CompiledTransformer<>() {
+            @Override
+            public T transform(String value) {
+                return function.apply(value);
+            }
+
+            @Override
+            public Class<T> getTargetType() {
+                return targetType;
+            }
+        };
+        doReturn(transformer).when(transformerFactory).compile(eq(type), any());
+    }
+
+    private static FieldMappingDetail detail(String entity, String source, String target, String type) {
+        return FieldMappingDetail.builder()
+                .targetEntity(entity)
+                .sourceField(source)
+                .targetField(target)
+                .transformationType(type)
+                .build();
+    }
+
+    private <T extends ImportableEntity> T fill(FieldMappingDetail detail, Map<String, String> csvRow) {
+        FieldMapping mapping = new FieldMapping();
+        mapping.setName("test");
+        mapping.setDetails(new ArrayList<>(List.of(detail)));
+
+        CompiledFieldMapping.EntityPlan plan = CompiledFieldMapping.compile(mapping, CREATORS, transformerFactory)
+                .getEntities().get(0);
+        ImportableEntity entity = plan.newEntity();
+        entity.setTransformerFactory(transformerFactory);
+        assertTrue(entity.fillFromValues(plan.extract(csvRow)));
+
+        @SuppressWarnings("unchecked")
+        T result = (T) entity;
+        return result;
+    }
+
+    @Test
+    void dateTimeKeepsSubSecondPrecisionWithoutReparsing() {
+        LocalDateTime observed = LocalDateTime.of(2024, 3, 15, 10, 20, 30, 123_456_789);
+        transformation("DATETIME", LocalDateTime.class, value -> observed);
+
+        Competitor competitor = fill(detail("COMPETITOR", "Дата", "competitorLocalDateTime", "DATETIME"),
+                Map.of("Дата", "15/03/2024 10:20:30.123456789"));
+
+        assertEquals(observed, competitor.getCompetitorLocalDateTime());
+        assertEquals(observed, competitor.getCompetitorObservedAt());
+        assertEquals(LocalDate.of(2024, 3, 1), competitor.getObservedMonth());
+        verify(transformerFactory, never()).transform(anyString(), any(), any());
+        verify(transformerFactory, never()).toCanonicalString(any());
+    }
+
+    @Test
+    void typedPriceIsNotParsedAgain() {
+        transformation("DECIMAL", BigDecimal.class, value -> new BigDecimal("1234.5"));
+
+        Competitor competitor = fill(detail("COMPETITOR", "Цена", "competitorPrice", "DECIMAL"),
+                Map.of("Цена", "1 234,5 руб."));
+
+        assertEquals("1234.5", competitor.getCompetitorPrice());
+        assertEquals(new BigDecimal("1234.50"), competitor.getCompetitorPriceValue());
+
+        Product product = fill(detail("PRODUCT", "Цена", "productPrice", "DECIMAL"), Map.of("Цена", "1 234,5 руб."));
+        assertEquals(new BigDecimal("1234.5"), product.getProductPrice());
+        verify(transformerFactory, never()).transform(anyString(), any(), any());
+    }
+
+    @Test
+    void typedDateAndTimeGiveObservedAt() {
+        transformation("DATE", LocalDate.class, value -> LocalDate.of(2024, 2, 29));
+        transformation("TIME", LocalTime.class, value -> LocalTime.of(8, 5));
+        FieldMapping mapping = new FieldMapping();
+        mapping.setName("test");
+        mapping.setDetails(new ArrayList<>(List.of(
+                detail("COMPETITOR", "Дата", "competitorDate", "DATE"),
+                detail("COMPETITOR", "Время", "competitorTime", "TIME"))));
+
+        CompiledFieldMapping.EntityPlan plan = CompiledFieldMapping.compile(mapping, CREATORS, transformerFactory)
+                .getEntities().get(0);
+        Competitor competitor = (Competitor) plan.newEntity();
+        competitor.setTransformerFactory(transformerFactory);
+        assertTrue(competitor.fillFromValues(plan.extract(Map.of("Дата", "29.02.24", "Время", "8:05"))));
+
+        assertEquals("2024-02-29", competitor.getCompetitorDate());
+        assertEquals(LocalDateTime.of(2024, 2, 29, 8, 5), competitor.getCompetitorObservedAt());
+        verify(transformerFactory, never()).transform(anyString(), any(), any());
+    }
+
+    @Test
+    void failedTransformationLeavesSourceValueToEntity() {
+        transformation("DECIMAL", BigDecimal.class, value -> null);
+
+        Competitor competitor = fill(detail("COMPETITOR", "Цена", "competitorPrice", "DECIMAL"),
+                Map.of("Цена", "12.30"));
+
+        assertEquals("12.30", competitor.getCompetitorPrice());
+        assertEquals(new BigDecimal("12.30"), competitor.getCompetitorPriceValue());
+    }
+
+    @Test
+    void defaultValueReplacesBlankSource() {
+        FieldMappingDetail detail = detail("COMPETITOR", "Сеть", "competitorName", null);
+        detail.setDefaultValue("Магнит");
+
+        Competitor competitor = fill(detail, Map.of("Сеть", "  "));
+
+        assertEquals("Магнит", competitor.getCompetitorName());
+    }
+}
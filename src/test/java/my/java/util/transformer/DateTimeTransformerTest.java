@@ -0,0 +1,101 @@
+package my.java.util.transformer;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DateTimeTransformerTest {
+
+    private final LocalDateTransformer dates = new LocalDateTransformer();
+    private final LocalTimeTransformer times = new LocalTimeTransformer();
+    private final LocalDateTimeTransformer dateTimes = new LocalDateTimeTransformer();
+
+    @Test
+    void parsesDefaultDatePatterns() {
+        LocalDate expected = LocalDate.of(2024, 3, 15);
+        assertEquals(expected, dates.transform("15.03.2024", null));
+        assertEquals(expected, dates.transform("2024-03-15", null));
+        assertEquals(expected, dates.transform("2024/03/15", null));
+        assertEquals(expected, dates.transform("  15.03.2024  ", null));
+    }
+
+    @Test
+    void rejectsImpossibleDatesWithoutExceptions() {
+        assertNull(dates.transform("31.02.2024", null));
+        assertNull(dates.transform("29.02.2023", null));
+        assertNull(dates.transform("00.01.2024", null));
+        assertNull(dates.transform("15.13.2024", null));
+        assertEquals(LocalDate.of(2024, 2, 29), dates.transform("29.02.2024", null));
+    }
+
+    @Test
+    void emptyAndGarbageValuesGiveNull() {
+        assertNull(dates.transform(null, null));
+        assertNull(dates.transform("", null));
+        assertNull(dates.transform("   ", null));
+        assertNull(dates.transform("abc", null));
+        assertNull(dates.transform("15.03", null));
+        assertNull(dates.transform("15.03.2024 extra", null));
+    }
+
+    @Test
+    void explicitPatternIsTriedFirst() {
+        assertEquals(LocalDate.of(2024, 3, 15), dates.transform("15-03-24", "pattern=dd-MM-yy"));
+        // Значение другой формы разбирается шаблонами по умолчанию
+        assertEquals(LocalDate.of(2024, 3, 15), dates.transform("15.03.2024", "pattern=dd-MM-yy"));
+    }
+
+    @Test
+    void invalidExplicitPatternFallsBackToDefaults() {
+        assertEquals(LocalDate.of(2024, 3, 15), dates.transform("15.03.2024", "pattern=invalid{"));
+    }
+
+    @Test
+    void learnedPatternIsKeptPerColumn() {
+        // Месяц 13 невозможен для MM/dd/yyyy - колонка выучивает dd/MM/yyyy
+        assertEquals(LocalDate.of(2024, 5, 13), dates.transform("13/05/2024", "column=a"));
+        assertEquals(LocalDate.of(2024, 6, 5), dates.transform("05/06/2024", "column=a"));
+
+        // Другая колонка выучивает свой шаблон
+        assertEquals(LocalDate.of(2024, 5, 6), dates.transform("05/06/2024", "column=b"));
+    }
+
+    @Test
+    void parsesTimes() {
+        assertEquals(LocalTime.of(14, 30), times.transform("14:30", null));
+        assertEquals(LocalTime.of(14, 30, 15), times.transform("14:30:15", null));
+        assertNull(times.transform("25:00", null));
+        assertNull(times.transform("14:60", null));
+        assertNull(times.transform("noon", null));
+    }
+
+    @Test
+    void parsesDateTimes() {
+        assertEquals(LocalDateTime.of(2024, 3, 15, 14, 30), dateTimes.transform("15.03.2024 14:30", null));
+        assertEquals(LocalDateTime.of(2024, 3, 15, 14, 30, 15), dateTimes.transform("2024-03-15 14:30:15", null));
+        assertNull(dateTimes.transform("15.03.2024", null));
+        assertNull(dateTimes.transform("31.04.2024 10:00", null));
+    }
+
+    @Test
+    void compiledTransformerParsesAndHandlesEmptyValues() {
+        CompiledTransformer<LocalDate> compiled = dates.compile(TransformerParams.of("column=date|pattern=yyyyMMdd"));
+        assertEquals(LocalDate.of(2024, 3, 15), compiled.transform("20240315"));
+        assertEquals(LocalDate.of(2024, 3, 15), compiled.transform("15.03.2024"));
+        assertNull(compiled.transform(""));
+        assertNull(compiled.transform("2024031"));
+        assertEquals(LocalDate.class, compiled.getTargetType());
+    }
+
+    @Test
+    void formatsWithFirstDefaultOrExplicitPattern() {
+        LocalDate date = LocalDate.of(2024, 3, 5);
+        assertEquals("05.03.2024", dates.toString(date, null));
+        assertEquals("2024-03-05", dates.toString(date, "pattern=yyyy-MM-dd"));
+        assertEquals("", dates.toString(null, null));
+    }
+}
@@ -0,0 +1,140 @@
+package my.java.util.transformer;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceParserTest {
+
+    private final PriceParser parser = PriceParser.DEFAULT;
+
+    private BigDecimal parse(String value) {
+        return parser.parseBigDecimal(value, 2);
+    }
+
+    @Test
+    void parsesRussianFormatWithSpaceGrouping() {
+        assertEquals(new BigDecimal("1234.56"), parse("1 234,56"));
+        assertEquals(new BigDecimal("1234567.00"), parse("1 234 567"));
+    }
+
+    @Test
+    void parsesNonBreakingAndThinSpaceGrouping() {
+        assertEquals(new BigDecimal("1234.50"), parse("1\u00A0234,5"));
+        assertEquals(new BigDecimal("1234.50"), parse("1\u202F234,5"));
+        assertEquals(new BigDecimal("1234.50"), parse("1\u2009234,5"));
+    }
+
+    @Test
+    void parsesEnglishFormatWithCommaGrouping() {
+        assertEquals(new BigDecimal("1234.56"), parse("1,234.56"));
+        assertEquals(new BigDecimal("1234567.89"), parse("1,234,567.89"));
+    }
+
+    @Test
+    void parsesEuropeanFormatWithDotGrouping() {
+        assertEquals(new BigDecimal("1234.56"), parse("1.234,56"));
+        // Несколько одинаковых разделителей - разделители групп
+        assertEquals(new BigDecimal("1234567.00"), parse("1.234.567"));
+    }
+
+    @Test
+    void singleSeparatorAfterSpaceGroupIsGrouping() {
+        assertEquals(new BigDecimal("1234567.00"), parse("1 234.567"));
+    }
+
+    @Test
+    void singleSeparatorIsDecimal() {
+        assertEquals(new BigDecimal("12.50"), parse("12,5"));
+        assertEquals(new BigDecimal("12.50"), parse("12.5"));
+        assertEquals(new BigDecimal("0.50"), parse(",5"));
+        assertEquals(new BigDecimal("0.50"), parse(".5"));
+    }
+
+    @Test
+    void stripsCurrencySymbols() {
+        assertEquals(new BigDecimal("1234.56"), parse("1 234,56 руб."));
+        assertEquals(new BigDecimal("99.90"), parse("99,90 р."));
+        assertEquals(new BigDecimal("150.00"), parse("150 ₽"));
+        assertEquals(new BigDecimal("12.99"), parse("$12.99"));
+    }
+
+    @Test
+    void parsesSign() {
+        assertEquals(new BigDecimal("-5.50"), parse("-5,5"));
+        assertEquals(new BigDecimal("-5.50"), parse("\u22125,5"));
+        assertEquals(new BigDecimal("5.50"), parse("+5,5"));
+        assertNull(parse("--5"));
+    }
+
+    @Test
+    void roundsHalfUpToRequestedScale() {
+        assertEquals(new BigDecimal("0.13"), parse("0,125"));
+        assertEquals(new BigDecimal("0.12"), parse("0,124"));
+    }
+
+    @Test
+    void keepsAtMostSevenFractionDigits() {
+        // Дробные знаки после седьмого отбрасываются до округления
+        assertEquals(new BigDecimal("0.9999999"), parser.parseBigDecimal("0,99999999", 7));
+        assertEquals(new BigDecimal("1.00"), parse("0,99999999"));
+    }
+
+    @Test
+    void ignoresLeadingZeros() {
+        assertEquals(new BigDecimal("7.00"), parse("0007"));
+        assertEquals(new BigDecimal("0.05"), parse("0,05"));
+    }
+
+    @Test
+    void emptyAndBlankValuesAreNotNumbers() {
+        assertNull(parse(null));
+        assertNull(parse(""));
+        assertNull(parse("   "));
+        assertTrue(Double.isNaN(parser.parseDouble("")));
+        assertTrue(Double.isNaN(parser.parseDouble(null)));
+    }
+
+    @Test
+    void garbageIsNotANumber() {
+        assertNull(parse("abc"));
+        assertNull(parse("нет в наличии"));
+        assertNull(parse("12abc34"));
+        assertNull(parse("1,2,3.4,5"));
+        assertNull(parse("1.2.3,4.5"));
+    }
+
+    @Test
+    void tooManyIntegerDigitsIsNotANumber() {
+        assertNull(parse("1234567890123456789"));
+        assertEquals(new BigDecimal("123456789012345678.00"), parse("123456789012345678"));
+    }
+
+    @Test
+    void withoutCurrencyStrippingRejectsText() {
+        PriceParser strict = new PriceParser(PriceParser.AUTO, PriceParser.AUTO, false);
+        assertNull(strict.parseBigDecimal("1 234,56 руб.", 2));
+        assertNull(strict.parseBigDecimal("$12", 2));
+        assertEquals(new BigDecimal("1234.56"), strict.parseBigDecimal(" 1 234,56 ", 2));
+    }
+
+    @Test
+    void explicitSeparatorsOverrideDetection() {
+        PriceParser comma = new PriceParser(',', '.', false);
+        assertEquals(new BigDecimal("1234.50"), comma.parseBigDecimal("1.234,5", 2));
+        assertEquals(new BigDecimal("1234.00"), comma.parseBigDecimal("1.234", 2));
+
+        PriceParser dot = new PriceParser('.', ',', false);
+        assertEquals(new BigDecimal("1.23"), dot.parseBigDecimal("1.234", 2));
+        assertNull(dot.parseBigDecimal("1.234.5", 2));
+    }
+
+    @Test
+    void parseDoubleMatchesBigDecimal() {
+        assertEquals(1234.56, parser.parseDouble("1 234,56"), 1e-9);
+        assertEquals(-0.5, parser.parseDouble("-,5"), 1e-9);
+        assertEquals(12.0, parser.parseDouble("12"), 1e-9);
+    }
+}